@@ -0,0 +1,173 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks cloud providers by observed load instead of a fixed region table.
+ *
+ * Every call to a provider is bracketed by {@link #begin} and one of
+ * {@link #onSuccess}, {@link #onFailure} or {@link #onCancelled}, which keep an
+ * exponentially weighted latency and error rate and the number of calls in flight.
+ * A provider's cost is its EWMA latency times (in-flight + 1), inflated by its error
+ * rate; a provider without samples costs nothing, so it gets tried. The first
+ * choice is made by power of two choices (the cheaper of two random healthy
+ * providers), so callers do not all stampede the single cheapest provider.
+ *
+ * Health comes straight from {@link CloudHealthMonitor} on every selection, so a
+ * status change made by a health check applies to the next call.
+ */
+@Component
+public class AdaptiveProviderSelector {
+
+    @Autowired
+    private CloudHealthMonitor healthMonitor;
+
+    @Value("${app.cloud-replication.routing.ewma-alpha:0.2}")
+    private double alpha;
+
+    // Cost multiplier of the provider nearest to the caller's region
+    @Value("${app.cloud-replication.routing.region-affinity:0.8}")
+    private double regionAffinity;
+
+    private final Map<CloudProvider, ProviderLoad> loads = new EnumMap<>(CloudProvider.class);
+
+    public AdaptiveProviderSelector() {
+        for (CloudProvider provider : CloudProvider.values()) {
+            loads.put(provider, new ProviderLoad());
+        }
+    }
+
+    /**
+     * Note a call to the provider; returns its start time for the completion callback
+     */
+    public long begin(CloudProvider provider) {
+        loads.get(provider).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void onSuccess(CloudProvider provider, long startNanos) {
+        loads.get(provider).complete(System.nanoTime() - startNanos, false, alpha);
+    }
+
+    public void onFailure(CloudProvider provider, long startNanos) {
+        loads.get(provider).complete(System.nanoTime() - startNanos, true, alpha);
+    }
+
+    /**
+     * A call abandoned by the caller, e.g. the losing side of a hedged read. Its elapsed
+     * time is a lower bound of its latency, so it can only raise the latency estimate.
+     */
+    public void onCancelled(CloudProvider provider, long startNanos) {
+        loads.get(provider).abandon(System.nanoTime() - startNanos, alpha);
+    }
+
+    /**
+     * Order candidates for a read: a power-of-two-choices pick first, then the other
+     * healthy providers by cost, then unhealthy ones by cost
+     */
+    public List<CloudProvider> rank(Collection<CloudProvider> candidates, CloudProvider nearest) {
+        List<CloudProvider> healthy = new ArrayList<>();
+        List<CloudProvider> unhealthy = new ArrayList<>();
+        for (CloudProvider provider : candidates) {
+            (healthMonitor.isProviderHealthy(provider) ? healthy : unhealthy).add(provider);
+        }
+        Comparator<CloudProvider> byCost = Comparator.comparingDouble(provider -> cost(provider, nearest));
+        healthy.sort(byCost);
+        unhealthy.sort(byCost);
+
+        List<CloudProvider> ranked = new ArrayList<>(candidates.size());
+        if (!healthy.isEmpty()) {
+            CloudProvider first = pickOfTwo(healthy, nearest);
+            ranked.add(first);
+            healthy.remove(first);
+        }
+        ranked.addAll(healthy);
+        ranked.addAll(unhealthy);
+        return ranked;
+    }
+
+    /**
+     * The provider to use out of several that can serve the call
+     */
+    public CloudProvider choose(List<CloudProvider> candidates) {
+        return rank(candidates, null).get(0);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<CloudProvider, ProviderLoad> entry : loads.entrySet()) {
+            ProviderLoad load = entry.getValue();
+            Map<String, Object> provider = new LinkedHashMap<>();
+            provider.put("healthy", healthMonitor.isProviderHealthy(entry.getKey()));
+            provider.put("ewmaLatencyMs", Math.round(load.latencyNanos / 1000.0) / 1000.0);
+            provider.put("errorRate", Math.round(load.errorRate * 10000.0) / 10000.0);
+            provider.put("inFlight", load.inFlight.get());
+            provider.put("samples", load.samples);
+            provider.put("cost", Math.round(cost(entry.getKey(), null) / 1000.0) / 1000.0);
+            stats.put(entry.getKey().name(), provider);
+        }
+        return stats;
+    }
+
+    private CloudProvider pickOfTwo(List<CloudProvider> providers, CloudProvider nearest) {
+        if (providers.size() == 1) {
+            return providers.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(providers.size());
+        int b = random.nextInt(providers.size() - 1);
+        if (b >= a) {
+            b++;
+        }
+        CloudProvider first = providers.get(a);
+        CloudProvider second = providers.get(b);
+        return cost(first, nearest) <= cost(second, nearest) ? first : second;
+    }
+
+    private double cost(CloudProvider provider, CloudProvider nearest) {
+        ProviderLoad load = loads.get(provider);
+        double cost = load.latencyNanos * (load.inFlight.get() + 1) / (1.0 - Math.min(load.errorRate, 0.9));
+        return provider == nearest ? cost * regionAffinity : cost;
+    }
+
+    private static final class ProviderLoad {
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile double latencyNanos;
+        volatile double errorRate;
+        volatile long samples;
+
+        synchronized void complete(long latency, boolean failed, double alpha) {
+            inFlight.decrementAndGet();
+            if (samples == 0) {
+                latencyNanos = latency;
+            } else {
+                latencyNanos += alpha * (latency - latencyNanos);
+            }
+            errorRate += alpha * ((failed ? 1.0 : 0.0) - errorRate);
+            samples++;
+        }
+
+        synchronized void abandon(long elapsed, double alpha) {
+            inFlight.decrementAndGet();
+            if (samples == 0) {
+                latencyNanos = elapsed;
+            } else if (elapsed > latencyNanos) {
+                latencyNanos += alpha * (elapsed - latencyNanos);
+            }
+            samples++;
+        }
+    }
+}
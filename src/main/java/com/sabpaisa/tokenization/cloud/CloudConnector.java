@@ -1,7 +1,10 @@
 package com.sabpaisa.tokenization.cloud;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface for cloud storage connectors
@@ -18,6 +21,22 @@ public interface CloudConnector {
      */
     void store(EncryptedTokenData data, Map<String, String> metadata) throws CloudStorageException;
     
+    /**
+     * Store several tokens, each with its own metadata; returns the error for each
+     * token id that was not stored
+     */
+    default Map<String, CloudStorageException> storeAll(Collection<EncryptedTokenData> batch) {
+        Map<String, CloudStorageException> failures = new HashMap<>();
+        for (EncryptedTokenData data : batch) {
+            try {
+                store(data, data.getMetadata());
+            } catch (CloudStorageException e) {
+                failures.put(data.getTokenId(), e);
+            }
+        }
+        return failures;
+    }
+    
     /**
      * Retrieve encrypted token data from the cloud
      */
@@ -29,9 +48,60 @@ public interface CloudConnector {
     void delete(String tokenId) throws CloudStorageException;
     
     /**
-     * Get inventory of all token IDs
+     * Largest page any listing returns
+     */
+    int MAX_PAGE_SIZE = 1000;
+    
+    /**
+     * List token IDs in ascending order, one page at a time. Only IDs starting with
+     * the prefix (if given) and sorting after startAfter (if given) are returned.
+     */
+    TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException;
+    
+    /**
+     * List token IDs whose Merkle digest lies in [fromDigest, toDigest] (unsigned),
+     * in digest order; startAfter is the last token ID of the previous page
+     */
+    TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+        throws CloudStorageException;
+    
+    /**
+     * Visit every token ID with the prefix, holding at most one page in memory
+     */
+    default void forEachToken(String prefix, int pageSize, Consumer<String> action) throws CloudStorageException {
+        String startAfter = null;
+        do {
+            TokenInventoryPage page = listTokens(prefix, startAfter, pageSize);
+            page.getTokenIds().forEach(action);
+            startAfter = page.getNextStartAfter();
+        } while (startAfter != null);
+    }
+    
+    /**
+     * Store a raw object, such as a packed token segment, replacing any object with the same key
+     */
+    void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException;
+    
+    /**
+     * Read bytes [offset, offset + length) of an object, or its last length bytes
+     * when offset is negative; null if the object does not exist
+     */
+    byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException;
+    
+    /**
+     * Delete a raw object
+     */
+    void deleteObject(String key) throws CloudStorageException;
+    
+    /**
+     * List the keys of raw objects starting with the prefix, in ascending order
+     */
+    List<String> listObjects(String prefix) throws CloudStorageException;
+    
+    /**
+     * Get the hash-range Merkle tree of stored token IDs, kept current on store and delete
      */
-    Set<String> getTokenInventory() throws CloudStorageException;
+    TokenMerkleTree getMerkleTree();
     
     /**
      * Get total count of tokens
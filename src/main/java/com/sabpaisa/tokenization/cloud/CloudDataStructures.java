@@ -127,6 +127,7 @@ public class CloudDataStructures {
         private com.sabpaisa.tokenization.entity.Token token;
         private MultiCloudReplicationService.CloudProvider sourceProvider;
         private int attemptCount;
+        private boolean hedged;
         
         public TokenRetrievalResult(boolean success, com.sabpaisa.tokenization.entity.Token token,
                                   MultiCloudReplicationService.CloudProvider sourceProvider, int attemptCount) {
@@ -148,6 +149,9 @@ public class CloudDataStructures {
         
         public int getAttemptCount() { return attemptCount; }
         public void setAttemptCount(int attemptCount) { this.attemptCount = attemptCount; }
+        
+        public boolean isHedged() { return hedged; }
+        public void setHedged(boolean hedged) { this.hedged = hedged; }
     }
     
     public static class DeletionResult {
@@ -182,6 +186,7 @@ public class CloudDataStructures {
         private List<ReplicationStatus> recentReplications;
         private long totalReplications;
         private double overallSuccessRate;
+        private double averagePayloadBytes;
         
         // Getters and setters
         public String getHealthStatus() { return healthStatus; }
@@ -198,6 +203,9 @@ public class CloudDataStructures {
         
         public double getOverallSuccessRate() { return overallSuccessRate; }
         public void setOverallSuccessRate(double overallSuccessRate) { this.overallSuccessRate = overallSuccessRate; }
+        
+        public double getAveragePayloadBytes() { return averagePayloadBytes; }
+        public void setAveragePayloadBytes(double averagePayloadBytes) { this.averagePayloadBytes = averagePayloadBytes; }
     }
     
     public static class ProviderStatistics {
@@ -206,6 +214,8 @@ public class CloudDataStructures {
         private double averageLatency;
         private double successRate;
         private LocalDateTime lastSync;
+        private long pendingReplications;
+        private long replicationLagSeconds;
         private Map<String, Object> customMetrics;
         
         // Getters and setters
@@ -224,6 +234,12 @@ public class CloudDataStructures {
         public LocalDateTime getLastSync() { return lastSync; }
         public void setLastSync(LocalDateTime lastSync) { this.lastSync = lastSync; }
         
+        public long getPendingReplications() { return pendingReplications; }
+        public void setPendingReplications(long pendingReplications) { this.pendingReplications = pendingReplications; }
+        
+        public long getReplicationLagSeconds() { return replicationLagSeconds; }
+        public void setReplicationLagSeconds(long replicationLagSeconds) { this.replicationLagSeconds = replicationLagSeconds; }
+        
         public Map<String, Object> getCustomMetrics() { return customMetrics; }
         public void setCustomMetrics(Map<String, Object> customMetrics) { this.customMetrics = customMetrics; }
     }
@@ -1,12 +1,18 @@
 package com.sabpaisa.tokenization.cloud;
 
 import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import com.sabpaisa.tokenization.metrics.RollingLatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -14,6 +20,15 @@ import java.util.concurrent.atomic.DoubleAdder;
 
 /**
  * Monitors health of cloud providers
+ * 
+ * Besides the health checks it keeps a rolling latency histogram per provider and
+ * operation, fed by every connector call, and an SLO burn rate over a short and a
+ * long window: the share of calls that failed or exceeded the latency objective,
+ * divided by the error budget (1 - target). A burn rate of 1 spends the budget
+ * exactly over the SLO period.
+ * 
+ * A provider whose circuit breaker in {@link ProviderGuards} is open counts as
+ * unhealthy straight away, without waiting for the next health checks.
  */
 @Component
 public class CloudHealthMonitor {
@@ -23,6 +38,40 @@ public class CloudHealthMonitor {
     private final Map<CloudProvider, HealthMetrics> healthMetrics = new ConcurrentHashMap<>();
     private Map<CloudProvider, CloudConnector> connectors;
     
+    @Autowired(required = false)
+    private ProviderGuards providerGuards;
+    
+    private final Map<CloudProvider, Map<Operation, RollingLatencyHistogram>> latencies = new EnumMap<>(CloudProvider.class);
+    
+    @Value("${app.cloud-replication.latency.slot-seconds:60}")
+    private long slotSeconds;
+    
+    @Value("${app.cloud-replication.latency.slots:60}")
+    private int slotCount;
+    
+    @Value("${app.cloud-replication.slo.latency-ms:200}")
+    private long sloLatencyMs;
+    
+    @Value("${app.cloud-replication.slo.target:0.999}")
+    private double sloTarget;
+    
+    @Value("${app.cloud-replication.slo.short-window-minutes:5}")
+    private long shortWindowMinutes;
+    
+    @Value("${app.cloud-replication.slo.long-window-minutes:60}")
+    private long longWindowMinutes;
+    
+    @PostConstruct
+    public void initializeHistograms() {
+        for (CloudProvider provider : CloudProvider.values()) {
+            Map<Operation, RollingLatencyHistogram> operations = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                operations.put(operation, new RollingLatencyHistogram(slotCount, slotSeconds * 1000));
+            }
+            latencies.put(provider, operations);
+        }
+    }
+    
     public void startMonitoring(Map<CloudProvider, CloudConnector> cloudConnectors) {
         this.connectors = cloudConnectors;
         
@@ -92,9 +141,90 @@ public class CloudHealthMonitor {
         }
     }
     
+    /**
+     * Record one connector call; allocation-free, so it runs on every call
+     */
+    public void recordOperation(CloudProvider provider, Operation operation, long durationNanos, boolean success) {
+        latencies.get(provider).get(operation).record(durationNanos, success);
+    }
+    
+    /**
+     * A call abandoned by its caller, e.g. the losing side of a hedged read. It counts
+     * against the SLO like a failure; its elapsed time is kept as a lower bound.
+     */
+    public void recordAbandoned(CloudProvider provider, Operation operation, long elapsedNanos) {
+        latencies.get(provider).get(operation).recordAbandoned(elapsedNanos);
+    }
+    
+    /**
+     * The provider's observations of the operation over the short SLO window
+     */
+    public RollingLatencyHistogram.Window getRecentLatency(CloudProvider provider, Operation operation) {
+        return latencies.get(provider).get(operation).window(shortWindowMinutes * 60_000);
+    }
+    
+    /**
+     * Latency percentiles and SLO burn rates per provider and operation
+     */
+    public Map<String, Object> getLatencyStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (CloudProvider provider : CloudProvider.values()) {
+            Map<String, Object> operations = new LinkedHashMap<>();
+            for (Operation operation : Operation.values()) {
+                RollingLatencyHistogram histogram = latencies.get(provider).get(operation);
+                RollingLatencyHistogram.Window shortWindow = histogram.window(shortWindowMinutes * 60_000);
+                RollingLatencyHistogram.Window longWindow = histogram.window(longWindowMinutes * 60_000);
+                
+                Map<String, Object> operationStats = new LinkedHashMap<>();
+                operationStats.put("last" + shortWindowMinutes + "m", windowStats(shortWindow));
+                operationStats.put("last" + longWindowMinutes + "m", windowStats(longWindow));
+                operationStats.put("burnRateShort", burnRate(shortWindow));
+                operationStats.put("burnRateLong", burnRate(longWindow));
+                operations.put(operation.name(), operationStats);
+            }
+            stats.put(provider.name(), operations);
+        }
+        
+        Map<String, Object> slo = new LinkedHashMap<>();
+        slo.put("latencyMs", sloLatencyMs);
+        slo.put("target", sloTarget);
+        slo.put("shortWindowMinutes", shortWindowMinutes);
+        slo.put("longWindowMinutes", longWindowMinutes);
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("slo", slo);
+        response.put("providers", stats);
+        return response;
+    }
+    
+    /**
+     * Short-window percentiles per operation, for the provider statistics
+     */
+    public Map<String, Object> getLatencySummary(CloudProvider provider) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            summary.put(operation.name(), windowStats(latencies.get(provider).get(operation).window(shortWindowMinutes * 60_000)));
+        }
+        return summary;
+    }
+    
+    private Map<String, Object> windowStats(RollingLatencyHistogram.Window window) {
+        Map<String, Object> stats = window.getLatencies().snapshot();
+        stats.put("count", window.getCount());
+        stats.put("errors", window.getErrors());
+        stats.put("abandoned", window.getAbandoned().getCount());
+        return stats;
+    }
+    
+    private double burnRate(RollingLatencyHistogram.Window window) {
+        double bad = window.getBadFraction(sloLatencyMs * 1000);
+        return Math.round(bad / (1.0 - sloTarget) * 100.0) / 100.0;
+    }
+    
     public boolean isProviderHealthy(CloudProvider provider) {
         HealthMetrics metrics = healthMetrics.get(provider);
-        return metrics != null && metrics.available;
+        return metrics != null && metrics.available
+            && (providerGuards == null || providerGuards.isAvailable(provider));
     }
     
     public double getAverageLatency(CloudProvider provider) {
@@ -118,6 +248,10 @@ public class CloudHealthMonitor {
         return metrics != null ? metrics.lastSuccessTime : null;
     }
     
+    public enum Operation {
+        STORE, STORE_BATCH, RETRIEVE, DELETE, INVENTORY
+    }
+    
     private static class HealthMetrics {
         volatile boolean available = true;
         AtomicLong successCount = new AtomicLong();
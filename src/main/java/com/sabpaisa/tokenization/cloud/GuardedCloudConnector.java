@@ -0,0 +1,129 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admits every remote call of a connector through the provider's circuit breaker
+ * and concurrency limit in {@link ProviderGuards}. A rejected call fails straight
+ * away with a {@link CloudStorageException}. Health checks and local state
+ * (Merkle tree, counts, metrics) are not guarded.
+ */
+final class GuardedCloudConnector implements CloudConnector {
+
+    private final CloudProvider provider;
+    private final CloudConnector delegate;
+    private final ProviderGuards guards;
+
+    GuardedCloudConnector(CloudProvider provider, CloudConnector delegate, ProviderGuards guards) {
+        this.provider = provider;
+        this.delegate = delegate;
+        this.guards = guards;
+    }
+
+    CloudConnector getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+    }
+
+    @Override
+    public void store(EncryptedTokenData data, Map<String, String> metadata) throws CloudStorageException {
+        call("store", () -> {
+            delegate.store(data, metadata);
+            return null;
+        });
+    }
+
+    @Override
+    public EncryptedTokenData retrieve(String tokenId) throws CloudStorageException {
+        return call("retrieve", () -> delegate.retrieve(tokenId));
+    }
+
+    @Override
+    public void delete(String tokenId) throws CloudStorageException {
+        call("delete", () -> {
+            delegate.delete(tokenId);
+            return null;
+        });
+    }
+
+    @Override
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException {
+        return call("inventory", () -> delegate.listTokens(prefix, startAfter, pageSize));
+    }
+
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+            throws CloudStorageException {
+        return call("inventory", () -> delegate.listTokensInDigestRange(fromDigest, toDigest, startAfter, pageSize));
+    }
+
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        call("store", () -> {
+            delegate.putObject(key, content, metadata);
+            return null;
+        });
+    }
+
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        return call("retrieve", () -> delegate.readObjectRange(key, offset, length));
+    }
+
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        call("delete", () -> {
+            delegate.deleteObject(key);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        return call("inventory", () -> delegate.listObjects(prefix));
+    }
+
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return delegate.getMerkleTree();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return delegate.getTokenCount();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    private <T> T call(String operation, RemoteCall<T> remoteCall) throws CloudStorageException {
+        ProviderGuards.Permit permit = guards.acquire(provider, operation);
+        boolean success = false;
+        try {
+            T result = remoteCall.run();
+            success = true;
+            return result;
+        } finally {
+            permit.release(success);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RemoteCall<T> {
+        T run() throws CloudStorageException;
+    }
+}
@@ -0,0 +1,188 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.CloudHealthMonitor.Operation;
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times every remote call of a connector into the provider's per-operation
+ * latency histograms in {@link CloudHealthMonitor}. A batch store is timed as one
+ * STORE_BATCH call, so it does not skew single-token STORE latencies; a read
+ * abandoned by its caller counts as a bad RETRIEVE.
+ */
+final class MonitoredCloudConnector implements CloudConnector {
+
+    private final CloudProvider provider;
+    private final CloudConnector delegate;
+    private final CloudHealthMonitor healthMonitor;
+
+    MonitoredCloudConnector(CloudProvider provider, CloudConnector delegate, CloudHealthMonitor healthMonitor) {
+        this.provider = provider;
+        this.delegate = delegate;
+        this.healthMonitor = healthMonitor;
+    }
+
+    CloudConnector getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+    }
+
+    @Override
+    public void store(EncryptedTokenData data, Map<String, String> metadata) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.store(data, metadata);
+            success = true;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.STORE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public Map<String, CloudStorageException> storeAll(Collection<EncryptedTokenData> batch) {
+        long start = System.nanoTime();
+        Map<String, CloudStorageException> failures = null;
+        try {
+            failures = delegate.storeAll(batch);
+            return failures;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.STORE_BATCH, System.nanoTime() - start,
+                failures != null && failures.isEmpty());
+        }
+    }
+
+    @Override
+    public EncryptedTokenData retrieve(String tokenId) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            EncryptedTokenData data = delegate.retrieve(tokenId);
+            success = true;
+            return data;
+        } finally {
+            // An abandoned (interrupted) read is bad, and took at least this long
+            if (Thread.currentThread().isInterrupted()) {
+                healthMonitor.recordAbandoned(provider, Operation.RETRIEVE, System.nanoTime() - start);
+            } else {
+                healthMonitor.recordOperation(provider, Operation.RETRIEVE, System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String tokenId) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.delete(tokenId);
+            success = true;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.DELETE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            TokenInventoryPage page = delegate.listTokens(prefix, startAfter, pageSize);
+            success = true;
+            return page;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.INVENTORY, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+            throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            TokenInventoryPage page = delegate.listTokensInDigestRange(fromDigest, toDigest, startAfter, pageSize);
+            success = true;
+            return page;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.INVENTORY, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.putObject(key, content, metadata);
+            success = true;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.STORE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] content = delegate.readObjectRange(key, offset, length);
+            success = true;
+            return content;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.RETRIEVE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.deleteObject(key);
+            success = true;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.DELETE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            List<String> keys = delegate.listObjects(prefix);
+            success = true;
+            return keys;
+        } finally {
+            healthMonitor.recordOperation(provider, Operation.INVENTORY, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return delegate.getMerkleTree();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return delegate.getTokenCount();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        return delegate.getMetrics();
+    }
+}
@@ -1,25 +1,43 @@
 package com.sabpaisa.tokenization.cloud;
 
 import com.sabpaisa.tokenization.cloud.CloudDataStructures.*;
+import com.sabpaisa.tokenization.cloud.CloudHealthMonitor.Operation;
+import com.sabpaisa.tokenization.cloud.connectors.LatencySimulating;
+import com.sabpaisa.tokenization.cloud.connectors.LocalDiskConnector;
+import com.sabpaisa.tokenization.cloud.connectors.SimulatedLatency;
+import com.sabpaisa.tokenization.entity.CloudReplicationOutboxEntry;
 import com.sabpaisa.tokenization.entity.Token;
 import com.sabpaisa.tokenization.entity.Merchant;
+import com.sabpaisa.tokenization.metrics.LatencyHistogram;
+import com.sabpaisa.tokenization.metrics.RollingLatencyHistogram;
+import com.sabpaisa.tokenization.repository.CloudReplicationOutboxRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -40,13 +58,102 @@ public class MultiCloudReplicationService {
     // Cloud provider configurations
     private final Map<CloudProvider, CloudConnector> cloudConnectors = new ConcurrentHashMap<>();
     
-    // Replication status tracking
-    private final Map<String, ReplicationStatus> replicationStatus = new ConcurrentHashMap<>();
+    // Reads, including hedges; cancelled reads are interrupted. Bounded, so a slow
+    // provider cannot pile up read threads: a read that does not fit is not sent.
+    private ThreadPoolExecutor readExecutor;
+    private final LongAdder readsRejected = new LongAdder();
     
-    // Thread pool for async replication
-    private final ExecutorService replicationExecutor = Executors.newFixedThreadPool(10);
+    // Hedge budget in thousandths of a hedge: each read earns hedge-budget-percent * 10, a hedge costs 1000
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_HEDGE_CREDIT = 10 * HEDGE_COST;
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    private final AtomicLong hedgeCredit = new AtomicLong();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder hedgesDenied = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    
+    // Replicated token payloads, for the average encoded size
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+    private final LongAdder payloadsEncoded = new LongAdder();
+    private final LongAdder payloadBytes = new LongAdder();
+    
+    @Value("${app.cloud-replication.reads.hedge-budget-percent:10}")
+    private double hedgeBudgetPercent;
+    
+    @Value("${app.cloud-replication.reads.hedge-default-delay-ms:50}")
+    private long hedgeDefaultDelayMs;
+    
+    @Value("${app.cloud-replication.reads.hedge-min-delay-ms:5}")
+    private long hedgeMinDelayMs;
+    
+    @Value("${app.cloud-replication.reads.hedge-max-delay-ms:500}")
+    private long hedgeMaxDelayMs;
+    
+    @Value("${app.cloud-replication.reads.timeout-ms:2000}")
+    private long readTimeoutMs;
+    
+    @Value("${app.cloud-replication.reads.threads:64}")
+    private int readThreads;
+    
+    @Value("${app.cloud-replication.reads.queue:256}")
+    private int readQueue;
+    
+    @Value("${app.cloud-replication.simulated-latency.base-ms:0}")
+    private long simulatedBaseMs;
+    
+    @Value("${app.cloud-replication.simulated-latency.tail-ms:0}")
+    private long simulatedTailMs;
+    
+    @Value("${app.cloud-replication.simulated-latency.tail-probability:0}")
+    private double simulatedTailProbability;
+    
+    // Segment packing: tokens are packed into segment objects instead of one object each
+    @Value("${app.cloud-replication.segments.enabled:false}")
+    private boolean segmentsEnabled;
+    
+    @Value("${app.cloud-replication.segments.max-bytes:4194304}")
+    private int segmentMaxBytes;
+    
+    @Value("${app.cloud-replication.segments.max-records:4096}")
+    private int segmentMaxRecords;
+    
+    @Value("${app.cloud-replication.segments.max-linger-ms:20}")
+    private long segmentMaxLingerMs;
+    
+    @Value("${app.cloud-replication.segments.store-timeout-ms:5000}")
+    private long segmentStoreTimeoutMs;
+    
+    @Value("${app.cloud-replication.segments.compaction-interval-ms:60000}")
+    private long segmentCompactionIntervalMs;
+    
+    @Value("${app.cloud-replication.segments.compaction-dead-ratio:0.5}")
+    private double segmentCompactionDeadRatio;
+    
+    @Value("${app.cloud-replication.segments.max-compactions-per-run:1}")
+    private int segmentMaxCompactionsPerRun;
+    
+    // Local disk: each provider keeps its replicas in an append-only log under directory/<provider>
+    @Value("${app.cloud-replication.local-disk.enabled:false}")
+    private boolean localDiskEnabled;
+    
+    @Value("${app.cloud-replication.local-disk.directory:./data/cloud}")
+    private String localDiskDirectory;
+    
+    @Value("${app.cloud-replication.local-disk.segment-bytes:67108864}")
+    private long localDiskSegmentBytes;
+    
+    @Value("${app.cloud-replication.local-disk.compaction-interval-ms:60000}")
+    private long localDiskCompactionIntervalMs;
+    
+    @Value("${app.cloud-replication.local-disk.compaction-dead-ratio:0.5}")
+    private double localDiskCompactionDeadRatio;
+    
+    // Encryption for cloud storage: a Base64 AES-256 key; required with local disk, whose replicas outlive a restart
+    @Value("${app.cloud-replication.encryption-key:}")
+    private String configuredEncryptionKey;
     
-    // Encryption for cloud storage
     private SecretKey cloudEncryptionKey;
     private final SecureRandom secureRandom = new SecureRandom();
     
@@ -56,20 +163,57 @@ public class MultiCloudReplicationService {
     @Autowired(required = false)
     private ConflictResolver conflictResolver;
     
+    @Autowired
+    private CloudReplicationOutboxRepository outboxRepository;
+    
+    @Autowired
+    private AdaptiveProviderSelector providerSelector;
+    
+    @Autowired
+    private ReplicationStatusTracker statusTracker;
+    
+    // Per-provider bulkheads, circuit breakers and concurrency limits
+    @Autowired
+    private ProviderGuards providerGuards;
+    
     @PostConstruct
     public void initialize() {
         logger.info("Initializing Multi-Cloud Replication Service");
         
         // Initialize cloud connectors
         initializeCloudConnectors();
+        AtomicInteger readThreadCount = new AtomicInteger();
+        readExecutor = new ThreadPoolExecutor(readThreads, readThreads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(readQueue), runnable -> {
+                Thread thread = new Thread(runnable, "cloud-read-" + readThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        readExecutor.allowCoreThreadTimeOut(true);
         
-        // Generate cloud encryption key
-        generateCloudEncryptionKey();
+        // Load or generate the cloud encryption key
+        initializeCloudEncryptionKey();
         
         // Start health monitoring
         startHealthMonitoring();
     }
     
+    @PreDestroy
+    public void shutdown() {
+        readExecutor.shutdownNow();
+        for (CloudConnector connector : cloudConnectors.values()) {
+            CloudConnector packing = ((MonitoredCloudConnector) connector).getDelegate();
+            if (packing instanceof SegmentPackingConnector) {
+                ((SegmentPackingConnector) packing).shutdown();
+            }
+            // After packing, which may still upload its last segment
+            CloudConnector own = unwrap(connector);
+            if (own instanceof LocalDiskConnector) {
+                ((LocalDiskConnector) own).shutdown();
+            }
+        }
+    }
+    
     /**
      * Replicate token to all configured cloud providers
      */
@@ -84,7 +228,7 @@ public class MultiCloudReplicationService {
         status.setStartTime(LocalDateTime.now());
         status.setStatus("IN_PROGRESS");
         
-        replicationStatus.put(replicationId, status);
+        statusTracker.started(status);
         
         // Encrypt token data
         EncryptedTokenData encryptedData = encryptTokenData(token, merchant);
@@ -96,8 +240,8 @@ public class MultiCloudReplicationService {
             CloudProvider provider = entry.getKey();
             CloudConnector connector = entry.getValue();
             
-            CompletableFuture<CloudReplicationResult> future = CompletableFuture
-                .supplyAsync(() -> replicateToCloud(provider, connector, encryptedData, merchant), replicationExecutor)
+            CompletableFuture<CloudReplicationResult> future =
+                supplyOn(provider, () -> replicateToCloud(provider, connector, encryptedData, merchant))
                 .exceptionally(ex -> {
                     logger.error("Replication to {} failed", provider, ex);
                     return createFailedResult(provider, ex.getMessage());
@@ -118,83 +262,316 @@ public class MultiCloudReplicationService {
     }
     
     /**
-     * Retrieve token from the nearest available cloud
+     * Queue the token for replication to every provider. Call it in the transaction that
+     * saves the token so both commit together; {@link ReplicationOutboxRelay} delivers it.
+     */
+    public void enqueueReplication(Token token) {
+        LocalDateTime now = LocalDateTime.now();
+        List<CloudReplicationOutboxEntry> entries = new ArrayList<>();
+        for (CloudProvider provider : cloudConnectors.keySet()) {
+            entries.add(new CloudReplicationOutboxEntry(provider.name(), token.getId(), now));
+        }
+        outboxRepository.saveAll(entries);
+    }
+    
+    public Set<CloudProvider> getProviders() {
+        return cloudConnectors.keySet();
+    }
+    
+    /**
+     * Encrypted replicas with their metadata, keyed by token id. Reads each token's
+     * merchant, so call it inside a transaction.
+     */
+    public Map<Long, EncryptedTokenData> prepareReplicas(Collection<Token> tokens) {
+        Map<Long, EncryptedTokenData> replicas = new LinkedHashMap<>();
+        for (Token token : tokens) {
+            EncryptedTokenData data = encryptTokenData(token, token.getMerchant());
+            data.setMetadata(replicationMetadata(token.getMerchant()));
+            replicas.put(token.getId(), data);
+        }
+        return replicas;
+    }
+    
+    /**
+     * Store replicas on one provider; returns the error for each token id that was not stored
+     */
+    public Map<Long, String> storeReplicas(CloudProvider provider, Map<Long, EncryptedTokenData> replicas) {
+        CloudConnector connector = cloudConnectors.get(provider);
+        Map<Long, String> failures = new HashMap<>();
+        if (replicas.isEmpty()) {
+            return failures;
+        }
+        long startTime = System.currentTimeMillis();
+        long started = providerSelector.begin(provider);
+        Map<String, CloudStorageException> errors = connector.storeAll(replicas.values());
+        // Latency per token, so packed and unpacked stores compare
+        long elapsed = (System.currentTimeMillis() - startTime) / replicas.size();
+        if (errors.size() < replicas.size()) {
+            providerSelector.onSuccess(provider, started);
+        } else {
+            providerSelector.onFailure(provider, started);
+        }
+        for (Map.Entry<Long, EncryptedTokenData> entry : replicas.entrySet()) {
+            CloudStorageException error = errors.get(entry.getValue().getTokenId());
+            statusTracker.recordProviderOutcome(provider, error == null);
+            if (error == null) {
+                healthMonitor.recordSuccess(provider, elapsed);
+            } else {
+                healthMonitor.recordFailure(provider, elapsed, error.getMessage());
+                failures.put(entry.getKey(), String.valueOf(error.getMessage()));
+            }
+        }
+        return failures;
+    }
+    
+    /**
+     * Retrieve token from the best available cloud.
+     * 
+     * Reads the provider {@link AdaptiveProviderSelector} ranks first. If it has not
+     * answered after its recent p95 read latency (abandoned reads counting with their
+     * elapsed time), one hedged read goes to the next-best
+     * provider, provided the hedge budget allows it; the first valid response wins
+     * and the other read is cancelled. A provider that fails or does not hold the
+     * token is replaced by the next one straight away.
      */
     public TokenRetrievalResult retrieveToken(String tokenId, String region) {
-        logger.info("Retrieving token {} from nearest cloud in region {}", tokenId, region);
+        logger.debug("Retrieving token {} from nearest cloud in region {}", tokenId, region);
+        reads.increment();
+        hedgeCredit.accumulateAndGet((long) (hedgeBudgetPercent * 10), (credit, earned) -> Math.min(credit + earned, MAX_HEDGE_CREDIT));
         
-        // Find nearest cloud provider
-        CloudProvider nearestProvider = findNearestProvider(region);
+        List<CloudProvider> order = readOrder(region);
+        CompletionService<ReadOutcome> completion = new ExecutorCompletionService<>(readExecutor);
+        List<Future<ReadOutcome>> sent = new ArrayList<>();
+        CloudProvider hedgeProvider = null;
+        boolean hedgeDecided = false;
+        int next = 0;
+        int outstanding = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMs);
+        long hedgeAt = 0;
         
-        // Try primary provider first
         try {
-            CloudConnector connector = cloudConnectors.get(nearestProvider);
-            EncryptedTokenData encryptedData = connector.retrieve(tokenId);
-            
-            if (encryptedData != null) {
-                Token token = decryptTokenData(encryptedData);
-                return new TokenRetrievalResult(true, token, nearestProvider, 1);
+            while (true) {
+                if (outstanding == 0) {
+                    if (next == order.size()) {
+                        break;
+                    }
+                    if (next > 0) {
+                        fallbacks.increment();
+                    }
+                    CloudProvider provider = order.get(next++);
+                    if (!submitRead(completion, sent, provider, tokenId)) {
+                        continue;
+                    }
+                    outstanding++;
+                    hedgeAt = System.nanoTime() + hedgeDelayNanos(provider);
+                }
+                
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                boolean canHedge = !hedgeDecided && next < order.size();
+                Future<ReadOutcome> done = completion.poll((canHedge ? Math.min(hedgeAt, deadline) : deadline) - now,
+                    TimeUnit.NANOSECONDS);
+                
+                if (done == null) {
+                    if (canHedge && System.nanoTime() >= hedgeAt) {
+                        hedgeDecided = true;
+                        if (acquireHedge()) {
+                            CloudProvider provider = order.get(next);
+                            if (submitRead(completion, sent, provider, tokenId)) {
+                                next++;
+                                outstanding++;
+                                hedgeProvider = provider;
+                                hedgesSent.increment();
+                            } else {
+                                hedgeCredit.addAndGet(HEDGE_COST);
+                                hedgesDenied.increment();
+                            }
+                        } else {
+                            hedgesDenied.increment();
+                        }
+                    }
+                    continue;
+                }
+                
+                outstanding--;
+                ReadOutcome outcome;
+                try {
+                    outcome = done.get();
+                } catch (ExecutionException e) {
+                    logger.warn("Read of token {} failed", tokenId, e.getCause());
+                    continue;
+                }
+                if (outcome.data != null) {
+                    Token token;
+                    try {
+                        token = decryptTokenData(outcome.data);
+                    } catch (RuntimeException e) {
+                        // Unreadable replica (e.g. written under another key): a failed read of this provider
+                        logger.warn("Cannot decrypt token {} from {}", tokenId, outcome.provider, e);
+                        continue;
+                    }
+                    if (outcome.provider == hedgeProvider) {
+                        hedgesWon.increment();
+                    }
+                    TokenRetrievalResult result = new TokenRetrievalResult(true, token, outcome.provider, sent.size());
+                    result.setHedged(hedgeProvider != null);
+                    return result;
+                }
             }
-        } catch (Exception e) {
-            logger.warn("Failed to retrieve from primary provider {}", nearestProvider, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sent.forEach(future -> future.cancel(true));
         }
         
-        // Fallback to other providers
-        int attemptCount = 1;
+        TokenRetrievalResult result = new TokenRetrievalResult(false, null, null, sent.size());
+        result.setHedged(hedgeProvider != null);
+        return result;
+    }
+    
+    /**
+     * Read latency per provider and how often reads were hedged
+     */
+    public Map<String, Object> getReadStatistics() {
+        Map<String, Object> providers = new LinkedHashMap<>();
         for (Map.Entry<CloudProvider, CloudConnector> entry : cloudConnectors.entrySet()) {
-            if (entry.getKey() == nearestProvider) continue;
-            
-            attemptCount++;
-            try {
-                EncryptedTokenData encryptedData = entry.getValue().retrieve(tokenId);
-                if (encryptedData != null) {
-                    Token token = decryptTokenData(encryptedData);
-                    return new TokenRetrievalResult(true, token, entry.getKey(), attemptCount);
-                }
-            } catch (Exception e) {
-                logger.warn("Failed to retrieve from fallback provider {}", entry.getKey(), e);
+            RollingLatencyHistogram.Window window = healthMonitor.getRecentLatency(entry.getKey(), Operation.RETRIEVE);
+            Map<String, Object> stats = window.getLatencies().snapshot();
+            stats.put("abandoned", window.getAbandoned().getCount());
+            stats.put("hedgeDelayMs", TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos(entry.getKey())));
+            CloudConnector connector = unwrap(entry.getValue());
+            if (connector instanceof LatencySimulating) {
+                SimulatedLatency latency = ((LatencySimulating) connector).getSimulatedLatency();
+                stats.put("simulatedLatency", Map.of("baseMs", latency.getBaseMs(), "tailMs", latency.getTailMs(),
+                    "tailProbability", latency.getTailProbability()));
             }
+            providers.put(entry.getKey().name(), stats);
         }
         
-        return new TokenRetrievalResult(false, null, null, attemptCount);
+        long readCount = reads.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reads", readCount);
+        stats.put("hedgesSent", hedgesSent.sum());
+        stats.put("hedgesWon", hedgesWon.sum());
+        stats.put("hedgesDenied", hedgesDenied.sum());
+        stats.put("hedgeRatePercent", readCount == 0 ? 0.0 : 100.0 * hedgesSent.sum() / readCount);
+        stats.put("hedgeBudgetPercent", hedgeBudgetPercent);
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("rejected", readsRejected.sum());
+        stats.put("providers", providers);
+        return stats;
+    }
+    
+    /**
+     * The provider connector's own metrics, including segment packing when enabled
+     */
+    public Map<String, Object> getConnectorMetrics(CloudProvider provider) {
+        CloudConnector connector = cloudConnectors.get(provider);
+        return connector != null ? connector.getMetrics() : Map.of();
+    }
+    
+    /**
+     * Slow down a simulated provider, e.g. to measure hedged reads
+     */
+    public void setSimulatedLatency(CloudProvider provider, SimulatedLatency latency) {
+        CloudConnector connector = unwrap(cloudConnectors.get(provider));
+        if (!(connector instanceof LatencySimulating)) {
+            throw new IllegalArgumentException("Provider " + provider + " does not simulate latency");
+        }
+        ((LatencySimulating) connector).setSimulatedLatency(latency);
+        logger.info("Simulated latency of {} set to {} ms ({} ms with probability {})",
+            provider, latency.getBaseMs(), latency.getTailMs(), latency.getTailProbability());
     }
     
     /**
-     * Synchronize tokens across all clouds
+     * Synchronize tokens across all clouds.
+     * 
+     * Compares the providers' Merkle trees from the root down, descending only into
+     * ranges whose hashes differ, so the work grows with the divergence rather than
+     * with the number of tokens. Each provider is then repaired in parallel with the
+     * tokens it lacks, copied from a provider that has them.
      */
     @Scheduled(fixedDelay = 300000) // Every 5 minutes
     public void synchronizeAcrossClouds() {
-        logger.info("Starting cross-cloud synchronization");
+        logger.debug("Starting cross-cloud synchronization");
+        long startTime = System.currentTimeMillis();
         
         try {
-            // Get token inventories from all clouds
-            Map<CloudProvider, Set<String>> inventories = new HashMap<>();
-            
+            Map<CloudProvider, TokenMerkleTree> trees = new EnumMap<>(CloudProvider.class);
             for (Map.Entry<CloudProvider, CloudConnector> entry : cloudConnectors.entrySet()) {
                 try {
-                    Set<String> inventory = entry.getValue().getTokenInventory();
-                    inventories.put(entry.getKey(), inventory);
+                    trees.put(entry.getKey(), entry.getValue().getMerkleTree());
                 } catch (Exception e) {
-                    logger.error("Failed to get inventory from {}", entry.getKey(), e);
+                    logger.error("Failed to get Merkle tree from {}", entry.getKey(), e);
                 }
             }
+            if (trees.size() < 2) {
+                return;
+            }
+            int leafCount = trees.values().iterator().next().getLeafCount();
+            if (trees.values().stream().anyMatch(tree -> tree.getLeafCount() != leafCount)) {
+                logger.error("Cannot synchronize clouds: Merkle trees have different depths");
+                return;
+            }
             
-            // Find tokens missing from any cloud
-            Set<String> allTokens = inventories.values().stream()
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+            // Depth-first walk of the ranges the providers disagree on
+            List<Integer> differingLeaves = new ArrayList<>();
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(1);
+            int comparedNodes = 0;
+            while (!pending.isEmpty()) {
+                int node = pending.pop();
+                comparedNodes++;
+                long hash = trees.values().iterator().next().getHash(node);
+                if (trees.values().stream().allMatch(tree -> tree.getHash(node) == hash)) {
+                    continue;
+                }
+                if (node >= leafCount) {
+                    differingLeaves.add(node);
+                } else {
+                    pending.push(2 * node + 1);
+                    pending.push(2 * node);
+                }
+            }
             
-            for (Map.Entry<CloudProvider, Set<String>> entry : inventories.entrySet()) {
-                CloudProvider provider = entry.getKey();
-                Set<String> providerTokens = entry.getValue();
-                
-                Set<String> missingTokens = new HashSet<>(allTokens);
-                missingTokens.removeAll(providerTokens);
-                
-                if (!missingTokens.isEmpty()) {
-                    logger.info("Provider {} is missing {} tokens", provider, missingTokens.size());
-                    replicateMissingTokens(provider, missingTokens, inventories);
+            // Tokens each provider lacks, with a provider to copy each one from
+            Map<CloudProvider, Map<String, CloudProvider>> missing = new EnumMap<>(CloudProvider.class);
+            TokenMerkleTree layout = trees.values().iterator().next();
+            for (int leaf : differingLeaves) {
+                Map<CloudProvider, Set<String>> holdings = new EnumMap<>(CloudProvider.class);
+                Map<String, List<CloudProvider>> holders = new HashMap<>();
+                for (CloudProvider provider : trees.keySet()) {
+                    Set<String> tokens = listTokensInRange(cloudConnectors.get(provider),
+                        layout.getRangeStart(leaf), layout.getRangeEnd(leaf));
+                    holdings.put(provider, tokens);
+                    tokens.forEach(tokenId -> holders.computeIfAbsent(tokenId, id -> new ArrayList<>()).add(provider));
                 }
+                for (Map.Entry<CloudProvider, Set<String>> entry : holdings.entrySet()) {
+                    for (Map.Entry<String, List<CloudProvider>> holder : holders.entrySet()) {
+                        if (!entry.getValue().contains(holder.getKey())) {
+                            missing.computeIfAbsent(entry.getKey(), p -> new HashMap<>())
+                                .put(holder.getKey(), providerSelector.choose(holder.getValue()));
+                        }
+                    }
+                }
+            }
+            
+            List<CompletableFuture<Integer>> repairs = missing.entrySet().stream()
+                .map(entry -> supplyOn(entry.getKey(), () -> replicateMissingTokens(entry.getKey(), entry.getValue()))
+                    .exceptionally(ex -> {
+                        logger.warn("Could not repair {}: {}", entry.getKey(), ex.getMessage());
+                        return 0;
+                    }))
+                .collect(Collectors.toList());
+            int repaired = repairs.stream().mapToInt(CompletableFuture::join).sum();
+            
+            if (differingLeaves.isEmpty()) {
+                logger.debug("Clouds in sync ({} Merkle nodes compared)", comparedNodes);
+            } else {
+                logger.info("Cross-cloud sync compared {} Merkle nodes, found {} differing ranges, repaired {} tokens in {} ms",
+                    comparedNodes, differingLeaves.size(), repaired, System.currentTimeMillis() - startTime);
             }
             
         } catch (Exception e) {
@@ -202,6 +579,14 @@ public class MultiCloudReplicationService {
         }
     }
     
+    /**
+     * One page of a provider's token inventory
+     */
+    public TokenInventoryPage listInventory(CloudProvider provider, String prefix, String startAfter, int pageSize)
+            throws CloudStorageException {
+        return cloudConnectors.get(provider).listTokens(prefix, startAfter, pageSize);
+    }
+    
     /**
      * Delete token from all clouds
      */
@@ -210,7 +595,7 @@ public class MultiCloudReplicationService {
         logger.info("Deleting token {} from all clouds", tokenId);
         
         List<CompletableFuture<Boolean>> deleteFutures = cloudConnectors.entrySet().stream()
-            .map(entry -> CompletableFuture.supplyAsync(() -> {
+            .map(entry -> supplyOn(entry.getKey(), () -> {
                 try {
                     entry.getValue().delete(tokenId);
                     return true;
@@ -218,7 +603,10 @@ public class MultiCloudReplicationService {
                     logger.error("Failed to delete from {}", entry.getKey(), e);
                     return false;
                 }
-            }, replicationExecutor))
+            }).exceptionally(ex -> {
+                logger.error("Failed to delete from {}: {}", entry.getKey(), ex.getMessage());
+                return false;
+            }))
             .collect(Collectors.toList());
         
         return CompletableFuture.allOf(deleteFutures.toArray(new CompletableFuture[0]))
@@ -241,6 +629,13 @@ public class MultiCloudReplicationService {
         // Overall health
         stats.setHealthStatus(calculateOverallHealth());
         
+        // Outbox backlog per provider: provider, pending entries, oldest pending entry
+        Map<String, Object[]> pending = new HashMap<>();
+        for (Object[] row : outboxRepository.summarizePending()) {
+            pending.put((String) row[0], row);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        
         // Provider statistics
         Map<CloudProvider, ProviderStatistics> providerStats = new HashMap<>();
         for (Map.Entry<CloudProvider, CloudConnector> entry : cloudConnectors.entrySet()) {
@@ -252,17 +647,24 @@ public class MultiCloudReplicationService {
             pStats.setAverageLatency(healthMonitor.getAverageLatency(provider));
             pStats.setSuccessRate(healthMonitor.getSuccessRate(provider));
             pStats.setLastSync(healthMonitor.getLastSuccessfulSync(provider));
+            pStats.setCustomMetrics(Map.of("latency", healthMonitor.getLatencySummary(provider)));
+            Object[] backlog = pending.get(provider.name());
+            if (backlog != null) {
+                pStats.setPendingReplications((Long) backlog[1]);
+                pStats.setReplicationLagSeconds(Duration.between((LocalDateTime) backlog[2], now).getSeconds());
+            }
             
             providerStats.put(provider, pStats);
         }
         stats.setProviderStatistics(providerStats);
         
         // Recent replication status
-        List<ReplicationStatus> recentReplications = replicationStatus.values().stream()
-            .sorted((a, b) -> b.getStartTime().compareTo(a.getStartTime()))
-            .limit(100)
-            .collect(Collectors.toList());
-        stats.setRecentReplications(recentReplications);
+        stats.setRecentReplications(statusTracker.getRecent(100));
+        stats.setTotalReplications(statusTracker.getCompletedCount());
+        stats.setOverallSuccessRate(statusTracker.getSuccessRate());
+        
+        long encoded = payloadsEncoded.sum();
+        stats.setAveragePayloadBytes(encoded == 0 ? 0.0 : (double) payloadBytes.sum() / encoded);
         
         return stats;
     }
@@ -271,19 +673,78 @@ public class MultiCloudReplicationService {
     
     private void initializeCloudConnectors() {
         // AWS S3 Connector
-        cloudConnectors.put(CloudProvider.AWS, new com.sabpaisa.tokenization.cloud.connectors.AWSS3Connector());
+        addConnector(CloudProvider.AWS, localDiskEnabled ? localDiskConnector(CloudProvider.AWS)
+            : new com.sabpaisa.tokenization.cloud.connectors.AWSS3Connector());
         
         // Azure Blob Storage Connector
-        cloudConnectors.put(CloudProvider.AZURE, new com.sabpaisa.tokenization.cloud.connectors.AzureBlobConnector());
+        addConnector(CloudProvider.AZURE, localDiskEnabled ? localDiskConnector(CloudProvider.AZURE)
+            : new com.sabpaisa.tokenization.cloud.connectors.AzureBlobConnector());
         
         // Google Cloud Storage Connector
-        cloudConnectors.put(CloudProvider.GCP, new com.sabpaisa.tokenization.cloud.connectors.GCPStorageConnector());
+        addConnector(CloudProvider.GCP, localDiskEnabled ? localDiskConnector(CloudProvider.GCP)
+            : new com.sabpaisa.tokenization.cloud.connectors.GCPStorageConnector());
         
         // Initialize all connectors
         cloudConnectors.values().forEach(CloudConnector::initialize);
     }
     
-    private void generateCloudEncryptionKey() {
+    // Every call through the connector is timed into the health monitor's per-operation histograms;
+    // every remote call is admitted by the provider's guards
+    private void addConnector(CloudProvider provider, CloudConnector connector) {
+        if (connector instanceof LatencySimulating) {
+            ((LatencySimulating) connector).setSimulatedLatency(
+                new SimulatedLatency(simulatedBaseMs, simulatedTailMs, simulatedTailProbability));
+        }
+        connector = new GuardedCloudConnector(provider, connector, providerGuards);
+        if (segmentsEnabled) {
+            SegmentPackingConnector packing = new SegmentPackingConnector(provider, connector, segmentMaxBytes,
+                segmentMaxRecords, segmentMaxLingerMs, segmentStoreTimeoutMs, segmentCompactionDeadRatio);
+            packing.scheduleCompaction(segmentCompactionIntervalMs, segmentMaxCompactionsPerRun);
+            connector = packing;
+        }
+        cloudConnectors.put(provider, new MonitoredCloudConnector(provider, connector, healthMonitor));
+    }
+    
+    private CloudConnector localDiskConnector(CloudProvider provider) {
+        return new LocalDiskConnector(provider.name(), Paths.get(localDiskDirectory, provider.name().toLowerCase()),
+            localDiskSegmentBytes, localDiskCompactionIntervalMs, localDiskCompactionDeadRatio);
+    }
+    
+    // The provider's own connector, under monitoring, segment packing and guards
+    private static CloudConnector unwrap(CloudConnector connector) {
+        if (connector instanceof MonitoredCloudConnector) {
+            connector = ((MonitoredCloudConnector) connector).getDelegate();
+        }
+        if (connector instanceof SegmentPackingConnector) {
+            connector = ((SegmentPackingConnector) connector).getDelegate();
+        }
+        if (connector instanceof GuardedCloudConnector) {
+            connector = ((GuardedCloudConnector) connector).getDelegate();
+        }
+        return connector;
+    }
+    
+    private void initializeCloudEncryptionKey() {
+        if (configuredEncryptionKey != null && !configuredEncryptionKey.isBlank()) {
+            byte[] key;
+            try {
+                key = Base64.getDecoder().decode(configuredEncryptionKey.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("app.cloud-replication.encryption-key is not valid Base64", e);
+            }
+            if (key.length != 32) {
+                throw new IllegalStateException("app.cloud-replication.encryption-key must be a 256-bit AES key, got "
+                    + key.length * 8 + " bits");
+            }
+            cloudEncryptionKey = new SecretKeySpec(key, "AES");
+            return;
+        }
+        if (localDiskEnabled) {
+            // A key generated now would leave every replica on disk unreadable after the next restart
+            throw new IllegalStateException(
+                "app.cloud-replication.encryption-key must be set when app.cloud-replication.local-disk.enabled is true");
+        }
+        logger.info("No cloud encryption key configured; using a key generated for this run");
         try {
             KeyGenerator keyGen = KeyGenerator.getInstance("AES");
             keyGen.init(256, secureRandom);
@@ -304,7 +765,9 @@ public class MultiCloudReplicationService {
     private EncryptedTokenData encryptTokenData(Token token, Merchant merchant) {
         try {
             // Serialize token data
-            String tokenData = serializeToken(token, merchant);
+            ByteBuffer payload = encodeToken(token);
+            payloadsEncoded.increment();
+            payloadBytes.add(payload.remaining());
             
             // Generate IV
             byte[] iv = new byte[12];
@@ -315,7 +778,8 @@ public class MultiCloudReplicationService {
             GCMParameterSpec spec = new GCMParameterSpec(128, iv);
             cipher.init(Cipher.ENCRYPT_MODE, cloudEncryptionKey, spec);
             
-            byte[] encryptedData = cipher.doFinal(tokenData.getBytes());
+            byte[] encryptedData = new byte[cipher.getOutputSize(payload.remaining())];
+            cipher.doFinal(payload, ByteBuffer.wrap(encryptedData));
             
             EncryptedTokenData encrypted = new EncryptedTokenData();
             encrypted.setTokenId(token.getId().toString());
@@ -338,9 +802,8 @@ public class MultiCloudReplicationService {
             cipher.init(Cipher.DECRYPT_MODE, cloudEncryptionKey, spec);
             
             byte[] decryptedData = cipher.doFinal(Base64.getDecoder().decode(encryptedData.getEncryptedData()));
-            String tokenData = new String(decryptedData);
             
-            return deserializeToken(tokenData);
+            return ReplicatedTokenCodec.decode(ByteBuffer.wrap(decryptedData));
             
         } catch (Exception e) {
             throw new RuntimeException("Failed to decrypt token data", e);
@@ -350,17 +813,12 @@ public class MultiCloudReplicationService {
     private CloudReplicationResult replicateToCloud(CloudProvider provider, CloudConnector connector,
                                                   EncryptedTokenData data, Merchant merchant) {
         long startTime = System.currentTimeMillis();
+        long started = providerSelector.begin(provider);
         
         try {
-            // Add cloud-specific metadata
-            Map<String, String> metadata = new HashMap<>();
-            metadata.put("merchantId", merchant.getMerchantId());
-            metadata.put("merchantName", merchant.getBusinessName());
-            metadata.put("replicationTime", LocalDateTime.now().toString());
-            metadata.put("sourceRegion", getCurrentRegion());
-            
             // Store in cloud
-            connector.store(data, metadata);
+            connector.store(data, replicationMetadata(merchant));
+            providerSelector.onSuccess(provider, started);
             
             long duration = System.currentTimeMillis() - startTime;
             
@@ -376,12 +834,33 @@ public class MultiCloudReplicationService {
             return result;
             
         } catch (Exception e) {
+            providerSelector.onFailure(provider, started);
             long duration = System.currentTimeMillis() - startTime;
             healthMonitor.recordFailure(provider, duration, e.getMessage());
             throw new RuntimeException("Replication to " + provider + " failed", e);
         }
     }
     
+    // Runs on the provider's bulkhead; a full bulkhead fails the future rather than blocking the caller
+    private <T> CompletableFuture<T> supplyOn(CloudProvider provider, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, providerGuards.executor(provider));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                new CloudStorageException(provider.name(), "replicate", "bulkhead queue is full"));
+        }
+    }
+    
+    // Cloud-specific metadata stored with each replica
+    private Map<String, String> replicationMetadata(Merchant merchant) {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("merchantId", merchant.getMerchantId());
+        metadata.put("merchantName", merchant.getBusinessName());
+        metadata.put("replicationTime", LocalDateTime.now().toString());
+        metadata.put("sourceRegion", getCurrentRegion());
+        return metadata;
+    }
+    
     private CloudReplicationResult createFailedResult(CloudProvider provider, String error) {
         CloudReplicationResult result = new CloudReplicationResult();
         result.setProvider(provider);
@@ -403,15 +882,80 @@ public class MultiCloudReplicationService {
         status.setSuccessfulProviders((int) successCount);
         status.setTotalProviders(results.size());
         
+        statusTracker.completed(status, results);
+        
         ReplicationResult result = new ReplicationResult();
         result.setReplicationId(replicationId);
-        result.setSuccess(successCount >= 2); // Success if at least 2 providers succeeded
+        result.setSuccess(successCount >= statusTracker.getReplicationThreshold());
         result.setProviderResults(results);
         result.setDuration(status.getDuration());
         
         return result;
     }
     
+    // The region's nearest provider only biases the choice; load and health decide
+    private List<CloudProvider> readOrder(String region) {
+        return providerSelector.rank(cloudConnectors.keySet(), findNearestProvider(region));
+    }
+    
+    private ReadOutcome read(CloudProvider provider, String tokenId) {
+        long start = providerSelector.begin(provider);
+        try {
+            EncryptedTokenData data = cloudConnectors.get(provider).retrieve(tokenId);
+            if (Thread.currentThread().isInterrupted()) {
+                providerSelector.onCancelled(provider, start);
+            } else {
+                providerSelector.onSuccess(provider, start);
+            }
+            return new ReadOutcome(provider, data);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                providerSelector.onCancelled(provider, start);
+            } else {
+                providerSelector.onFailure(provider, start);
+                logger.warn("Failed to retrieve token {} from {}: {}", tokenId, provider, e.getMessage());
+            }
+            return new ReadOutcome(provider, null);
+        }
+    }
+    
+    private boolean submitRead(CompletionService<ReadOutcome> completion, List<Future<ReadOutcome>> sent,
+                               CloudProvider provider, String tokenId) {
+        try {
+            sent.add(completion.submit(() -> read(provider, tokenId)));
+            return true;
+        } catch (RejectedExecutionException e) {
+            readsRejected.increment();
+            return false;
+        }
+    }
+    
+    // The provider's p95 over the recent RETRIEVE window once it has enough samples,
+    // within the configured bounds. Abandoned reads count with their elapsed time, a
+    // lower bound, so a provider whose slow reads are always cancelled still looks slow.
+    private long hedgeDelayNanos(CloudProvider provider) {
+        RollingLatencyHistogram.Window window = healthMonitor.getRecentLatency(provider, Operation.RETRIEVE);
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(window.getLatencies());
+        histogram.add(window.getAbandoned());
+        long delayMs = histogram.getCount() < MIN_HEDGE_SAMPLES
+            ? hedgeDefaultDelayMs
+            : histogram.getPercentileMicros(95) / 1000;
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(hedgeMinDelayMs, Math.min(delayMs, hedgeMaxDelayMs)));
+    }
+    
+    private boolean acquireHedge() {
+        while (true) {
+            long credit = hedgeCredit.get();
+            if (credit < HEDGE_COST) {
+                return false;
+            }
+            if (hedgeCredit.compareAndSet(credit, credit - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+    
     private CloudProvider findNearestProvider(String region) {
         // Simplified region mapping
         if (region.startsWith("us-") || region.startsWith("ca-")) {
@@ -426,33 +970,47 @@ public class MultiCloudReplicationService {
         return CloudProvider.AWS;
     }
     
-    private void replicateMissingTokens(CloudProvider targetProvider,
-                                       Set<String> missingTokens,
-                                       Map<CloudProvider, Set<String>> inventories) {
+    // A single leaf range holds a small fraction of the tokens, so its pages are collected
+    private Set<String> listTokensInRange(CloudConnector connector, long fromDigest, long toDigest)
+            throws CloudStorageException {
+        Set<String> tokens = new HashSet<>();
+        String startAfter = null;
+        do {
+            TokenInventoryPage page = connector.listTokensInDigestRange(fromDigest, toDigest, startAfter,
+                CloudConnector.MAX_PAGE_SIZE);
+            tokens.addAll(page.getTokenIds());
+            startAfter = page.getNextStartAfter();
+        } while (startAfter != null);
+        return tokens;
+    }
+    
+    // Copies tokens (id -> provider holding it) to the target; returns how many were copied
+    private int replicateMissingTokens(CloudProvider targetProvider, Map<String, CloudProvider> missingTokens) {
         CloudConnector targetConnector = cloudConnectors.get(targetProvider);
+        List<EncryptedTokenData> batch = new ArrayList<>();
         
-        for (String tokenId : missingTokens) {
-            // Find a source provider that has this token
-            CloudProvider sourceProvider = inventories.entrySet().stream()
-                .filter(e -> e.getValue().contains(tokenId) && e.getKey() != targetProvider)
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(null);
-            
-            if (sourceProvider != null) {
-                try {
-                    CloudConnector sourceConnector = cloudConnectors.get(sourceProvider);
-                    EncryptedTokenData data = sourceConnector.retrieve(tokenId);
-                    
-                    if (data != null) {
-                        targetConnector.store(data, new HashMap<>());
-                        logger.info("Replicated token {} from {} to {}", tokenId, sourceProvider, targetProvider);
+        for (Map.Entry<String, CloudProvider> entry : missingTokens.entrySet()) {
+            String tokenId = entry.getKey();
+            CloudProvider sourceProvider = entry.getValue();
+            try {
+                EncryptedTokenData data = cloudConnectors.get(sourceProvider).retrieve(tokenId);
+                
+                if (data != null) {
+                    if (data.getMetadata() == null) {
+                        data.setMetadata(new HashMap<>());
                     }
-                } catch (Exception e) {
-                    logger.error("Failed to replicate token {} to {}", tokenId, targetProvider, e);
+                    batch.add(data);
                 }
+            } catch (Exception e) {
+                logger.error("Failed to read token {} for replication to {}", tokenId, targetProvider, e);
             }
         }
+        
+        // One batch, so a packing connector writes the repairs into few segments
+        Map<String, CloudStorageException> failures = targetConnector.storeAll(batch);
+        failures.forEach((tokenId, e) -> logger.error("Failed to replicate token {} to {}", tokenId, targetProvider, e));
+        logger.debug("Replicated {} tokens to {}", batch.size() - failures.size(), targetProvider);
+        return batch.size() - failures.size();
     }
     
     private String calculateOverallHealth() {
@@ -476,16 +1034,21 @@ public class MultiCloudReplicationService {
         return "us-east-1";
     }
     
-    private String serializeToken(Token token, Merchant merchant) {
-        // Simplified serialization
-        return token.toString() + "|" + merchant.toString();
-    }
-    
-    private Token deserializeToken(String data) {
-        // Simplified deserialization
-        Token token = new Token();
-        // Parse token data
-        return token;
+    /**
+     * Encode the token into this thread's payload buffer, growing it when the token does not fit
+     */
+    private ByteBuffer encodeToken(Token token) {
+        ByteBuffer buffer = ENCODE_BUFFER.get();
+        while (true) {
+            buffer.clear();
+            try {
+                ReplicatedTokenCodec.encode(token, buffer);
+                return buffer.flip();
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                ENCODE_BUFFER.set(buffer);
+            }
+        }
     }
     
     // Inner classes and enums
@@ -506,5 +1069,15 @@ public class MultiCloudReplicationService {
         }
     }
     
+    private static final class ReadOutcome {
+        final CloudProvider provider;
+        final EncryptedTokenData data;
+        
+        ReadOutcome(CloudProvider provider, EncryptedTokenData data) {
+            this.provider = provider;
+            this.data = data;
+        }
+    }
+    
     // Result classes would be defined here...
 }
\ No newline at end of file
@@ -0,0 +1,412 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a slow or failing provider from taking the others down with it.
+ *
+ * Each provider gets its own bulkhead, a bounded executor for replication work, so
+ * a provider that stops answering fills only its own threads and queue. Every
+ * remote call is also admitted through the provider's circuit breaker and adaptive
+ * concurrency limit (see {@link GuardedCloudConnector}):
+ *
+ * - The breaker counts calls, failures and slow calls in one-second buckets over a
+ *   rolling window. Once the window holds enough calls and either rate crosses its
+ *   threshold it opens and rejects every call; after open-ms it lets a few probe
+ *   calls through (half-open) and closes when they all succeed.
+ * - The limit caps calls in flight and adapts it AIMD-style: a failure, or a call
+ *   slower than latency-tolerance times the provider's minimum latency, cuts it by
+ *   backoff-ratio; a success while at least half the limit is in use raises it by
+ *   1 / limit, about one per limit's worth of calls. Calls started before the last
+ *   cut do not cut it again, so one congestion episode costs one cut.
+ *
+ * A provider whose breaker is open is reported unhealthy by {@link CloudHealthMonitor}.
+ */
+@Component
+public class ProviderGuards {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderGuards.class);
+
+    // Below a millisecond latency differences are jitter, not queueing
+    private static final long MIN_RTT_FLOOR_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Value("${app.cloud-replication.isolation.bulkhead.threads:4}")
+    private int bulkheadThreads;
+
+    @Value("${app.cloud-replication.isolation.bulkhead.queue:500}")
+    private int bulkheadQueue;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.window-seconds:10}")
+    private int windowSeconds;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.slow-call-ms:1000}")
+    private long slowCallMs;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.open-ms:5000}")
+    private long openMs;
+
+    @Value("${app.cloud-replication.isolation.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${app.cloud-replication.isolation.concurrency.initial-limit:16}")
+    private int initialLimit;
+
+    @Value("${app.cloud-replication.isolation.concurrency.min-limit:2}")
+    private int minLimit;
+
+    @Value("${app.cloud-replication.isolation.concurrency.max-limit:128}")
+    private int maxLimit;
+
+    @Value("${app.cloud-replication.isolation.concurrency.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${app.cloud-replication.isolation.concurrency.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    // The minimum latency is relearned this often, so it follows a provider that got slower for good
+    @Value("${app.cloud-replication.isolation.concurrency.min-rtt-reset-ms:60000}")
+    private long minRttResetMs;
+
+    private final Map<CloudProvider, Guard> guards = new EnumMap<>(CloudProvider.class);
+
+    @PostConstruct
+    public void initialize() {
+        for (CloudProvider provider : CloudProvider.values()) {
+            guards.put(provider, new Guard(provider));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        guards.values().forEach(guard -> guard.executor.shutdownNow());
+    }
+
+    /**
+     * The provider's bulkhead; work it cannot queue is rejected with a RejectedExecutionException
+     */
+    public ExecutorService executor(CloudProvider provider) {
+        return guards.get(provider).executor;
+    }
+
+    /**
+     * False while the provider's breaker is open and its open period has not run out
+     */
+    public boolean isAvailable(CloudProvider provider) {
+        return guards.get(provider).breaker.isAvailable();
+    }
+
+    /**
+     * Admit one call to the provider, or throw if its breaker is open or its limit is reached
+     */
+    Permit acquire(CloudProvider provider, String operation) throws CloudStorageException {
+        Guard guard = guards.get(provider);
+        State admitted = guard.breaker.admit();
+        if (admitted == null) {
+            guard.rejectedOpen.increment();
+            throw new CloudStorageException(provider.name(), operation, "circuit breaker is open");
+        }
+        boolean probe = admitted == State.HALF_OPEN;
+        if (!guard.limit.tryAcquire()) {
+            guard.breaker.release(probe);
+            guard.rejectedLimit.increment();
+            throw new CloudStorageException(provider.name(), operation,
+                "concurrency limit of " + guard.limit.current() + " calls reached");
+        }
+        return new Permit(guard, probe);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<CloudProvider, Guard> entry : guards.entrySet()) {
+            Guard guard = entry.getValue();
+            Map<String, Object> provider = new LinkedHashMap<>();
+            provider.put("circuitBreaker", guard.breaker.snapshot());
+            provider.put("rejectedOpen", guard.rejectedOpen.sum());
+            provider.put("concurrencyLimit", guard.limit.snapshot());
+            provider.put("rejectedLimit", guard.rejectedLimit.sum());
+            provider.put("bulkhead", Map.of(
+                "threads", guard.executor.getMaximumPoolSize(),
+                "active", guard.executor.getActiveCount(),
+                "queued", guard.executor.getQueue().size(),
+                "queueCapacity", bulkheadQueue,
+                "rejected", guard.rejectedTasks.sum()));
+            stats.put(entry.getKey().name(), provider);
+        }
+        return stats;
+    }
+
+    /**
+     * One admitted call; release it exactly once
+     */
+    static final class Permit {
+        private final Guard guard;
+        private final boolean probe;
+        private final long startNanos = System.nanoTime();
+
+        private Permit(Guard guard, boolean probe) {
+            this.guard = guard;
+            this.probe = probe;
+        }
+
+        void release(boolean success) {
+            // An abandoned (interrupted) call says nothing about the provider
+            if (Thread.currentThread().isInterrupted()) {
+                guard.limit.release(startNanos, 0, true, false);
+                guard.breaker.release(probe);
+                return;
+            }
+            long latency = System.nanoTime() - startNanos;
+            guard.limit.release(startNanos, latency, success, true);
+            guard.breaker.record(latency, success, probe);
+        }
+    }
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final class Guard {
+        final CircuitBreaker breaker;
+        final ConcurrencyLimit limit = new ConcurrencyLimit();
+        final ThreadPoolExecutor executor;
+        final LongAdder rejectedOpen = new LongAdder();
+        final LongAdder rejectedLimit = new LongAdder();
+        final LongAdder rejectedTasks = new LongAdder();
+
+        Guard(CloudProvider provider) {
+            this.breaker = new CircuitBreaker(provider);
+            AtomicInteger threadCount = new AtomicInteger();
+            String name = "cloud-replication-" + provider.name().toLowerCase() + "-";
+            this.executor = new ThreadPoolExecutor(bulkheadThreads, bulkheadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, bulkheadQueue)), runnable -> {
+                    Thread thread = new Thread(runnable, name + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, pool) -> {
+                    rejectedTasks.increment();
+                    new ThreadPoolExecutor.AbortPolicy().rejectedExecution(runnable, pool);
+                });
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Rolling-window breaker; guarded by its own monitor
+     */
+    private final class CircuitBreaker {
+        final CloudProvider provider;
+        final long[] bucketSecond = new long[Math.max(1, windowSeconds)];
+        final int[] calls = new int[bucketSecond.length];
+        final int[] failures = new int[bucketSecond.length];
+        final int[] slowCalls = new int[bucketSecond.length];
+        State state = State.CLOSED;
+        volatile long openUntil;
+        int probesInFlight;
+        int probeSuccesses;
+        long opened;
+
+        CircuitBreaker(CloudProvider provider) {
+            this.provider = provider;
+        }
+
+        boolean isAvailable() {
+            return state != State.OPEN || System.currentTimeMillis() >= openUntil;
+        }
+
+        // The state the call is admitted in, or null if it is rejected
+        synchronized State admit() {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+                logger.info("Circuit breaker of {} half-open, probing with {} calls", provider, halfOpenCalls);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= halfOpenCalls) {
+                    return null;
+                }
+                probesInFlight++;
+            }
+            return state;
+        }
+
+        synchronized void release(boolean probe) {
+            if (probe && state == State.HALF_OPEN) {
+                probesInFlight--;
+            }
+        }
+
+        synchronized void record(long latencyNanos, boolean success, boolean probe) {
+            boolean slow = latencyNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+            if (probe) {
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                probesInFlight--;
+                if (!success || slow) {
+                    open(success ? "slow probe call" : "failed probe call");
+                } else if (++probeSuccesses >= halfOpenCalls) {
+                    state = State.CLOSED;
+                    Arrays.fill(bucketSecond, 0);
+                    logger.info("Circuit breaker of {} closed", provider);
+                }
+                return;
+            }
+            // Calls admitted before the breaker opened no longer count
+            if (state != State.CLOSED) {
+                return;
+            }
+            int bucket = bucket(System.currentTimeMillis() / 1000);
+            calls[bucket]++;
+            if (!success) {
+                failures[bucket]++;
+            }
+            if (slow) {
+                slowCalls[bucket]++;
+            }
+            int windowCalls = sum(calls);
+            if (windowCalls < minimumCalls) {
+                return;
+            }
+            double failureRate = (double) sum(failures) / windowCalls;
+            double slowRate = (double) sum(slowCalls) / windowCalls;
+            if (failureRate >= failureRateThreshold) {
+                open(String.format("failure rate %.2f over %d calls", failureRate, windowCalls));
+            } else if (slowRate >= slowCallRateThreshold) {
+                open(String.format("slow call rate %.2f over %d calls", slowRate, windowCalls));
+            }
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            bucket(System.currentTimeMillis() / 1000);
+            int windowCalls = sum(calls);
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("state", state.name());
+            snapshot.put("windowCalls", windowCalls);
+            snapshot.put("failureRate", windowCalls == 0 ? 0.0 : Math.round(10000.0 * sum(failures) / windowCalls) / 10000.0);
+            snapshot.put("slowCallRate", windowCalls == 0 ? 0.0 : Math.round(10000.0 * sum(slowCalls) / windowCalls) / 10000.0);
+            snapshot.put("timesOpened", opened);
+            return snapshot;
+        }
+
+        private void open(String reason) {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMs;
+            opened++;
+            logger.warn("Circuit breaker of {} opened for {} ms: {}", provider, openMs, reason);
+        }
+
+        // The bucket for this second, cleared if it still holds an older second
+        private int bucket(long second) {
+            for (int i = 0; i < bucketSecond.length; i++) {
+                if (bucketSecond[i] <= second - bucketSecond.length) {
+                    calls[i] = 0;
+                    failures[i] = 0;
+                    slowCalls[i] = 0;
+                }
+            }
+            int bucket = (int) (second % bucketSecond.length);
+            if (bucketSecond[bucket] != second) {
+                bucketSecond[bucket] = second;
+                calls[bucket] = 0;
+                failures[bucket] = 0;
+                slowCalls[bucket] = 0;
+            }
+            return bucket;
+        }
+
+        private int sum(int[] counts) {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * AIMD limit on calls in flight; guarded by its own monitor
+     */
+    private final class ConcurrencyLimit {
+        double limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        int inFlight;
+        long minRttNanos;
+        long minRttSince = System.nanoTime();
+        long lastDecrease = System.nanoTime();
+        long decreases;
+
+        synchronized boolean tryAcquire() {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized int current() {
+            return (int) limit;
+        }
+
+        synchronized void release(long startNanos, long latencyNanos, boolean success, boolean sampled) {
+            int inUse = inFlight--;
+            if (!sampled) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (success && (minRttNanos == 0 || latencyNanos < minRttNanos
+                    || now - minRttSince >= TimeUnit.MILLISECONDS.toNanos(minRttResetMs))) {
+                minRttNanos = latencyNanos;
+                minRttSince = now;
+            }
+            boolean congested = !success
+                || latencyNanos > Math.max(minRttNanos, MIN_RTT_FLOOR_NANOS) * latencyTolerance;
+            if (congested) {
+                if (startNanos - lastDecrease >= 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecrease = now;
+                    decreases++;
+                }
+            } else if (inUse * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("limit", Math.round(limit * 100.0) / 100.0);
+            snapshot.put("inFlight", inFlight);
+            snapshot.put("minRttMs", Math.round(minRttNanos / 1000.0) / 1000.0);
+            snapshot.put("decreases", decreases);
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.entity.Merchant;
+import com.sabpaisa.tokenization.entity.Token;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Binary format of a token replicated to the clouds, before encryption.
+ *
+ * A payload is a version byte, a presence bitmap (varint, bit {@code n} set when
+ * field {@code n} of {@link Field} is present) and then the present fields in
+ * schema order:
+ * <ul>
+ *   <li>integers as varints, zig-zag encoded where they may be negative</li>
+ *   <li>timestamps as 8-byte big-endian microseconds since the epoch, in UTC</li>
+ *   <li>strings as a varint byte length and UTF-8</li>
+ *   <li>enumerated strings as a varint index into the field's dictionary plus one,
+ *       or 0 followed by the string when it is not in the dictionary</li>
+ *   <li>decimals as a zig-zag varint scale and the length-prefixed two's-complement
+ *       unscaled value</li>
+ *   <li>booleans as one byte, metadata as a varint entry count and string pairs</li>
+ * </ul>
+ *
+ * Fields may only be appended to the schema; a reader skips presence bits it does
+ * not know and ignores the bytes after the last field it knows, so an older
+ * reader can still decode newer payloads. An incompatible change must bump
+ * {@link #VERSION}. Of the merchant only the merchant id is written, and request
+ * telemetry (IP address, user agent, device id) is not replicated at all.
+ *
+ * Encoding writes straight into the caller's buffer and decoding reads straight
+ * from it, with no intermediate copy of the payload.
+ */
+public final class ReplicatedTokenCodec {
+
+    public static final int VERSION = 1;
+
+    private static final String[] STATUSES = {"ACTIVE", "SUSPENDED", "REVOKED", "EXPIRED"};
+    private static final String[] ALGORITHMS = {"SIMPLE", "COF", "FPE"};
+    private static final String[] FORMATS = {"NUMERIC", "ALPHANUMERIC", "PRESERVE_FORMAT"};
+    private static final String[] BRANDS = {"VISA", "MASTERCARD", "AMEX", "RUPAY", "DISCOVER", "DINERS", "JCB", "MAESTRO", "UNKNOWN"};
+    private static final String[] CARD_TYPES = {"CREDIT", "DEBIT", "PREPAID"};
+
+    private ReplicatedTokenCodec() {
+    }
+
+    /**
+     * Append the token to the buffer, starting at its position.
+     *
+     * @throws BufferOverflowException if the buffer has too little room left; its
+     *         position is then undefined
+     */
+    public static void encode(Token token, ByteBuffer buffer) {
+        long presence = 0;
+        Field[] fields = Field.values();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getter.apply(token) != null) {
+                presence |= 1L << i;
+            }
+        }
+        buffer.put((byte) VERSION);
+        writeVarint(buffer, presence);
+        for (int i = 0; i < fields.length; i++) {
+            if ((presence & (1L << i)) != 0) {
+                fields[i].write(buffer, fields[i].getter.apply(token));
+            }
+        }
+    }
+
+    /**
+     * Read one token from the buffer's position onwards
+     *
+     * @throws IllegalArgumentException if the payload is of an unknown version or truncated
+     */
+    public static Token decode(ByteBuffer buffer) {
+        try {
+            int version = buffer.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported replicated token version " + version);
+            }
+            long presence = readVarint(buffer);
+            Token token = new Token();
+            // Fields the entity initializes must not keep their defaults when absent
+            token.setMetadata(new HashMap<>());
+            token.setAlgorithmType(null);
+            token.setUsageCount(null);
+            token.setFailedAttempts(null);
+            token.setIsCof(null);
+            Field[] fields = Field.values();
+            for (int i = 0; i < fields.length; i++) {
+                if ((presence & (1L << i)) != 0) {
+                    fields[i].setter.accept(token, fields[i].read(buffer));
+                }
+            }
+            return token;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated replicated token payload", e);
+        }
+    }
+
+    private enum Kind { LONG, INT, STRING, DICTIONARY, TIMESTAMP, DECIMAL, BOOLEAN, STRING_MAP }
+
+    /**
+     * The schema; the ordinal of each field is its presence bit, so only append
+     */
+    @SuppressWarnings("unchecked")
+    private enum Field {
+        ID(Kind.LONG, Token::getId, (t, v) -> t.setId((Long) v)),
+        TOKEN_VALUE(Kind.STRING, Token::getTokenValue, (t, v) -> t.setTokenValue((String) v)),
+        MASKED_PAN(Kind.STRING, Token::getMaskedPan, (t, v) -> t.setMaskedPan((String) v)),
+        CARD_HASH(Kind.STRING, Token::getCardHash, (t, v) -> t.setCardHash((String) v)),
+        STATUS(Kind.DICTIONARY, STATUSES, Token::getStatus, (t, v) -> t.setStatus((String) v)),
+        MERCHANT_ID(Kind.STRING, t -> t.getMerchant() != null ? t.getMerchant().getMerchantId() : null,
+            (t, v) -> t.setMerchant(merchantReference((String) v))),
+        ALGORITHM_TYPE(Kind.DICTIONARY, ALGORITHMS, Token::getAlgorithmType, (t, v) -> t.setAlgorithmType((String) v)),
+        TOKEN_FORMAT(Kind.DICTIONARY, FORMATS, Token::getTokenFormat, (t, v) -> t.setTokenFormat((String) v)),
+        CARD_BRAND(Kind.DICTIONARY, BRANDS, Token::getCardBrand, (t, v) -> t.setCardBrand((String) v)),
+        CARD_TYPE(Kind.DICTIONARY, CARD_TYPES, Token::getCardType, (t, v) -> t.setCardType((String) v)),
+        CARD_BIN(Kind.STRING, Token::getCardBin, (t, v) -> t.setCardBin((String) v)),
+        CARD_LAST4(Kind.STRING, Token::getCardLast4, (t, v) -> t.setCardLast4((String) v)),
+        ISSUER_COUNTRY(Kind.STRING, Token::getIssuerCountry, (t, v) -> t.setIssuerCountry((String) v)),
+        ISSUER_BANK(Kind.STRING, Token::getIssuerBank, (t, v) -> t.setIssuerBank((String) v)),
+        CUSTOMER_ID(Kind.STRING, Token::getCustomerId, (t, v) -> t.setCustomerId((String) v)),
+        CUSTOMER_EMAIL(Kind.STRING, Token::getCustomerEmail, (t, v) -> t.setCustomerEmail((String) v)),
+        CUSTOMER_PHONE(Kind.STRING, Token::getCustomerPhone, (t, v) -> t.setCustomerPhone((String) v)),
+        TRANSACTION_ID(Kind.STRING, Token::getTransactionId, (t, v) -> t.setTransactionId((String) v)),
+        TRANSACTION_AMOUNT(Kind.DECIMAL, Token::getTransactionAmount, (t, v) -> t.setTransactionAmount((BigDecimal) v)),
+        TRANSACTION_CURRENCY(Kind.STRING, Token::getTransactionCurrency, (t, v) -> t.setTransactionCurrency((String) v)),
+        CREATED_AT(Kind.TIMESTAMP, Token::getCreatedAt, (t, v) -> t.setCreatedAt((LocalDateTime) v)),
+        EXPIRES_AT(Kind.TIMESTAMP, Token::getExpiresAt, (t, v) -> t.setExpiresAt((LocalDateTime) v)),
+        LAST_USED_AT(Kind.TIMESTAMP, Token::getLastUsedAt, (t, v) -> t.setLastUsedAt((LocalDateTime) v)),
+        UPDATED_AT(Kind.TIMESTAMP, Token::getUpdatedAt, (t, v) -> t.setUpdatedAt((LocalDateTime) v)),
+        SUSPENDED_AT(Kind.TIMESTAMP, Token::getSuspendedAt, (t, v) -> t.setSuspendedAt((LocalDateTime) v)),
+        REVOKED_AT(Kind.TIMESTAMP, Token::getRevokedAt, (t, v) -> t.setRevokedAt((LocalDateTime) v)),
+        USAGE_COUNT(Kind.INT, Token::getUsageCount, (t, v) -> t.setUsageCount((Integer) v)),
+        FAILED_ATTEMPTS(Kind.INT, Token::getFailedAttempts, (t, v) -> t.setFailedAttempts((Integer) v)),
+        MAX_USAGE_LIMIT(Kind.INT, Token::getMaxUsageLimit, (t, v) -> t.setMaxUsageLimit((Integer) v)),
+        ENCRYPTION_KEY_ID(Kind.STRING, Token::getEncryptionKeyId, (t, v) -> t.setEncryptionKeyId((String) v)),
+        RISK_SCORE(Kind.INT, Token::getRiskScore, (t, v) -> t.setRiskScore((Integer) v)),
+        RISK_FACTORS(Kind.STRING, Token::getRiskFactors, (t, v) -> t.setRiskFactors((String) v)),
+        IS_COF(Kind.BOOLEAN, Token::getIsCof, (t, v) -> t.setIsCof((Boolean) v)),
+        COF_CONTRACT_ID(Kind.STRING, Token::getCofContractId, (t, v) -> t.setCofContractId((String) v)),
+        COF_INITIAL_TRANSACTION_ID(Kind.STRING, Token::getCofInitialTransactionId,
+            (t, v) -> t.setCofInitialTransactionId((String) v)),
+        METADATA(Kind.STRING_MAP, t -> t.getMetadata() == null || t.getMetadata().isEmpty() ? null : t.getMetadata(),
+            (t, v) -> t.setMetadata((Map<String, String>) v));
+
+        final Kind kind;
+        final String[] dictionary;
+        final Function<Token, Object> getter;
+        final BiConsumer<Token, Object> setter;
+
+        Field(Kind kind, Function<Token, Object> getter, BiConsumer<Token, Object> setter) {
+            this(kind, null, getter, setter);
+        }
+
+        Field(Kind kind, String[] dictionary, Function<Token, Object> getter, BiConsumer<Token, Object> setter) {
+            this.kind = kind;
+            this.dictionary = dictionary;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        void write(ByteBuffer buffer, Object value) {
+            switch (kind) {
+                case LONG -> writeVarint(buffer, zigZag((Long) value));
+                case INT -> writeVarint(buffer, zigZag((Integer) value));
+                case STRING -> writeString(buffer, (String) value);
+                case DICTIONARY -> {
+                    int index = indexOf(dictionary, (String) value);
+                    writeVarint(buffer, index + 1);
+                    if (index < 0) {
+                        writeString(buffer, (String) value);
+                    }
+                }
+                case TIMESTAMP -> {
+                    LocalDateTime time = (LocalDateTime) value;
+                    buffer.putLong(time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000);
+                }
+                case DECIMAL -> {
+                    BigDecimal decimal = (BigDecimal) value;
+                    byte[] unscaled = decimal.unscaledValue().toByteArray();
+                    writeVarint(buffer, zigZag(decimal.scale()));
+                    writeVarint(buffer, unscaled.length);
+                    buffer.put(unscaled);
+                }
+                case BOOLEAN -> buffer.put((byte) ((Boolean) value ? 1 : 0));
+                case STRING_MAP -> {
+                    Map<String, String> map = (Map<String, String>) value;
+                    writeVarint(buffer, map.size());
+                    for (Map.Entry<String, String> entry : map.entrySet()) {
+                        writeString(buffer, entry.getKey());
+                        writeString(buffer, entry.getValue() != null ? entry.getValue() : "");
+                    }
+                }
+            }
+        }
+
+        Object read(ByteBuffer buffer) {
+            switch (kind) {
+                case LONG:
+                    return unZigZag(readVarint(buffer));
+                case INT:
+                    return (int) unZigZag(readVarint(buffer));
+                case STRING:
+                    return readString(buffer);
+                case DICTIONARY: {
+                    int index = (int) readVarint(buffer);
+                    if (index == 0) {
+                        return readString(buffer);
+                    }
+                    if (index > dictionary.length) {
+                        throw new IllegalArgumentException("Unknown " + name() + " code " + index);
+                    }
+                    return dictionary[index - 1];
+                }
+                case TIMESTAMP: {
+                    long micros = buffer.getLong();
+                    return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+                }
+                case DECIMAL: {
+                    int scale = (int) unZigZag(readVarint(buffer));
+                    byte[] unscaled = new byte[checkedLength(buffer)];
+                    buffer.get(unscaled);
+                    return new BigDecimal(new BigInteger(unscaled), scale);
+                }
+                case BOOLEAN:
+                    return buffer.get() != 0;
+                case STRING_MAP: {
+                    int size = checkedLength(buffer);
+                    Map<String, String> map = new HashMap<>(size * 2);
+                    for (int i = 0; i < size; i++) {
+                        map.put(readString(buffer), readString(buffer));
+                    }
+                    return map;
+                }
+                default:
+                    throw new IllegalStateException("Unhandled field kind " + kind);
+            }
+        }
+    }
+
+    private static Merchant merchantReference(String merchantId) {
+        Merchant merchant = new Merchant();
+        merchant.setMerchantId(merchantId);
+        return merchant;
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int i = 0; i < dictionary.length; i++) {
+            if (dictionary[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // A length that cannot run past the end of the buffer
+    private static int checkedLength(ByteBuffer buffer) {
+        long length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return (int) length;
+    }
+
+    static void writeString(ByteBuffer buffer, String value) {
+        int length = utf8Length(value);
+        writeVarint(buffer, length);
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced as String.getBytes would
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = checkedLength(buffer);
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+            return new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,250 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import com.sabpaisa.tokenization.entity.CloudReplicationOutboxEntry;
+import com.sabpaisa.tokenization.repository.CloudReplicationOutboxRepository;
+import com.sabpaisa.tokenization.repository.TokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the replication outbox to the cloud providers.
+ *
+ * Each provider is drained independently, oldest entries first, in batches.
+ * Entries in a batch that name the same token are coalesced: the token's current
+ * state is read once and stored once, and every older entry for it is cleared.
+ * A token the provider rejects is retried with exponential backoff; a token that
+ * no longer exists is simply dropped. Entries stay in the database until the
+ * provider has the token, so a crash only repeats a delivery, it never loses one.
+ * The first delivery attempt of every token is reported to
+ * {@link ReplicationStatusTracker}, which completes its replication status.
+ *
+ * The relay runs on its own scheduler rather than Spring's shared one, so it keeps
+ * delivering when scheduled jobs are disabled or a long job holds the scheduler,
+ * and each provider is drained on its own thread and schedule, so a slow provider
+ * delays only its own deliveries.
+ */
+@Component
+public class ReplicationOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationOutboxRelay.class);
+
+    private static final long BASE_BACKOFF_MS = 1000;
+
+    @Autowired
+    private MultiCloudReplicationService replicationService;
+
+    @Autowired
+    private CloudReplicationOutboxRepository outboxRepository;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicationStatusTracker statusTracker;
+
+    @Value("${app.cloud-replication.outbox.relay-interval-ms:500}")
+    private long relayIntervalMs;
+
+    @Value("${app.cloud-replication.outbox.batch-size:200}")
+    private int batchSize;
+
+    // Batches per provider per relay pass, so a large backlog drains across passes
+    @Value("${app.cloud-replication.outbox.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.cloud-replication.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    private ScheduledExecutorService relayExecutor;
+
+    private final Map<CloudProvider, ProviderCounters> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initialize() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+
+        for (CloudProvider provider : CloudProvider.values()) {
+            counters.put(provider, new ProviderCounters());
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        relayExecutor = Executors.newScheduledThreadPool(CloudProvider.values().length, runnable -> {
+            Thread thread = new Thread(runnable, "cloud-outbox-relay-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (CloudProvider provider : replicationService.getProviders()) {
+            relayExecutor.scheduleWithFixedDelay(() -> relay(provider), relayIntervalMs, relayIntervalMs,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdownNow();
+    }
+
+    // One relay pass for the provider; an exception must not end its schedule
+    private void relay(CloudProvider provider) {
+        try {
+            drain(provider);
+        } catch (Exception e) {
+            logger.error("Replication outbox relay to {} failed", provider, e);
+        }
+    }
+
+    /**
+     * Per-provider backlog and delivery counters
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object[]> pending = new HashMap<>();
+        for (Object[] row : outboxRepository.summarizePending()) {
+            pending.put((String) row[0], row);
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<String, Object> providers = new LinkedHashMap<>();
+        for (CloudProvider provider : replicationService.getProviders()) {
+            ProviderCounters providerCounters = counters.get(provider);
+            Object[] backlog = pending.get(provider.name());
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("pending", backlog != null ? backlog[1] : 0L);
+            stats.put("lagSeconds", backlog != null ? Duration.between((LocalDateTime) backlog[2], now).getSeconds() : 0L);
+            stats.put("delivered", providerCounters.delivered.sum());
+            stats.put("coalesced", providerCounters.coalesced.sum());
+            stats.put("failed", providerCounters.failed.sum());
+            stats.put("dropped", providerCounters.dropped.sum());
+            stats.put("lastDeliveryAt", providerCounters.lastDeliveryAt);
+            providers.put(provider.name(), stats);
+        }
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("batchSize", batchSize);
+        statistics.put("maxBackoffMs", maxBackoffMs);
+        statistics.put("providers", providers);
+        return statistics;
+    }
+
+    private void drain(CloudProvider provider) {
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            if (relayBatch(provider) < batchSize) {
+                return;
+            }
+        }
+    }
+
+    // Returns the number of outbox entries read
+    private int relayBatch(CloudProvider provider) {
+        LocalDateTime now = LocalDateTime.now();
+        List<CloudReplicationOutboxEntry> entries = readTransaction.execute(status ->
+            outboxRepository.findDue(provider.name(), now, PageRequest.of(0, batchSize)));
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        // One delivery per token; retries back off from the most-attempted entry
+        Map<Long, Integer> attemptsByToken = new LinkedHashMap<>();
+        Map<Long, CloudReplicationOutboxEntry> firstAttempts = new HashMap<>();
+        long maxId = 0;
+        for (CloudReplicationOutboxEntry entry : entries) {
+            attemptsByToken.merge(entry.getTokenId(), entry.getAttempts(), Math::max);
+            if (entry.getAttempts() == 0) {
+                firstAttempts.putIfAbsent(entry.getTokenId(), entry);
+            }
+            maxId = Math.max(maxId, entry.getId());
+        }
+        ProviderCounters providerCounters = counters.get(provider);
+        providerCounters.coalesced.add(entries.size() - attemptsByToken.size());
+
+        // Encrypt inside the read transaction (merchants load lazily), store outside it
+        Map<Long, EncryptedTokenData> replicas = readTransaction.execute(status ->
+            replicationService.prepareReplicas(tokenRepository.findAllById(attemptsByToken.keySet())));
+        Map<Long, String> failures = replicationService.storeReplicas(provider, replicas);
+
+        List<Long> cleared = new ArrayList<>();
+        for (Long tokenId : attemptsByToken.keySet()) {
+            if (!failures.containsKey(tokenId)) {
+                cleared.add(tokenId);
+            }
+        }
+        long lastId = maxId;
+        LocalDateTime completedAt = LocalDateTime.now();
+        writeTransaction.executeWithoutResult(status -> {
+            if (!cleared.isEmpty()) {
+                outboxRepository.deleteDelivered(provider.name(), cleared, lastId);
+            }
+            failures.forEach((tokenId, error) -> outboxRepository.recordFailure(provider.name(), tokenId, lastId,
+                completedAt.plus(Duration.ofMillis(backoffMs(attemptsByToken.get(tokenId)))), truncate(error)));
+        });
+
+        int providerCount = replicationService.getProviders().size();
+        for (Long tokenId : attemptsByToken.keySet()) {
+            if (!replicas.containsKey(tokenId)) {
+                statusTracker.discardDelivery(tokenId);
+                continue;
+            }
+            CloudReplicationOutboxEntry first = firstAttempts.get(tokenId);
+            if (first != null) {
+                statusTracker.recordDelivery(tokenId, provider, providerCount, first.getCreatedAt(), failures.get(tokenId));
+            }
+        }
+
+        int delivered = replicas.size() - failures.size();
+        providerCounters.delivered.add(delivered);
+        providerCounters.dropped.add(attemptsByToken.size() - replicas.size());
+        providerCounters.failed.add(failures.size());
+        if (delivered > 0) {
+            providerCounters.lastDeliveryAt = completedAt;
+        }
+        if (!failures.isEmpty()) {
+            logger.warn("Replication of {} tokens to {} failed, retrying with backoff", failures.size(), provider);
+        }
+        return entries.size();
+    }
+
+    private long backoffMs(int attempts) {
+        return Math.min(maxBackoffMs, BASE_BACKOFF_MS << Math.min(attempts, 20));
+    }
+
+    private static String truncate(String error) {
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    private static final class ProviderCounters {
+        final LongAdder delivered = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        volatile LocalDateTime lastDeliveryAt;
+    }
+}
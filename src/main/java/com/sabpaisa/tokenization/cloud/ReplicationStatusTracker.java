@@ -0,0 +1,348 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.CloudDataStructures.CloudReplicationResult;
+import com.sabpaisa.tokenization.cloud.CloudDataStructures.ReplicationStatus;
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import com.sabpaisa.tokenization.entity.CloudReplicationFailure;
+import com.sabpaisa.tokenization.repository.CloudReplicationFailureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replication statuses in constant memory.
+ *
+ * The latest statuses are kept in a fixed-size ring that new replications
+ * overwrite, and everything else is folded into counters: per provider and
+ * outcome, and per replication status. A replication that reached fewer providers
+ * than the replication threshold is also written to the failure log table (if
+ * enabled), which a thread of its own purges after the retention period.
+ *
+ * Tokens delivered by the outbox relay report one provider at a time. The first
+ * delivery attempt on every provider together makes up one replication, collected
+ * in a bounded map until the last provider has reported; retries only count per
+ * provider. A token that waits longer than the map holds is no longer tracked.
+ */
+@Component
+public class ReplicationStatusTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationStatusTracker.class);
+
+    private static final String[] STATUSES = {"SUCCESS", "PARTIAL_SUCCESS", "FAILED"};
+
+    @Value("${app.cloud-replication.status.recent-capacity:1000}")
+    private int recentCapacity;
+
+    // A replication succeeds when at least this many providers stored the token
+    @Value("${app.cloud-replication.status.replication-threshold:2}")
+    private int replicationThreshold;
+
+    // Relayed tokens waiting for the remaining providers' first delivery attempt
+    @Value("${app.cloud-replication.status.pending-capacity:10000}")
+    private int pendingCapacity;
+
+    @Value("${app.cloud-replication.status.failure-log.enabled:true}")
+    private boolean failureLogEnabled;
+
+    @Value("${app.cloud-replication.status.failure-log.retention-days:7}")
+    private int failureLogRetentionDays;
+
+    @Value("${app.cloud-replication.status.failure-log.purge-cron:0 30 3 * * *}")
+    private String failureLogPurgeCron;
+
+    @Autowired
+    private CloudReplicationFailureRepository failureRepository;
+
+    private AtomicReferenceArray<ReplicationStatus> recent;
+    private Map<Long, PendingReplication> pending;
+    private ScheduledExecutorService purger;
+    private final AtomicLong recorded = new AtomicLong();
+
+    private final Map<CloudProvider, ProviderOutcomes> providerOutcomes = new EnumMap<>(CloudProvider.class);
+    private final Map<String, LongAdder> statusCounts = new LinkedHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder reachedThreshold = new LongAdder();
+    private final LongAdder totalDurationMs = new LongAdder();
+    private final LongAdder failuresLogged = new LongAdder();
+    private final LongAdder failureLogErrors = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public ReplicationStatusTracker() {
+        for (CloudProvider provider : CloudProvider.values()) {
+            providerOutcomes.put(provider, new ProviderOutcomes());
+        }
+        for (String status : STATUSES) {
+            statusCounts.put(status, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    public void initialize() {
+        recent = new AtomicReferenceArray<>(Math.max(1, recentCapacity));
+        final int maxPending = Math.max(pendingCapacity, 16);
+        pending = new LinkedHashMap<>(maxPending * 4 / 3 + 1, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PendingReplication> eldest) {
+                if (size() > maxPending) {
+                    untracked.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-failure-log-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        new ConcurrentTaskScheduler(purger).schedule(() -> {
+            try {
+                purgeFailureLog();
+            } catch (Exception e) {
+                logger.error("Replication failure log purge failed", e);
+            }
+        }, new CronTrigger(failureLogPurgeCron));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Track a replication that has just started; it overwrites the oldest one in the ring
+     */
+    public void started(ReplicationStatus status) {
+        recent.set((int) (recorded.getAndIncrement() % recent.length()), status);
+    }
+
+    /**
+     * Count one token stored on, or failed on, one provider
+     */
+    public void recordProviderOutcome(CloudProvider provider, boolean success) {
+        ProviderOutcomes outcomes = providerOutcomes.get(provider);
+        (success ? outcomes.succeeded : outcomes.failed).increment();
+    }
+
+    /**
+     * The first relayed delivery attempt of a token to a provider ({@code error} is null
+     * if it was stored). Once all {@code providerCount} providers have reported, the
+     * replication is completed like a direct one; per-provider outcomes are counted
+     * by the caller.
+     */
+    public void recordDelivery(Long tokenId, CloudProvider provider, int providerCount, LocalDateTime enqueuedAt,
+                               String error) {
+        CloudReplicationResult result = new CloudReplicationResult();
+        result.setProvider(provider);
+        result.setSuccess(error == null);
+        result.setError(error);
+        result.setTimestamp(LocalDateTime.now());
+        result.setDuration(Duration.between(enqueuedAt, result.getTimestamp()).toMillis());
+
+        PendingReplication replication;
+        synchronized (pending) {
+            replication = pending.get(tokenId);
+            if (replication == null) {
+                ReplicationStatus status = new ReplicationStatus();
+                status.setReplicationId("REP-" + tokenId + "-" + System.currentTimeMillis());
+                status.setTokenId(tokenId);
+                status.setStartTime(enqueuedAt);
+                status.setStatus("IN_PROGRESS");
+                status.setTotalProviders(providerCount);
+                replication = new PendingReplication(status);
+                pending.put(tokenId, replication);
+                started(status);
+            }
+            replication.results.add(result);
+            if (replication.results.size() < providerCount) {
+                return;
+            }
+            pending.remove(tokenId);
+        }
+
+        ReplicationStatus status = replication.status;
+        int successful = (int) replication.results.stream().filter(CloudReplicationResult::isSuccess).count();
+        status.setEndTime(LocalDateTime.now());
+        status.setDuration(Duration.between(status.getStartTime(), status.getEndTime()).toMillis());
+        status.setStatus(successful == providerCount ? "SUCCESS" : successful > 0 ? "PARTIAL_SUCCESS" : "FAILED");
+        status.setSuccessfulProviders(successful);
+        finish(status, replication.results);
+        if (successful < replicationThreshold) {
+            logger.warn("Token {} reached {} of {} providers on first delivery, below the replication threshold of {}",
+                tokenId, successful, providerCount, replicationThreshold);
+        }
+    }
+
+    /**
+     * Stop tracking a relayed token that no longer exists
+     */
+    public void discardDelivery(Long tokenId) {
+        synchronized (pending) {
+            pending.remove(tokenId);
+        }
+    }
+
+    /**
+     * Fold a finished replication into the counters, logging it if it stayed below the threshold
+     */
+    public void completed(ReplicationStatus status, List<CloudReplicationResult> results) {
+        for (CloudReplicationResult result : results) {
+            recordProviderOutcome(result.getProvider(), result.isSuccess());
+        }
+        finish(status, results);
+    }
+
+    private void finish(ReplicationStatus status, List<CloudReplicationResult> results) {
+        completed.increment();
+        totalDurationMs.add(status.getDuration());
+        LongAdder statusCount = statusCounts.get(status.getStatus());
+        if (statusCount != null) {
+            statusCount.increment();
+        }
+        if (status.getSuccessfulProviders() >= replicationThreshold) {
+            reachedThreshold.increment();
+        } else if (failureLogEnabled) {
+            logFailure(status, results);
+        }
+    }
+
+    public int getReplicationThreshold() {
+        return replicationThreshold;
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Share of finished replications that reached the threshold, in percent
+     */
+    public double getSuccessRate() {
+        long count = completed.sum();
+        return count == 0 ? 100.0 : 100.0 * reachedThreshold.sum() / count;
+    }
+
+    /**
+     * The latest statuses, newest first
+     */
+    public List<ReplicationStatus> getRecent(int limit) {
+        List<ReplicationStatus> statuses = new ArrayList<>(Math.min(limit, recent.length()));
+        long last = recorded.get() - 1;
+        for (long i = last; i >= 0 && i > last - recent.length() && statuses.size() < limit; i--) {
+            ReplicationStatus status = recent.get((int) (i % recent.length()));
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+        return statuses;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> providers = new LinkedHashMap<>();
+        for (Map.Entry<CloudProvider, ProviderOutcomes> entry : providerOutcomes.entrySet()) {
+            providers.put(entry.getKey().name(), Map.of(
+                "succeeded", entry.getValue().succeeded.sum(),
+                "failed", entry.getValue().failed.sum()));
+        }
+        Map<String, Object> statuses = new LinkedHashMap<>();
+        statusCounts.forEach((status, count) -> statuses.put(status, count.sum()));
+
+        long count = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("started", recorded.get());
+        stats.put("completed", count);
+        stats.put("replicationThreshold", replicationThreshold);
+        stats.put("successRate", Math.round(getSuccessRate() * 100.0) / 100.0);
+        stats.put("averageDurationMs", count == 0 ? 0.0 : (double) totalDurationMs.sum() / count);
+        stats.put("statuses", statuses);
+        stats.put("providers", providers);
+        stats.put("recentCapacity", recent.length());
+        synchronized (pending) {
+            stats.put("pendingDeliveries", pending.size());
+        }
+        stats.put("untrackedDeliveries", untracked.sum());
+        stats.put("failureLog", Map.of(
+            "enabled", failureLogEnabled,
+            "logged", failuresLogged.sum(),
+            "errors", failureLogErrors.sum(),
+            "retentionDays", failureLogRetentionDays));
+        return stats;
+    }
+
+    /**
+     * The latest under-replicated tokens from the failure log, newest first
+     */
+    public List<CloudReplicationFailure> getFailureLog(int limit) {
+        return failureRepository.findLatest(PageRequest.of(0, Math.max(1, Math.min(limit, 1000))));
+    }
+
+    public void purgeFailureLog() {
+        int purged = failureRepository.deleteOlderThan(LocalDateTime.now().minusDays(failureLogRetentionDays));
+        if (purged > 0) {
+            logger.info("Purged {} replication failure log entries older than {} days", purged, failureLogRetentionDays);
+        }
+    }
+
+    private void logFailure(ReplicationStatus status, List<CloudReplicationResult> results) {
+        StringJoiner failedProviders = new StringJoiner(",");
+        String lastError = null;
+        for (CloudReplicationResult result : results) {
+            if (!result.isSuccess()) {
+                failedProviders.add(result.getProvider().name());
+                lastError = result.getError();
+            }
+        }
+        CloudReplicationFailure failure = new CloudReplicationFailure();
+        failure.setReplicationId(status.getReplicationId());
+        failure.setTokenId(status.getTokenId());
+        failure.setStatus(status.getStatus());
+        failure.setSuccessfulProviders(status.getSuccessfulProviders());
+        failure.setTotalProviders(status.getTotalProviders());
+        failure.setFailedProviders(failedProviders.toString());
+        failure.setLastError(lastError != null && lastError.length() > 500 ? lastError.substring(0, 500) : lastError);
+        failure.setCreatedAt(LocalDateTime.now());
+        try {
+            failureRepository.save(failure);
+            failuresLogged.increment();
+        } catch (Exception e) {
+            failureLogErrors.increment();
+            logger.warn("Failed to log under-replicated token {}: {}", status.getTokenId(), e.getMessage());
+        }
+    }
+
+    private static final class PendingReplication {
+        final ReplicationStatus status;
+        final List<CloudReplicationResult> results = new ArrayList<>();
+
+        PendingReplication(ReplicationStatus status) {
+            this.status = status;
+        }
+    }
+
+    private static final class ProviderOutcomes {
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+}
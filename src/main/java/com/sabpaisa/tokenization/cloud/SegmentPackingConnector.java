@@ -0,0 +1,719 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packs the tokens stored through it into segment objects on the wrapped connector,
+ * instead of one object per token.
+ *
+ * Stores are appended to the open segment, which is sealed once it reaches the
+ * size or record limit or has been open for the linger time, and uploaded as one
+ * object by a single worker thread. A store returns only when its segment is
+ * uploaded, so concurrent stores share one upload (group commit); the index is
+ * updated only then, in upload order. A segment object is:
+ * <pre>
+ *   records  each [iv length][iv][AES-GCM ciphertext], as encrypted per token
+ *   index    varint count, then per entry a type byte and the token id, followed
+ *            for a put by varint offset, varint length and 8-byte timestamp, and for
+ *            a tombstone by the varint sequence of the segment it was first written to
+ *   footer   8-byte index offset, 4-byte index length, 4-byte magic
+ * </pre>
+ * Reads look the token up in the in-memory index and range-read its record. The
+ * index is rebuilt at startup from the segment footers, replaying segments in
+ * sequence order. A tombstone removes the token from its own segment (puts before
+ * it) and from every older one, so it holds even if the put it followed failed to
+ * upload; compaction copies keep the sequence of the segment the tombstone was
+ * first written to, so replaying an old tombstone never hides a newer put.
+ *
+ * Compaction rewrites segments whose dead share (overwritten or deleted bytes)
+ * reaches a threshold: live records and still-needed tombstones are appended to
+ * the open segment like any store, and the old segment is deleted once nothing
+ * points to it. Tokens stored as single objects before packing was enabled can
+ * still be read and deleted, but are not listed.
+ */
+final class SegmentPackingConnector implements CloudConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentPackingConnector.class);
+
+    static final String SEGMENT_PREFIX = "segments/";
+
+    private static final int FOOTER_BYTES = 16;
+    private static final int MAGIC = 0x54534731; // "TSG1"
+    private static final byte PUT = 0;
+    private static final byte TOMBSTONE = 1;
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final CloudProvider provider;
+    private final CloudConnector delegate;
+    private final int maxSegmentBytes;
+    private final int maxSegmentRecords;
+    private final long maxLingerMs;
+    private final long storeTimeoutMs;
+    private final double compactionDeadRatio;
+
+    private final TokenIndex<Location> index = new TokenIndex<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSequence = new AtomicLong(1);
+
+    // Appends, sealing and applying uploaded segments to the index are serialized on this lock
+    private final Object lock = new Object();
+    private OpenSegment open;
+    private final Deque<OpenSegment> sealed = new ArrayDeque<>();
+    // Tokens with appended operations not yet applied: their count and the latest one
+    private final Map<String, PendingOp> pending = new HashMap<>();
+
+    private final ScheduledExecutorService worker;
+
+    private final LongAdder segmentsWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder segmentFailures = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    SegmentPackingConnector(CloudProvider provider, CloudConnector delegate, int maxSegmentBytes,
+                            int maxSegmentRecords, long maxLingerMs, long storeTimeoutMs, double compactionDeadRatio) {
+        this.provider = provider;
+        this.delegate = delegate;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentRecords = maxSegmentRecords;
+        this.maxLingerMs = maxLingerMs;
+        this.storeTimeoutMs = storeTimeoutMs;
+        this.compactionDeadRatio = compactionDeadRatio;
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cloud-segment-" + provider.name().toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    CloudConnector getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+        recover();
+        long lingerCheck = Math.max(1, maxLingerMs / 2);
+        worker.scheduleWithFixedDelay(this::sealIfLingering, lingerCheck, lingerCheck, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compact the segments whose dead share has reached the threshold, at most maxSegments of them
+     */
+    void scheduleCompaction(long intervalMs, int maxSegments) {
+        worker.scheduleWithFixedDelay(() -> compact(maxSegments), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Upload whatever is buffered and stop the worker
+     */
+    void shutdown() {
+        synchronized (lock) {
+            seal();
+        }
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(storeTimeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("{} segment worker did not finish uploading before shutdown", provider);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void store(EncryptedTokenData data, Map<String, String> metadata) throws CloudStorageException {
+        CompletableFuture<Void> flushed;
+        synchronized (lock) {
+            flushed = appendPut(data.getTokenId(), record(data), timestampOf(data));
+        }
+        await(flushed, "store");
+    }
+
+    @Override
+    public Map<String, CloudStorageException> storeAll(Collection<EncryptedTokenData> batch) {
+        Map<String, CompletableFuture<Void>> flushes = new LinkedHashMap<>();
+        synchronized (lock) {
+            for (EncryptedTokenData data : batch) {
+                flushes.put(data.getTokenId(), appendPut(data.getTokenId(), record(data), timestampOf(data)));
+            }
+            // A whole batch gains nothing from waiting for other stores
+            seal();
+        }
+        Map<String, CloudStorageException> failures = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<Void>> entry : flushes.entrySet()) {
+            try {
+                await(entry.getValue(), "store");
+            } catch (CloudStorageException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public EncryptedTokenData retrieve(String tokenId) throws CloudStorageException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            Location location = index.get(tokenId);
+            if (location == null) {
+                // Possibly stored as a single object before segment packing was enabled
+                return delegate.retrieve(tokenId);
+            }
+            byte[] record = delegate.readObjectRange(location.segment.key, location.offset, location.length);
+            if (record != null) {
+                return decodeRecord(tokenId, record, location.timestampMillis);
+            }
+            // The segment was compacted away between the lookup and the read
+        }
+        throw new CloudStorageException(provider.name(), "retrieve", "Segment of token " + tokenId + " kept moving");
+    }
+
+    @Override
+    public void delete(String tokenId) throws CloudStorageException {
+        CompletableFuture<Void> flushed = null;
+        synchronized (lock) {
+            if (isPresent(tokenId)) {
+                flushed = appendTombstone(tokenId, 0);
+            }
+        }
+        delegate.delete(tokenId);
+        if (flushed != null) {
+            await(flushed, "delete");
+        }
+    }
+
+    @Override
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) {
+        return index.list(prefix, startAfter, pageSize);
+    }
+
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize) {
+        return index.listByDigest(fromDigest, toDigest, startAfter, pageSize);
+    }
+
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        delegate.putObject(key, content, metadata);
+    }
+
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        return delegate.readObjectRange(key, offset, length);
+    }
+
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        delegate.deleteObject(key);
+    }
+
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        return delegate.listObjects(prefix);
+    }
+
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return index.merkleTree();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return index.size();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>(delegate.getMetrics());
+        long totalBytes = 0;
+        long liveBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.recordBytes;
+            liveBytes += segment.liveBytes.get();
+        }
+        int buffered;
+        synchronized (lock) {
+            buffered = open != null ? open.entries.size() : 0;
+            for (OpenSegment segment : sealed) {
+                buffered += segment.entries.size();
+            }
+        }
+        Map<String, Object> packing = new LinkedHashMap<>();
+        packing.put("segments", segments.size());
+        packing.put("tokens", index.size());
+        packing.put("recordBytes", totalBytes);
+        packing.put("deadBytes", totalBytes - liveBytes);
+        packing.put("bufferedOperations", buffered);
+        packing.put("segmentsWritten", segmentsWritten.sum());
+        packing.put("bytesWritten", bytesWritten.sum());
+        packing.put("segmentFailures", segmentFailures.sum());
+        packing.put("compactions", compactions.sum());
+        metrics.put("tokenCount", index.size());
+        metrics.put("segmentPacking", packing);
+        return metrics;
+    }
+
+    // Appending (callers hold the lock)
+
+    private CompletableFuture<Void> appendPut(String tokenId, byte[] record, long timestampMillis) {
+        OpenSegment segment = openSegment(record.length);
+        segment.entries.add(new Entry(PUT, tokenId, segment.size, record.length, timestampMillis, 0));
+        segment.write(record);
+        pending.computeIfAbsent(tokenId, id -> new PendingOp()).appended(segment.sequence);
+        return sealIfFull(segment);
+    }
+
+    // boundSequence is the segment a copied tombstone was first written to; 0 for a new tombstone
+    private CompletableFuture<Void> appendTombstone(String tokenId, long boundSequence) {
+        OpenSegment segment = openSegment(0);
+        long bound = boundSequence > 0 ? boundSequence : segment.sequence;
+        segment.entries.add(new Entry(TOMBSTONE, tokenId, 0, 0, 0, bound));
+        pending.computeIfAbsent(tokenId, id -> new PendingOp()).appended(-1);
+        return sealIfFull(segment);
+    }
+
+    private OpenSegment openSegment(int recordLength) {
+        if (open != null && !open.entries.isEmpty() && open.size + recordLength > maxSegmentBytes) {
+            seal();
+        }
+        if (open == null) {
+            open = new OpenSegment(nextSequence.getAndIncrement());
+        }
+        return open;
+    }
+
+    private CompletableFuture<Void> sealIfFull(OpenSegment segment) {
+        CompletableFuture<Void> flushed = segment.flushed;
+        if (segment.entries.size() >= maxSegmentRecords || segment.size >= maxSegmentBytes) {
+            seal();
+        }
+        return flushed;
+    }
+
+    private void seal() {
+        if (open != null) {
+            sealed.add(open);
+            open = null;
+            worker.execute(this::uploadSealed);
+        }
+    }
+
+    /**
+     * Whether a delete has anything to remove: the token is indexed or a put of it is pending
+     */
+    private boolean isPresent(String tokenId) {
+        PendingOp op = pending.get(tokenId);
+        return op != null && op.latestPutSequence > 0 || index.get(tokenId) != null;
+    }
+
+    // Worker thread
+
+    private void sealIfLingering() {
+        synchronized (lock) {
+            if (open != null && System.nanoTime() - open.createdNanos >= TimeUnit.MILLISECONDS.toNanos(maxLingerMs)) {
+                seal();
+            }
+        }
+    }
+
+    private void uploadSealed() {
+        while (true) {
+            OpenSegment segment;
+            synchronized (lock) {
+                segment = sealed.poll();
+            }
+            if (segment == null) {
+                return;
+            }
+            byte[] object = segment.toObject();
+            try {
+                delegate.putObject(segment.key(), object, Map.of(
+                    "format", "token-segment-v1", "records", String.valueOf(segment.entries.size())));
+                segmentsWritten.increment();
+                bytesWritten.add(object.length);
+                synchronized (lock) {
+                    apply(new Segment(segment.sequence, segment.key(), segment.size), segment.entries);
+                    settle(segment.entries);
+                }
+                segment.flushed.complete(null);
+            } catch (Exception e) {
+                segmentFailures.increment();
+                logger.warn("Failed to upload segment {} to {}: {}", segment.key(), provider, e.getMessage());
+                synchronized (lock) {
+                    settle(segment.entries);
+                }
+                segment.flushed.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Callers hold the lock, or are recovering before any store
+    private void apply(Segment segment, List<Entry> entries) {
+        segments.put(segment.sequence, segment);
+        for (Entry entry : entries) {
+            if (entry.type == PUT) {
+                segment.liveRecords.incrementAndGet();
+                segment.liveBytes.addAndGet(entry.length);
+                Location previous = index.put(entry.tokenId,
+                    new Location(segment, entry.offset, entry.length, entry.timestampMillis));
+                if (previous != null) {
+                    previous.segment.markDead(previous.length);
+                }
+            } else {
+                segment.tombstones.add(entry);
+                // Puts later in the tombstone's own segment are not applied yet, so <= spares them
+                Location current = index.get(entry.tokenId);
+                if (current != null && current.segment.sequence <= entry.boundSequence) {
+                    index.remove(entry.tokenId);
+                    current.segment.markDead(current.length);
+                }
+            }
+        }
+    }
+
+    private void settle(List<Entry> entries) {
+        for (Entry entry : entries) {
+            PendingOp op = pending.get(entry.tokenId);
+            if (op != null && --op.count == 0) {
+                pending.remove(entry.tokenId);
+            }
+        }
+    }
+
+    private void compact(int maxSegments) {
+        int compacted = 0;
+        for (Segment segment : segments.values()) {
+            if (compacted == maxSegments) {
+                break;
+            }
+            if (segment.liveBytes.get() > segment.recordBytes * (1.0 - compactionDeadRatio)
+                    && segment.liveRecords.get() > 0) {
+                continue;
+            }
+            List<Entry> neededTombstones = new ArrayList<>();
+            for (Entry tombstone : segment.tombstones) {
+                // Still needed while an older segment may hold a put it deletes
+                if (segments.firstKey() < Math.min(tombstone.boundSequence, segment.sequence)) {
+                    neededTombstones.add(tombstone);
+                }
+            }
+            if (segment.liveRecords.get() == 0 && !neededTombstones.isEmpty()
+                    && neededTombstones.size() == segment.tombstones.size()) {
+                // Nothing to reclaim until the segments these tombstones delete from are compacted
+                continue;
+            }
+            try {
+                compactSegment(segment, neededTombstones);
+                compacted++;
+            } catch (Exception e) {
+                logger.warn("Failed to compact segment {} on {}: {}", segment.key, provider, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void compactSegment(Segment segment, List<Entry> neededTombstones) throws CloudStorageException {
+        if (segment.liveRecords.get() > 0) {
+            SegmentIndex segmentIndex = readIndex(segment.key);
+            byte[] records = delegate.readObjectRange(segment.key, 0, (int) segment.recordBytes);
+            if (segmentIndex == null || records == null) {
+                throw new CloudStorageException(provider.name(), "compact", "Segment " + segment.key + " is missing");
+            }
+            synchronized (lock) {
+                for (Entry entry : segmentIndex.entries) {
+                    Location location = index.get(entry.tokenId);
+                    // Copy only records still current and not about to be replaced or deleted
+                    if (entry.type == PUT && location != null && location.segment == segment
+                            && location.offset == entry.offset && !pending.containsKey(entry.tokenId)) {
+                        appendPut(entry.tokenId, Arrays.copyOfRange(records, entry.offset, entry.offset + entry.length),
+                            entry.timestampMillis);
+                    }
+                }
+                seal();
+            }
+            uploadSealed();
+        }
+        if (segment.liveRecords.get() > 0) {
+            // A write raced with the copy; try again on the next run
+            return;
+        }
+        if (!neededTombstones.isEmpty()) {
+            synchronized (lock) {
+                for (Entry tombstone : neededTombstones) {
+                    appendTombstone(tombstone.tokenId, tombstone.boundSequence);
+                }
+                seal();
+            }
+            uploadSealed();
+        }
+        delegate.deleteObject(segment.key);
+        segments.remove(segment.sequence);
+        compactions.increment();
+        logger.debug("Compacted segment {} on {}", segment.key, provider);
+    }
+
+    // Recovery
+
+    private void recover() {
+        try {
+            List<String> keys = delegate.listObjects(SEGMENT_PREFIX);
+            for (String key : keys) {
+                long sequence = Long.parseLong(key.substring(SEGMENT_PREFIX.length()));
+                SegmentIndex segmentIndex = readIndex(key);
+                if (segmentIndex == null) {
+                    logger.error("Segment {} on {} has no readable index; its tokens are left to sync", key, provider);
+                } else {
+                    apply(new Segment(sequence, key, segmentIndex.recordBytes), segmentIndex.entries);
+                }
+                nextSequence.set(Math.max(nextSequence.get(), sequence + 1));
+            }
+            if (!keys.isEmpty()) {
+                logger.info("Recovered {} tokens from {} segments on {}", index.size(), keys.size(), provider);
+            }
+        } catch (CloudStorageException e) {
+            logger.error("Failed to recover segment index on {}", provider, e);
+        }
+    }
+
+    /**
+     * The index of a segment object, null if it does not exist or is malformed
+     */
+    private SegmentIndex readIndex(String key) throws CloudStorageException {
+        byte[] footer = delegate.readObjectRange(key, -FOOTER_BYTES, FOOTER_BYTES);
+        if (footer == null || footer.length != FOOTER_BYTES) {
+            return null;
+        }
+        ByteBuffer footerBuffer = ByteBuffer.wrap(footer);
+        long indexOffset = footerBuffer.getLong();
+        int indexLength = footerBuffer.getInt();
+        if (footerBuffer.getInt() != MAGIC) {
+            return null;
+        }
+        byte[] indexBlock = delegate.readObjectRange(key, indexOffset, indexLength);
+        if (indexBlock == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(indexBlock);
+        int count = (int) ReplicatedTokenCodec.readVarint(buffer);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = buffer.get();
+            String tokenId = ReplicatedTokenCodec.readString(buffer);
+            if (type == PUT) {
+                int offset = (int) ReplicatedTokenCodec.readVarint(buffer);
+                int length = (int) ReplicatedTokenCodec.readVarint(buffer);
+                entries.add(new Entry(PUT, tokenId, offset, length, buffer.getLong(), 0));
+            } else {
+                entries.add(new Entry(TOMBSTONE, tokenId, 0, 0, 0, ReplicatedTokenCodec.readVarint(buffer)));
+            }
+        }
+        return new SegmentIndex(indexOffset, entries);
+    }
+
+    // Records
+
+    private static byte[] record(EncryptedTokenData data) {
+        byte[] iv = data.getIv();
+        byte[] ciphertext = Base64.getDecoder().decode(data.getEncryptedData());
+        byte[] record = new byte[1 + iv.length + ciphertext.length];
+        record[0] = (byte) iv.length;
+        System.arraycopy(iv, 0, record, 1, iv.length);
+        System.arraycopy(ciphertext, 0, record, 1 + iv.length, ciphertext.length);
+        return record;
+    }
+
+    private static EncryptedTokenData decodeRecord(String tokenId, byte[] record, long timestampMillis) {
+        int ivLength = record[0] & 0xFF;
+        byte[] iv = new byte[ivLength];
+        System.arraycopy(record, 1, iv, 0, ivLength);
+        EncryptedTokenData data = new EncryptedTokenData();
+        data.setTokenId(tokenId);
+        data.setIv(iv);
+        data.setEncryptedData(Base64.getEncoder().encodeToString(
+            Arrays.copyOfRange(record, 1 + ivLength, record.length)));
+        data.setAlgorithm("AES-256-GCM");
+        data.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault()));
+        return data;
+    }
+
+    private static long timestampOf(EncryptedTokenData data) {
+        LocalDateTime timestamp = data.getTimestamp() != null ? data.getTimestamp() : LocalDateTime.now();
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void await(CompletableFuture<Void> flushed, String operation) throws CloudStorageException {
+        try {
+            flushed.get(storeTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new CloudStorageException(provider.name(), operation, "Segment upload failed", e.getCause());
+        } catch (TimeoutException e) {
+            // The operation may still be applied once its segment is uploaded
+            throw new CloudStorageException(provider.name(), operation, "Timed out waiting for segment upload");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloudStorageException(provider.name(), operation, "Interrupted waiting for segment upload");
+        }
+    }
+
+    private static final class Entry {
+        final byte type;
+        final String tokenId;
+        final int offset;
+        final int length;
+        final long timestampMillis;
+        final long boundSequence;
+
+        Entry(byte type, String tokenId, int offset, int length, long timestampMillis, long boundSequence) {
+            this.type = type;
+            this.tokenId = tokenId;
+            this.offset = offset;
+            this.length = length;
+            this.timestampMillis = timestampMillis;
+            this.boundSequence = boundSequence;
+        }
+    }
+
+    private static final class SegmentIndex {
+        final long recordBytes;
+        final List<Entry> entries;
+
+        SegmentIndex(long recordBytes, List<Entry> entries) {
+            this.recordBytes = recordBytes;
+            this.entries = entries;
+        }
+    }
+
+    private static final class PendingOp {
+        int count;
+        // Segment of the latest appended put, -1 when the latest operation is a delete
+        long latestPutSequence;
+
+        void appended(long putSequence) {
+            count++;
+            latestPutSequence = putSequence;
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+        final long timestampMillis;
+
+        Location(Segment segment, int offset, int length, long timestampMillis) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+
+    /**
+     * An uploaded segment and how much of it is still current
+     */
+    private static final class Segment {
+        final long sequence;
+        final String key;
+        final long recordBytes;
+        final AtomicInteger liveRecords = new AtomicInteger();
+        final AtomicLong liveBytes = new AtomicLong();
+        final List<Entry> tombstones = new ArrayList<>();
+
+        Segment(long sequence, String key, long recordBytes) {
+            this.sequence = sequence;
+            this.key = key;
+            this.recordBytes = recordBytes;
+        }
+
+        void markDead(int length) {
+            liveRecords.decrementAndGet();
+            liveBytes.addAndGet(-length);
+        }
+    }
+
+    /**
+     * The segment being filled, then waiting for upload
+     */
+    private static final class OpenSegment {
+        final long sequence;
+        final long createdNanos = System.nanoTime();
+        final List<Entry> entries = new ArrayList<>();
+        final CompletableFuture<Void> flushed = new CompletableFuture<>();
+        byte[] records = new byte[4096];
+        int size;
+
+        OpenSegment(long sequence) {
+            this.sequence = sequence;
+        }
+
+        String key() {
+            return SEGMENT_PREFIX + String.format("%020d", sequence);
+        }
+
+        void write(byte[] record) {
+            if (size + record.length > records.length) {
+                records = Arrays.copyOf(records, Math.max(records.length * 2, size + record.length));
+            }
+            System.arraycopy(record, 0, records, size, record.length);
+            size += record.length;
+        }
+
+        byte[] toObject() {
+            int indexBound = 5;
+            for (Entry entry : entries) {
+                indexBound += 1 + 5 + 3 * entry.tokenId.length() + 5 + 5 + 10;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size + indexBound + FOOTER_BYTES);
+            buffer.put(records, 0, size);
+            ReplicatedTokenCodec.writeVarint(buffer, entries.size());
+            for (Entry entry : entries) {
+                buffer.put(entry.type);
+                ReplicatedTokenCodec.writeString(buffer, entry.tokenId);
+                if (entry.type == PUT) {
+                    ReplicatedTokenCodec.writeVarint(buffer, entry.offset);
+                    ReplicatedTokenCodec.writeVarint(buffer, entry.length);
+                    buffer.putLong(entry.timestampMillis);
+                } else {
+                    ReplicatedTokenCodec.writeVarint(buffer, entry.boundSequence);
+                }
+            }
+            int indexLength = buffer.position() - size;
+            buffer.putLong(size);
+            buffer.putInt(indexLength);
+            buffer.putInt(MAGIC);
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sabpaisa.tokenization.cloud;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token ids a connector holds, each with a value of the connector's choosing.
+ *
+ * Entries are kept sorted by token id for prefix/start-after listings, and by
+ * digest for Merkle range queries, so both kinds of listing walk only the page they
+ * return. The Merkle tree and the count are updated only when a token is actually
+ * added or removed.
+ */
+public final class TokenIndex<V> {
+
+    private final ConcurrentSkipListMap<String, V> entries = new ConcurrentSkipListMap<>();
+
+    // "<digest as 16 hex digits>:<token id>"; string order matches unsigned digest order
+    private final ConcurrentSkipListSet<String> digestIndex = new ConcurrentSkipListSet<>();
+
+    private final TokenMerkleTree merkleTree = new TokenMerkleTree();
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Set the token's value; returns the previous value, null if the token is new
+     */
+    public V put(String tokenId, V value) {
+        V previous = entries.put(tokenId, value);
+        if (previous == null) {
+            digestIndex.add(digestKey(tokenId));
+            merkleTree.add(tokenId);
+            count.incrementAndGet();
+        }
+        return previous;
+    }
+
+    public V get(String tokenId) {
+        return entries.get(tokenId);
+    }
+
+    /**
+     * Drop the token; returns its value, null if it was not held
+     */
+    public V remove(String tokenId) {
+        V previous = entries.remove(tokenId);
+        if (previous != null) {
+            digestIndex.remove(digestKey(tokenId));
+            merkleTree.remove(tokenId);
+            count.decrementAndGet();
+        }
+        return previous;
+    }
+
+    public long size() {
+        return count.get();
+    }
+
+    public TokenMerkleTree merkleTree() {
+        return merkleTree;
+    }
+
+    public TokenInventoryPage list(String prefix, String startAfter, int pageSize) {
+        String from = prefix != null ? prefix : "";
+        boolean inclusive = true;
+        if (startAfter != null && startAfter.compareTo(from) >= 0) {
+            from = startAfter;
+            inclusive = false;
+        }
+        List<String> tokenIds = new ArrayList<>();
+        Iterator<String> keys = entries.navigableKeySet().tailSet(from, inclusive).iterator();
+        while (keys.hasNext()) {
+            String tokenId = keys.next();
+            if (prefix != null && !tokenId.startsWith(prefix)) {
+                break;
+            }
+            if (tokenIds.size() == pageSize(pageSize)) {
+                return new TokenInventoryPage(tokenIds, tokenIds.get(tokenIds.size() - 1));
+            }
+            tokenIds.add(tokenId);
+        }
+        return new TokenInventoryPage(tokenIds, null);
+    }
+
+    public TokenInventoryPage listByDigest(long fromDigest, long toDigest, String startAfter, int pageSize) {
+        NavigableSet<String> range = digestIndex.subSet(
+            startAfter != null ? digestKey(startAfter) : hex(fromDigest), startAfter == null,
+            hex(toDigest) + ";", false);
+        List<String> tokenIds = new ArrayList<>();
+        for (String key : range) {
+            if (tokenIds.size() == pageSize(pageSize)) {
+                return new TokenInventoryPage(tokenIds, tokenIds.get(tokenIds.size() - 1));
+            }
+            tokenIds.add(key.substring(17));
+        }
+        return new TokenInventoryPage(tokenIds, null);
+    }
+
+    private static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, CloudConnector.MAX_PAGE_SIZE));
+    }
+
+    private static String digestKey(String tokenId) {
+        return hex(TokenMerkleTree.digestOf(tokenId)) + ":" + tokenId;
+    }
+
+    private static String hex(long digest) {
+        String hex = Long.toHexString(digest);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+}
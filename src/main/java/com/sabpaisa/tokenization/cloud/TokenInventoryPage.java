@@ -0,0 +1,29 @@
+package com.sabpaisa.tokenization.cloud;
+
+import java.util.List;
+
+/**
+ * One page of a connector's token inventory. Pass {@link #getNextStartAfter()} as the
+ * start-after of the next request; it is null on the last page.
+ */
+public class TokenInventoryPage {
+    private final List<String> tokenIds;
+    private final String nextStartAfter;
+
+    public TokenInventoryPage(List<String> tokenIds, String nextStartAfter) {
+        this.tokenIds = tokenIds;
+        this.nextStartAfter = nextStartAfter;
+    }
+
+    public List<String> getTokenIds() {
+        return tokenIds;
+    }
+
+    public String getNextStartAfter() {
+        return nextStartAfter;
+    }
+
+    public boolean isLastPage() {
+        return nextStartAfter == null;
+    }
+}
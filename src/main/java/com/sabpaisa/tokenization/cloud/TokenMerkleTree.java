@@ -0,0 +1,123 @@
+package com.sabpaisa.tokenization.cloud;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hash-range Merkle tree over the token ids a provider holds.
+ *
+ * Token ids are spread over {@code 2^depth} leaf ranges by their 64-bit digest
+ * ({@link #digestOf}); leaf {@code i} covers an equal, contiguous range of unsigned
+ * digests, which connectors list with {@link CloudConnector#listTokensInDigestRange}.
+ * Every node holds the XOR of the 64-bit digests of the tokens in its range, so a
+ * store or delete updates one leaf and its ancestors without rehashing anything
+ * else, and two providers holding the same tokens have the same root. Nodes are
+ * numbered heap-style: 1 is the root, node {@code n} has children {@code 2n} and
+ * {@code 2n + 1}, and the leaves are nodes {@code leafCount} to {@code 2 * leafCount - 1}.
+ *
+ * The tree holds no token ids: the owning connector adds a token only when it
+ * was absent and removes it only when it was present. Updates are serialized;
+ * hash reads are lock-free and may briefly see an update applied to a leaf but
+ * not yet to the root, which a later sync resolves.
+ */
+public final class TokenMerkleTree {
+
+    // 4096 leaf ranges: 64 KB of hashes per provider
+    public static final int DEFAULT_DEPTH = 12;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final int depth;
+    private final int leafCount;
+    private final AtomicLongArray nodes;
+
+    public TokenMerkleTree() {
+        this(DEFAULT_DEPTH);
+    }
+
+    public TokenMerkleTree(int depth) {
+        if (depth < 1 || depth > 20) {
+            throw new IllegalArgumentException("Merkle tree depth must be between 1 and 20");
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.nodes = new AtomicLongArray(2 * leafCount);
+    }
+
+    /**
+     * Record a token the connector did not hold before
+     */
+    public void add(String tokenId) {
+        apply(digestOf(tokenId));
+    }
+
+    /**
+     * Record a token the connector held and has deleted
+     */
+    public void remove(String tokenId) {
+        apply(digestOf(tokenId));
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public long getRootHash() {
+        return nodes.get(1);
+    }
+
+    public long getHash(int node) {
+        return nodes.get(node);
+    }
+
+    public boolean isLeaf(int node) {
+        return node >= leafCount;
+    }
+
+    /**
+     * First digest (unsigned) in the range of a leaf node
+     */
+    public long getRangeStart(int node) {
+        return (long) (node - leafCount) << (64 - depth);
+    }
+
+    /**
+     * Last digest (unsigned, inclusive) in the range of a leaf node
+     */
+    public long getRangeEnd(int node) {
+        return getRangeStart(node) + ((1L << (64 - depth)) - 1);
+    }
+
+    // XOR is its own inverse, so the same walk adds and removes a digest
+    private synchronized void apply(long digest) {
+        for (int node = leafCount + (int) (digest >>> (64 - depth)); node >= 1; node >>>= 1) {
+            nodes.set(node, nodes.get(node) ^ digest);
+        }
+    }
+
+    /**
+     * The 64-bit digest placing a token in the tree: the leading bytes of SHA-256 of its id
+     */
+    public static long digestOf(String tokenId) {
+        MessageDigest sha256 = SHA256.get();
+        sha256.reset();
+        byte[] hash = sha256.digest(tokenId.getBytes(StandardCharsets.UTF_8));
+        long digest = 0;
+        for (int i = 0; i < 8; i++) {
+            digest = (digest << 8) | (hash[i] & 0xFF);
+        }
+        return digest;
+    }
+}
@@ -3,24 +3,25 @@ package com.sabpaisa.tokenization.cloud.connectors;
 import com.sabpaisa.tokenization.cloud.CloudConnector;
 import com.sabpaisa.tokenization.cloud.EncryptedTokenData;
 import com.sabpaisa.tokenization.cloud.CloudStorageException;
+import com.sabpaisa.tokenization.cloud.TokenInventoryPage;
+import com.sabpaisa.tokenization.cloud.TokenMerkleTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AWS S3 connector implementation
  * In production, this would use AWS SDK
  */
-public class AWSS3Connector implements CloudConnector {
+public class AWSS3Connector implements CloudConnector, LatencySimulating {
     
     private static final Logger logger = LoggerFactory.getLogger(AWSS3Connector.class);
     
     // Simulated S3 storage
-    private final Map<String, EncryptedTokenData> storage = new ConcurrentHashMap<>();
+    private final InMemoryTokenStore storage = new InMemoryTokenStore();
     private boolean initialized = false;
     
     @Override
@@ -39,7 +40,7 @@ public class AWSS3Connector implements CloudConnector {
         try {
             // In production: Upload to S3 bucket
             data.setMetadata(metadata);
-            storage.put(data.getTokenId(), data);
+            storage.put(data);
             logger.debug("Stored token {} in AWS S3", data.getTokenId());
             
         } catch (Exception e) {
@@ -79,20 +80,112 @@ public class AWSS3Connector implements CloudConnector {
     }
     
     @Override
-    public Set<String> getTokenInventory() throws CloudStorageException {
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException {
         if (!initialized) {
             throw new CloudStorageException("AWS", "inventory", "Connector not initialized");
         }
         
         try {
-            // In production: List objects in S3 bucket
-            return storage.keySet();
+            // In production: List objects in S3 bucket, one page per request
+            return storage.list(prefix, startAfter, pageSize);
             
         } catch (Exception e) {
             throw new CloudStorageException("AWS", "inventory", "Failed to list S3 objects", e);
         }
     }
     
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+            throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("AWS", "inventory", "Connector not initialized");
+        }
+        
+        try {
+            // In production: served from a digest-keyed index maintained alongside the objects
+            return storage.listByDigest(fromDigest, toDigest, startAfter, pageSize);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("AWS", "inventory", "Failed to list S3 objects", e);
+        }
+    }
+    
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("AWS", "store", "Connector not initialized");
+        }
+        
+        try {
+            // In production: Upload to S3 bucket, with the metadata as object metadata
+            storage.putBlob(key, content);
+            logger.debug("Stored object {} ({} bytes) in S3", key, content.length);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("AWS", "store", "Failed to store object in S3", e);
+        }
+    }
+    
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("AWS", "retrieve", "Connector not initialized");
+        }
+        
+        try {
+            // In production: Range GET on the S3 object
+            return storage.readBlob(key, offset, length);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("AWS", "retrieve", "Failed to read object from S3", e);
+        }
+    }
+    
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("AWS", "delete", "Connector not initialized");
+        }
+        
+        try {
+            // In production: Delete from S3 bucket
+            storage.removeBlob(key);
+            logger.debug("Deleted object {} from S3", key);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("AWS", "delete", "Failed to delete object from S3", e);
+        }
+    }
+    
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("AWS", "inventory", "Connector not initialized");
+        }
+        
+        try {
+            return storage.listBlobs(prefix);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("AWS", "inventory", "Failed to list S3 objects", e);
+        }
+    }
+    
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return storage.merkleTree();
+    }
+    
+    @Override
+    public SimulatedLatency getSimulatedLatency() {
+        return storage.getLatency();
+    }
+    
+    @Override
+    public void setSimulatedLatency(SimulatedLatency latency) {
+        storage.setLatency(latency);
+    }
+    
     @Override
     public long getTokenCount() {
         return storage.size();
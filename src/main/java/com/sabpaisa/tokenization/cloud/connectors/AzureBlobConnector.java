@@ -3,24 +3,25 @@ package com.sabpaisa.tokenization.cloud.connectors;
 import com.sabpaisa.tokenization.cloud.CloudConnector;
 import com.sabpaisa.tokenization.cloud.EncryptedTokenData;
 import com.sabpaisa.tokenization.cloud.CloudStorageException;
+import com.sabpaisa.tokenization.cloud.TokenInventoryPage;
+import com.sabpaisa.tokenization.cloud.TokenMerkleTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Azure Blob Storage connector implementation
  * In production, this would use Azure SDK
  */
-public class AzureBlobConnector implements CloudConnector {
+public class AzureBlobConnector implements CloudConnector, LatencySimulating {
     
     private static final Logger logger = LoggerFactory.getLogger(AzureBlobConnector.class);
     
     // Simulated Azure Blob storage
-    private final Map<String, EncryptedTokenData> storage = new ConcurrentHashMap<>();
+    private final InMemoryTokenStore storage = new InMemoryTokenStore();
     private boolean initialized = false;
     
     @Override
@@ -39,7 +40,7 @@ public class AzureBlobConnector implements CloudConnector {
         try {
             // In production: Upload to Azure Blob container
             data.setMetadata(metadata);
-            storage.put(data.getTokenId(), data);
+            storage.put(data);
             logger.debug("Stored token {} in Azure Blob Storage", data.getTokenId());
             
         } catch (Exception e) {
@@ -79,20 +80,112 @@ public class AzureBlobConnector implements CloudConnector {
     }
     
     @Override
-    public Set<String> getTokenInventory() throws CloudStorageException {
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException {
         if (!initialized) {
             throw new CloudStorageException("Azure", "inventory", "Connector not initialized");
         }
         
         try {
-            // In production: List blobs in container
-            return storage.keySet();
+            // In production: List blobs in container, one page per request
+            return storage.list(prefix, startAfter, pageSize);
             
         } catch (Exception e) {
             throw new CloudStorageException("Azure", "inventory", "Failed to list Azure blobs", e);
         }
     }
     
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+            throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("Azure", "inventory", "Connector not initialized");
+        }
+        
+        try {
+            // In production: served from a digest-keyed index maintained alongside the objects
+            return storage.listByDigest(fromDigest, toDigest, startAfter, pageSize);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("Azure", "inventory", "Failed to list Azure blobs", e);
+        }
+    }
+    
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("Azure", "store", "Connector not initialized");
+        }
+        
+        try {
+            // In production: Upload to Azure Blob container, with the metadata as object metadata
+            storage.putBlob(key, content);
+            logger.debug("Stored object {} ({} bytes) in Azure", key, content.length);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("Azure", "store", "Failed to store object in Azure", e);
+        }
+    }
+    
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("Azure", "retrieve", "Connector not initialized");
+        }
+        
+        try {
+            // In production: ranged download of the blob
+            return storage.readBlob(key, offset, length);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("Azure", "retrieve", "Failed to read object from Azure", e);
+        }
+    }
+    
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("Azure", "delete", "Connector not initialized");
+        }
+        
+        try {
+            // In production: Delete from Azure Blob container
+            storage.removeBlob(key);
+            logger.debug("Deleted object {} from Azure", key);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("Azure", "delete", "Failed to delete object from Azure", e);
+        }
+    }
+    
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException("Azure", "inventory", "Connector not initialized");
+        }
+        
+        try {
+            return storage.listBlobs(prefix);
+            
+        } catch (Exception e) {
+            throw new CloudStorageException("Azure", "inventory", "Failed to list Azure blobs", e);
+        }
+    }
+    
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return storage.merkleTree();
+    }
+    
+    @Override
+    public SimulatedLatency getSimulatedLatency() {
+        return storage.getLatency();
+    }
+    
+    @Override
+    public void setSimulatedLatency(SimulatedLatency latency) {
+        storage.setLatency(latency);
+    }
+    
     @Override
     public long getTokenCount() {
         return storage.size();
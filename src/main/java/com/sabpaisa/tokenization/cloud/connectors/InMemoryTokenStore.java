@@ -0,0 +1,107 @@
+package com.sabpaisa.tokenization.cloud.connectors;
+
+import com.sabpaisa.tokenization.cloud.EncryptedTokenData;
+import com.sabpaisa.tokenization.cloud.TokenIndex;
+import com.sabpaisa.tokenization.cloud.TokenInventoryPage;
+import com.sabpaisa.tokenization.cloud.TokenMerkleTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Simulated bucket behind the in-memory connectors.
+ *
+ * Token objects live in a {@link TokenIndex}, so listings walk only the page they
+ * return. Raw objects (token segments) are held apart from them, by key. Every
+ * call first waits for the configured {@link SimulatedLatency}.
+ */
+final class InMemoryTokenStore {
+
+    private final TokenIndex<EncryptedTokenData> objects = new TokenIndex<>();
+
+    private final ConcurrentSkipListMap<String, byte[]> blobs = new ConcurrentSkipListMap<>();
+
+    private volatile SimulatedLatency latency = SimulatedLatency.NONE;
+
+    SimulatedLatency getLatency() {
+        return latency;
+    }
+
+    void setLatency(SimulatedLatency latency) {
+        this.latency = latency;
+    }
+
+    void put(EncryptedTokenData data) {
+        latency.pause();
+        objects.put(data.getTokenId(), data);
+    }
+
+    EncryptedTokenData get(String tokenId) {
+        latency.pause();
+        return objects.get(tokenId);
+    }
+
+    void remove(String tokenId) {
+        latency.pause();
+        objects.remove(tokenId);
+    }
+
+    long size() {
+        return objects.size();
+    }
+
+    TokenMerkleTree merkleTree() {
+        return objects.merkleTree();
+    }
+
+    TokenInventoryPage list(String prefix, String startAfter, int pageSize) {
+        latency.pause();
+        return objects.list(prefix, startAfter, pageSize);
+    }
+
+    TokenInventoryPage listByDigest(long fromDigest, long toDigest, String startAfter, int pageSize) {
+        latency.pause();
+        return objects.listByDigest(fromDigest, toDigest, startAfter, pageSize);
+    }
+
+    void putBlob(String key, byte[] content) {
+        latency.pause();
+        blobs.put(key, content.clone());
+    }
+
+    /**
+     * Bytes [offset, offset + length) of the blob, or its last {@code length} bytes
+     * when offset is negative; null if there is no such blob
+     */
+    byte[] readBlob(String key, long offset, int length) {
+        latency.pause();
+        byte[] content = blobs.get(key);
+        if (content == null) {
+            return null;
+        }
+        long from = offset < 0 ? Math.max(0, content.length - length) : offset;
+        if (from > content.length) {
+            throw new IllegalArgumentException("Range starts past the end of " + key);
+        }
+        return Arrays.copyOfRange(content, (int) from, (int) Math.min(content.length, from + length));
+    }
+
+    void removeBlob(String key) {
+        latency.pause();
+        blobs.remove(key);
+    }
+
+    List<String> listBlobs(String prefix) {
+        latency.pause();
+        List<String> keys = new ArrayList<>();
+        for (String key : blobs.tailMap(prefix).keySet()) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,11 @@
+package com.sabpaisa.tokenization.cloud.connectors;
+
+/**
+ * A simulated connector whose operations can be slowed down on purpose
+ */
+public interface LatencySimulating {
+
+    SimulatedLatency getSimulatedLatency();
+
+    void setSimulatedLatency(SimulatedLatency latency);
+}
@@ -0,0 +1,833 @@
+package com.sabpaisa.tokenization.cloud.connectors;
+
+import com.sabpaisa.tokenization.cloud.CloudConnector;
+import com.sabpaisa.tokenization.cloud.CloudStorageException;
+import com.sabpaisa.tokenization.cloud.EncryptedTokenData;
+import com.sabpaisa.tokenization.cloud.TokenIndex;
+import com.sabpaisa.tokenization.cloud.TokenInventoryPage;
+import com.sabpaisa.tokenization.cloud.TokenMerkleTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Connector that keeps a provider's tokens and objects on local disk, in an
+ * append-only log split into segment files ({@code segment-<id>.log}).
+ *
+ * Every store or delete appends one record to the active segment:
+ * <pre>
+ *   4-byte CRC32C of the rest of the record
+ *   4-byte length of the rest of the record
+ *   1-byte type (token put, token delete, object put, object delete)
+ *   8-byte log sequence number
+ *   4-byte key length, UTF-8 key
+ *   value (encoded token or object bytes; empty for deletes)
+ * </pre>
+ * Writers return only once their record is fsynced. Whoever finds no sync running
+ * fsyncs everything appended so far, so concurrent writers share one fsync
+ * (group commit); the in-memory offset index is updated then, in log order.
+ * Reads look the key up in the index and read the value: from a sealed segment
+ * through a read-only memory mapping, mapped once, and from the active segment,
+ * which is still growing, with a positional read on its channel. Once the active
+ * segment reaches segment-bytes it is sealed and a new one is started.
+ *
+ * At startup the segments are replayed in order to rebuild the index. A record
+ * only replaces a key with a lower sequence number, so records copied forward by
+ * compaction, which keep their sequence number, never undo later writes. A torn
+ * record at the end of the last segment (a crash mid-write) is cut off. Sealed
+ * segments were fsynced before the next one was started, so a bad record in one
+ * of them is corruption, not a torn write: the store refuses to open rather than
+ * drop the records behind it.
+ *
+ * Compaction runs in the background and rewrites sealed segments whose dead share
+ * (overwritten values and deletes) reaches a threshold: live records, and deletes
+ * of keys that still have a put record in another segment, are appended again, and
+ * the old file is removed. Put records are counted per key, live or not, so a
+ * delete is dropped once the last put it hides is gone.
+ */
+public class LocalDiskConnector implements CloudConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDiskConnector.class);
+
+    private static final byte PUT_TOKEN = 1;
+    private static final byte DELETE_TOKEN = 2;
+    private static final byte PUT_OBJECT = 3;
+    private static final byte DELETE_OBJECT = 4;
+    private static final int HEADER_BYTES = 21;
+
+    private final String provider;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long compactionIntervalMs;
+    private final double compactionDeadRatio;
+
+    private final TokenIndex<Location> tokens = new TokenIndex<>();
+    private final ConcurrentSkipListMap<String, Location> objects = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // Appending: the active segment, the next sequence number and records waiting for fsync
+    private final Object appendLock = new Object();
+    private volatile Segment active;
+    private long nextSequence = 1;
+    private final ArrayDeque<Pending> unsynced = new ArrayDeque<>();
+
+    // Group commit: one writer at a time fsyncs for everyone
+    private final Object syncLock = new Object();
+    private boolean syncing;
+
+    // Highest deleted sequence per put type and key ("<put type><key>"), only while replaying
+    private Map<String, Long> replayedDeletes;
+
+    // Put records on disk per put type and key, live or not; a delete is kept while any remain elsewhere
+    private final ConcurrentHashMap<String, Integer> putRecords = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService compactor;
+    private volatile boolean initialized = false;
+
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder syncedRecords = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    public LocalDiskConnector(String provider, Path directory, long segmentBytes,
+                              long compactionIntervalMs, double compactionDeadRatio) {
+        this.provider = provider;
+        this.directory = directory;
+        // Sealed segments are mapped whole, so they must stay addressable by an int
+        this.segmentBytes = Math.max(4096, Math.min(segmentBytes, Integer.MAX_VALUE / 2));
+        this.compactionIntervalMs = compactionIntervalMs;
+        this.compactionDeadRatio = compactionDeadRatio;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-disk-compaction-" + provider.toLowerCase());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void initialize() {
+        logger.info("Initializing local disk connector for {} in {}", provider, directory);
+        try {
+            Files.createDirectories(directory);
+            recover();
+            active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+            initialized = true;
+            if (compactionIntervalMs > 0) {
+                compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMs, compactionIntervalMs,
+                    TimeUnit.MILLISECONDS);
+            }
+            logger.info("Local disk connector for {} recovered {} tokens and {} objects from {} segments",
+                provider, tokens.size(), objects.size(), segments.size());
+        } catch (IOException e) {
+            logger.error("Failed to open local disk store for {} in {}", provider, directory, e);
+        }
+    }
+
+    /**
+     * Stop compacting and close the segment files
+     */
+    public void shutdown() {
+        compactor.shutdownNow();
+        synchronized (appendLock) {
+            initialized = false;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.channel.force(false);
+                    segment.channel.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close {}: {}", segment.path, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void store(EncryptedTokenData data, Map<String, String> metadata) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "store", "Connector not initialized");
+        }
+
+        try {
+            data.setMetadata(metadata);
+            write(PUT_TOKEN, data.getTokenId(), encode(data));
+            logger.debug("Stored token {} on local disk for {}", data.getTokenId(), provider);
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "store", "Failed to store on local disk", e);
+        }
+    }
+
+    @Override
+    public EncryptedTokenData retrieve(String tokenId) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "retrieve", "Connector not initialized");
+        }
+
+        try {
+            byte[] value = readValue(PUT_TOKEN, tokenId, 0, -1);
+            return value != null ? decode(tokenId, value) : null;
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "retrieve", "Failed to read from local disk", e);
+        }
+    }
+
+    @Override
+    public void delete(String tokenId) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "delete", "Connector not initialized");
+        }
+
+        try {
+            write(DELETE_TOKEN, tokenId, new byte[0]);
+            logger.debug("Deleted token {} from local disk for {}", tokenId, provider);
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "delete", "Failed to delete from local disk", e);
+        }
+    }
+
+    @Override
+    public TokenInventoryPage listTokens(String prefix, String startAfter, int pageSize) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "inventory", "Connector not initialized");
+        }
+        return tokens.list(prefix, startAfter, pageSize);
+    }
+
+    @Override
+    public TokenInventoryPage listTokensInDigestRange(long fromDigest, long toDigest, String startAfter, int pageSize)
+            throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "inventory", "Connector not initialized");
+        }
+        return tokens.listByDigest(fromDigest, toDigest, startAfter, pageSize);
+    }
+
+    @Override
+    public void putObject(String key, byte[] content, Map<String, String> metadata) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "store", "Connector not initialized");
+        }
+
+        try {
+            write(PUT_OBJECT, key, content);
+            logger.debug("Stored object {} ({} bytes) on local disk for {}", key, content.length, provider);
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "store", "Failed to store object on local disk", e);
+        }
+    }
+
+    @Override
+    public byte[] readObjectRange(String key, long offset, int length) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "retrieve", "Connector not initialized");
+        }
+
+        try {
+            return readValue(PUT_OBJECT, key, offset, length);
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "retrieve", "Failed to read object from local disk", e);
+        }
+    }
+
+    @Override
+    public void deleteObject(String key) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "delete", "Connector not initialized");
+        }
+
+        try {
+            write(DELETE_OBJECT, key, new byte[0]);
+            logger.debug("Deleted object {} from local disk for {}", key, provider);
+
+        } catch (Exception e) {
+            throw new CloudStorageException(provider, "delete", "Failed to delete object from local disk", e);
+        }
+    }
+
+    @Override
+    public List<String> listObjects(String prefix) throws CloudStorageException {
+        if (!initialized) {
+            throw new CloudStorageException(provider, "inventory", "Connector not initialized");
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : objects.tailMap(prefix).keySet()) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public TokenMerkleTree getMerkleTree() {
+        return tokens.merkleTree();
+    }
+
+    @Override
+    public long getTokenCount() {
+        return tokens.size();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return initialized && Files.isWritable(directory);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long diskBytes = 0;
+        long deadBytes = 0;
+        for (Segment segment : segments.values()) {
+            diskBytes += segment.size;
+            deadBytes += segment.deadBytes.get();
+        }
+        long syncCount = syncs.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("tokenCount", tokens.size());
+        metrics.put("objectCount", objects.size());
+        metrics.put("storageType", "LocalDisk");
+        metrics.put("directory", directory.toString());
+        metrics.put("segments", segments.size());
+        metrics.put("diskBytes", diskBytes);
+        metrics.put("deadBytes", deadBytes);
+        metrics.put("syncs", syncCount);
+        metrics.put("recordsPerSync", syncCount == 0 ? 0.0 : (double) syncedRecords.sum() / syncCount);
+        metrics.put("compactions", compactions.sum());
+        metrics.put("reclaimedBytes", reclaimedBytes.sum());
+        metrics.put("initialized", initialized);
+        return metrics;
+    }
+
+    // Writing
+
+    private void write(byte type, String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length + value.length);
+        Pending pending;
+        synchronized (appendLock) {
+            record.putInt(0).putInt(record.capacity() - 8).put(type).putLong(nextSequence)
+                .putInt(keyBytes.length).put(keyBytes).put(value);
+            CRC32C crc = new CRC32C();
+            crc.update(record.array(), 4, record.capacity() - 4);
+            record.putInt(0, (int) crc.getValue());
+            record.flip();
+            pending = append(record, type, key, nextSequence, null);
+            nextSequence++;
+        }
+        awaitSync(pending);
+    }
+
+    // Appends a complete record to the active segment; callers hold the append lock
+    private Pending append(ByteBuffer record, byte type, String key, long sequence, Location expected) throws IOException {
+        if (!initialized) {
+            throw new ClosedChannelException();
+        }
+        int length = record.remaining();
+        if (active.size > 0 && active.size + length > segmentBytes) {
+            active.channel.force(false);
+            active.sealed = true;
+            active = createSegment(active.id + 1);
+        }
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size = offset + length;
+        int keyLength = key.getBytes(StandardCharsets.UTF_8).length;
+        Location location = new Location(active, offset, length, offset + HEADER_BYTES + keyLength,
+            length - HEADER_BYTES - keyLength, sequence);
+        Pending pending = new Pending(type, key, location, expected);
+        unsynced.add(pending);
+        return pending;
+    }
+
+    // Returns once the record is fsynced and indexed, fsyncing for everyone if no one else is
+    private void awaitSync(Pending pending) throws IOException {
+        synchronized (syncLock) {
+            while (syncing && !pending.done) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for fsync");
+                }
+            }
+            if (pending.done) {
+                if (pending.failure != null) {
+                    throw pending.failure;
+                }
+                return;
+            }
+            syncing = true;
+        }
+        List<Pending> batch;
+        Segment segment;
+        synchronized (appendLock) {
+            batch = new ArrayList<>(unsynced);
+            unsynced.clear();
+            segment = active;
+        }
+        IOException failure = null;
+        try {
+            // Segments rolled over since the last sync were fsynced when they were sealed
+            segment.channel.force(false);
+            for (Pending synced : batch) {
+                apply(synced.type, synced.key, synced.location, synced.expected);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            synchronized (syncLock) {
+                for (Pending synced : batch) {
+                    synced.failure = failure;
+                    synced.done = true;
+                }
+                syncing = false;
+                syncLock.notifyAll();
+            }
+        }
+        syncs.increment();
+        syncedRecords.add(batch.size());
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Index one record, in log order; expected is set for compaction copies of puts
+    private void apply(byte type, String key, Location location, Location expected) {
+        boolean isToken = type == PUT_TOKEN || type == DELETE_TOKEN;
+        Location current = isToken ? tokens.get(key) : objects.get(key);
+        if (type == PUT_TOKEN || type == PUT_OBJECT) {
+            putRecords.merge(type + key, 1, Integer::sum);
+            boolean stale = expected != null
+                ? current != expected
+                : current != null && current.sequence > location.sequence
+                    || replayedDeletes != null && replayedDeletes.getOrDefault(type + key, 0L) > location.sequence;
+            if (stale) {
+                markDead(location);
+                return;
+            }
+            markDead(isToken ? tokens.put(key, location) : objects.put(key, location));
+        } else {
+            // A delete's own record is dead from the start; compaction decides whether to keep it
+            markDead(location);
+            if (current != null && current.sequence < location.sequence) {
+                markDead(isToken ? tokens.remove(key) : objects.remove(key));
+            }
+            if (replayedDeletes != null) {
+                byte putType = type == DELETE_TOKEN ? PUT_TOKEN : PUT_OBJECT;
+                replayedDeletes.merge(putType + key, location.sequence, Math::max);
+            }
+        }
+    }
+
+    private void markDead(Location location) {
+        if (location != null) {
+            location.segment.deadBytes.addAndGet(location.length);
+        }
+    }
+
+    // Reading
+
+    // Bytes [offset, offset + length) of the value, its last length bytes for a negative offset,
+    // or all of it for a negative length; null if the key is absent
+    private byte[] readValue(byte type, String key, long offset, int length) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Location location = type == PUT_TOKEN ? tokens.get(key) : objects.get(key);
+            if (location == null) {
+                return null;
+            }
+            long from = length < 0 ? 0 : offset < 0 ? Math.max(0, location.valueLength - length) : offset;
+            if (from > location.valueLength) {
+                throw new IllegalArgumentException("Range starts past the end of " + key);
+            }
+            int size = (int) (length < 0 ? location.valueLength : Math.min(location.valueLength - from, length));
+            try {
+                byte[] value = new byte[size];
+                location.segment.slice(location.valueOffset + from, size).get(value);
+                return value;
+            } catch (ClosedChannelException e) {
+                // The segment was compacted away after the lookup; the key has moved
+                if (attempt == 2) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Recovery
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().matches("segment-\\d+\\.log"))
+                .sorted()
+                .toList();
+        }
+        replayedDeletes = new HashMap<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                String name = file.getFileName().toString();
+                long id = Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+                Segment segment = new Segment(id, file);
+                segment.sealed = i < files.size() - 1;
+                segments.put(id, segment);
+                replay(segment);
+            }
+        } catch (IOException e) {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            throw e;
+        } finally {
+            replayedDeletes = null;
+        }
+    }
+
+    private void replay(Segment segment) throws IOException {
+        long size = segment.channel.size();
+        segment.size = size;
+        long position = 0;
+        while (position < size) {
+            Record record = readRecord(segment, position, size);
+            if (record == null) {
+                if (segment.sealed) {
+                    throw new IOException("Corrupt record in sealed segment " + segment.path + " at " + position
+                        + " of " + size + " bytes");
+                }
+                logger.warn("Truncating {} at {} of {} bytes: torn record", segment.path, position, size);
+                segment.channel.truncate(position);
+                segment.size = position;
+                break;
+            }
+            nextSequence = Math.max(nextSequence, record.location.sequence + 1);
+            apply(record.type, record.key, record.location, null);
+            position += record.location.length;
+        }
+    }
+
+    // The record at position, or null if it is incomplete or fails its checksum
+    private Record readRecord(Segment segment, long position, long size) throws IOException {
+        if (size - position < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = segment.slice(position, 8);
+        int storedCrc = header.getInt();
+        int length = header.getInt();
+        if (length < HEADER_BYTES - 8 || length > size - position - 8) {
+            return null;
+        }
+        ByteBuffer body = segment.slice(position + 4, length + 4);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != storedCrc) {
+            return null;
+        }
+        body.getInt();
+        byte type = body.get();
+        long sequence = body.getLong();
+        int keyLength = body.getInt();
+        if (type < PUT_TOKEN || type > DELETE_OBJECT || keyLength < 0 || keyLength > body.remaining()) {
+            return null;
+        }
+        byte[] key = new byte[keyLength];
+        body.get(key);
+        int recordLength = length + 8;
+        Location location = new Location(segment, position, recordLength, position + HEADER_BYTES + keyLength,
+            recordLength - HEADER_BYTES - keyLength, sequence);
+        return new Record(type, new String(key, StandardCharsets.UTF_8), location);
+    }
+
+    // Compaction
+
+    private void compact() {
+        try {
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == active || segment.size == 0
+                        || (double) segment.deadBytes.get() / segment.size < compactionDeadRatio) {
+                    continue;
+                }
+                long reclaimed = rewrite(segment);
+                compactions.increment();
+                reclaimedBytes.add(reclaimed);
+                logger.info("Compacted {} segment {}: reclaimed {} of {} bytes",
+                    provider, segment.id, reclaimed, segment.size);
+            }
+        } catch (Exception e) {
+            logger.error("Local disk compaction failed for {}", provider, e);
+        }
+    }
+
+    // Copies the segment's live records forward and deletes it; returns the bytes freed
+    private long rewrite(Segment segment) throws IOException {
+        // Put records of this segment per put type and key, all removed with it
+        Map<String, Integer> segmentPuts = new HashMap<>();
+        for (long position = 0; position < segment.size; ) {
+            Record record = readRecord(segment, position, segment.size);
+            if (record == null) {
+                break;
+            }
+            position += record.location.length;
+            if (record.type == PUT_TOKEN || record.type == PUT_OBJECT) {
+                segmentPuts.merge(record.type + record.key, 1, Integer::sum);
+            }
+        }
+
+        long copied = 0;
+        Pending last = null;
+        long position = 0;
+        while (position < segment.size) {
+            Record record = readRecord(segment, position, segment.size);
+            if (record == null) {
+                break;
+            }
+            position += record.location.length;
+            boolean isToken = record.type == PUT_TOKEN || record.type == DELETE_TOKEN;
+            Location current = isToken ? tokens.get(record.key) : objects.get(record.key);
+            boolean isPut = record.type == PUT_TOKEN || record.type == PUT_OBJECT;
+            // A delete is still needed while another segment holds a put it may hide
+            String putKey = (isToken ? PUT_TOKEN : PUT_OBJECT) + record.key;
+            boolean keep = isPut
+                ? current != null && current.segment == segment && current.offset == record.location.offset
+                : current == null && putRecords.getOrDefault(putKey, 0) > segmentPuts.getOrDefault(putKey, 0);
+            if (!keep) {
+                continue;
+            }
+            byte[] bytes = new byte[record.location.length];
+            segment.slice(record.location.offset, bytes.length).get(bytes);
+            synchronized (appendLock) {
+                last = append(ByteBuffer.wrap(bytes), record.type, record.key, record.location.sequence,
+                    isPut ? current : null);
+            }
+            copied += bytes.length;
+        }
+        if (last != null) {
+            awaitSync(last);
+        }
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        segmentPuts.forEach((putKey, count) ->
+            putRecords.computeIfPresent(putKey, (k, total) -> total > count ? total - count : null));
+        return segment.size - copied;
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Segment segment = new Segment(id, directory.resolve(String.format("segment-%020d.log", id)));
+        segments.put(id, segment);
+        syncDirectory();
+        return segment;
+    }
+
+    // Makes a new segment file's directory entry durable
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot fsync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    // Token encoding
+
+    private static byte[] encode(EncryptedTokenData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, data.getEncryptedData());
+        writeString(out, data.getMerchantId());
+        writeString(out, data.getCreatedAt() != null ? data.getCreatedAt().toString() : null);
+        writeString(out, data.getChecksum());
+        out.writeInt(data.getIv() != null ? data.getIv().length : -1);
+        if (data.getIv() != null) {
+            out.write(data.getIv());
+        }
+        writeString(out, data.getAlgorithm());
+        writeString(out, data.getTimestamp() != null ? data.getTimestamp().toString() : null);
+        Map<String, String> metadata = data.getMetadata();
+        out.writeInt(metadata != null ? metadata.size() : -1);
+        if (metadata != null) {
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EncryptedTokenData decode(String tokenId, byte[] value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        EncryptedTokenData data = new EncryptedTokenData();
+        data.setTokenId(tokenId);
+        data.setEncryptedData(readString(in));
+        data.setMerchantId(readString(in));
+        String createdAt = readString(in);
+        data.setCreatedAt(createdAt != null ? LocalDateTime.parse(createdAt) : null);
+        data.setChecksum(readString(in));
+        int ivLength = in.readInt();
+        if (ivLength >= 0) {
+            byte[] iv = new byte[ivLength];
+            in.readFully(iv);
+            data.setIv(iv);
+        }
+        data.setAlgorithm(readString(in));
+        String timestamp = readString(in);
+        data.setTimestamp(timestamp != null ? LocalDateTime.parse(timestamp) : null);
+        int metadataCount = in.readInt();
+        if (metadataCount >= 0) {
+            Map<String, String> metadata = new HashMap<>();
+            for (int i = 0; i < metadataCount; i++) {
+                metadata.put(readString(in), readString(in));
+            }
+            data.setMetadata(metadata);
+        }
+        return data;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One segment file; once sealed it no longer grows and reads go through a single
+     * read-only mapping, until then they read the channel directly
+     */
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        final AtomicLong deadBytes = new AtomicLong();
+        volatile long size;
+        volatile boolean sealed;
+        private volatile MappedByteBuffer mapped;
+
+        Segment(long id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        }
+
+        ByteBuffer slice(long offset, int length) throws IOException {
+            if (!sealed) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new EOFException("Read past the end of " + path);
+                    }
+                }
+                return buffer.flip();
+            }
+            MappedByteBuffer buffer = mapped;
+            if (buffer == null) {
+                buffer = map();
+            }
+            return buffer.slice((int) offset, length);
+        }
+
+        private synchronized MappedByteBuffer map() throws IOException {
+            if (mapped == null) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            return mapped;
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final long valueOffset;
+        final int valueLength;
+        final long sequence;
+
+        Location(Segment segment, long offset, int length, long valueOffset, int valueLength, long sequence) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Record {
+        final byte type;
+        final String key;
+        final Location location;
+
+        Record(byte type, String key, Location location) {
+            this.type = type;
+            this.key = key;
+            this.location = location;
+        }
+    }
+
+    private static final class Pending {
+        final byte type;
+        final String key;
+        final Location location;
+        final Location expected;
+        boolean done;
+        IOException failure;
+
+        Pending(byte type, String key, Location location, Location expected) {
+            this.type = type;
+            this.key = key;
+            this.location = location;
+            this.expected = expected;
+        }
+    }
+}
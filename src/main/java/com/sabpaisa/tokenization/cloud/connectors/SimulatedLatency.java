@@ -0,0 +1,54 @@
+package com.sabpaisa.tokenization.cloud.connectors;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Artificial delay added to every operation of a simulated connector, so read
+ * hedging and failover can be exercised and measured without real clouds.
+ * Each call waits {@code baseMs}, or {@code tailMs} with probability
+ * {@code tailProbability}.
+ */
+public final class SimulatedLatency {
+
+    public static final SimulatedLatency NONE = new SimulatedLatency(0, 0, 0.0);
+
+    private final long baseMs;
+    private final long tailMs;
+    private final double tailProbability;
+
+    public SimulatedLatency(long baseMs, long tailMs, double tailProbability) {
+        if (baseMs < 0 || tailMs < 0 || tailProbability < 0.0 || tailProbability > 1.0) {
+            throw new IllegalArgumentException("Latencies must be >= 0 and the tail probability within [0, 1]");
+        }
+        this.baseMs = baseMs;
+        this.tailMs = tailMs;
+        this.tailProbability = tailProbability;
+    }
+
+    public long getBaseMs() {
+        return baseMs;
+    }
+
+    public long getTailMs() {
+        return tailMs;
+    }
+
+    public double getTailProbability() {
+        return tailProbability;
+    }
+
+    /**
+     * Wait for one operation; an interrupt (e.g. a cancelled hedge) ends the wait early
+     */
+    void pause() {
+        long delay = tailProbability > 0.0 && ThreadLocalRandom.current().nextDouble() < tailProbability ? tailMs : baseMs;
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,17 +1,44 @@
 package com.sabpaisa.tokenization.controller;
 
 import com.sabpaisa.tokenization.dto.ApiResponse;
+import com.sabpaisa.tokenization.dto.FraudCheckRequest;
+import com.sabpaisa.tokenization.dto.FraudEventFilter;
+import com.sabpaisa.tokenization.dto.RuleReplayRequest;
+import com.sabpaisa.tokenization.dto.ShadowEvaluationRequest;
 import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
 import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+import com.sabpaisa.tokenization.fraud.ClusterVelocityStore;
+import com.sabpaisa.tokenization.fraud.DeviceFingerprintBlacklist;
+import com.sabpaisa.tokenization.fraud.FraudEnrichmentExecutor;
+import com.sabpaisa.tokenization.fraud.FraudEventArchive;
+import com.sabpaisa.tokenization.fraud.FraudEventBroadcaster;
+import com.sabpaisa.tokenization.fraud.FraudEventRetentionService;
+import com.sabpaisa.tokenization.fraud.FraudEventRollupService;
+import com.sabpaisa.tokenization.fraud.FraudModelRegistry;
+import com.sabpaisa.tokenization.fraud.FraudRuleReplayService;
+import com.sabpaisa.tokenization.fraud.ShadowRuleEvaluator;
 import com.sabpaisa.tokenization.service.FraudDetectionService;
 import com.sabpaisa.tokenization.repository.FraudDetectionEventRepository;
 import com.sabpaisa.tokenization.repository.FraudDetectionRuleRepository;
+import com.sabpaisa.tokenization.repository.FraudEventSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,6 +47,11 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001", "http://localhost:3002", "http://localhost:3003"})
 public class FraudDetectionController {
     
+    private static final int MAX_EVENTS_PAGE_SIZE = 200;
+    
+    @Value("${app.fraud-detection.batch.max-size:500}")
+    private int maxBatchSize;
+    
     @Autowired
     private FraudDetectionService fraudDetectionService;
     
@@ -29,6 +61,36 @@ public class FraudDetectionController {
     @Autowired
     private FraudDetectionRuleRepository ruleRepository;
     
+    @Autowired
+    private DeviceFingerprintBlacklist deviceBlacklist;
+    
+    @Autowired
+    private FraudEnrichmentExecutor enrichmentExecutor;
+    
+    @Autowired
+    private FraudModelRegistry modelRegistry;
+    
+    @Autowired
+    private FraudEventRollupService rollupService;
+    
+    @Autowired
+    private FraudEventBroadcaster liveBroadcaster;
+    
+    @Autowired
+    private FraudRuleReplayService replayService;
+    
+    @Autowired
+    private ShadowRuleEvaluator shadowEvaluator;
+    
+    @Autowired
+    private ClusterVelocityStore velocityStore;
+    
+    @Autowired
+    private FraudEventArchive eventArchive;
+    
+    @Autowired
+    private FraudEventRetentionService retentionService;
+    
     // Dashboard endpoints
     @GetMapping("/dashboard/stats")
     public ResponseEntity<Map<String, Object>> getDashboardStats(
@@ -36,63 +98,119 @@ public class FraudDetectionController {
         
         LocalDateTime since = LocalDateTime.now().minusHours(hoursBack);
         
+        // Aggregates come from the hourly rollups, not the events table
+        Map<String, Object> window = rollupService.getWindowSummary(since);
+        
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalEvents", eventRepository.count());
-        stats.put("highRiskEvents", eventRepository.countHighRiskEvents(since));
-        stats.put("averageRiskScore", eventRepository.getAverageRiskScore(since));
+        stats.put("totalEvents", rollupService.getTotalEvents());
+        stats.put("highRiskEvents", window.get("highRiskEvents"));
+        stats.put("averageRiskScore", window.get("averageRiskScore"));
+        stats.put("riskScoreHistogram", window.get("riskScoreHistogram"));
         stats.put("activeRules", ruleRepository.countActiveRules());
-        stats.put("topRiskCountries", eventRepository.getTopRiskCountries(since));
-        stats.put("hourlyDistribution", eventRepository.getHighRiskHourlyDistribution(since));
+        stats.put("topRiskCountries", rollupService.getTopBlockedCountries(since));
+        stats.put("hourlyDistribution", rollupService.getHighRiskHourlyDistribution(since));
         
         return ResponseEntity.ok(stats);
     }
     
+    // Batch scoring for bulk flows; results are returned in request order
+    @PostMapping("/evaluate:batch")
+    public ResponseEntity<Map<String, Object>> evaluateBatch(@RequestBody List<FraudCheckRequest> requests) {
+        Map<String, Object> response = new HashMap<>();
+        
+        String error = null;
+        if (requests.size() > maxBatchSize) {
+            error = "Batch size exceeds the maximum of " + maxBatchSize;
+        } else if (requests.stream().anyMatch(r -> r.getMerchantId() == null || r.getCardNumber() == null)) {
+            error = "Every request needs a merchantId and cardNumber";
+        }
+        if (error != null) {
+            response.put("success", false);
+            response.put("error", error);
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        long start = System.currentTimeMillis();
+        List<FraudDetectionService.FraudDetectionResult> results = fraudDetectionService.evaluateBatch(requests);
+        
+        response.put("results", results);
+        response.put("count", results.size());
+        response.put("elapsedMs", System.currentTimeMillis() - start);
+        return ResponseEntity.ok(response);
+    }
+    
     // Event management endpoints
     @GetMapping("/events")
     public ResponseEntity<Map<String, Object>> getEvents(
             @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String mode,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String merchantId,
             @RequestParam(required = false) String riskLevel,
             @RequestParam(required = false) String decision,
+            @RequestParam(required = false) Integer minRiskScore,
+            @RequestParam(required = false) Integer maxRiskScore,
+            @RequestParam(required = false) Boolean reviewed,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
         
-        List<FraudDetectionEvent> events;
+        FraudEventFilter filter = new FraudEventFilter();
+        filter.setMerchantId(merchantId);
+        filter.setRiskLevel(riskLevel);
+        filter.setDecision(decision);
+        filter.setMinRiskScore(minRiskScore);
+        filter.setMaxRiskScore(maxRiskScore);
+        filter.setReviewed(reviewed);
+        filter.setStartDate(startDate);
+        filter.setEndDate(endDate);
+        
+        size = Math.max(1, Math.min(size, MAX_EVENTS_PAGE_SIZE));
+        Specification<FraudDetectionEvent> spec = FraudEventSpecifications.matching(filter);
+        Map<String, Object> response = new HashMap<>();
         
-        if (startDate != null && endDate != null) {
-            events = eventRepository.findByDateRange(startDate, endDate);
-        } else if (merchantId != null) {
-            events = eventRepository.findByMerchantId(merchantId);
-        } else if (riskLevel != null) {
-            events = eventRepository.findByRiskLevel(riskLevel);
-        } else if (decision != null) {
-            events = eventRepository.findByDecision(decision);
-        } else {
-            events = eventRepository.findAll();
+        // Offset paging stays the default for existing clients; it needs a count query and deep pages scan.
+        // Keyset paging is used once a cursor is passed, or from the first page with mode=keyset.
+        boolean keyset = (cursor != null && !cursor.isEmpty()) || "keyset".equalsIgnoreCase(mode);
+        if (!keyset) {
+            Page<FraudDetectionEvent> result = eventRepository.findAll(spec,
+                PageRequest.of(Math.max(page, 0), size, Sort.by(Sort.Direction.DESC, "createdAt", "id")));
+            response.put("events", result.getContent());
+            response.put("totalElements", result.getTotalElements());
+            response.put("totalPages", result.getTotalPages());
+            response.put("currentPage", result.getNumber());
+            return ResponseEntity.ok(response);
         }
         
-        // Pagination
-        int start = page * size;
-        int end = Math.min(start + size, events.size());
-        List<FraudDetectionEvent> paginatedEvents = events.subList(start, end);
+        // Keyset paging: continue strictly after the last event of the previous page
+        if (cursor != null && !cursor.isEmpty()) {
+            Object[] position = decodeEventCursor(cursor);
+            if (position == null) {
+                response.put("success", false);
+                response.put("error", "Invalid cursor");
+                return ResponseEntity.badRequest().body(response);
+            }
+            spec = spec.and(FraudEventSpecifications.before((LocalDateTime) position[0], (Long) position[1]));
+        }
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("events", paginatedEvents);
-        response.put("totalElements", events.size());
-        response.put("totalPages", (int) Math.ceil((double) events.size() / size));
-        response.put("currentPage", page);
+        // One extra row tells whether another page exists
+        List<FraudDetectionEvent> events = eventRepository.findNewest(spec, size + 1);
+        boolean hasMore = events.size() > size;
+        if (hasMore) {
+            events = events.subList(0, size);
+        }
+        
+        response.put("events", events);
+        response.put("hasMore", hasMore);
+        response.put("nextCursor", hasMore ? encodeEventCursor(events.get(events.size() - 1)) : null);
         
         return ResponseEntity.ok(response);
     }
     
     @GetMapping("/events/{eventId}")
     public ResponseEntity<FraudDetectionEvent> getEvent(@PathVariable String eventId) {
-        Optional<FraudDetectionEvent> event = eventRepository.findAll().stream()
-            .filter(e -> e.getEventId().equals(eventId))
-            .findFirst();
-        
-        return event.map(ResponseEntity::ok)
+        return eventRepository.findByEventId(eventId)
+            .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
     
@@ -101,9 +219,7 @@ public class FraudDetectionController {
             @PathVariable String eventId,
             @RequestBody Map<String, Object> reviewData) {
         
-        Optional<FraudDetectionEvent> eventOpt = eventRepository.findAll().stream()
-            .filter(e -> e.getEventId().equals(eventId))
-            .findFirst();
+        Optional<FraudDetectionEvent> eventOpt = eventRepository.findByEventId(eventId);
         
         if (eventOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -116,6 +232,7 @@ public class FraudDetectionController {
         event.setIsFalsePositive((Boolean) reviewData.getOrDefault("isFalsePositive", false));
         
         eventRepository.save(event);
+        deviceBlacklist.onEventReviewed(event);
         
         // Update rule effectiveness if marked as false positive
         if (Boolean.TRUE.equals(event.getIsFalsePositive())) {
@@ -199,6 +316,159 @@ public class FraudDetectionController {
             .orElse(ResponseEntity.notFound().build());
     }
     
+    // Replay candidate rules against historical events before activating them
+    @PostMapping("/rules/replay")
+    public ResponseEntity<Map<String, Object>> replayRules(@RequestBody RuleReplayRequest request) {
+        try {
+            return ResponseEntity.ok(replayService.replay(request));
+        } catch (IllegalStateException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Shadow evaluation of candidate rules on live traffic
+    @PutMapping("/rules/shadow")
+    public ResponseEntity<ApiResponse> startShadowEvaluation(@RequestBody ShadowEvaluationRequest request) {
+        try {
+            Map<String, Object> report = shadowEvaluator.begin(
+                request.getCandidateRules(), request.isMergeWithActiveRules(), request.getSampleRate());
+            return ResponseEntity.ok(ApiResponse.success("Shadow evaluation started", report));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/rules/shadow")
+    public ResponseEntity<Map<String, Object>> getShadowReport() {
+        return ResponseEntity.ok(shadowEvaluator.getReport());
+    }
+    
+    @DeleteMapping("/rules/shadow")
+    public ResponseEntity<ApiResponse> stopShadowEvaluation() {
+        return ResponseEntity.ok(ApiResponse.success("Shadow evaluation stopped", shadowEvaluator.end()));
+    }
+    
+    // Archived fraud events (read-only) and retention
+    @GetMapping("/archive/segments")
+    public ResponseEntity<Map<String, Object>> getArchiveSegments() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("segments", eventArchive.listSegments());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            response.put("success", false);
+            response.put("error", "Cannot read archive: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/archive/events")
+    public ResponseEntity<Map<String, Object>> getArchivedEvents(
+            @RequestParam String month,
+            @RequestParam(required = false) String eventId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String merchantId,
+            @RequestParam(required = false) String riskLevel,
+            @RequestParam(required = false) String decision,
+            @RequestParam(required = false) Integer minRiskScore,
+            @RequestParam(required = false) Integer maxRiskScore) {
+        
+        Map<String, Object> response = new HashMap<>();
+        FraudEventFilter filter = new FraudEventFilter();
+        filter.setMerchantId(merchantId);
+        filter.setRiskLevel(riskLevel);
+        filter.setDecision(decision);
+        filter.setMinRiskScore(minRiskScore);
+        filter.setMaxRiskScore(maxRiskScore);
+        size = Math.max(1, Math.min(size, MAX_EVENTS_PAGE_SIZE));
+        
+        try {
+            List<FraudDetectionEvent> events = eventArchive.query(
+                YearMonth.parse(month), filter, eventId, Math.max(offset, 0), size);
+            boolean hasMore = events.size() > size;
+            response.put("events", hasMore ? events.subList(0, size) : events);
+            response.put("hasMore", hasMore);
+            return ResponseEntity.ok(response);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", e instanceof DateTimeParseException ? "month must be yyyy-MM" : e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            response.put("success", false);
+            response.put("error", "Cannot read archive: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @PostMapping("/archive/retention/run")
+    public ResponseEntity<Map<String, Object>> runRetention() {
+        try {
+            return ResponseEntity.ok(retentionService.run());
+        } catch (IllegalStateException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Device blacklist endpoints
+    @GetMapping("/device-blacklist/stats")
+    public ResponseEntity<Map<String, Object>> getDeviceBlacklistStats() {
+        return ResponseEntity.ok(deviceBlacklist.getStatistics());
+    }
+    
+    @PostMapping("/device-blacklist/rebuild")
+    public ResponseEntity<ApiResponse> rebuildDeviceBlacklist() {
+        deviceBlacklist.rebuildFromDatabase();
+        return ResponseEntity.ok(ApiResponse.success("Device blacklist rebuilt", deviceBlacklist.getStatistics()));
+    }
+    
+    // Per-stage evaluation latency and skipped stages
+    @GetMapping("/metrics/latency")
+    public ResponseEntity<Map<String, Object>> getLatencyMetrics() {
+        return ResponseEntity.ok(enrichmentExecutor.getStatistics());
+    }
+    
+    // Shared velocity counter flushes, refreshes and failures
+    @GetMapping("/metrics/velocity")
+    public ResponseEntity<Map<String, Object>> getVelocityMetrics() {
+        return ResponseEntity.ok(velocityStore.getStatistics());
+    }
+    
+    // ML model endpoints
+    @GetMapping("/ml/model")
+    public ResponseEntity<Map<String, Object>> getModelInfo() {
+        return ResponseEntity.ok(modelRegistry.getStatistics());
+    }
+    
+    @PostMapping("/ml/model/reload")
+    public ResponseEntity<ApiResponse> reloadModel() {
+        if (!modelRegistry.reload()) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(
+                "Model reload failed: " + modelRegistry.getStatistics().get("lastError")));
+        }
+        return ResponseEntity.ok(ApiResponse.success("Model reloaded", modelRegistry.getStatistics()));
+    }
+    
     // Analytics endpoints
     @GetMapping("/analytics/rule-effectiveness")
     public ResponseEntity<List<Map<String, Object>>> getRuleEffectiveness() {
@@ -226,30 +496,7 @@ public class FraudDetectionController {
             @RequestParam(defaultValue = "7") int days) {
         
         Map<String, Object> trends = new HashMap<>();
-        List<Map<String, Object>> dailyTrends = new ArrayList<>();
-        
-        for (int i = 0; i < days; i++) {
-            LocalDateTime dayStart = LocalDateTime.now().minusDays(i).withHour(0).withMinute(0);
-            LocalDateTime dayEnd = dayStart.plusDays(1);
-            
-            List<FraudDetectionEvent> dayEvents = eventRepository.findByDateRange(dayStart, dayEnd);
-            
-            Map<String, Object> dayData = new HashMap<>();
-            dayData.put("date", dayStart.toLocalDate());
-            dayData.put("totalEvents", dayEvents.size());
-            dayData.put("highRiskEvents", dayEvents.stream()
-                .filter(e -> "HIGH".equals(e.getRiskLevel()) || "CRITICAL".equals(e.getRiskLevel()))
-                .count());
-            dayData.put("blockedEvents", dayEvents.stream()
-                .filter(e -> "BLOCK".equals(e.getDecision()))
-                .count());
-            dayData.put("averageRiskScore", dayEvents.stream()
-                .mapToInt(FraudDetectionEvent::getRiskScore)
-                .average()
-                .orElse(0.0));
-            
-            dailyTrends.add(dayData);
-        }
+        List<Map<String, Object>> dailyTrends = rollupService.getDailyTrends(days);
         
         trends.put("dailyTrends", dailyTrends);
         trends.put("period", days + " days");
@@ -259,7 +506,7 @@ public class FraudDetectionController {
     
     @GetMapping("/analytics/geo-analysis")
     public ResponseEntity<List<Map<String, Object>>> getGeoAnalysis() {
-        List<Object[]> countryData = eventRepository.getTopRiskCountries(LocalDateTime.now().minusDays(30));
+        List<Object[]> countryData = rollupService.getTopBlockedCountries(LocalDateTime.now().minusDays(30));
         
         List<Map<String, Object>> geoAnalysis = countryData.stream()
             .map(data -> {
@@ -273,19 +520,65 @@ public class FraudDetectionController {
         return ResponseEntity.ok(geoAnalysis);
     }
     
-    // Real-time monitoring endpoint (WebSocket would be better in production)
+    @PostMapping("/analytics/rollups/rebuild")
+    public ResponseEntity<ApiResponse> rebuildRollups() {
+        int events = rollupService.rebuildFromEvents();
+        return ResponseEntity.ok(ApiResponse.success("Rebuilt analytics rollups from " + events + " events", null));
+    }
+    
+    @PostMapping("/analytics/rollups/compact")
+    public ResponseEntity<ApiResponse> compactRollups() {
+        int rows = rollupService.compactHourlyRollups();
+        return ResponseEntity.ok(ApiResponse.success("Compacted " + rows + " hourly rollups", null));
+    }
+    
+    // Real-time monitoring endpoints
     @GetMapping("/monitor/live")
     public ResponseEntity<List<FraudDetectionEvent>> getLiveEvents(
             @RequestParam(defaultValue = "5") int minutes) {
         
-        LocalDateTime since = LocalDateTime.now().minusMinutes(minutes);
-        List<FraudDetectionEvent> recentEvents = eventRepository.findAll().stream()
-            .filter(e -> e.getCreatedAt().isAfter(since))
-            .sorted(Comparator.comparing(FraudDetectionEvent::getCreatedAt).reversed())
-            .limit(100)
-            .collect(Collectors.toList());
+        FraudEventFilter filter = new FraudEventFilter();
+        filter.setStartDate(LocalDateTime.now().minusMinutes(minutes));
         
-        return ResponseEntity.ok(recentEvents);
+        return ResponseEntity.ok(eventRepository.findNewest(FraudEventSpecifications.matching(filter), 100));
+    }
+    
+    // Pushes decisions as they are made; prefer this over polling /monitor/live
+    @GetMapping(value = "/monitor/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLiveEvents(
+            @RequestParam(required = false) List<String> merchantId,
+            @RequestParam(required = false) List<String> decision,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        
+        SseEmitter emitter = liveBroadcaster.subscribe(merchantId, decision, lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+    
+    @GetMapping("/monitor/stream/stats")
+    public ResponseEntity<Map<String, Object>> getLiveStreamStats() {
+        return ResponseEntity.ok(liveBroadcaster.getStatistics());
+    }
+    
+    // Opaque page cursor: base64url of "<createdAt>|<id>" for the last event returned
+    private String encodeEventCursor(FraudDetectionEvent event) {
+        String position = event.getCreatedAt() + "|" + event.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private Object[] decodeEventCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return new Object[] {
+                LocalDateTime.parse(position.substring(0, separator)),
+                Long.parseLong(position.substring(separator + 1))
+            };
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
     
     private void updateRuleEffectiveness(List<String> triggeredRules) {
@@ -1,8 +1,16 @@
 package com.sabpaisa.tokenization.controller;
 
+import com.sabpaisa.tokenization.cloud.AdaptiveProviderSelector;
+import com.sabpaisa.tokenization.cloud.CloudConnector;
 import com.sabpaisa.tokenization.cloud.CloudDataStructures.*;
+import com.sabpaisa.tokenization.cloud.CloudHealthMonitor;
 import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService;
 import com.sabpaisa.tokenization.cloud.MultiCloudReplicationService.CloudProvider;
+import com.sabpaisa.tokenization.cloud.ProviderGuards;
+import com.sabpaisa.tokenization.cloud.ReplicationOutboxRelay;
+import com.sabpaisa.tokenization.cloud.ReplicationStatusTracker;
+import com.sabpaisa.tokenization.cloud.TokenInventoryPage;
+import com.sabpaisa.tokenization.cloud.connectors.SimulatedLatency;
 import com.sabpaisa.tokenization.dto.ApiResponse;
 import com.sabpaisa.tokenization.entity.Token;
 import com.sabpaisa.tokenization.entity.Merchant;
@@ -32,6 +40,21 @@ public class MultiCloudController {
     @Autowired
     private MultiCloudReplicationService multiCloudService;
     
+    @Autowired
+    private ReplicationOutboxRelay outboxRelay;
+    
+    @Autowired
+    private AdaptiveProviderSelector providerSelector;
+    
+    @Autowired
+    private CloudHealthMonitor healthMonitor;
+    
+    @Autowired
+    private ReplicationStatusTracker statusTracker;
+    
+    @Autowired
+    private ProviderGuards providerGuards;
+    
     @Autowired(required = false)
     private TokenRepository tokenRepository;
     
@@ -52,6 +75,9 @@ public class MultiCloudController {
             response.put("healthStatus", stats.getHealthStatus());
             response.put("providers", stats.getProviderStatistics());
             response.put("recentReplications", stats.getRecentReplications());
+            response.put("totalReplications", stats.getTotalReplications());
+            response.put("overallSuccessRate", stats.getOverallSuccessRate());
+            response.put("averagePayloadBytes", Math.round(stats.getAveragePayloadBytes() * 10.0) / 10.0);
             
             // Add cloud provider details
             Map<String, String> providerInfo = new HashMap<>();
@@ -69,6 +95,36 @@ public class MultiCloudController {
         }
     }
     
+    /**
+     * Replication outbox backlog (pending entries and lag) and delivery counters per provider
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Object>> getOutboxStatistics() {
+        return ResponseEntity.ok(outboxRelay.getStatistics());
+    }
+    
+    /**
+     * Replication outcome counters per provider and per status
+     */
+    @GetMapping("/replications")
+    public ResponseEntity<Map<String, Object>> getReplicationOutcomes() {
+        return ResponseEntity.ok(statusTracker.getStatistics());
+    }
+    
+    /**
+     * Latest replications that reached fewer providers than the replication threshold
+     */
+    @GetMapping("/replications/failures")
+    public ResponseEntity<ApiResponse> getReplicationFailures(@RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Replication failure log", statusTracker.getFailureLog(limit)));
+        } catch (Exception e) {
+            logger.error("Failed to read replication failure log", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ApiResponse.error("Failed to read failure log: " + e.getMessage()));
+        }
+    }
+    
     /**
      * Manually trigger token replication
      */
@@ -127,7 +183,14 @@ public class MultiCloudController {
             data.put("tokenId", tokenId);
             data.put("sourceProvider", result.getSourceProvider());
             data.put("attemptCount", result.getAttemptCount());
+            data.put("hedged", result.isHedged());
             data.put("retrieved", true);
+            Token token = result.getToken();
+            data.put("tokenValue", token.getTokenValue());
+            data.put("maskedPan", token.getMaskedPan());
+            data.put("status", token.getStatus());
+            data.put("merchantId", token.getMerchant() != null ? token.getMerchant().getMerchantId() : null);
+            data.put("expiresAt", token.getExpiresAt());
             
             return ResponseEntity.ok(ApiResponse.success(
                 "Token retrieved from " + result.getSourceProvider(),
@@ -218,6 +281,7 @@ public class MultiCloudController {
             metrics.put("averageLatency", providerStats.getAverageLatency() + "ms");
             metrics.put("successRate", providerStats.getSuccessRate() + "%");
             metrics.put("lastSync", providerStats.getLastSync());
+            metrics.put("connector", multiCloudService.getConnectorMetrics(cloudProvider));
             
             return ResponseEntity.ok(metrics);
             
@@ -231,6 +295,102 @@ public class MultiCloudController {
         }
     }
     
+    /**
+     * Read latency per provider and hedged read counters
+     */
+    @GetMapping("/reads")
+    public ResponseEntity<Map<String, Object>> getReadStatistics() {
+        return ResponseEntity.ok(multiCloudService.getReadStatistics());
+    }
+    
+    /**
+     * Rolling latency percentiles and SLO burn rates per provider and operation
+     */
+    @GetMapping("/latency")
+    public ResponseEntity<Map<String, Object>> getLatencyStatistics() {
+        return ResponseEntity.ok(healthMonitor.getLatencyStatistics());
+    }
+    
+    /**
+     * Load-based routing state per provider: EWMA latency, error rate and calls in flight
+     */
+    @GetMapping("/routing")
+    public ResponseEntity<Map<String, Object>> getRoutingStatistics() {
+        return ResponseEntity.ok(providerSelector.getStatistics());
+    }
+    
+    /**
+     * Circuit breaker state, adaptive concurrency limit and bulkhead usage per provider
+     */
+    @GetMapping("/guards")
+    public ResponseEntity<Map<String, Object>> getGuardStatistics() {
+        return ResponseEntity.ok(providerGuards.getStatistics());
+    }
+    
+    /**
+     * Add artificial latency to a simulated provider
+     */
+    @PutMapping("/simulated-latency/{provider}")
+    public ResponseEntity<Map<String, Object>> setSimulatedLatency(
+            @PathVariable String provider,
+            @RequestParam(defaultValue = "0") long baseMs,
+            @RequestParam(defaultValue = "0") long tailMs,
+            @RequestParam(defaultValue = "0") double tailProbability) {
+        try {
+            CloudProvider cloudProvider = CloudProvider.valueOf(provider.toUpperCase());
+            multiCloudService.setSimulatedLatency(cloudProvider, new SimulatedLatency(baseMs, tailMs, tailProbability));
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("provider", cloudProvider.name());
+            response.put("baseMs", baseMs);
+            response.put("tailMs", tailMs);
+            response.put("tailProbability", tailProbability);
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Page through a provider's token inventory in token ID order
+     */
+    @GetMapping("/inventory/{provider}")
+    public ResponseEntity<Map<String, Object>> getInventory(
+            @PathVariable String provider,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String startAfter,
+            @RequestParam(defaultValue = "100") int pageSize) {
+        CloudProvider cloudProvider;
+        try {
+            cloudProvider = CloudProvider.valueOf(provider.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "Invalid provider: " + provider));
+        }
+        if (pageSize < 1 || pageSize > CloudConnector.MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("error", "pageSize must be between 1 and " + CloudConnector.MAX_PAGE_SIZE));
+        }
+        
+        try {
+            TokenInventoryPage page = multiCloudService.listInventory(cloudProvider, prefix, startAfter, pageSize);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("provider", cloudProvider.name());
+            response.put("tokenIds", page.getTokenIds());
+            response.put("nextStartAfter", page.getNextStartAfter());
+            response.put("lastPage", page.isLastPage());
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Failed to list inventory of {}", cloudProvider, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to list inventory: " + e.getMessage()));
+        }
+    }
+    
     /**
      * Test cloud connectivity
      */
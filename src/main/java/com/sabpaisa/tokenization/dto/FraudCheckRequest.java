@@ -0,0 +1,33 @@
+package com.sabpaisa.tokenization.dto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One card in a batch fraud check; headers are the client request headers
+ * (X-Forwarded-For, User-Agent, X-Device-Fingerprint, ...) as seen by the caller
+ */
+public class FraudCheckRequest {
+    
+    private String cardNumber;
+    private String merchantId;
+    private Map<String, String> headers = new HashMap<>();
+    
+    public FraudCheckRequest() {}
+    
+    public FraudCheckRequest(String cardNumber, String merchantId, Map<String, String> headers) {
+        this.cardNumber = cardNumber;
+        this.merchantId = merchantId;
+        this.headers = headers;
+    }
+    
+    // Getters and setters
+    public String getCardNumber() { return cardNumber; }
+    public void setCardNumber(String cardNumber) { this.cardNumber = cardNumber; }
+    
+    public String getMerchantId() { return merchantId; }
+    public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
+    
+    public Map<String, String> getHeaders() { return headers; }
+    public void setHeaders(Map<String, String> headers) { this.headers = headers; }
+}
@@ -0,0 +1,45 @@
+package com.sabpaisa.tokenization.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional criteria for searching fraud detection events; null fields are ignored
+ */
+public class FraudEventFilter {
+    
+    private String merchantId;
+    private String riskLevel;
+    private String decision;
+    private Integer minRiskScore;
+    private Integer maxRiskScore;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private Boolean reviewed;
+    
+    public FraudEventFilter() {}
+    
+    // Getters and setters
+    public String getMerchantId() { return merchantId; }
+    public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
+    
+    public String getRiskLevel() { return riskLevel; }
+    public void setRiskLevel(String riskLevel) { this.riskLevel = riskLevel; }
+    
+    public String getDecision() { return decision; }
+    public void setDecision(String decision) { this.decision = decision; }
+    
+    public Integer getMinRiskScore() { return minRiskScore; }
+    public void setMinRiskScore(Integer minRiskScore) { this.minRiskScore = minRiskScore; }
+    
+    public Integer getMaxRiskScore() { return maxRiskScore; }
+    public void setMaxRiskScore(Integer maxRiskScore) { this.maxRiskScore = maxRiskScore; }
+    
+    public LocalDateTime getStartDate() { return startDate; }
+    public void setStartDate(LocalDateTime startDate) { this.startDate = startDate; }
+    
+    public LocalDateTime getEndDate() { return endDate; }
+    public void setEndDate(LocalDateTime endDate) { this.endDate = endDate; }
+    
+    public Boolean getReviewed() { return reviewed; }
+    public void setReviewed(Boolean reviewed) { this.reviewed = reviewed; }
+}
@@ -0,0 +1,54 @@
+package com.sabpaisa.tokenization.dto;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a fraud decision as pushed to live monitoring clients
+ */
+public class LiveFraudEvent {
+    
+    private final long sequence;
+    private final String eventId;
+    private final String merchantId;
+    private final String eventType;
+    private final int riskScore;
+    private final String riskLevel;
+    private final String decision;
+    private final List<String> triggeredRules;
+    private final String geoCountry;
+    private final String deviceType;
+    private final Double mlFraudProbability;
+    private final LocalDateTime createdAt;
+    
+    public LiveFraudEvent(long sequence, FraudDetectionEvent event) {
+        this.sequence = sequence;
+        this.eventId = event.getEventId();
+        this.merchantId = event.getMerchantId();
+        this.eventType = event.getEventType();
+        this.riskScore = event.getRiskScore();
+        this.riskLevel = event.getRiskLevel();
+        this.decision = event.getDecision();
+        this.triggeredRules = event.getTriggeredRules() != null ? List.copyOf(event.getTriggeredRules()) : List.of();
+        this.geoCountry = event.getGeoCountry();
+        this.deviceType = event.getDeviceType();
+        this.mlFraudProbability = event.getMlFraudProbability();
+        this.createdAt = event.getCreatedAt();
+    }
+    
+    // Getters
+    public long getSequence() { return sequence; }
+    public String getEventId() { return eventId; }
+    public String getMerchantId() { return merchantId; }
+    public String getEventType() { return eventType; }
+    public int getRiskScore() { return riskScore; }
+    public String getRiskLevel() { return riskLevel; }
+    public String getDecision() { return decision; }
+    public List<String> getTriggeredRules() { return triggeredRules; }
+    public String getGeoCountry() { return geoCountry; }
+    public String getDeviceType() { return deviceType; }
+    public Double getMlFraudProbability() { return mlFraudProbability; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
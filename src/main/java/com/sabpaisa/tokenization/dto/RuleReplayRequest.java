@@ -0,0 +1,50 @@
+package com.sabpaisa.tokenization.dto;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Candidate rules to replay against historical fraud events
+ */
+public class RuleReplayRequest {
+    
+    private List<FraudDetectionRule> candidateRules = new ArrayList<>();
+    
+    // Candidates override same-named active rules; otherwise they replace the whole rule set
+    private boolean mergeWithActiveRules = true;
+    
+    private String merchantId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    private Integer maxEvents;
+    
+    // JSONL file of captured events under the configured capture directory, instead of the database
+    private String captureFile;
+    
+    public RuleReplayRequest() {}
+    
+    // Getters and setters
+    public List<FraudDetectionRule> getCandidateRules() { return candidateRules; }
+    public void setCandidateRules(List<FraudDetectionRule> candidateRules) { this.candidateRules = candidateRules; }
+    
+    public boolean isMergeWithActiveRules() { return mergeWithActiveRules; }
+    public void setMergeWithActiveRules(boolean mergeWithActiveRules) { this.mergeWithActiveRules = mergeWithActiveRules; }
+    
+    public String getMerchantId() { return merchantId; }
+    public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
+    
+    public LocalDateTime getStartDate() { return startDate; }
+    public void setStartDate(LocalDateTime startDate) { this.startDate = startDate; }
+    
+    public LocalDateTime getEndDate() { return endDate; }
+    public void setEndDate(LocalDateTime endDate) { this.endDate = endDate; }
+    
+    public Integer getMaxEvents() { return maxEvents; }
+    public void setMaxEvents(Integer maxEvents) { this.maxEvents = maxEvents; }
+    
+    public String getCaptureFile() { return captureFile; }
+    public void setCaptureFile(String captureFile) { this.captureFile = captureFile; }
+}
@@ -0,0 +1,32 @@
+package com.sabpaisa.tokenization.dto;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Candidate rules to run next to the live rules on a sample of traffic
+ */
+public class ShadowEvaluationRequest {
+    
+    private List<FraudDetectionRule> candidateRules = new ArrayList<>();
+    
+    // Candidates override same-named active rules; otherwise they replace the whole rule set
+    private boolean mergeWithActiveRules = true;
+    
+    // Fraction of live evaluations also scored by the candidate rules, 0.0-1.0
+    private double sampleRate = 0.1;
+    
+    public ShadowEvaluationRequest() {}
+    
+    // Getters and setters
+    public List<FraudDetectionRule> getCandidateRules() { return candidateRules; }
+    public void setCandidateRules(List<FraudDetectionRule> candidateRules) { this.candidateRules = candidateRules; }
+    
+    public boolean isMergeWithActiveRules() { return mergeWithActiveRules; }
+    public void setMergeWithActiveRules(boolean mergeWithActiveRules) { this.mergeWithActiveRules = mergeWithActiveRules; }
+    
+    public double getSampleRate() { return sampleRate; }
+    public void setSampleRate(double sampleRate) { this.sampleRate = sampleRate; }
+}
@@ -0,0 +1,75 @@
+package com.sabpaisa.tokenization.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A replication that reached fewer providers than the replication threshold.
+ * Kept for a limited time so under-replicated tokens can be found after the
+ * in-memory status of the replication has been overwritten.
+ */
+@Entity
+@Table(name = "cloud_replication_failures", indexes = {
+    @Index(name = "idx_crf_created_at", columnList = "created_at"),
+    @Index(name = "idx_crf_token", columnList = "token_id")
+})
+public class CloudReplicationFailure {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "replication_id", nullable = false, length = 64)
+    private String replicationId;
+
+    @Column(name = "token_id", nullable = false)
+    private Long tokenId;
+
+    @Column(nullable = false, length = 20)
+    private String status; // PARTIAL_SUCCESS, FAILED
+
+    @Column(name = "successful_providers", nullable = false)
+    private int successfulProviders;
+
+    @Column(name = "total_providers", nullable = false)
+    private int totalProviders;
+
+    @Column(name = "failed_providers", length = 100)
+    private String failedProviders; // comma-separated, e.g. AWS,GCP
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CloudReplicationFailure() {}
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getReplicationId() { return replicationId; }
+    public void setReplicationId(String replicationId) { this.replicationId = replicationId; }
+
+    public Long getTokenId() { return tokenId; }
+    public void setTokenId(Long tokenId) { this.tokenId = tokenId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getSuccessfulProviders() { return successfulProviders; }
+    public void setSuccessfulProviders(int successfulProviders) { this.successfulProviders = successfulProviders; }
+
+    public int getTotalProviders() { return totalProviders; }
+    public void setTotalProviders(int totalProviders) { this.totalProviders = totalProviders; }
+
+    public String getFailedProviders() { return failedProviders; }
+    public void setFailedProviders(String failedProviders) { this.failedProviders = failedProviders; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
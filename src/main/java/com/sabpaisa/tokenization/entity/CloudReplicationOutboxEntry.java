@@ -0,0 +1,70 @@
+package com.sabpaisa.tokenization.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A token change waiting to be replicated to one cloud provider.
+ * Written in the same transaction as the token itself and removed by the
+ * outbox relay once the provider has stored the latest state of the token.
+ */
+@Entity
+@Table(name = "cloud_replication_outbox", indexes = {
+    @Index(name = "idx_cro_provider_next_attempt", columnList = "provider, next_attempt_at"),
+    @Index(name = "idx_cro_provider_token", columnList = "provider, token_id")
+})
+public class CloudReplicationOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 16)
+    private String provider; // AWS, AZURE, GCP
+
+    @Column(name = "token_id", nullable = false)
+    private Long tokenId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public CloudReplicationOutboxEntry() {}
+
+    public CloudReplicationOutboxEntry(String provider, Long tokenId, LocalDateTime now) {
+        this.provider = provider;
+        this.tokenId = tokenId;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public Long getTokenId() { return tokenId; }
+    public void setTokenId(Long tokenId) { this.tokenId = tokenId; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -1,12 +1,18 @@
 package com.sabpaisa.tokenization.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 @Entity
-@Table(name = "fraud_detection_events")
+@Table(name = "fraud_detection_events", indexes = {
+    @Index(name = "idx_fde_created_at", columnList = "created_at, id"),
+    @Index(name = "idx_fde_merchant_created_at", columnList = "merchant_id, created_at"),
+    @Index(name = "idx_fde_decision_created_at", columnList = "decision, created_at"),
+    @Index(name = "idx_fde_device_fingerprint", columnList = "device_fingerprint")
+})
 public class FraudDetectionEvent {
     
     @Id
@@ -19,7 +25,7 @@ public class FraudDetectionEvent {
     @Column(nullable = false)
     private String tokenizationRequestId;
     
-    @Column(nullable = false)
+    @Column(name = "merchant_id", nullable = false)
     private String merchantId;
     
     @Column(nullable = false)
@@ -46,6 +52,11 @@ public class FraudDetectionEvent {
     @Column(name = "device_fingerprint")
     private String deviceFingerprint;
     
+    // Pre-SHA-256 form of a generated fingerprint, only for matching older blacklist entries
+    @Transient
+    @JsonIgnore
+    private String legacyDeviceFingerprint;
+    
     @Column(name = "device_type")
     private String deviceType;
     
@@ -195,6 +206,9 @@ public class FraudDetectionEvent {
     public String getDeviceFingerprint() { return deviceFingerprint; }
     public void setDeviceFingerprint(String deviceFingerprint) { this.deviceFingerprint = deviceFingerprint; }
     
+    public String getLegacyDeviceFingerprint() { return legacyDeviceFingerprint; }
+    public void setLegacyDeviceFingerprint(String legacyDeviceFingerprint) { this.legacyDeviceFingerprint = legacyDeviceFingerprint; }
+    
     public String getDeviceType() { return deviceType; }
     public void setDeviceType(String deviceType) { this.deviceType = deviceType; }
     
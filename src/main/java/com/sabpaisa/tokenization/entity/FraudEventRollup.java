@@ -0,0 +1,95 @@
+package com.sabpaisa.tokenization.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated fraud event counts per time bucket, merchant, decision and country.
+ * Maintained incrementally by the event write path; hourly rows are compacted
+ * into daily rows once they age out of the hourly retention window.
+ */
+@Entity
+@Table(name = "fraud_event_rollups",
+    uniqueConstraints = @UniqueConstraint(name = "uk_fraud_event_rollup",
+        columnNames = {"granularity", "bucket_start", "merchant_id", "decision", "country"}),
+    indexes = @Index(name = "idx_fraud_event_rollup_bucket", columnList = "granularity, bucket_start"))
+public class FraudEventRollup {
+
+    public static final String HOUR = "HOUR";
+    public static final String DAY = "DAY";
+
+    // Risk scores are histogrammed in buckets of 10 points (0-9, ..., 90-100)
+    public static final int SCORE_BUCKETS = 10;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 8)
+    private String granularity; // HOUR, DAY
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "merchant_id", nullable = false)
+    private String merchantId;
+
+    @Column(nullable = false)
+    private String decision;
+
+    @Column(nullable = false)
+    private String country; // empty when the location was unknown
+
+    @Column(nullable = false)
+    private long eventCount;
+
+    @Column(nullable = false)
+    private long riskScoreSum;
+
+    @Column(nullable = false)
+    private long highRiskCount; // HIGH or CRITICAL risk level
+
+    @Column(name = "score_bucket_0", nullable = false) private long scoreBucket0;
+    @Column(name = "score_bucket_1", nullable = false) private long scoreBucket1;
+    @Column(name = "score_bucket_2", nullable = false) private long scoreBucket2;
+    @Column(name = "score_bucket_3", nullable = false) private long scoreBucket3;
+    @Column(name = "score_bucket_4", nullable = false) private long scoreBucket4;
+    @Column(name = "score_bucket_5", nullable = false) private long scoreBucket5;
+    @Column(name = "score_bucket_6", nullable = false) private long scoreBucket6;
+    @Column(name = "score_bucket_7", nullable = false) private long scoreBucket7;
+    @Column(name = "score_bucket_8", nullable = false) private long scoreBucket8;
+    @Column(name = "score_bucket_9", nullable = false) private long scoreBucket9;
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getGranularity() { return granularity; }
+    public void setGranularity(String granularity) { this.granularity = granularity; }
+
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+
+    public String getMerchantId() { return merchantId; }
+    public void setMerchantId(String merchantId) { this.merchantId = merchantId; }
+
+    public String getDecision() { return decision; }
+    public void setDecision(String decision) { this.decision = decision; }
+
+    public String getCountry() { return country; }
+    public void setCountry(String country) { this.country = country; }
+
+    public long getEventCount() { return eventCount; }
+    public void setEventCount(long eventCount) { this.eventCount = eventCount; }
+
+    public long getRiskScoreSum() { return riskScoreSum; }
+    public void setRiskScoreSum(long riskScoreSum) { this.riskScoreSum = riskScoreSum; }
+
+    public long getHighRiskCount() { return highRiskCount; }
+    public void setHighRiskCount(long highRiskCount) { this.highRiskCount = highRiskCount; }
+
+    public long[] getScoreBuckets() {
+        return new long[] {scoreBucket0, scoreBucket1, scoreBucket2, scoreBucket3, scoreBucket4,
+            scoreBucket5, scoreBucket6, scoreBucket7, scoreBucket8, scoreBucket9};
+    }
+}
@@ -0,0 +1,314 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Velocity counters shared by every node, so limits hold across the cluster rather
+ * than per instance.
+ *
+ * Each node pre-aggregates its increments per merchant and writes them to the
+ * backend in one pipelined batch every flush interval. Windowed totals are read
+ * into a per-merchant snapshot that is reused until it is older than the allowed
+ * staleness; this node's own increments since the snapshot are added on top, so
+ * only other nodes' traffic can lag, and by no more than the staleness bound.
+ * Distinct cards recorded locally may be counted once more than the exact union
+ * until the next refresh.
+ *
+ * Disabled (the database counts are used instead) unless
+ * {@code app.fraud-detection.velocity.store} is {@code redis} or {@code memory}.
+ * When the backend fails, {@link #read} returns null and callers fall back to the
+ * database.
+ */
+@Component
+public class ClusterVelocityStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterVelocityStore.class);
+
+    // After a failed read or flush the backend is left alone for this long and callers use the database
+    private static final long FAILURE_BACKOFF_MS = 5000;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Value("${app.fraud-detection.velocity.store:database}")
+    private String storeType;
+
+    @Value("${app.fraud-detection.velocity.flush-interval-ms:250}")
+    private long flushIntervalMs;
+
+    @Value("${app.fraud-detection.velocity.max-staleness-ms:1000}")
+    private long maxStalenessMs;
+
+    private VelocityBackend backend;
+
+    private ScheduledExecutorService flusher;
+
+    // Increments not yet written, per merchant; compute/remove keep updates and drains atomic
+    private final ConcurrentHashMap<String, VelocityBackend.Increments> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private volatile long backoffUntil;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder droppedIncrements = new LongAdder();
+
+    @PostConstruct
+    public void initialize() {
+        switch (storeType) {
+            case "redis":
+                StringRedisTemplate template = redisTemplate.getIfAvailable();
+                if (template == null) {
+                    logger.warn("Velocity store 'redis' configured but no Redis connection is available, using database counts");
+                    return;
+                }
+                backend = new RedisVelocityBackend(template);
+                break;
+            case "memory":
+                backend = new InMemoryVelocityBackend();
+                break;
+            case "database":
+                return;
+            default:
+                logger.warn("Unknown velocity store '{}', using database counts", storeType);
+                return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fraud-velocity-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Cluster velocity store '{}' enabled: flush every {} ms, reads at most {} ms stale",
+            backend.getName(), flushIntervalMs, maxStalenessMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flush();
+        }
+    }
+
+    /**
+     * Count one evaluated request: a token and its card when allowed through, a failed attempt when blocked
+     */
+    public void record(String merchantId, String cardNumber, boolean blocked) {
+        if (backend == null || merchantId == null) {
+            return;
+        }
+        String card = blocked ? null : cardDigest(cardNumber);
+        pending.compute(merchantId, (key, increments) -> {
+            if (increments == null) {
+                increments = new VelocityBackend.Increments();
+            }
+            addTo(increments, card, blocked);
+            return increments;
+        });
+
+        Snapshot snapshot = snapshots.get(merchantId);
+        if (snapshot != null) {
+            snapshot.record(card, blocked);
+        }
+        recorded.increment();
+    }
+
+    /**
+     * Windowed totals for the merchant, or null when the store is disabled or the backend failed
+     */
+    public VelocityCounts read(String merchantId) {
+        if (backend == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = snapshots.get(merchantId);
+        if (snapshot == null || now - snapshot.fetchedAt > maxStalenessMs) {
+            if (now < backoffUntil) {
+                return null;
+            }
+            // One refresh per merchant at a time; concurrent readers keep using the old snapshot
+            if (snapshot == null || snapshot.refreshing.compareAndSet(false, true)) {
+                Snapshot refreshed = refresh(merchantId, now);
+                if (refreshed != null) {
+                    snapshot = refreshed;
+                } else if (snapshot != null) {
+                    snapshot.refreshing.set(false);
+                    return null;
+                } else {
+                    return null;
+                }
+            }
+        }
+        return snapshot.current();
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("store", backend != null ? backend.getName() : "database");
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("maxStalenessMs", maxStalenessMs);
+        stats.put("recorded", recorded.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("failures", failures.sum());
+        stats.put("droppedIncrements", droppedIncrements.sum());
+        stats.put("backingOff", System.currentTimeMillis() < backoffUntil);
+        stats.put("pendingMerchants", pending.size());
+        stats.put("cachedMerchants", snapshots.size());
+        return stats;
+    }
+
+    private Snapshot refresh(String merchantId, long now) {
+        // The merchant's unflushed increments ride along with the read, so the new snapshot includes them
+        VelocityBackend.Increments increments = pending.remove(merchantId);
+        try {
+            VelocityCounts counts = backend.exchange(merchantId, increments, now);
+            Snapshot snapshot = new Snapshot(counts, now);
+            snapshots.put(merchantId, snapshot);
+            refreshes.increment();
+            return snapshot;
+        } catch (Exception e) {
+            failures.increment();
+            backoffUntil = now + FAILURE_BACKOFF_MS;
+            requeue(merchantId, increments);
+            logger.warn("Velocity read for merchant {} failed: {}", merchantId, e.toString());
+            return null;
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty() || System.currentTimeMillis() < backoffUntil) {
+            evictSnapshots(System.currentTimeMillis());
+            return;
+        }
+        Map<String, VelocityBackend.Increments> batch = new HashMap<>();
+        for (String merchantId : pending.keySet()) {
+            VelocityBackend.Increments increments = pending.remove(merchantId);
+            if (increments != null) {
+                batch.put(merchantId, increments);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            backend.apply(batch, now);
+            flushes.increment();
+        } catch (Exception e) {
+            failures.increment();
+            backoffUntil = now + FAILURE_BACKOFF_MS;
+            batch.forEach(this::requeue);
+            logger.warn("Velocity flush of {} merchants failed: {}", batch.size(), e.toString());
+        }
+        evictSnapshots(now);
+    }
+
+    // Keep failed increments for the next attempt, unless the backend has been down long enough to pile them up
+    private void requeue(String merchantId, VelocityBackend.Increments increments) {
+        if (increments == null) {
+            return;
+        }
+        if (increments.tokens + increments.failedAttempts > 100_000) {
+            droppedIncrements.add(increments.tokens + increments.failedAttempts);
+            return;
+        }
+        pending.merge(merchantId, increments, (current, failed) -> {
+            current.add(failed);
+            return current;
+        });
+    }
+
+    private void evictSnapshots(long now) {
+        long cutoff = now - Math.max(maxStalenessMs * 10, 60_000L);
+        snapshots.values().removeIf(snapshot -> snapshot.fetchedAt < cutoff);
+    }
+
+    private static void addTo(VelocityBackend.Increments increments, String card, boolean blocked) {
+        if (blocked) {
+            increments.failedAttempts++;
+        } else {
+            increments.tokens++;
+            if (card != null) {
+                increments.cards.add(card);
+            }
+        }
+    }
+
+    // Cards are keyed by a truncated digest so no PAN leaves the node
+    private static String cardDigest(String cardNumber) {
+        if (cardNumber == null || cardNumber.isEmpty()) {
+            return null;
+        }
+        MessageDigest sha256 = SHA256.get();
+        sha256.reset();
+        byte[] hash = sha256.digest(cardNumber.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+    }
+
+    /**
+     * Backend totals as of {@code fetchedAt} plus what this node recorded since
+     */
+    private static final class Snapshot {
+        final VelocityCounts counts;
+        final long fetchedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        final LongAdder localTokens = new LongAdder();
+        final LongAdder localFailed = new LongAdder();
+        final Set<String> localCards = ConcurrentHashMap.newKeySet();
+
+        Snapshot(VelocityCounts counts, long fetchedAt) {
+            this.counts = counts;
+            this.fetchedAt = fetchedAt;
+        }
+
+        void record(String card, boolean blocked) {
+            if (blocked) {
+                localFailed.increment();
+            } else {
+                localTokens.increment();
+                if (card != null) {
+                    localCards.add(card);
+                }
+            }
+        }
+
+        VelocityCounts current() {
+            return counts.plus(localTokens.intValue(), localCards.size(), localFailed.intValue());
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import com.sabpaisa.tokenization.repository.FraudDetectionEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory blacklist of device fingerprints confirmed as fraudulent.
+ *
+ * A fingerprint is blacklisted once any event carrying it has been reviewed and
+ * marked as not a false positive. Fingerprints are stored as 128-bit SHA-256
+ * digests in an open-addressing hash set, fronted by a Bloom filter so that the
+ * common case (unknown device) is rejected after a few bit probes.
+ *
+ * The structure is copy-on-write: membership checks read an immutable snapshot
+ * without locking, while the rare mutations (manual reviews) rebuild it. The
+ * digest set is persisted to a snapshot file so startup does not need to scan
+ * the events table.
+ *
+ * Events carry the legacy form of a generated fingerprint as well (see
+ * {@link DeviceSignalExtractor}), and a device is blacklisted if either form is,
+ * so entries confirmed before the fingerprint format changed keep matching.
+ */
+@Component
+public class DeviceFingerprintBlacklist {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceFingerprintBlacklist.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x53504442; // "SPDB"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    @Autowired
+    private FraudDetectionEventRepository eventRepository;
+
+    @Value("${app.fraud-detection.device-blacklist.snapshot-path:}")
+    private String snapshotPath;
+
+    @Value("${app.fraud-detection.device-blacklist.false-positive-rate:0.01}")
+    private double bloomFalsePositiveRate;
+
+    private volatile Snapshot snapshot = Snapshot.build(new long[0], new long[0], 0, 0.01);
+
+    @PostConstruct
+    public void initialize() {
+        Path path = getSnapshotPath();
+        if (path != null && Files.exists(path)) {
+            try {
+                loadSnapshot(path);
+                logger.info("Loaded {} blacklisted device fingerprints from snapshot {}", snapshot.size, path);
+                return;
+            } catch (IOException e) {
+                logger.warn("Device blacklist snapshot {} unreadable, rebuilding from database", path, e);
+            }
+        }
+        rebuildFromDatabase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshot();
+    }
+
+    /**
+     * O(1) membership check with no database access
+     */
+    public boolean contains(String deviceFingerprint) {
+        if (deviceFingerprint == null || deviceFingerprint.isEmpty()) {
+            return false;
+        }
+        long[] digest = digest(deviceFingerprint);
+        return snapshot.contains(digest[0], digest[1]);
+    }
+
+    /**
+     * Whether the event's device is blacklisted under its fingerprint or, for a
+     * generated fingerprint, under the legacy form of it
+     */
+    public boolean isBlacklisted(FraudDetectionEvent event) {
+        return contains(event.getDeviceFingerprint()) || contains(event.getLegacyDeviceFingerprint());
+    }
+
+    /**
+     * Keep the blacklist in step with a manual review of an event
+     */
+    public void onEventReviewed(FraudDetectionEvent event) {
+        String fingerprint = event.getDeviceFingerprint();
+        if (fingerprint == null || fingerprint.isEmpty() || event.getIsFalsePositive() == null) {
+            return;
+        }
+
+        if (!event.getIsFalsePositive()) {
+            add(fingerprint);
+        } else if (!eventRepository.existsByDeviceFingerprintAndIsFalsePositiveFalse(fingerprint)) {
+            // Only clear the device if no other confirmed fraud event still references it
+            remove(fingerprint);
+        }
+    }
+
+    public synchronized void add(String deviceFingerprint) {
+        long[] digest = digest(deviceFingerprint);
+        Snapshot current = snapshot;
+        if (current.contains(digest[0], digest[1])) {
+            return;
+        }
+
+        long[] hi = new long[current.size + 1];
+        long[] lo = new long[current.size + 1];
+        current.copyDigests(hi, lo);
+        hi[current.size] = digest[0];
+        lo[current.size] = digest[1];
+
+        snapshot = Snapshot.build(hi, lo, hi.length, bloomFalsePositiveRate);
+        writeSnapshot();
+    }
+
+    public synchronized void remove(String deviceFingerprint) {
+        long[] digest = digest(deviceFingerprint);
+        Snapshot current = snapshot;
+        if (!current.contains(digest[0], digest[1])) {
+            return;
+        }
+
+        long[] hi = new long[current.size];
+        long[] lo = new long[current.size];
+        current.copyDigests(hi, lo);
+
+        int count = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (hi[i] != digest[0] || lo[i] != digest[1]) {
+                hi[count] = hi[i];
+                lo[count] = lo[i];
+                count++;
+            }
+        }
+
+        snapshot = Snapshot.build(hi, lo, count, bloomFalsePositiveRate);
+        writeSnapshot();
+    }
+
+    /**
+     * Rebuild the whole blacklist from confirmed fraud events
+     */
+    public synchronized void rebuildFromDatabase() {
+        List<String> fingerprints = eventRepository.findConfirmedFraudDeviceFingerprints();
+        long[] hi = new long[fingerprints.size()];
+        long[] lo = new long[fingerprints.size()];
+        for (int i = 0; i < fingerprints.size(); i++) {
+            long[] digest = digest(fingerprints.get(i));
+            hi[i] = digest[0];
+            lo[i] = digest[1];
+        }
+
+        snapshot = Snapshot.build(hi, lo, fingerprints.size(), bloomFalsePositiveRate);
+        writeSnapshot();
+        logger.info("Rebuilt device blacklist from database with {} fingerprints", snapshot.size);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", current.size);
+        stats.put("tableCapacity", current.tableHi.length);
+        stats.put("bloomBits", current.bloomBitCount);
+        stats.put("bloomHashes", current.bloomHashes);
+        stats.put("snapshotPath", snapshotPath);
+        return stats;
+    }
+
+    private synchronized void writeSnapshot() {
+        Path path = getSnapshotPath();
+        if (path == null) {
+            return;
+        }
+
+        Snapshot current = snapshot;
+        long[] hi = new long[current.size];
+        long[] lo = new long[current.size];
+        current.copyDigests(hi, lo);
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(current.size);
+                for (int i = 0; i < current.size; i++) {
+                    out.writeLong(hi[i]);
+                    out.writeLong(lo[i]);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to write device blacklist snapshot to {}", path, e);
+        }
+    }
+
+    private void loadSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognised device blacklist snapshot format");
+            }
+            int count = in.readInt();
+            long[] hi = new long[count];
+            long[] lo = new long[count];
+            for (int i = 0; i < count; i++) {
+                hi[i] = in.readLong();
+                lo[i] = in.readLong();
+            }
+            snapshot = Snapshot.build(hi, lo, count, bloomFalsePositiveRate);
+        }
+    }
+
+    private Path getSnapshotPath() {
+        return snapshotPath == null || snapshotPath.isBlank() ? null : Paths.get(snapshotPath);
+    }
+
+    private static long[] digest(String fingerprint) {
+        MessageDigest sha256 = SHA256.get();
+        sha256.reset();
+        ByteBuffer hash = ByteBuffer.wrap(sha256.digest(fingerprint.getBytes(StandardCharsets.UTF_8)));
+        return new long[] {hash.getLong(), hash.getLong()};
+    }
+
+    /**
+     * Immutable Bloom filter plus open-addressing set of 128-bit digests
+     */
+    private static final class Snapshot {
+        final long[] bloom;
+        final int bloomBitCount;
+        final int bloomHashes;
+        final long[] tableHi;
+        final long[] tableLo;
+        final boolean[] occupied;
+        final int size;
+
+        private Snapshot(long[] bloom, int bloomBitCount, int bloomHashes,
+                         long[] tableHi, long[] tableLo, boolean[] occupied, int size) {
+            this.bloom = bloom;
+            this.bloomBitCount = bloomBitCount;
+            this.bloomHashes = bloomHashes;
+            this.tableHi = tableHi;
+            this.tableLo = tableLo;
+            this.occupied = occupied;
+            this.size = size;
+        }
+
+        static Snapshot build(long[] hi, long[] lo, int count, double falsePositiveRate) {
+            // Bloom filter sized for at least 1024 entries at the configured false-positive rate
+            int expected = Math.max(count, 1024);
+            int bits = (int) Math.min(Integer.MAX_VALUE - 64,
+                Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+            int hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+            long[] bloom = new long[(bits + 63) >>> 6];
+
+            // Hash table kept at most half full
+            int capacity = Integer.highestOneBit(Math.max(count, 8) * 2 - 1) << 1;
+            long[] tableHi = new long[capacity];
+            long[] tableLo = new long[capacity];
+            boolean[] occupied = new boolean[capacity];
+            int mask = capacity - 1;
+            int size = 0;
+
+            for (int i = 0; i < count; i++) {
+                int slot = (int) (lo[i] ^ (lo[i] >>> 32)) & mask;
+                boolean duplicate = false;
+                while (occupied[slot]) {
+                    if (tableHi[slot] == hi[i] && tableLo[slot] == lo[i]) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (duplicate) {
+                    continue;
+                }
+                occupied[slot] = true;
+                tableHi[slot] = hi[i];
+                tableLo[slot] = lo[i];
+                size++;
+
+                for (int k = 0; k < hashes; k++) {
+                    int bit = bloomIndex(hi[i], lo[i], k, bits);
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+
+            return new Snapshot(bloom, bits, hashes, tableHi, tableLo, occupied, size);
+        }
+
+        boolean contains(long hi, long lo) {
+            for (int k = 0; k < bloomHashes; k++) {
+                int bit = bloomIndex(hi, lo, k, bloomBitCount);
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+
+            int mask = tableHi.length - 1;
+            int slot = (int) (lo ^ (lo >>> 32)) & mask;
+            while (occupied[slot]) {
+                if (tableHi[slot] == hi && tableLo[slot] == lo) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        void copyDigests(long[] hi, long[] lo) {
+            int index = 0;
+            for (int slot = 0; slot < tableHi.length; slot++) {
+                if (occupied[slot]) {
+                    hi[index] = tableHi[slot];
+                    lo[index] = tableLo[slot];
+                    index++;
+                }
+            }
+        }
+
+        // Kirsch-Mitzenmacher double hashing over the two digest halves
+        private static int bloomIndex(long hi, long lo, int k, int bits) {
+            long combined = hi + k * lo;
+            return (int) ((combined & Long.MAX_VALUE) % bits);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Derives device type, OS and a device fingerprint from request headers.
+ *
+ * User-agent strings have low cardinality, so parsed results are kept in a bounded
+ * LRU cache and the substring scans run once per distinct agent. Fingerprints not
+ * supplied by the client are a 128-bit SHA-256 prefix of the identifying headers,
+ * computed with a per-thread digest and encoded as 22 URL-safe Base64 characters.
+ * The fingerprint the earlier scheme generated (the first 16 Base64 characters of
+ * the concatenated headers) is derived too, so events and blacklist entries stored
+ * in that format still match the same device.
+ */
+@Component
+public class DeviceSignalExtractor {
+
+    public static final String FINGERPRINT_HEADER = "X-Device-Fingerprint";
+
+    private static final int FINGERPRINT_BYTES = 16;
+
+    // Longer agents are usually garbage or abuse; parse them but do not let them fill the cache
+    private static final int MAX_CACHED_USER_AGENT_LENGTH = 512;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private static final Base64.Encoder FINGERPRINT_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    @Value("${app.fraud-detection.device.user-agent-cache-size:1024}")
+    private int userAgentCacheSize;
+
+    private Map<String, UserAgentInfo> userAgentCache;
+
+    @PostConstruct
+    public void initialize() {
+        userAgentCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserAgentInfo> eldest) {
+                return size() > userAgentCacheSize;
+            }
+        });
+    }
+
+    public DeviceSignals extract(RequestHeaders headers) {
+        String userAgent = headers.get("User-Agent");
+        UserAgentInfo agent = parseUserAgent(userAgent != null ? userAgent : "");
+
+        String fingerprint = headers.get(FINGERPRINT_HEADER);
+        String legacyFingerprint = null;
+        if (fingerprint == null) {
+            String identity = userAgent != null ? userAgent : "unknown";
+            String acceptLanguage = headers.getOrDefault("Accept-Language", "en");
+            String acceptEncoding = headers.getOrDefault("Accept-Encoding", "gzip");
+            fingerprint = computeFingerprint(identity, acceptLanguage, acceptEncoding);
+            legacyFingerprint = computeLegacyFingerprint(identity, acceptLanguage, acceptEncoding);
+        }
+
+        return new DeviceSignals(userAgent != null ? userAgent : "Unknown", agent.deviceType, agent.osInfo,
+            fingerprint, legacyFingerprint);
+    }
+
+    private UserAgentInfo parseUserAgent(String userAgent) {
+        if (userAgent.length() > MAX_CACHED_USER_AGENT_LENGTH) {
+            return UserAgentInfo.parse(userAgent);
+        }
+        UserAgentInfo cached = userAgentCache.get(userAgent);
+        if (cached == null) {
+            // Parsing is idempotent, so a concurrent duplicate parse is harmless
+            cached = UserAgentInfo.parse(userAgent);
+            userAgentCache.put(userAgent, cached);
+        }
+        return cached;
+    }
+
+    private static String computeFingerprint(String userAgent, String acceptLanguage, String acceptEncoding) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        digest.update(userAgent.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(acceptLanguage.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(acceptEncoding.getBytes(StandardCharsets.UTF_8));
+
+        byte[] key = new byte[FINGERPRINT_BYTES];
+        System.arraycopy(digest.digest(), 0, key, 0, FINGERPRINT_BYTES);
+        return FINGERPRINT_ENCODER.encodeToString(key);
+    }
+
+    // The earlier format: Base64 of the concatenated headers, padded or cut to 16 characters
+    private static String computeLegacyFingerprint(String userAgent, String acceptLanguage, String acceptEncoding) {
+        String encoded = Base64.getEncoder().encodeToString(
+            (userAgent + acceptLanguage + acceptEncoding).getBytes(StandardCharsets.UTF_8));
+        if (encoded.length() < 16) {
+            encoded = encoded + "0000000000000000";
+        }
+        return encoded.substring(0, 16);
+    }
+
+    private static final class UserAgentInfo {
+        final String deviceType;
+        final String osInfo;
+
+        private UserAgentInfo(String deviceType, String osInfo) {
+            this.deviceType = deviceType;
+            this.osInfo = osInfo;
+        }
+
+        static UserAgentInfo parse(String userAgent) {
+            String deviceType;
+            if (userAgent.contains("Mobile")) {
+                deviceType = "MOBILE";
+            } else if (userAgent.contains("Tablet")) {
+                deviceType = "TABLET";
+            } else {
+                deviceType = "DESKTOP";
+            }
+
+            String osInfo = null;
+            if (userAgent.contains("Windows")) {
+                osInfo = "Windows";
+            } else if (userAgent.contains("Mac")) {
+                osInfo = "MacOS";
+            } else if (userAgent.contains("Linux")) {
+                osInfo = "Linux";
+            } else if (userAgent.contains("Android")) {
+                osInfo = "Android";
+            } else if (userAgent.contains("iOS")) {
+                osInfo = "iOS";
+            }
+            return new UserAgentInfo(deviceType, osInfo);
+        }
+    }
+}
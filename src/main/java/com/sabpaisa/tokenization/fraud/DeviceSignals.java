@@ -0,0 +1,29 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Device attributes derived from request headers
+ */
+public class DeviceSignals {
+
+    private final String browserInfo;
+    private final String deviceType;
+    private final String osInfo;
+    private final String fingerprint;
+    private final String legacyFingerprint;
+
+    public DeviceSignals(String browserInfo, String deviceType, String osInfo, String fingerprint,
+                         String legacyFingerprint) {
+        this.browserInfo = browserInfo;
+        this.deviceType = deviceType;
+        this.osInfo = osInfo;
+        this.fingerprint = fingerprint;
+        this.legacyFingerprint = legacyFingerprint;
+    }
+
+    public String getBrowserInfo() { return browserInfo; }
+    public String getDeviceType() { return deviceType; }
+    public String getOsInfo() { return osInfo; }
+    public String getFingerprint() { return fingerprint; }
+    // Null when the client supplied the fingerprint
+    public String getLegacyFingerprint() { return legacyFingerprint; }
+}
@@ -0,0 +1,215 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs fraud enrichment stages (device, geolocation, velocity, ML scoring) on a
+ * dedicated bounded pool and enforces the per-evaluation latency budget.
+ *
+ * Each evaluation gets a deadline from the budget configured for its merchant
+ * ({@code app.fraud-detection.latency-budget.merchants.<merchantId>}) or the
+ * default budget. Stages that have not finished by the deadline are cancelled
+ * and reported as skipped so the evaluation can decide on the signals it has.
+ * Per-stage latency histograms and skip counts are kept for monitoring.
+ */
+@Component
+public class FraudEnrichmentExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEnrichmentExecutor.class);
+
+    private static final String MERCHANT_BUDGET_PREFIX = "app.fraud-detection.latency-budget.merchants.";
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.fraud-detection.latency-budget.default-ms:150}")
+    private long defaultBudgetMs;
+
+    @Value("${app.fraud-detection.enrichment.pool-size:16}")
+    private int poolSize;
+
+    @Value("${app.fraud-detection.enrichment.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.fraud-detection.enrichment.merchant-budget-cache-size:10000}")
+    private int merchantBudgetCacheSize;
+
+    private ThreadPoolExecutor executor;
+
+    // Resolved budgets by merchant, least recently used evicted; merchant ids come from callers
+    private Map<String, Long> merchantBudgets;
+
+    private final Map<String, LatencyHistogram> stageLatencies = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> stageSkips = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    @PostConstruct
+    public void initialize() {
+        merchantBudgets = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > merchantBudgetCacheSize;
+            }
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "fraud-enrichment-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Latency budget for one evaluation of the given merchant, in milliseconds
+     */
+    public long budgetMillisFor(String merchantId) {
+        if (merchantId == null) {
+            return defaultBudgetMs;
+        }
+        return merchantBudgets.computeIfAbsent(merchantId, id ->
+            environment.getProperty(MERCHANT_BUDGET_PREFIX + id, Long.class, defaultBudgetMs));
+    }
+
+    /**
+     * Run a blocking stage on the enrichment pool. If the pool is saturated the
+     * returned future fails immediately with a {@link RejectedExecutionException}.
+     */
+    public <T> CompletableFuture<T> submit(String stage, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        try {
+            Future<?> running = executor.submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    histogram(stage).record(System.nanoTime() - start);
+                }
+            });
+            // Interrupt the worker if the caller gives up on the stage
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    running.cancel(true);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Track the latency of a stage that is already asynchronous
+     */
+    public <T> CompletableFuture<T> track(String stage, CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        future.whenComplete((value, error) -> histogram(stage).record(System.nanoTime() - start));
+        return future;
+    }
+
+    /**
+     * Wait for a stage until the deadline. Returns null and records the stage in
+     * {@code skippedStages} if it times out, fails or was rejected.
+     */
+    public <T> T await(String stage, CompletableFuture<T> future, long deadlineNanos, List<String> skippedStages) {
+        long remaining = deadlineNanos - System.nanoTime();
+        try {
+            if (future.isDone()) {
+                return future.get();
+            }
+            if (remaining > 0) {
+                return future.get(remaining, TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            // fall through to skip
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            logger.warn("Fraud enrichment stage {} failed: {}", stage, e.toString());
+        }
+
+        future.cancel(true);
+        stageSkips.computeIfAbsent(stage, s -> new LongAdder()).increment();
+        skippedStages.add(stage);
+        return null;
+    }
+
+    /**
+     * Record the latency of a stage executed inline on the request thread
+     */
+    public void recordStage(String stage, long durationNanos) {
+        histogram(stage).record(durationNanos);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        Set<String> stageNames = new TreeSet<>(stageLatencies.keySet());
+        stageNames.addAll(stageSkips.keySet());
+        for (String stage : stageNames) {
+            // A stage cancelled before it started has skips but no latency samples
+            Map<String, Object> stageStats = histogram(stage).snapshot();
+            LongAdder skips = stageSkips.get(stage);
+            stageStats.put("skipped", skips != null ? skips.sum() : 0L);
+            stages.put(stage, stageStats);
+        }
+
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("poolSize", executor.getPoolSize());
+        pool.put("activeThreads", executor.getActiveCount());
+        pool.put("queued", executor.getQueue().size());
+        pool.put("completedTasks", executor.getCompletedTaskCount());
+        pool.put("rejectedTasks", rejectedTasks.sum());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("defaultBudgetMs", defaultBudgetMs);
+        stats.put("stages", stages);
+        stats.put("executor", pool);
+        return stats;
+    }
+
+    private LatencyHistogram histogram(String stage) {
+        return stageLatencies.computeIfAbsent(stage, s -> new LatencyHistogram());
+    }
+}
@@ -0,0 +1,226 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sabpaisa.tokenization.dto.FraudEventFilter;
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, append-only segment files holding fraud events removed from the database.
+ *
+ * A segment is gzip-compressed JSON lines, one {@link FraudDetectionEvent} per line (the
+ * same format as rule-replay capture files), named
+ * {@code fraud-events-<yyyy-MM>-<epochMillis>.jsonl.gz}. A month may have several
+ * segments, e.g. when a retention run is repeated after a partial failure. Segments
+ * are written to a temporary file and moved into place only when complete, so readers
+ * never see a partial segment.
+ */
+@Component
+public class FraudEventArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEventArchive.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("fraud-events-(\\d{4}-\\d{2})-(\\d+)\\.jsonl\\.gz");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.fraud-detection.retention.archive-directory:}")
+    private String archiveDirectory;
+
+    public boolean isConfigured() {
+        return archiveDirectory != null && !archiveDirectory.isBlank();
+    }
+
+    /**
+     * Start a new segment for the month; nothing is visible until {@link SegmentWriter#commit()}
+     */
+    public SegmentWriter openSegment(YearMonth month) throws IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        Path target = directory.resolve("fraud-events-" + month + "-" + System.currentTimeMillis() + ".jsonl.gz");
+        return new SegmentWriter(target);
+    }
+
+    public List<Map<String, Object>> listSegments() throws IOException {
+        List<Map<String, Object>> segments = new ArrayList<>();
+        for (Path file : segmentFiles(null)) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            matcher.matches();
+            Map<String, Object> segment = new LinkedHashMap<>();
+            segment.put("month", matcher.group(1));
+            segment.put("file", file.getFileName().toString());
+            segment.put("sizeBytes", Files.size(file));
+            segment.put("archivedAt", Instant.ofEpochMilli(Long.parseLong(matcher.group(2))).toString());
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    /**
+     * Archived events of the month matching the filter (and event id, if given), in archive order.
+     * Returns up to {@code limit + 1} events so callers can tell whether more follow.
+     */
+    public List<FraudDetectionEvent> query(YearMonth month, FraudEventFilter filter, String eventId,
+                                           int offset, int limit) throws IOException {
+        List<FraudDetectionEvent> events = new ArrayList<>();
+        int skipped = 0;
+        for (Path file : segmentFiles(month)) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file), 65536), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    FraudDetectionEvent event = objectMapper.readValue(line, FraudDetectionEvent.class);
+                    if (eventId != null && !eventId.equals(event.getEventId())) continue;
+                    if (!matches(event, filter)) continue;
+                    if (skipped++ < offset) continue;
+                    events.add(event);
+                    if (events.size() > limit) {
+                        return events;
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    private List<Path> segmentFiles(YearMonth month) throws IOException {
+        if (!isConfigured()) {
+            throw new IllegalArgumentException("Fraud event archive requires app.fraud-detection.retention.archive-directory");
+        }
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        String prefix = month != null ? "fraud-events-" + month + "-" : "fraud-events-";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(prefix) && SEGMENT_NAME.matcher(name).matches();
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private Path directory() {
+        return Paths.get(archiveDirectory).toAbsolutePath().normalize();
+    }
+
+    private static boolean matches(FraudDetectionEvent event, FraudEventFilter filter) {
+        if (filter == null) {
+            return true;
+        }
+        if (filter.getMerchantId() != null && !filter.getMerchantId().equals(event.getMerchantId())) return false;
+        if (filter.getRiskLevel() != null && !filter.getRiskLevel().equals(event.getRiskLevel())) return false;
+        if (filter.getDecision() != null && !filter.getDecision().equals(event.getDecision())) return false;
+        if (filter.getMinRiskScore() != null && event.getRiskScore() < filter.getMinRiskScore()) return false;
+        if (filter.getMaxRiskScore() != null && event.getRiskScore() > filter.getMaxRiskScore()) return false;
+        if (filter.getReviewed() != null && filter.getReviewed() != (event.getReviewedAt() != null)) return false;
+        if (filter.getStartDate() != null && event.getCreatedAt() != null
+            && event.getCreatedAt().isBefore(filter.getStartDate())) return false;
+        if (filter.getEndDate() != null && event.getCreatedAt() != null
+            && event.getCreatedAt().isAfter(filter.getEndDate())) return false;
+        return true;
+    }
+
+    /**
+     * Writes one segment to a temporary file; {@link #commit()} syncs it and moves it into place
+     */
+    public class SegmentWriter implements AutoCloseable {
+        private final Path target;
+        private final Path temporary;
+        private final BufferedWriter writer;
+        private long count;
+        private boolean committed;
+
+        private SegmentWriter(Path target) throws IOException {
+            this.target = target;
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temporary), 65536), StandardCharsets.UTF_8));
+        }
+
+        public void write(FraudDetectionEvent event) throws IOException {
+            writer.write(objectMapper.writeValueAsString(event));
+            writer.newLine();
+            count++;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        /**
+         * Make the segment durable and visible; an empty segment is discarded instead
+         */
+        public void commit() throws IOException {
+            writer.close();
+            if (count == 0) {
+                Files.deleteIfExists(temporary);
+                committed = true;
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            logger.info("Archived {} fraud events to {}", count, target.getFileName());
+        }
+
+        /**
+         * Discards the segment unless it was committed
+         */
+        @Override
+        public void close() {
+            if (committed) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Partial segment is deleted below
+            }
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                logger.warn("Cannot delete partial archive segment {}", temporary, e);
+            }
+        }
+    }
+}
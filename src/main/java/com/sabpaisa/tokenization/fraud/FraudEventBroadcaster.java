@@ -0,0 +1,320 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.dto.LiveFraudEvent;
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of fraud decisions to live monitoring clients over server-sent events.
+ *
+ * Every decision is stamped with a sequence number and kept in a fixed-size ring buffer,
+ * so reconnecting clients can resume from their Last-Event-ID without touching the database.
+ * Each subscriber has its own bounded queue; when a slow client falls behind, the oldest
+ * queued events are dropped and the client is told how many it missed. Queues are drained
+ * by a small sender pool, one task per subscriber at a time, so a slow connection never
+ * blocks the request thread that published the decision.
+ */
+@Component
+public class FraudEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEventBroadcaster.class);
+
+    public static final String DECISION_EVENT = "fraud-decision";
+    public static final String OVERFLOW_EVENT = "overflow";
+
+    @Value("${app.fraud-detection.live-stream.ring-size:1024}")
+    private int ringSize;
+
+    @Value("${app.fraud-detection.live-stream.subscriber-queue-capacity:256}")
+    private int subscriberQueueCapacity;
+
+    @Value("${app.fraud-detection.live-stream.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${app.fraud-detection.live-stream.heartbeat-interval-ms:15000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${app.fraud-detection.live-stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.fraud-detection.live-stream.sender-threads:4}")
+    private int senderThreads;
+
+    // Guards the ring and the subscriber list so replay-on-subscribe never misses or repeats an event
+    private final Object ringLock = new Object();
+    private LiveFraudEvent[] ring;
+    private long nextSequence = 1;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private ExecutorService senders;
+    private ScheduledExecutorService heartbeats;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        ring = new LiveFraudEvent[Math.max(ringSize, 1)];
+
+        AtomicInteger senderIndex = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(Math.max(senderThreads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "fraud-live-sender-" + senderIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fraud-live-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (heartbeatIntervalMs > 0) {
+            heartbeats.scheduleAtFixedRate(this::sendHeartbeats,
+                heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * Record a decision and queue it for every matching subscriber. Never blocks on I/O.
+     */
+    public void publish(FraudDetectionEvent event) {
+        synchronized (ringLock) {
+            LiveFraudEvent live = new LiveFraudEvent(nextSequence, event);
+            ring[(int) (nextSequence % ring.length)] = live;
+            nextSequence++;
+
+            // Fan out under the lock so every subscriber sees events in sequence order
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.matches(live)) {
+                    subscriber.enqueue(live);
+                }
+            }
+        }
+        published.incrementAndGet();
+    }
+
+    /**
+     * Open a stream for the given filters (null or empty means any). Events after
+     * {@code lastEventId} that are still in the ring buffer are replayed first.
+     * Returns null when the subscriber limit is reached.
+     */
+    public SseEmitter subscribe(Collection<String> merchantIds, Collection<String> decisions, Long lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, toSet(merchantIds), toSet(decisions));
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        synchronized (ringLock) {
+            if (lastEventId != null) {
+                long from = Math.max(lastEventId + 1, nextSequence - ring.length);
+                for (long sequence = from; sequence < nextSequence; sequence++) {
+                    LiveFraudEvent live = ring[(int) (sequence % ring.length)];
+                    if (live != null && subscriber.matches(live)) {
+                        subscriber.enqueue(live);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+
+        logger.debug("Live fraud stream opened (merchants={}, decisions={}, subscribers={})",
+            subscriber.merchantIds, subscriber.decisions, subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Most recent decisions still held in the ring buffer, newest first
+     */
+    public List<LiveFraudEvent> getRecentEvents(int limit) {
+        List<LiveFraudEvent> recent = new ArrayList<>();
+        synchronized (ringLock) {
+            long oldest = Math.max(1, nextSequence - ring.length);
+            for (long sequence = nextSequence - 1; sequence >= oldest && recent.size() < limit; sequence--) {
+                recent.add(ring[(int) (sequence % ring.length)]);
+            }
+        }
+        return recent;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("maxSubscribers", maxSubscribers);
+        stats.put("published", published.get());
+        stats.put("droppedForSlowSubscribers", dropped.get());
+        stats.put("ringSize", ring.length);
+        stats.put("subscriberQueueCapacity", subscriberQueueCapacity);
+        return stats;
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.scheduleDrain();
+        }
+    }
+
+    private static Set<String> toSet(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                set.add(value.trim());
+            }
+        }
+        return set.isEmpty() ? null : set;
+    }
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        final Set<String> merchantIds;
+        final Set<String> decisions;
+
+        // Guarded by itself; bounded at subscriberQueueCapacity with drop-oldest
+        final ArrayDeque<LiveFraudEvent> queue = new ArrayDeque<>();
+        long droppedSinceLastSend;
+
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean heartbeatDue;
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, Set<String> merchantIds, Set<String> decisions) {
+            this.emitter = emitter;
+            this.merchantIds = merchantIds;
+            this.decisions = decisions;
+        }
+
+        boolean matches(LiveFraudEvent event) {
+            return (merchantIds == null || merchantIds.contains(event.getMerchantId()))
+                && (decisions == null || decisions.contains(event.getDecision()));
+        }
+
+        void enqueue(LiveFraudEvent event) {
+            synchronized (queue) {
+                if (queue.size() >= subscriberQueueCapacity) {
+                    queue.pollFirst();
+                    droppedSinceLastSend++;
+                    dropped.incrementAndGet();
+                }
+                queue.addLast(event);
+            }
+            scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    LiveFraudEvent next;
+                    long missed;
+                    synchronized (queue) {
+                        next = queue.pollFirst();
+                        missed = droppedSinceLastSend;
+                        droppedSinceLastSend = 0;
+                    }
+
+                    if (missed > 0) {
+                        emitter.send(SseEmitter.event().name(OVERFLOW_EVENT)
+                            .data(Map.of("dropped", missed), MediaType.APPLICATION_JSON));
+                    }
+                    if (next != null) {
+                        emitter.send(SseEmitter.event()
+                            .id(String.valueOf(next.getSequence()))
+                            .name(DECISION_EVENT)
+                            .data(next, MediaType.APPLICATION_JSON));
+                        heartbeatDue = false;
+                        continue;
+                    }
+                    if (heartbeatDue) {
+                        heartbeatDue = false;
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    break;
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+
+            // An event may have arrived between the last poll and clearing the flag
+            boolean pending;
+            synchronized (queue) {
+                pending = !queue.isEmpty();
+            }
+            if (pending) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            synchronized (queue) {
+                queue.clear();
+            }
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                logger.debug("Live fraud stream already closed: {}", e.toString());
+            }
+        }
+    }
+}
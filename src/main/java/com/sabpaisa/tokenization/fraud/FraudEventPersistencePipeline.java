@@ -0,0 +1,498 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for fraud detection events.
+ *
+ * Request threads hand finished events to a bounded queue and return immediately.
+ * A single writer thread drains the queue in batches and stores each batch with
+ * JDBC batch inserts (event rows, then the triggered_rules and ml_feature_scores
+ * collection rows) inside one transaction.
+ *
+ * When the queue is full the configured overflow policy applies:
+ * - BLOCK: wait up to block-timeout-ms for space, then drop
+ * - DROP: drop the event immediately
+ * - SPILL: append the event to a local spill file that is replayed once the queue drains
+ *
+ * Callbacks of events that overflow are never run on the request thread: they go to
+ * a small bounded callback executor, and are dropped and counted when that is full
+ * too.
+ *
+ * On shutdown the writer drains everything still queued; whatever cannot be written
+ * in time is spilled to disk if a spill directory is configured.
+ */
+@Component
+public class FraudEventPersistencePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEventPersistencePipeline.class);
+
+    public enum OverflowPolicy { BLOCK, DROP, SPILL }
+
+    private static final String INSERT_EVENT_SQL =
+        "INSERT INTO fraud_detection_events (event_id, tokenization_request_id, merchant_id, event_type, " +
+        "event_timestamp, risk_score, risk_level, decision, device_fingerprint, device_type, browser_info, " +
+        "os_info, ip_address, geo_country, geo_city, geo_latitude, geo_longitude, is_vpn, is_proxy, is_tor, " +
+        "session_duration, pages_visited, mouse_movements, typing_speed, ml_anomaly_score, " +
+        "ml_fraud_probability, ml_model_version, tokens_last_hour, tokens_last_day, unique_cards_last_hour, " +
+        "failed_attempts_last_hour, additional_context, manual_review_notes, reviewed_by, reviewed_at, " +
+        "is_false_positive, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_IDS_SQL =
+        "SELECT id, event_id FROM fraud_detection_events WHERE event_id IN (:eventIds)";
+
+    private static final String INSERT_TRIGGERED_RULE_SQL =
+        "INSERT INTO triggered_rules (fraud_detection_event_id, triggered_rules) VALUES (?, ?)";
+
+    private static final String INSERT_FEATURE_SCORE_SQL =
+        "INSERT INTO ml_feature_scores (fraud_detection_event_id, ml_feature_scores_key, ml_feature_scores) VALUES (?, ?, ?)";
+
+    private static final String SPILL_FILE = "fraud-events.spill.jsonl";
+    private static final String REPLAY_FILE = "fraud-events.replay.jsonl";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.fraud-detection.event-pipeline.capacity:10000}")
+    private int capacity;
+
+    @Value("${app.fraud-detection.event-pipeline.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.fraud-detection.event-pipeline.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.fraud-detection.event-pipeline.overflow-policy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${app.fraud-detection.event-pipeline.block-timeout-ms:20}")
+    private long blockTimeoutMs;
+
+    @Value("${app.fraud-detection.event-pipeline.overflow-callback-capacity:1000}")
+    private int overflowCallbackCapacity;
+
+    @Value("${app.fraud-detection.event-pipeline.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Value("${app.fraud-detection.event-pipeline.spill-directory:}")
+    private String spillDirectory;
+
+    private BlockingQueue<PendingEvent> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writerThread;
+    private ThreadPoolExecutor overflowCallbackExecutor;
+    private volatile boolean running;
+    private Path spillPath;
+    private final Object spillLock = new Object();
+
+    private final List<FraudEventBatchListener> batchListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callbacksDropped = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (spillDirectory != null && !spillDirectory.isBlank()) {
+            try {
+                Path directory = Paths.get(spillDirectory);
+                Files.createDirectories(directory);
+                spillPath = directory.resolve(SPILL_FILE);
+            } catch (IOException e) {
+                logger.error("Cannot create fraud event spill directory {}", spillDirectory, e);
+            }
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL && spillPath == null) {
+            logger.warn("Overflow policy SPILL requires app.fraud-detection.event-pipeline.spill-directory; falling back to DROP");
+            overflowPolicy = OverflowPolicy.DROP;
+        }
+
+        overflowCallbackExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(overflowCallbackCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "fraud-event-overflow-callback");
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, executor) -> callbacksDropped.incrementAndGet());
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "fraud-event-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        logger.info("Fraud event pipeline started (capacity={}, batchSize={}, overflow={})",
+            capacity, batchSize, overflowPolicy);
+    }
+
+    /**
+     * Queue an event for persistence. Never waits on the database; the callback runs
+     * once the event has been written, or on the overflow callback thread if it is
+     * dropped or spilled.
+     */
+    public void submit(FraudDetectionEvent event, Runnable afterPersist) {
+        submitted.incrementAndGet();
+        PendingEvent pending = new PendingEvent(event, afterPersist);
+
+        if (running && queue.offer(pending)) {
+            return;
+        }
+
+        boolean accepted = false;
+        if (running && overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(pending, blockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!accepted) {
+            if (overflowPolicy == OverflowPolicy.SPILL || (!running && spillPath != null)) {
+                spill(List.of(pending));
+            } else {
+                dropped.incrementAndGet();
+                logger.warn("Fraud event queue full, dropping event {}", event.getEventId());
+            }
+            if (pending.afterPersist != null) {
+                overflowCallbackExecutor.execute(() -> runCallback(pending));
+            }
+        }
+    }
+
+    public void addBatchListener(FraudEventBatchListener listener) {
+        batchListeners.add(listener);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("capacity", capacity);
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("submitted", submitted.get());
+        stats.put("persisted", persisted.get());
+        stats.put("dropped", dropped.get());
+        stats.put("spilled", spilled.get());
+        stats.put("failed", failed.get());
+        stats.put("callbacksDropped", callbacksDropped.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            if (spillPath != null) {
+                spill(remaining);
+                logger.warn("Spilled {} fraud events that could not be written before shutdown", remaining.size());
+            } else {
+                dropped.addAndGet(remaining.size());
+                logger.error("Lost {} fraud events on shutdown (no spill directory configured)", remaining.size());
+            }
+        }
+        overflowCallbackExecutor.shutdown();
+        logger.info("Fraud event pipeline stopped: {}", getStatistics());
+    }
+
+    private void runWriter() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpill();
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Fraud event writer error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingEvent> batch) {
+        List<FraudDetectionEvent> events = new ArrayList<>(batch.size());
+        for (PendingEvent pending : batch) {
+            events.add(pending.event);
+        }
+
+        try {
+            insertEvents(events);
+            persisted.addAndGet(events.size());
+        } catch (Exception e) {
+            logger.warn("Batch insert of {} fraud events failed, retrying individually: {}", events.size(), e.getMessage());
+            for (PendingEvent pending : batch) {
+                try {
+                    insertEvents(List.of(pending.event));
+                    persisted.incrementAndGet();
+                } catch (DuplicateKeyException duplicate) {
+                    // Already written, e.g. replayed from a spill file after a crash
+                    logger.debug("Fraud event {} already persisted", pending.event.getEventId());
+                } catch (Exception single) {
+                    if (spillPath != null) {
+                        spill(List.of(pending));
+                    } else {
+                        failed.incrementAndGet();
+                        logger.error("Failed to persist fraud event {}", pending.event.getEventId(), single);
+                    }
+                }
+            }
+        }
+
+        for (PendingEvent pending : batch) {
+            runCallback(pending);
+        }
+    }
+
+    private void insertEvents(List<FraudDetectionEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, events, events.size(), (ps, event) -> {
+                int i = 1;
+                ps.setString(i++, event.getEventId());
+                ps.setString(i++, event.getTokenizationRequestId());
+                ps.setString(i++, event.getMerchantId());
+                ps.setString(i++, event.getEventType());
+                ps.setTimestamp(i++, toTimestamp(event.getEventTimestamp()));
+                ps.setInt(i++, event.getRiskScore());
+                ps.setString(i++, event.getRiskLevel());
+                ps.setString(i++, event.getDecision());
+                ps.setString(i++, event.getDeviceFingerprint());
+                ps.setString(i++, event.getDeviceType());
+                ps.setString(i++, event.getBrowserInfo());
+                ps.setString(i++, event.getOsInfo());
+                ps.setString(i++, event.getIpAddress());
+                ps.setString(i++, event.getGeoCountry());
+                ps.setString(i++, event.getGeoCity());
+                ps.setObject(i++, event.getGeoLatitude(), Types.DOUBLE);
+                ps.setObject(i++, event.getGeoLongitude(), Types.DOUBLE);
+                ps.setBoolean(i++, event.isVpn());
+                ps.setBoolean(i++, event.isProxy());
+                ps.setBoolean(i++, event.isTor());
+                ps.setObject(i++, event.getSessionDuration(), Types.BIGINT);
+                ps.setObject(i++, event.getPagesVisited(), Types.INTEGER);
+                ps.setObject(i++, event.getMouseMovements(), Types.INTEGER);
+                ps.setObject(i++, event.getTypingSpeed(), Types.DOUBLE);
+                ps.setObject(i++, event.getMlAnomalyScore(), Types.DOUBLE);
+                ps.setObject(i++, event.getMlFraudProbability(), Types.DOUBLE);
+                ps.setString(i++, event.getMlModelVersion());
+                ps.setObject(i++, event.getTokensLastHour(), Types.INTEGER);
+                ps.setObject(i++, event.getTokensLastDay(), Types.INTEGER);
+                ps.setObject(i++, event.getUniqueCardsLastHour(), Types.INTEGER);
+                ps.setObject(i++, event.getFailedAttemptsLastHour(), Types.INTEGER);
+                ps.setString(i++, event.getAdditionalContext());
+                ps.setString(i++, event.getManualReviewNotes());
+                ps.setString(i++, event.getReviewedBy());
+                ps.setTimestamp(i++, toTimestamp(event.getReviewedAt()));
+                ps.setObject(i++, event.getIsFalsePositive(), Types.BOOLEAN);
+                ps.setTimestamp(i, toTimestamp(event.getCreatedAt()));
+            });
+
+            Map<String, Long> ids = resolveIds(events);
+
+            List<Object[]> ruleRows = new ArrayList<>();
+            List<Object[]> scoreRows = new ArrayList<>();
+            for (FraudDetectionEvent event : events) {
+                Long id = ids.get(event.getEventId());
+                event.setId(id);
+                if (event.getTriggeredRules() != null) {
+                    for (String rule : event.getTriggeredRules()) {
+                        ruleRows.add(new Object[] {id, rule});
+                    }
+                }
+                if (event.getMlFeatureScores() != null) {
+                    for (Map.Entry<String, Double> score : event.getMlFeatureScores().entrySet()) {
+                        scoreRows.add(new Object[] {id, score.getKey(), score.getValue()});
+                    }
+                }
+            }
+
+            if (!ruleRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_TRIGGERED_RULE_SQL, ruleRows);
+            }
+            if (!scoreRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_FEATURE_SCORE_SQL, scoreRows);
+            }
+
+            for (FraudEventBatchListener listener : batchListeners) {
+                listener.onBatchPersisted(events);
+            }
+        });
+    }
+
+    private Map<String, Long> resolveIds(List<FraudDetectionEvent> events) {
+        List<String> eventIds = new ArrayList<>(events.size());
+        for (FraudDetectionEvent event : events) {
+            eventIds.add(event.getEventId());
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_IDS_SQL, new MapSqlParameterSource("eventIds", eventIds),
+            rs -> { ids.put(rs.getString("event_id"), rs.getLong("id")); });
+        return ids;
+    }
+
+    private void spill(List<PendingEvent> events) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (PendingEvent pending : events) {
+                    writer.write(objectMapper.writeValueAsString(pending.event));
+                    writer.newLine();
+                }
+                spilled.addAndGet(events.size());
+            } catch (IOException e) {
+                failed.addAndGet(events.size());
+                logger.error("Failed to spill {} fraud events to {}", events.size(), spillPath, e);
+            }
+        }
+    }
+
+    /**
+     * Re-queue spilled events once the writer is idle. The spill file is renamed first
+     * so new spills during the replay go to a fresh file.
+     */
+    private void replaySpill() {
+        if (spillPath == null || !running) {
+            return;
+        }
+
+        Path replayPath = spillPath.resolveSibling(REPLAY_FILE);
+        try {
+            synchronized (spillLock) {
+                if (!Files.exists(replayPath)) {
+                    if (!Files.exists(spillPath) || Files.size(spillPath) == 0) {
+                        return;
+                    }
+                    Files.move(spillPath, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            List<PendingEvent> batch = new ArrayList<>(batchSize);
+            int replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    batch.add(new PendingEvent(objectMapper.readValue(line, FraudDetectionEvent.class), null));
+                    if (batch.size() == batchSize) {
+                        writeBatch(batch);
+                        replayed += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                replayed += batch.size();
+            }
+
+            Files.delete(replayPath);
+            logger.info("Replayed {} spilled fraud events", replayed);
+        } catch (Exception e) {
+            logger.error("Failed to replay spilled fraud events from {}", replayPath, e);
+        }
+    }
+
+    private void runCallback(PendingEvent pending) {
+        if (pending.afterPersist == null) {
+            return;
+        }
+        try {
+            pending.afterPersist.run();
+        } catch (Exception e) {
+            logger.error("Fraud event callback failed for {}", pending.event.getEventId(), e);
+        }
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    /**
+     * Hook for components that maintain derived state from persisted events.
+     * Called on the writer thread inside the batch transaction.
+     */
+    public interface FraudEventBatchListener {
+        void onBatchPersisted(List<FraudDetectionEvent> events);
+    }
+
+    private static class PendingEvent {
+        final FraudDetectionEvent event;
+        final Runnable afterPersist;
+
+        PendingEvent(FraudDetectionEvent event, Runnable afterPersist) {
+            this.event = event;
+            this.afterPersist = afterPersist;
+        }
+    }
+}
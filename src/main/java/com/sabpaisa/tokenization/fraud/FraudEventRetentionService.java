@@ -0,0 +1,279 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import com.sabpaisa.tokenization.repository.FraudDetectionEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves fraud events older than the retention window out of the database, one
+ * calendar month at a time, into {@link FraudEventArchive} segments.
+ *
+ * A month is archived in full and the segment made durable before any row is
+ * removed. When {@code fraud_detection_events} is range-partitioned by month on
+ * PostgreSQL (see {@code V3__partition_fraud_events.sql}), the month's partition is
+ * detached and dropped, which takes constant time whatever its size. Otherwise (an unpartitioned table, or H2)
+ * rows are deleted in bounded batches, each in its own short transaction. The
+ * element-collection rows are always deleted by event id.
+ *
+ * Upcoming monthly partitions are created at startup and on every scheduled run,
+ * whether or not an archive is configured, so inserts never run past the last
+ * partition into the default one.
+ *
+ * Hourly and daily rollups are kept, so dashboards still cover archived months.
+ * The device blacklist keeps its current entries, but a rebuild from the database
+ * only sees retained events.
+ */
+@Component
+public class FraudEventRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEventRetentionService.class);
+
+    private static final String EVENTS_TABLE = "fraud_detection_events";
+
+    // Element collections of FraudDetectionEvent, keyed by the owning event id
+    private static final List<String> COLLECTION_TABLES = List.of("triggered_rules", "ml_feature_scores");
+
+    @Autowired
+    private FraudDetectionEventRepository eventRepository;
+
+    @Autowired
+    private FraudEventArchive archive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.fraud-detection.retention.retention-months:6}")
+    private int retentionMonths;
+
+    @Value("${app.fraud-detection.retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.fraud-detection.retention.partitions-ahead:2}")
+    private int partitionsAhead;
+
+    @Value("${app.fraud-detection.retention.cron:0 30 2 * * *}")
+    private String cron;
+
+    private ScheduledExecutorService scheduler;
+
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    public void initialize() {
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fraud-event-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::maintainPartitions);
+        new ConcurrentTaskScheduler(scheduler).schedule(this::scheduledRun, new CronTrigger(cron));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void scheduledRun() {
+        maintainPartitions();
+        if (!archive.isConfigured()) {
+            return;
+        }
+        try {
+            run();
+        } catch (Exception e) {
+            logger.error("Fraud event retention run failed", e);
+        }
+    }
+
+    private void maintainPartitions() {
+        try {
+            if (isPartitioned()) {
+                createUpcomingPartitions();
+            }
+        } catch (Exception e) {
+            logger.error("Cannot create upcoming fraud event partitions", e);
+        }
+    }
+
+    /**
+     * Archive and remove every whole month before the retention window
+     */
+    public Map<String, Object> run() {
+        if (!archive.isConfigured()) {
+            throw new IllegalArgumentException("Retention requires app.fraud-detection.retention.archive-directory");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A retention run is already in progress");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            boolean partitioned = isPartitioned();
+
+            YearMonth firstRetained = YearMonth.now().minusMonths(retentionMonths);
+            List<Map<String, Object>> months = new ArrayList<>();
+            Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM " + EVENTS_TABLE + " WHERE created_at < ?",
+                Timestamp.class, Timestamp.valueOf(firstRetained.atDay(1).atStartOfDay()));
+            if (oldest != null) {
+                for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(firstRetained);
+                     month = month.plusMonths(1)) {
+                    months.add(retireMonth(month, partitioned));
+                }
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("partitioned", partitioned);
+            report.put("retentionMonths", retentionMonths);
+            report.put("firstRetainedMonth", firstRetained.toString());
+            report.put("months", months);
+            report.put("elapsedMs", System.currentTimeMillis() - start);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> retireMonth(YearMonth month, boolean partitioned) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        // Archive first; nothing is removed unless the whole month is safely on disk
+        long[] ids = new long[1024];
+        int idCount = 0;
+        String segment = null;
+        try (FraudEventArchive.SegmentWriter writer = archive.openSegment(month)) {
+            long afterId = 0;
+            while (true) {
+                long lastId = afterId;
+                List<FraudDetectionEvent> chunk = readTransaction.execute(
+                    status -> eventRepository.findArchiveChunk(from, to, lastId, chunkSize));
+                if (chunk == null || chunk.isEmpty()) {
+                    break;
+                }
+                for (FraudDetectionEvent event : chunk) {
+                    writer.write(event);
+                    if (idCount == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[idCount++] = event.getId();
+                }
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+            writer.commit();
+            if (writer.getCount() > 0) {
+                segment = writer.getTarget().getFileName().toString();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot archive fraud events for " + month, e);
+        }
+
+        // Rows outside any monthly partition (e.g. in a default partition) still need row deletes
+        boolean dropPartition = partitioned && partitionExists(month);
+        for (int offset = 0; offset < idCount; offset += chunkSize) {
+            Object[] chunk = Arrays.stream(ids, offset, Math.min(offset + chunkSize, idCount)).boxed().toArray();
+            String placeholders = String.join(", ", Collections.nCopies(chunk.length, "?"));
+            writeTransaction.executeWithoutResult(status -> {
+                for (String table : COLLECTION_TABLES) {
+                    jdbcTemplate.update("DELETE FROM " + table + " WHERE fraud_detection_event_id IN (" + placeholders + ")", chunk);
+                }
+                if (!dropPartition) {
+                    jdbcTemplate.update("DELETE FROM " + EVENTS_TABLE + " WHERE id IN (" + placeholders + ")", chunk);
+                }
+            });
+        }
+
+        if (dropPartition) {
+            String partition = partitionName(month);
+            writeTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.execute("ALTER TABLE " + EVENTS_TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            });
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("month", month.toString());
+        result.put("events", idCount);
+        result.put("segment", segment);
+        result.put("partitionDropped", dropPartition);
+        logger.info("Retired fraud events for {}: {} archived{}", month, idCount,
+            dropPartition ? ", partition dropped" : "");
+        return result;
+    }
+
+    private boolean isPartitioned() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = ?",
+            Integer.class, EVENTS_TABLE);
+        return count != null && count > 0;
+    }
+
+    private void createUpcomingPartitions() {
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= partitionsAhead; i++, month = month.plusMonths(1)) {
+            if (partitionExists(month)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.execute("CREATE TABLE " + partitionName(month) + " PARTITION OF " + EVENTS_TABLE
+                    + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+                logger.info("Created fraud event partition {}", partitionName(month));
+            } catch (Exception e) {
+                // Fails when the default partition already holds rows of that month; they stay there
+                logger.warn("Cannot create fraud event partition {}: {}", partitionName(month), e.getMessage());
+            }
+        }
+    }
+
+    private boolean partitionExists(YearMonth month) {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partitionName(month));
+        return Boolean.TRUE.equals(exists);
+    }
+
+    // Must match the names created by V3__partition_fraud_events.sql
+    private static String partitionName(YearMonth month) {
+        return String.format("%s_y%04dm%02d", EVENTS_TABLE, month.getYear(), month.getMonthValue());
+    }
+}
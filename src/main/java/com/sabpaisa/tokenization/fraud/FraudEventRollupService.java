@@ -0,0 +1,388 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import com.sabpaisa.tokenization.entity.FraudEventRollup;
+import com.sabpaisa.tokenization.repository.FraudEventRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Maintains the {@code fraud_event_rollups} table and answers dashboard queries from it.
+ *
+ * Each persisted batch of events is folded into hourly rows (merchant x hour x
+ * decision x country) inside the batch transaction, so rollups are exactly as
+ * durable as the events themselves. Hourly rows older than the retention window
+ * are compacted into daily rows on {@code app.fraud-detection.rollups.compaction-cron},
+ * on a thread of this service's own. Dashboard queries therefore scan a
+ * bounded number of rollup rows no matter how many events are stored.
+ */
+@Component
+public class FraudEventRollupService implements FraudEventPersistencePipeline.FraudEventBatchListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudEventRollupService.class);
+
+    private static final String KEY_PREDICATE =
+        "granularity = ? AND bucket_start = ? AND merchant_id = ? AND decision = ? AND country = ?";
+
+    private static final String UPDATE_SQL;
+    private static final String INSERT_SQL;
+
+    static {
+        StringBuilder update = new StringBuilder("UPDATE fraud_event_rollups SET event_count = event_count + ?, " +
+            "risk_score_sum = risk_score_sum + ?, high_risk_count = high_risk_count + ?");
+        StringBuilder insertColumns = new StringBuilder("granularity, bucket_start, merchant_id, decision, country, " +
+            "event_count, risk_score_sum, high_risk_count");
+        StringBuilder insertValues = new StringBuilder("?, ?, ?, ?, ?, ?, ?, ?");
+        for (int i = 0; i < FraudEventRollup.SCORE_BUCKETS; i++) {
+            update.append(", score_bucket_").append(i).append(" = score_bucket_").append(i).append(" + ?");
+            insertColumns.append(", score_bucket_").append(i);
+            insertValues.append(", ?");
+        }
+        UPDATE_SQL = update.append(" WHERE ").append(KEY_PREDICATE).toString();
+        INSERT_SQL = "INSERT INTO fraud_event_rollups (" + insertColumns + ") VALUES (" + insertValues + ")";
+    }
+
+    @Autowired
+    private FraudEventPersistencePipeline eventPipeline;
+
+    @Autowired
+    private FraudEventRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.fraud-detection.rollups.hourly-retention-days:7}")
+    private int hourlyRetentionDays;
+
+    @Value("${app.fraud-detection.rollups.compaction-cron:0 15 * * * *}")
+    private String compactionCron;
+
+    private ScheduledExecutorService compactor;
+
+    @PostConstruct
+    public void registerWithPipeline() {
+        eventPipeline.addBatchListener(this);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fraud-rollup-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        new ConcurrentTaskScheduler(compactor).schedule(() -> {
+            try {
+                transaction.execute(status -> compactHourlyRollups());
+            } catch (Exception e) {
+                logger.error("Fraud rollup compaction failed", e);
+            }
+        }, new CronTrigger(compactionCron));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    @Override
+    public void onBatchPersisted(List<FraudDetectionEvent> events) {
+        Map<RollupKey, RollupCounts> aggregates = new HashMap<>();
+        for (FraudDetectionEvent event : events) {
+            RollupKey key = new RollupKey(FraudEventRollup.HOUR,
+                event.getCreatedAt().truncatedTo(ChronoUnit.HOURS),
+                event.getMerchantId(), event.getDecision(), event.getGeoCountry());
+            aggregates.computeIfAbsent(key, k -> new RollupCounts()).add(event.getRiskScore(), isHighRisk(event.getRiskLevel()));
+        }
+        upsert(aggregates);
+    }
+
+    /**
+     * Fold hourly rows that left the retention window into daily rows
+     */
+    @Transactional
+    public int compactHourlyRollups() {
+        LocalDateTime horizon = LocalDate.now().minusDays(hourlyRetentionDays).atStartOfDay();
+        List<FraudEventRollup> hourly = rollupRepository.findHourlyBefore(horizon);
+        if (hourly.isEmpty()) {
+            return 0;
+        }
+
+        Map<RollupKey, RollupCounts> daily = new HashMap<>();
+        for (FraudEventRollup row : hourly) {
+            RollupKey key = new RollupKey(FraudEventRollup.DAY, row.getBucketStart().truncatedTo(ChronoUnit.DAYS),
+                row.getMerchantId(), row.getDecision(), row.getCountry());
+            daily.computeIfAbsent(key, k -> new RollupCounts()).add(row);
+        }
+        upsert(daily);
+        jdbcTemplate.update("DELETE FROM fraud_event_rollups WHERE granularity = ? AND bucket_start < ?",
+            FraudEventRollup.HOUR, Timestamp.valueOf(horizon));
+
+        logger.info("Compacted {} hourly fraud rollups into {} daily rollups", hourly.size(), daily.size());
+        return hourly.size();
+    }
+
+    /**
+     * Recompute all rollups before the current hour from the events table.
+     * Intended for the initial backfill; events still in flight at the hour
+     * boundary may be missed, so run it outside peak traffic.
+     */
+    @Transactional
+    public int rebuildFromEvents() {
+        LocalDateTime cutoff = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        Map<RollupKey, RollupCounts> aggregates = new HashMap<>();
+        int[] scanned = new int[1];
+
+        jdbcTemplate.query(
+            "SELECT created_at, merchant_id, decision, geo_country, risk_score, risk_level " +
+                "FROM fraud_detection_events WHERE created_at < ?",
+            rs -> {
+                RollupKey key = new RollupKey(FraudEventRollup.HOUR,
+                    rs.getTimestamp("created_at").toLocalDateTime().truncatedTo(ChronoUnit.HOURS),
+                    rs.getString("merchant_id"), rs.getString("decision"), rs.getString("geo_country"));
+                aggregates.computeIfAbsent(key, k -> new RollupCounts())
+                    .add(rs.getInt("risk_score"), isHighRisk(rs.getString("risk_level")));
+                scanned[0]++;
+            },
+            Timestamp.valueOf(cutoff));
+
+        jdbcTemplate.update("DELETE FROM fraud_event_rollups WHERE bucket_start < ?", Timestamp.valueOf(cutoff));
+        upsert(aggregates);
+
+        logger.info("Rebuilt {} fraud rollups from {} events", aggregates.size(), scanned[0]);
+        return scanned[0];
+    }
+
+    public long getTotalEvents() {
+        return rollupRepository.sumEventCount();
+    }
+
+    /**
+     * Event count, high-risk count, average score and score histogram since the given time
+     */
+    public Map<String, Object> getWindowSummary(LocalDateTime since) {
+        List<Object[]> rows = rollupRepository.summarize(sinceHour(since), sinceDay(since));
+        Object[] row = rows.isEmpty() ? new Object[3 + FraudEventRollup.SCORE_BUCKETS] : rows.get(0);
+
+        long events = toLong(row[0]);
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < FraudEventRollup.SCORE_BUCKETS; i++) {
+            histogram.put(i == FraudEventRollup.SCORE_BUCKETS - 1 ? (i * 10) + "-100" : (i * 10) + "-" + (i * 10 + 9),
+                toLong(row[3 + i]));
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("events", events);
+        summary.put("highRiskEvents", toLong(row[2]));
+        summary.put("averageRiskScore", events > 0 ? (double) toLong(row[1]) / events : null);
+        summary.put("riskScoreHistogram", histogram);
+        return summary;
+    }
+
+    /**
+     * Countries ranked by blocked events, as [country, count] pairs
+     */
+    public List<Object[]> getTopBlockedCountries(LocalDateTime since) {
+        List<Object[]> countries = rollupRepository.getTopBlockedCountries(sinceHour(since), sinceDay(since));
+        for (Object[] country : countries) {
+            if ("".equals(country[0])) {
+                country[0] = null;
+            }
+        }
+        return countries;
+    }
+
+    /**
+     * High-risk events by hour of day, as [hour, count] pairs
+     */
+    public List<Object[]> getHighRiskHourlyDistribution(LocalDateTime since) {
+        return rollupRepository.getHighRiskHourlyDistribution(sinceHour(since));
+    }
+
+    /**
+     * Per-day totals for the last {@code days} days, most recent first
+     */
+    public List<Map<String, Object>> getDailyTrends(int days) {
+        LocalDate firstDay = LocalDate.now().minusDays(days - 1L);
+        LocalDateTime since = firstDay.atStartOfDay();
+
+        // [events, highRisk, blocked, scoreSum] per day
+        TreeMap<LocalDate, long[]> totals = new TreeMap<>();
+        for (Object[] row : rollupRepository.getBucketTotals(since, since)) {
+            long[] day = totals.computeIfAbsent(((LocalDateTime) row[0]).toLocalDate(), d -> new long[4]);
+            for (int i = 0; i < 4; i++) {
+                day[i] += toLong(row[i + 1]);
+            }
+        }
+
+        List<Map<String, Object>> trends = new ArrayList<>();
+        for (LocalDate date = LocalDate.now(); !date.isBefore(firstDay); date = date.minusDays(1)) {
+            long[] day = totals.getOrDefault(date, new long[4]);
+            Map<String, Object> dayData = new HashMap<>();
+            dayData.put("date", date);
+            dayData.put("totalEvents", day[0]);
+            dayData.put("highRiskEvents", day[1]);
+            dayData.put("blockedEvents", day[2]);
+            dayData.put("averageRiskScore", day[0] > 0 ? (double) day[3] / day[0] : 0.0);
+            trends.add(dayData);
+        }
+        return trends;
+    }
+
+    private void upsert(Map<RollupKey, RollupCounts> aggregates) {
+        if (aggregates.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<RollupKey, RollupCounts>> entries = new ArrayList<>(aggregates.entrySet());
+        List<Object[]> updates = new ArrayList<>(entries.size());
+        for (Map.Entry<RollupKey, RollupCounts> entry : entries) {
+            updates.add(updateArgs(entry.getKey(), entry.getValue()));
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (updated[i] == 0) {
+                inserts.add(insertArgs(entries.get(i).getKey(), entries.get(i).getValue()));
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+
+    private static Object[] updateArgs(RollupKey key, RollupCounts counts) {
+        Object[] args = new Object[3 + FraudEventRollup.SCORE_BUCKETS + 5];
+        int i = 0;
+        args[i++] = counts.events;
+        args[i++] = counts.scoreSum;
+        args[i++] = counts.highRisk;
+        for (long bucket : counts.buckets) {
+            args[i++] = bucket;
+        }
+        args[i++] = key.granularity;
+        args[i++] = Timestamp.valueOf(key.bucketStart);
+        args[i++] = key.merchantId;
+        args[i++] = key.decision;
+        args[i] = key.country;
+        return args;
+    }
+
+    private static Object[] insertArgs(RollupKey key, RollupCounts counts) {
+        Object[] args = new Object[5 + 3 + FraudEventRollup.SCORE_BUCKETS];
+        int i = 0;
+        args[i++] = key.granularity;
+        args[i++] = Timestamp.valueOf(key.bucketStart);
+        args[i++] = key.merchantId;
+        args[i++] = key.decision;
+        args[i++] = key.country;
+        args[i++] = counts.events;
+        args[i++] = counts.scoreSum;
+        args[i++] = counts.highRisk;
+        for (long bucket : counts.buckets) {
+            args[i++] = bucket;
+        }
+        return args;
+    }
+
+    private static boolean isHighRisk(String riskLevel) {
+        return "HIGH".equals(riskLevel) || "CRITICAL".equals(riskLevel);
+    }
+
+    private static LocalDateTime sinceHour(LocalDateTime since) {
+        return since.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static LocalDateTime sinceDay(LocalDateTime since) {
+        return since.truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static final class RollupKey {
+        final String granularity;
+        final LocalDateTime bucketStart;
+        final String merchantId;
+        final String decision;
+        final String country;
+
+        RollupKey(String granularity, LocalDateTime bucketStart, String merchantId, String decision, String country) {
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+            this.merchantId = merchantId;
+            this.decision = decision;
+            this.country = country != null ? country : "";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RollupKey)) return false;
+            RollupKey other = (RollupKey) o;
+            return granularity.equals(other.granularity) && bucketStart.equals(other.bucketStart)
+                && merchantId.equals(other.merchantId) && decision.equals(other.decision)
+                && country.equals(other.country);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(granularity, bucketStart, merchantId, decision, country);
+        }
+    }
+
+    private static final class RollupCounts {
+        long events;
+        long scoreSum;
+        long highRisk;
+        final long[] buckets = new long[FraudEventRollup.SCORE_BUCKETS];
+
+        void add(int riskScore, boolean highRiskLevel) {
+            events++;
+            scoreSum += riskScore;
+            if (highRiskLevel) {
+                highRisk++;
+            }
+            buckets[Math.min(Math.max(riskScore, 0) / 10, FraudEventRollup.SCORE_BUCKETS - 1)]++;
+        }
+
+        void add(FraudEventRollup row) {
+            events += row.getEventCount();
+            scoreSum += row.getRiskScoreSum();
+            highRisk += row.getHighRiskCount();
+            long[] rowBuckets = row.getScoreBuckets();
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += rowBuckets[i];
+            }
+        }
+    }
+}
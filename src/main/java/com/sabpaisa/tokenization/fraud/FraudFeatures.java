@@ -0,0 +1,93 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed schema of the primitive feature vector used by fraud scorers.
+ *
+ * The index of each feature is part of the contract with model files, which
+ * refer to features by name and are mapped onto these indexes when loaded.
+ * Unavailable signals (e.g. velocity skipped by the latency budget) are NaN.
+ */
+public final class FraudFeatures {
+
+    public static final int TOKENS_LAST_HOUR = 0;
+    public static final int TOKENS_LAST_DAY = 1;
+    public static final int UNIQUE_CARDS_LAST_HOUR = 2;
+    public static final int FAILED_ATTEMPTS_LAST_HOUR = 3;
+    public static final int IS_VPN = 4;
+    public static final int IS_PROXY = 5;
+    public static final int IS_TOR = 6;
+    public static final int DEVICE_MOBILE = 7;
+    public static final int DEVICE_TABLET = 8;
+    public static final int DEVICE_BLACKLISTED = 9;
+    public static final int HOUR_OF_DAY = 10;
+    public static final int DAY_OF_WEEK = 11;
+
+    public static final int COUNT = 12;
+
+    private static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+        "tokensLastHour",
+        "tokensLastDay",
+        "uniqueCardsLastHour",
+        "failedAttemptsLastHour",
+        "isVpn",
+        "isProxy",
+        "isTor",
+        "deviceMobile",
+        "deviceTablet",
+        "deviceBlacklisted",
+        "hourOfDay",
+        "dayOfWeek"
+    ));
+
+    private FraudFeatures() {
+    }
+
+    public static List<String> names() {
+        return NAMES;
+    }
+
+    /**
+     * Schema index of a feature name, or -1 if the name is unknown
+     */
+    public static int indexOf(String name) {
+        return NAMES.indexOf(name);
+    }
+
+    /**
+     * Build the feature vector for an event from the signals gathered so far
+     */
+    public static double[] extract(FraudDetectionEvent event, boolean deviceBlacklisted, LocalDateTime now) {
+        double[] features = new double[COUNT];
+        features[TOKENS_LAST_HOUR] = valueOf(event.getTokensLastHour());
+        features[TOKENS_LAST_DAY] = valueOf(event.getTokensLastDay());
+        features[UNIQUE_CARDS_LAST_HOUR] = valueOf(event.getUniqueCardsLastHour());
+        features[FAILED_ATTEMPTS_LAST_HOUR] = valueOf(event.getFailedAttemptsLastHour());
+        features[IS_VPN] = event.isVpn() ? 1.0 : 0.0;
+        features[IS_PROXY] = event.isProxy() ? 1.0 : 0.0;
+        features[IS_TOR] = event.isTor() ? 1.0 : 0.0;
+        features[DEVICE_MOBILE] = "MOBILE".equals(event.getDeviceType()) ? 1.0 : 0.0;
+        features[DEVICE_TABLET] = "TABLET".equals(event.getDeviceType()) ? 1.0 : 0.0;
+        features[DEVICE_BLACKLISTED] = deviceBlacklisted ? 1.0 : 0.0;
+        features[HOUR_OF_DAY] = now.getHour();
+        features[DAY_OF_WEEK] = now.getDayOfWeek().getValue();
+        return features;
+    }
+
+    /**
+     * Feature value with missing signals treated as zero
+     */
+    public static double orZero(double value) {
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    private static double valueOf(Integer value) {
+        return value != null ? value : Double.NaN;
+    }
+}
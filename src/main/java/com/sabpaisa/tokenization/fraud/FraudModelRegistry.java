@@ -0,0 +1,254 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the active {@link FraudScorer} and hot-swaps it when the model file changes.
+ *
+ * Models are JSON files referring to features by their {@link FraudFeatures} name:
+ * <pre>
+ * {"type": "logistic_regression", "version": "lr-7", "intercept": -4.2,
+ *  "weights": {"failedAttemptsLastHour": 0.35, "isProxy": 1.1}}
+ *
+ * {"type": "gradient_boosted_trees", "version": "gbt-3", "baseScore": -2.0,
+ *  "trees": [[{"feature": "isProxy", "threshold": 0.5, "left": 1, "right": 2, "missing": "left"},
+ *             {"leaf": -0.2}, {"leaf": 0.9}]]}
+ * </pre>
+ * Tree node ids are local to their tree. A model that fails to load or validate
+ * is rejected and the previous scorer stays active.
+ */
+@Component
+public class FraudModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudModelRegistry.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.fraud-detection.ml.model-path:}")
+    private String modelPath;
+
+    @Value("${app.fraud-detection.ml.reload-check-interval-ms:30000}")
+    private long reloadCheckIntervalMs;
+
+    private volatile FraudScorer activeScorer = new HeuristicFraudScorer();
+
+    private volatile LocalDateTime loadedAt;
+
+    private volatile String lastError;
+
+    // Modification time of the last file version attempted, loaded or rejected
+    private volatile long attemptedModifiedTime;
+
+    private ScheduledExecutorService watcher;
+
+    @PostConstruct
+    public void initialize() {
+        if (getModelPath() == null) {
+            logger.info("No fraud model configured (app.fraud-detection.ml.model-path); using {}",
+                HeuristicFraudScorer.MODEL_VERSION);
+            return;
+        }
+
+        reload();
+
+        if (reloadCheckIntervalMs > 0) {
+            watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fraud-model-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watcher.scheduleWithFixedDelay(this::reloadIfModified,
+                reloadCheckIntervalMs, reloadCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    public FraudScorer getScorer() {
+        return activeScorer;
+    }
+
+    /**
+     * Replace the active scorer; in-flight evaluations finish on the old one
+     */
+    public void swap(FraudScorer scorer) {
+        FraudScorer previous = activeScorer;
+        activeScorer = scorer;
+        loadedAt = LocalDateTime.now();
+        logger.info("Fraud scorer swapped from {} to {}", previous.getModelVersion(), scorer.getModelVersion());
+    }
+
+    /**
+     * Load the configured model file. Returns true if a new model became active.
+     */
+    public synchronized boolean reload() {
+        Path path = getModelPath();
+        if (path == null) {
+            lastError = "No model path configured";
+            return false;
+        }
+
+        try {
+            attemptedModifiedTime = Files.getLastModifiedTime(path).toMillis();
+            FraudScorer scorer = parseModel(objectMapper.readTree(path.toFile()));
+            lastError = null;
+            swap(scorer);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            lastError = e.getMessage();
+            logger.error("Failed to load fraud model from {}, keeping {}", path, activeScorer.getModelVersion(), e);
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        FraudScorer scorer = activeScorer;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("modelVersion", scorer.getModelVersion());
+        stats.put("scorer", scorer.getClass().getSimpleName());
+        stats.put("modelPath", modelPath);
+        stats.put("loadedAt", loadedAt);
+        stats.put("lastError", lastError);
+        stats.put("features", FraudFeatures.names());
+        if (scorer instanceof GradientBoostedTreesScorer) {
+            stats.put("trees", ((GradientBoostedTreesScorer) scorer).getTreeCount());
+            stats.put("nodes", ((GradientBoostedTreesScorer) scorer).getNodeCount());
+        }
+        return stats;
+    }
+
+    private void reloadIfModified() {
+        try {
+            Path path = getModelPath();
+            if (path != null && Files.exists(path)
+                    && Files.getLastModifiedTime(path).toMillis() != attemptedModifiedTime) {
+                reload();
+            }
+        } catch (Exception e) {
+            logger.warn("Fraud model change check failed: {}", e.toString());
+        }
+    }
+
+    private Path getModelPath() {
+        return modelPath == null || modelPath.isBlank() ? null : Paths.get(modelPath);
+    }
+
+    static FraudScorer parseModel(JsonNode model) {
+        String type = requiredText(model, "type");
+        String version = requiredText(model, "version");
+
+        switch (type) {
+            case "logistic_regression":
+                return parseLogisticRegression(model, version);
+            case "gradient_boosted_trees":
+                return parseGradientBoostedTrees(model, version);
+            default:
+                throw new IllegalArgumentException("Unsupported model type: " + type);
+        }
+    }
+
+    private static FraudScorer parseLogisticRegression(JsonNode model, String version) {
+        double[] weights = new double[FraudFeatures.COUNT];
+        JsonNode weightsNode = model.path("weights");
+        Iterator<Map.Entry<String, JsonNode>> fields = weightsNode.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            weights[featureIndex(field.getKey())] = field.getValue().asDouble();
+        }
+        return new LogisticRegressionScorer(version, model.path("intercept").asDouble(0.0), weights);
+    }
+
+    private static FraudScorer parseGradientBoostedTrees(JsonNode model, String version) {
+        JsonNode trees = model.path("trees");
+        if (!trees.isArray() || trees.size() == 0) {
+            throw new IllegalArgumentException("Model has no trees");
+        }
+
+        List<Integer> roots = new ArrayList<>();
+        List<JsonNode> nodes = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        for (JsonNode tree : trees) {
+            // Node ids are local to the tree, so children are rebased onto its first node
+            if (!tree.isArray() || tree.size() == 0) {
+                throw new IllegalArgumentException("Tree " + roots.size() + " has no nodes");
+            }
+            int treeStart = nodes.size();
+            roots.add(treeStart);
+            for (JsonNode node : tree) {
+                offsets.add(treeStart);
+                nodes.add(node);
+            }
+        }
+
+        int count = nodes.size();
+        int[] feature = new int[count];
+        double[] threshold = new double[count];
+        int[] left = new int[count];
+        int[] right = new int[count];
+        boolean[] missingLeft = new boolean[count];
+        double[] value = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            JsonNode node = nodes.get(i);
+            int offset = offsets.get(i);
+            if (node.has("leaf")) {
+                feature[i] = -1;
+                value[i] = node.get("leaf").asDouble();
+            } else {
+                feature[i] = featureIndex(requiredText(node, "feature"));
+                threshold[i] = node.path("threshold").asDouble();
+                left[i] = offset + node.path("left").asInt(-1);
+                right[i] = offset + node.path("right").asInt(-1);
+                missingLeft[i] = !"right".equals(node.path("missing").asText("left"));
+            }
+        }
+
+        int[] treeRoots = roots.stream().mapToInt(Integer::intValue).toArray();
+        return new GradientBoostedTreesScorer(version, model.path("baseScore").asDouble(0.0), treeRoots,
+            feature, threshold, left, right, missingLeft, value);
+    }
+
+    private static int featureIndex(String name) {
+        int index = FraudFeatures.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown feature in model: " + name);
+        }
+        return index;
+    }
+
+    private static String requiredText(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.asText().isEmpty()) {
+            throw new IllegalArgumentException("Missing '" + field + "' in model");
+        }
+        return value.asText();
+    }
+}
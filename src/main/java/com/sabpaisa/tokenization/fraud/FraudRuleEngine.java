@@ -0,0 +1,136 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a {@link FraudRuleSet} against an enriched fraud event.
+ *
+ * The engine only reads the event and holds no per-request state, so the live
+ * decision path, historical replay and shadow evaluation all share it. Checks
+ * that depend on live per-card state (impossible travel) are supplied by the
+ * caller and skipped when it passes none.
+ */
+@Component
+public class FraudRuleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudRuleEngine.class);
+
+    // ML probability contributes up to this many points on top of the rule scores
+    public static final int ML_WEIGHT = 50;
+
+    @Autowired
+    private DeviceFingerprintBlacklist deviceBlacklist;
+
+    /**
+     * Impossible-travel check for the card and device behind the event being evaluated
+     */
+    @FunctionalInterface
+    public interface TravelCheck {
+        boolean isImpossibleTravel(double maxDistanceKm);
+    }
+
+    public RuleOutcome evaluate(FraudRuleSet ruleSet, FraudDetectionEvent event, TravelCheck travelCheck) {
+        boolean deviceBlacklisted = ruleSet.hasDeviceRules() && deviceBlacklist.isBlacklisted(event);
+
+        RuleOutcome outcome = new RuleOutcome();
+        for (FraudRuleSet.CompiledRule rule : ruleSet.getRules()) {
+            if (rule.valid && matches(rule, event, deviceBlacklisted, travelCheck)) {
+                outcome.triggeredRules.add(rule.name);
+                outcome.ruleScores.put(rule.name, rule.riskScore);
+                outcome.ruleScore += rule.riskScore;
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Final 0-100 risk score from the triggered rule scores and the model's fraud probability
+     */
+    public static int riskScore(int ruleScore, Double fraudProbability) {
+        int mlScore = fraudProbability != null ? (int) (fraudProbability * ML_WEIGHT) : 0;
+        return Math.min(ruleScore + mlScore, 100);
+    }
+
+    public static String decide(int riskScore) {
+        if (riskScore < 25) {
+            return "ALLOW";
+        } else if (riskScore < 50) {
+            return "MONITOR";
+        } else if (riskScore < 75) {
+            return "CHALLENGE";
+        } else {
+            return "BLOCK";
+        }
+    }
+
+    private boolean matches(FraudRuleSet.CompiledRule rule, FraudDetectionEvent event,
+                            boolean deviceBlacklisted, TravelCheck travelCheck) {
+        try {
+            switch (rule.type) {
+                case "VELOCITY":
+                    return exceeds(event.getTokensLastHour(), rule.maxTokensPerHour)
+                        || exceeds(event.getUniqueCardsLastHour(), rule.maxUniqueCardsPerHour)
+                        || exceeds(event.getFailedAttemptsLastHour(), rule.maxFailedAttemptsPerHour);
+                case "GEO_LOCATION":
+                    return matchesGeoLocation(rule, event, travelCheck);
+                case "AMOUNT_THRESHOLD":
+                    // This could be extended to check transaction amounts if applicable
+                    return false;
+                case "DEVICE_FINGERPRINT":
+                    // Check if device has been seen in fraudulent activities
+                    return rule.checkBlacklistedDevices && deviceBlacklisted;
+                case "ML_BASED":
+                    return event.getMlFraudProbability() != null
+                        && event.getMlFraudProbability() > rule.fraudProbabilityThreshold;
+                default:
+                    return false;
+            }
+        } catch (Exception e) {
+            logger.error("Error evaluating rule: {}", rule.name, e);
+            return false;
+        }
+    }
+
+    private boolean matchesGeoLocation(FraudRuleSet.CompiledRule rule, FraudDetectionEvent event, TravelCheck travelCheck) {
+        // Check if using VPN/Proxy/Tor
+        if ((rule.blockVpn && event.isVpn()) || (rule.blockProxy && event.isProxy()) || (rule.blockTor && event.isTor())) {
+            return true;
+        }
+
+        // Check if from blocked countries
+        if (event.getGeoCountry() != null && rule.blockedCountries.contains(event.getGeoCountry())) {
+            return true;
+        }
+
+        // Check for impossible travel against the last known location of the merchant, card and device
+        return rule.checkImpossibleTravel && travelCheck != null
+            && event.getGeoLatitude() != null && event.getGeoLongitude() != null
+            && travelCheck.isImpossibleTravel(rule.maxTravelDistanceKm);
+    }
+
+    private static boolean exceeds(Integer value, Integer maxAllowed) {
+        return maxAllowed != null && value != null && value > maxAllowed;
+    }
+
+    /**
+     * Rules triggered by one evaluation, in priority order
+     */
+    public static class RuleOutcome {
+        private final List<String> triggeredRules = new ArrayList<>();
+        private final Map<String, Integer> ruleScores = new HashMap<>();
+        private int ruleScore;
+
+        public List<String> getTriggeredRules() { return triggeredRules; }
+        public Map<String, Integer> getRuleScores() { return ruleScores; }
+        public int getRuleScore() { return ruleScore; }
+    }
+}
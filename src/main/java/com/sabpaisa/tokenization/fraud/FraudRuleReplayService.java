@@ -0,0 +1,332 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sabpaisa.tokenization.dto.RuleReplayRequest;
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+import com.sabpaisa.tokenization.fraud.FraudRuleEngine.RuleOutcome;
+import com.sabpaisa.tokenization.repository.FraudDetectionRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays historical fraud events through a candidate rule set before it goes live.
+ *
+ * Events are streamed from the database with a forward-only cursor (or from a captured
+ * JSONL file, e.g. an event pipeline spill file), cut into batches and evaluated by a
+ * pool of partition workers against both the active rules and the candidate rules.
+ * Memory stays bounded by the batch queue regardless of how many events are replayed.
+ *
+ * Each event keeps the ML probability recorded at decision time, and the current device
+ * blacklist is used. Impossible-travel checks need the live per-card location history,
+ * so they are not replayed.
+ */
+@Component
+public class FraudRuleReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudRuleReplayService.class);
+
+    private static final String REPLAY_COLUMNS =
+        "SELECT event_id, merchant_id, decision, device_fingerprint, geo_country, geo_latitude, geo_longitude, " +
+        "is_vpn, is_proxy, is_tor, tokens_last_hour, tokens_last_day, unique_cards_last_hour, " +
+        "failed_attempts_last_hour, ml_fraud_probability, created_at FROM fraud_detection_events " +
+        "WHERE created_at >= ? AND created_at < ?";
+
+    // Marks the end of the stream for a partition worker
+    private static final List<FraudDetectionEvent> END_OF_STREAM = new ArrayList<>();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FraudDetectionRuleRepository ruleRepository;
+
+    @Autowired
+    private FraudRuleEngine ruleEngine;
+
+    @Value("${app.fraud-detection.replay.partitions:0}")
+    private int partitions;
+
+    @Value("${app.fraud-detection.replay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.fraud-detection.replay.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.fraud-detection.replay.max-events:1000000}")
+    private int maxEvents;
+
+    @Value("${app.fraud-detection.replay.default-window-days:30}")
+    private int defaultWindowDays;
+
+    @Value("${app.fraud-detection.replay.capture-directory:}")
+    private String captureDirectory;
+
+    private ExecutorService workers;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        if (partitions <= 0) {
+            partitions = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "fraud-replay-" + workerIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Replay events through the active and candidate rules and report how decisions change.
+     * Only one replay runs at a time.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> replay(RuleReplayRequest request) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rule replay is already running");
+        }
+
+        try {
+            List<FraudDetectionRule> activeRules = ruleRepository.findByActiveTrue();
+            FraudRuleSet baseline = FraudRuleSet.of(activeRules);
+            FraudRuleSet candidate = request.isMergeWithActiveRules()
+                ? FraudRuleSet.withOverrides(activeRules, request.getCandidateRules())
+                : FraudRuleSet.of(request.getCandidateRules());
+
+            int limit = request.getMaxEvents() != null ? Math.min(request.getMaxEvents(), maxEvents) : maxEvents;
+            RuleComparison comparison = new RuleComparison();
+            LongAdder matchesRecorded = new LongAdder();
+            BlockingQueue<List<FraudDetectionEvent>> batches = new ArrayBlockingQueue<>(partitions * 2);
+
+            long startNanos = System.nanoTime();
+            List<CompletableFuture<Void>> partitionWorkers = new ArrayList<>();
+            for (int i = 0; i < partitions; i++) {
+                partitionWorkers.add(CompletableFuture.runAsync(
+                    () -> evaluatePartition(batches, baseline, candidate, comparison, matchesRecorded), workers));
+            }
+
+            long eventsRead;
+            BatchWriter writer = new BatchWriter(batches, limit);
+            try {
+                if (request.getCaptureFile() != null && !request.getCaptureFile().isBlank()) {
+                    readCaptureFile(request, writer);
+                } else {
+                    readDatabase(request, limit, writer);
+                }
+            } finally {
+                eventsRead = writer.finish(partitions);
+            }
+            CompletableFuture.allOf(partitionWorkers.toArray(new CompletableFuture[0])).join();
+
+            long elapsedNanos = System.nanoTime() - startNanos;
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("source", request.getCaptureFile() != null && !request.getCaptureFile().isBlank()
+                ? "capture:" + request.getCaptureFile() : "database");
+            report.put("eventsRead", eventsRead);
+            report.put("partitions", partitions);
+            report.put("elapsedMs", elapsedNanos / 1_000_000);
+            report.put("evaluationsPerSecond", elapsedNanos > 0 ? (long) (eventsRead * 1e9 / elapsedNanos) : 0);
+            report.put("baselineRules", baseline.getRuleNames());
+            report.put("candidateRules", candidate.getRuleNames());
+            // How often re-running the active rules reproduces the recorded decision
+            report.put("baselineMatchesRecorded", eventsRead > 0 ? (double) matchesRecorded.sum() / eventsRead : 0.0);
+            report.put("skippedChecks", List.of("impossibleTravel"));
+            report.putAll(comparison.toMap());
+
+            logger.info("Replayed {} fraud events in {} ms ({} changed decisions)",
+                eventsRead, report.get("elapsedMs"), report.get("changedDecisions"));
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void evaluatePartition(BlockingQueue<List<FraudDetectionEvent>> batches, FraudRuleSet baseline,
+                                   FraudRuleSet candidate, RuleComparison comparison, LongAdder matchesRecorded) {
+        try {
+            while (true) {
+                List<FraudDetectionEvent> batch = batches.take();
+                if (batch == END_OF_STREAM) {
+                    return;
+                }
+                for (FraudDetectionEvent event : batch) {
+                    RuleOutcome base = ruleEngine.evaluate(baseline, event, null);
+                    String baseDecision = FraudRuleEngine.decide(
+                        FraudRuleEngine.riskScore(base.getRuleScore(), event.getMlFraudProbability()));
+
+                    long candidateStart = System.nanoTime();
+                    RuleOutcome next = ruleEngine.evaluate(candidate, event, null);
+                    String nextDecision = FraudRuleEngine.decide(
+                        FraudRuleEngine.riskScore(next.getRuleScore(), event.getMlFraudProbability()));
+                    long candidateNanos = System.nanoTime() - candidateStart;
+
+                    comparison.record(baseDecision, base.getTriggeredRules(),
+                        nextDecision, next.getTriggeredRules(), candidateNanos);
+                    if (baseDecision.equals(event.getDecision())) {
+                        matchesRecorded.increment();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readDatabase(RuleReplayRequest request, int limit, BatchWriter writer) {
+        LocalDateTime end = request.getEndDate() != null ? request.getEndDate() : LocalDateTime.now();
+        LocalDateTime start = request.getStartDate() != null ? request.getStartDate() : end.minusDays(defaultWindowDays);
+
+        StringBuilder sql = new StringBuilder(REPLAY_COLUMNS);
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.valueOf(start));
+        params.add(Timestamp.valueOf(end));
+        if (request.getMerchantId() != null) {
+            sql.append(" AND merchant_id = ?");
+            params.add(request.getMerchantId());
+        }
+
+        // Forward-only cursor: rows are fetched in chunks instead of materialized as one list
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(fetchSize);
+        streaming.setMaxRows(limit);
+        streaming.query(sql.toString(), rs -> { writer.add(mapEvent(rs)); }, params.toArray());
+    }
+
+    private void readCaptureFile(RuleReplayRequest request, BatchWriter writer) {
+        if (captureDirectory == null || captureDirectory.isBlank()) {
+            throw new IllegalArgumentException("Capture replay requires app.fraud-detection.replay.capture-directory");
+        }
+        Path directory = Paths.get(captureDirectory).toAbsolutePath().normalize();
+        Path file = directory.resolve(request.getCaptureFile()).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("Capture file not found: " + request.getCaptureFile());
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while (!writer.isFull() && (line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                FraudDetectionEvent event = objectMapper.readValue(line, FraudDetectionEvent.class);
+                if (request.getMerchantId() != null && !request.getMerchantId().equals(event.getMerchantId())) continue;
+                if (request.getStartDate() != null && event.getCreatedAt() != null
+                    && event.getCreatedAt().isBefore(request.getStartDate())) continue;
+                if (request.getEndDate() != null && event.getCreatedAt() != null
+                    && !event.getCreatedAt().isBefore(request.getEndDate())) continue;
+                writer.add(event);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read capture file " + request.getCaptureFile() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static FraudDetectionEvent mapEvent(ResultSet rs) throws SQLException {
+        FraudDetectionEvent event = new FraudDetectionEvent();
+        event.setEventId(rs.getString("event_id"));
+        event.setMerchantId(rs.getString("merchant_id"));
+        event.setDecision(rs.getString("decision"));
+        event.setDeviceFingerprint(rs.getString("device_fingerprint"));
+        event.setGeoCountry(rs.getString("geo_country"));
+        event.setGeoLatitude(rs.getObject("geo_latitude", Double.class));
+        event.setGeoLongitude(rs.getObject("geo_longitude", Double.class));
+        event.setVpn(rs.getBoolean("is_vpn"));
+        event.setProxy(rs.getBoolean("is_proxy"));
+        event.setTor(rs.getBoolean("is_tor"));
+        event.setTokensLastHour(rs.getObject("tokens_last_hour", Integer.class));
+        event.setTokensLastDay(rs.getObject("tokens_last_day", Integer.class));
+        event.setUniqueCardsLastHour(rs.getObject("unique_cards_last_hour", Integer.class));
+        event.setFailedAttemptsLastHour(rs.getObject("failed_attempts_last_hour", Integer.class));
+        event.setMlFraudProbability(rs.getObject("ml_fraud_probability", Double.class));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        event.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        return event;
+    }
+
+    /**
+     * Cuts the event stream into batches for the partition workers; blocks when they fall behind
+     */
+    private class BatchWriter {
+        private final BlockingQueue<List<FraudDetectionEvent>> batches;
+        private final int limit;
+        private List<FraudDetectionEvent> current = new ArrayList<>(batchSize);
+        private long count;
+
+        BatchWriter(BlockingQueue<List<FraudDetectionEvent>> batches, int limit) {
+            this.batches = batches;
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return count >= limit;
+        }
+
+        void add(FraudDetectionEvent event) {
+            current.add(event);
+            count++;
+            if (current.size() >= batchSize) {
+                put(current);
+                current = new ArrayList<>(batchSize);
+            }
+        }
+
+        long finish(int workerCount) {
+            if (!current.isEmpty()) {
+                put(current);
+            }
+            for (int i = 0; i < workerCount; i++) {
+                put(END_OF_STREAM);
+            }
+            return count;
+        }
+
+        private void put(List<FraudDetectionEvent> batch) {
+            try {
+                batches.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Rule replay interrupted", e);
+            }
+        }
+    }
+}
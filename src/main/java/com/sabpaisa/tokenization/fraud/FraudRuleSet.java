@@ -0,0 +1,156 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, pre-parsed snapshot of the active fraud rules, ordered by priority.
+ *
+ * Rule parameters are parsed once when the set is built rather than on every
+ * evaluation, and the set holds no JPA state, so it can be shared across threads
+ * and used outside a persistence context (replay workers, shadow evaluation).
+ */
+public final class FraudRuleSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(FraudRuleSet.class);
+
+    private final List<CompiledRule> rules;
+    private final boolean hasDeviceRules;
+
+    private FraudRuleSet(List<CompiledRule> rules) {
+        this.rules = Collections.unmodifiableList(rules);
+        this.hasDeviceRules = rules.stream().anyMatch(rule -> rule.checkBlacklistedDevices);
+    }
+
+    /**
+     * Compile the active rules, highest priority first
+     */
+    public static FraudRuleSet of(Collection<FraudDetectionRule> rules) {
+        List<CompiledRule> compiled = new ArrayList<>();
+        rules.stream()
+            .filter(FraudDetectionRule::isActive)
+            .sorted(Comparator.comparing(FraudDetectionRule::getPriority).reversed())
+            .forEach(rule -> compiled.add(new CompiledRule(rule)));
+        return new FraudRuleSet(compiled);
+    }
+
+    /**
+     * The base rules with candidates replacing same-named rules and adding new ones.
+     * An inactive candidate removes the rule of that name.
+     */
+    public static FraudRuleSet withOverrides(Collection<FraudDetectionRule> base,
+                                             Collection<FraudDetectionRule> candidates) {
+        Map<String, FraudDetectionRule> merged = new LinkedHashMap<>();
+        for (FraudDetectionRule rule : base) {
+            merged.put(rule.getRuleName(), rule);
+        }
+        for (FraudDetectionRule candidate : candidates) {
+            merged.put(candidate.getRuleName(), candidate);
+        }
+        return of(merged.values());
+    }
+
+    public List<String> getRuleNames() {
+        List<String> names = new ArrayList<>(rules.size());
+        for (CompiledRule rule : rules) {
+            names.add(rule.name);
+        }
+        return names;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    List<CompiledRule> getRules() {
+        return rules;
+    }
+
+    boolean hasDeviceRules() {
+        return hasDeviceRules;
+    }
+
+    static final class CompiledRule {
+        final String name;
+        final String type;
+        final int riskScore;
+
+        // VELOCITY
+        final Integer maxTokensPerHour;
+        final Integer maxUniqueCardsPerHour;
+        final Integer maxFailedAttemptsPerHour;
+
+        // GEO_LOCATION
+        final boolean blockVpn;
+        final boolean blockProxy;
+        final boolean blockTor;
+        final Set<String> blockedCountries;
+        final boolean checkImpossibleTravel;
+        final double maxTravelDistanceKm;
+
+        // DEVICE_FINGERPRINT
+        final boolean checkBlacklistedDevices;
+
+        // ML_BASED
+        final double fraudProbabilityThreshold;
+
+        // False when a parameter could not be parsed; such a rule never triggers
+        final boolean valid;
+
+        CompiledRule(FraudDetectionRule rule) {
+            Map<String, String> params = rule.getParameters() != null ? rule.getParameters() : Map.of();
+            this.name = rule.getRuleName();
+            this.type = rule.getRuleType() != null ? rule.getRuleType() : "";
+            this.riskScore = rule.getRiskScore();
+
+            Integer maxTokens = null;
+            Integer maxCards = null;
+            Integer maxFailed = null;
+            double maxDistance = 1000;
+            double threshold = 0.7;
+            boolean parsed = true;
+            try {
+                maxTokens = parseInteger(params.get("maxTokensPerHour"));
+                maxCards = parseInteger(params.get("maxUniqueCardsPerHour"));
+                maxFailed = parseInteger(params.get("maxFailedAttemptsPerHour"));
+                maxDistance = Double.parseDouble(params.getOrDefault("maxTravelDistanceKm", "1000"));
+                threshold = Double.parseDouble(params.getOrDefault("fraudProbabilityThreshold", "0.7"));
+            } catch (NumberFormatException e) {
+                logger.error("Invalid parameters for fraud rule {}, it will not trigger: {}", name, e.getMessage());
+                parsed = false;
+            }
+            this.maxTokensPerHour = maxTokens;
+            this.maxUniqueCardsPerHour = maxCards;
+            this.maxFailedAttemptsPerHour = maxFailed;
+            this.maxTravelDistanceKm = maxDistance;
+            this.fraudProbabilityThreshold = threshold;
+            this.valid = parsed;
+
+            this.blockVpn = "true".equals(params.get("blockVPN"));
+            this.blockProxy = "true".equals(params.get("blockProxy"));
+            this.blockTor = "true".equals(params.get("blockTor"));
+            this.blockedCountries = params.containsKey("blockedCountries")
+                ? new HashSet<>(Arrays.asList(params.get("blockedCountries").split(",")))
+                : Set.of();
+            this.checkImpossibleTravel = "true".equals(params.get("checkImpossibleTravel"));
+            this.checkBlacklistedDevices = "DEVICE_FINGERPRINT".equals(type)
+                && "true".equals(params.get("checkBlacklistedDevices"));
+        }
+
+        private static Integer parseInteger(String value) {
+            return value != null ? Integer.valueOf(value) : null;
+        }
+    }
+}
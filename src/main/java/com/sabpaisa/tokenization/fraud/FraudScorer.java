@@ -0,0 +1,23 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Scores a {@link FraudFeatures} vector with a fraud probability in [0, 1].
+ *
+ * Implementations must be immutable and thread-safe, and should not allocate
+ * per call so they can be used inline on the request path.
+ */
+public interface FraudScorer {
+
+    String getModelVersion();
+
+    double score(double[] features);
+
+    /**
+     * Score many vectors at once, writing the probabilities into {@code scores}
+     */
+    default void scoreBatch(double[][] features, double[] scores) {
+        for (int i = 0; i < features.length; i++) {
+            scores[i] = score(features[i]);
+        }
+    }
+}
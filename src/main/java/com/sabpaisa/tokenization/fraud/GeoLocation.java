@@ -0,0 +1,41 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Immutable geolocation result for a single IP address
+ */
+public final class GeoLocation {
+
+    public static final int FLAG_VPN = 1;
+    public static final int FLAG_PROXY = 1 << 1;
+    public static final int FLAG_TOR = 1 << 2;
+
+    private final String countryCode;
+    private final String city;
+    private final double latitude;
+    private final double longitude;
+    private final int flags;
+
+    public GeoLocation(String countryCode, String city, double latitude, double longitude, int flags) {
+        this.countryCode = countryCode;
+        this.city = city;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.flags = flags;
+    }
+
+    public String getCountryCode() { return countryCode; }
+
+    public String getCity() { return city; }
+
+    public double getLatitude() { return latitude; }
+
+    public double getLongitude() { return longitude; }
+
+    public boolean isVpn() { return (flags & FLAG_VPN) != 0; }
+
+    public boolean isProxy() { return (flags & FLAG_PROXY) != 0; }
+
+    public boolean isTor() { return (flags & FLAG_TOR) != 0; }
+
+    public int getFlags() { return flags; }
+}
@@ -0,0 +1,87 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Gradient-boosted decision trees evaluated from flattened node arrays.
+ *
+ * All trees share one set of parallel arrays indexed by node id. A node with
+ * {@code feature < 0} is a leaf holding {@code value}; otherwise the walk goes
+ * left when {@code x[feature] < threshold}, and missing (NaN) values follow
+ * {@code missingLeft}. The raw margin is the base score plus the sum of the
+ * reached leaves, passed through a sigmoid.
+ */
+public class GradientBoostedTreesScorer implements FraudScorer {
+
+    private final String modelVersion;
+    private final double baseScore;
+    private final int[] treeRoots;
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final boolean[] missingLeft;
+    private final double[] value;
+
+    public GradientBoostedTreesScorer(String modelVersion, double baseScore, int[] treeRoots,
+                                      int[] feature, double[] threshold, int[] left, int[] right,
+                                      boolean[] missingLeft, double[] value) {
+        int nodes = feature.length;
+        if (threshold.length != nodes || left.length != nodes || right.length != nodes
+                || missingLeft.length != nodes || value.length != nodes) {
+            throw new IllegalArgumentException("Node arrays must all have the same length");
+        }
+        for (int node = 0; node < nodes; node++) {
+            if (feature[node] >= FraudFeatures.COUNT) {
+                throw new IllegalArgumentException("Node " + node + " references unknown feature " + feature[node]);
+            }
+            // Children must come after their parent, which also rules out cycles
+            if (feature[node] >= 0 && (left[node] <= node || right[node] <= node
+                    || left[node] >= nodes || right[node] >= nodes)) {
+                throw new IllegalArgumentException("Node " + node + " has invalid children");
+            }
+        }
+        for (int root : treeRoots) {
+            if (root < 0 || root >= nodes) {
+                throw new IllegalArgumentException("Invalid tree root " + root);
+            }
+        }
+
+        this.modelVersion = modelVersion;
+        this.baseScore = baseScore;
+        this.treeRoots = treeRoots.clone();
+        this.feature = feature.clone();
+        this.threshold = threshold.clone();
+        this.left = left.clone();
+        this.right = right.clone();
+        this.missingLeft = missingLeft.clone();
+        this.value = value.clone();
+    }
+
+    @Override
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public double score(double[] features) {
+        double margin = baseScore;
+        for (int root : treeRoots) {
+            int node = root;
+            int split;
+            while ((split = feature[node]) >= 0) {
+                double x = features[split];
+                boolean goLeft = x != x ? missingLeft[node] : x < threshold[node];
+                node = goLeft ? left[node] : right[node];
+            }
+            margin += value[node];
+        }
+        return 1.0 / (1.0 + Math.exp(-margin));
+    }
+
+    public int getTreeCount() {
+        return treeRoots.length;
+    }
+
+    public int getNodeCount() {
+        return feature.length;
+    }
+}
@@ -0,0 +1,29 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Built-in rule-of-thumb scorer used when no model file is configured
+ */
+public class HeuristicFraudScorer implements FraudScorer {
+
+    public static final String MODEL_VERSION = "heuristic-v1";
+
+    @Override
+    public String getModelVersion() {
+        return MODEL_VERSION;
+    }
+
+    @Override
+    public double score(double[] features) {
+        double probability = 0.0;
+
+        double failedAttempts = FraudFeatures.orZero(features[FraudFeatures.FAILED_ATTEMPTS_LAST_HOUR]);
+        if (failedAttempts > 5) probability += 0.3;
+        if (failedAttempts > 10) probability += 0.3;
+
+        if (features[FraudFeatures.IS_PROXY] > 0) probability += 0.2;
+
+        if (FraudFeatures.orZero(features[FraudFeatures.UNIQUE_CARDS_LAST_HOUR]) > 10) probability += 0.2;
+
+        return Math.min(probability, 1.0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.sabpaisa.tokenization.fraud;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-local {@link VelocityBackend} with the same bucket layout as the Redis one.
+ *
+ * Only accurate for a single node; used for local development and as a stand-in
+ * for Redis when exercising the cluster store.
+ */
+public class InMemoryVelocityBackend implements VelocityBackend {
+
+    private static final int MINUTES = 60;
+    private static final int HOURS = 24;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void apply(Map<String, Increments> increments, long nowMillis) {
+        increments.forEach((merchantId, pending) -> window(merchantId).add(pending, nowMillis));
+    }
+
+    @Override
+    public VelocityCounts exchange(String merchantId, Increments increments, long nowMillis) {
+        Window window = window(merchantId);
+        if (increments != null) {
+            window.add(increments, nowMillis);
+        }
+        return window.read(nowMillis);
+    }
+
+    private Window window(String merchantId) {
+        return windows.computeIfAbsent(merchantId, key -> new Window());
+    }
+
+    /**
+     * Ring buffers of minute and hour buckets; a slot is reset when its bucket id moves on
+     */
+    private static final class Window {
+        final long[] minuteIds = new long[MINUTES];
+        final int[] minuteTokens = new int[MINUTES];
+        final int[] minuteFailed = new int[MINUTES];
+        @SuppressWarnings("unchecked")
+        final Set<String>[] minuteCards = new Set[MINUTES];
+        final long[] hourIds = new long[HOURS];
+        final int[] hourTokens = new int[HOURS];
+
+        synchronized void add(Increments increments, long nowMillis) {
+            long minute = nowMillis / 60_000L;
+            int slot = (int) (minute % MINUTES);
+            if (minuteIds[slot] != minute) {
+                minuteIds[slot] = minute;
+                minuteTokens[slot] = 0;
+                minuteFailed[slot] = 0;
+                minuteCards[slot] = null;
+            }
+            minuteTokens[slot] += increments.tokens;
+            minuteFailed[slot] += increments.failedAttempts;
+            if (!increments.cards.isEmpty()) {
+                if (minuteCards[slot] == null) {
+                    minuteCards[slot] = new HashSet<>();
+                }
+                minuteCards[slot].addAll(increments.cards);
+            }
+
+            long hour = minute / 60;
+            int hourSlot = (int) (hour % HOURS);
+            if (hourIds[hourSlot] != hour) {
+                hourIds[hourSlot] = hour;
+                hourTokens[hourSlot] = 0;
+            }
+            hourTokens[hourSlot] += increments.tokens;
+        }
+
+        synchronized VelocityCounts read(long nowMillis) {
+            long minute = nowMillis / 60_000L;
+            int tokensLastHour = 0;
+            int failedLastHour = 0;
+            Set<String> cards = new HashSet<>();
+            for (int slot = 0; slot < MINUTES; slot++) {
+                if (minuteIds[slot] > minute - MINUTES && minuteIds[slot] <= minute) {
+                    tokensLastHour += minuteTokens[slot];
+                    failedLastHour += minuteFailed[slot];
+                    if (minuteCards[slot] != null) {
+                        cards.addAll(minuteCards[slot]);
+                    }
+                }
+            }
+
+            long hour = minute / 60;
+            int tokensLastDay = 0;
+            for (int slot = 0; slot < HOURS; slot++) {
+                if (hourIds[slot] > hour - HOURS && hourIds[slot] <= hour) {
+                    tokensLastDay += hourTokens[slot];
+                }
+            }
+            return new VelocityCounts(tokensLastHour, tokensLastDay, cards.size(), failedLastHour);
+        }
+    }
+}
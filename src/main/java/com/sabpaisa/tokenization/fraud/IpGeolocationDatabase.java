@@ -0,0 +1,474 @@
+package com.sabpaisa.tokenization.fraud;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only IP range geolocation table.
+ *
+ * Ranges are held in sorted primitive arrays (IPv4 as sign-flipped ints, IPv6 as
+ * two longs) and looked up with a binary search, so a lookup never touches the
+ * network and allocates only the returned {@link GeoLocation}.
+ *
+ * Two source formats are supported:
+ * - CSV: {@code start_ip,end_ip,country_code,city,latitude,longitude[,flags]}, one
+ *   range per line, '#' comments allowed, no quoting. Flags is a combination of
+ *   {@code V} (VPN), {@code P} (proxy/hosting) and {@code T} (Tor).
+ * - Binary: the compact format produced by {@link #writeBinary(Path)}, which is
+ *   memory-mapped on load instead of parsed.
+ */
+public final class IpGeolocationDatabase {
+
+    private static final int MAGIC = 0x53504745; // "SPGE"
+    private static final int VERSION = 1;
+
+    // IPv4 ranges, start/end stored as (address ^ Integer.MIN_VALUE) for signed comparison
+    private final int[] v4Start;
+    private final int[] v4End;
+    private final int[] v4Record;
+
+    // IPv6 ranges, each address split into high and low 64 bits (compared unsigned)
+    private final long[] v6StartHi;
+    private final long[] v6StartLo;
+    private final long[] v6EndHi;
+    private final long[] v6EndLo;
+    private final int[] v6Record;
+
+    // Per-record attributes shared by both address families
+    private final int[] country;
+    private final int[] city;
+    private final float[] latitude;
+    private final float[] longitude;
+    private final byte[] flags;
+    private final String[] dictionary;
+
+    private IpGeolocationDatabase(int[] v4Start, int[] v4End, int[] v4Record,
+                                  long[] v6StartHi, long[] v6StartLo, long[] v6EndHi, long[] v6EndLo, int[] v6Record,
+                                  int[] country, int[] city, float[] latitude, float[] longitude, byte[] flags,
+                                  String[] dictionary) {
+        this.v4Start = v4Start;
+        this.v4End = v4End;
+        this.v4Record = v4Record;
+        this.v6StartHi = v6StartHi;
+        this.v6StartLo = v6StartLo;
+        this.v6EndHi = v6EndHi;
+        this.v6EndLo = v6EndLo;
+        this.v6Record = v6Record;
+        this.country = country;
+        this.city = city;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.flags = flags;
+        this.dictionary = dictionary;
+    }
+
+    public static IpGeolocationDatabase empty() {
+        return new IpGeolocationDatabase(new int[0], new int[0], new int[0],
+            new long[0], new long[0], new long[0], new long[0], new int[0],
+            new int[0], new int[0], new float[0], new float[0], new byte[0], new String[0]);
+    }
+
+    /**
+     * Load a database, choosing the format from the file extension (.csv or binary)
+     */
+    public static IpGeolocationDatabase load(Path path) throws IOException {
+        if (path.getFileName().toString().toLowerCase().endsWith(".csv")) {
+            return loadCsv(path);
+        }
+        return loadBinary(path);
+    }
+
+    /**
+     * Look up an address. Returns null when the address is malformed or not covered by any range.
+     */
+    public GeoLocation lookup(String ipAddress) {
+        if (ipAddress == null || ipAddress.isEmpty()) {
+            return null;
+        }
+
+        long ipv4 = parseIpv4(ipAddress);
+        if (ipv4 >= 0) {
+            return lookupIpv4((int) ipv4);
+        }
+
+        if (ipAddress.indexOf(':') < 0) {
+            return null;
+        }
+
+        try {
+            // Literal containing ':' is parsed as IPv6 without any DNS resolution
+            InetAddress address = InetAddress.getByName(ipAddress);
+            byte[] bytes = address.getAddress();
+            if (address instanceof Inet4Address) {
+                return lookupIpv4(ByteBuffer.wrap(bytes).getInt());
+            }
+            if (address instanceof Inet6Address) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                return lookupIpv6(buffer.getLong(), buffer.getLong());
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return null;
+    }
+
+    public int getIpv4RangeCount() {
+        return v4Start.length;
+    }
+
+    public int getIpv6RangeCount() {
+        return v6StartHi.length;
+    }
+
+    private GeoLocation lookupIpv4(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        int low = 0;
+        int high = v4Start.length - 1;
+        int candidate = -1;
+
+        // Find the last range whose start is <= address
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (v4Start[mid] <= key) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (candidate < 0 || key > v4End[candidate]) {
+            return null;
+        }
+        return toLocation(v4Record[candidate]);
+    }
+
+    private GeoLocation lookupIpv6(long hi, long lo) {
+        int low = 0;
+        int high = v6StartHi.length - 1;
+        int candidate = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareUnsigned128(v6StartHi[mid], v6StartLo[mid], hi, lo) <= 0) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (candidate < 0 || compareUnsigned128(hi, lo, v6EndHi[candidate], v6EndLo[candidate]) > 0) {
+            return null;
+        }
+        return toLocation(v6Record[candidate]);
+    }
+
+    private GeoLocation toLocation(int record) {
+        return new GeoLocation(
+            dictionary[country[record]],
+            dictionary[city[record]],
+            latitude[record],
+            longitude[record],
+            flags[record]
+        );
+    }
+
+    /**
+     * Write the database in the binary format that {@link #loadBinary(Path)} memory-maps
+     */
+    public void writeBinary(Path path) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(v4Start.length);
+            out.writeInt(v6StartHi.length);
+            out.writeInt(country.length);
+            out.writeInt(dictionary.length);
+
+            for (String entry : dictionary) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            for (int i = 0; i < country.length; i++) {
+                out.writeInt(country[i]);
+                out.writeInt(city[i]);
+                out.writeFloat(latitude[i]);
+                out.writeFloat(longitude[i]);
+                out.writeByte(flags[i]);
+            }
+
+            for (int i = 0; i < v4Start.length; i++) {
+                out.writeInt(v4Start[i]);
+                out.writeInt(v4End[i]);
+                out.writeInt(v4Record[i]);
+            }
+
+            for (int i = 0; i < v6StartHi.length; i++) {
+                out.writeLong(v6StartHi[i]);
+                out.writeLong(v6StartLo[i]);
+                out.writeLong(v6EndHi[i]);
+                out.writeLong(v6EndLo[i]);
+                out.writeInt(v6Record[i]);
+            }
+        }
+    }
+
+    private static IpGeolocationDatabase loadBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a geolocation database: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported geolocation database version " + version);
+            }
+
+            int v4Count = buffer.getInt();
+            int v6Count = buffer.getInt();
+            int recordCount = buffer.getInt();
+            int dictionarySize = buffer.getInt();
+
+            String[] dictionary = new String[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int[] country = new int[recordCount];
+            int[] city = new int[recordCount];
+            float[] latitude = new float[recordCount];
+            float[] longitude = new float[recordCount];
+            byte[] flags = new byte[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                country[i] = buffer.getInt();
+                city[i] = buffer.getInt();
+                latitude[i] = buffer.getFloat();
+                longitude[i] = buffer.getFloat();
+                flags[i] = buffer.get();
+            }
+
+            int[] v4Start = new int[v4Count];
+            int[] v4End = new int[v4Count];
+            int[] v4Record = new int[v4Count];
+            for (int i = 0; i < v4Count; i++) {
+                v4Start[i] = buffer.getInt();
+                v4End[i] = buffer.getInt();
+                v4Record[i] = buffer.getInt();
+            }
+
+            long[] v6StartHi = new long[v6Count];
+            long[] v6StartLo = new long[v6Count];
+            long[] v6EndHi = new long[v6Count];
+            long[] v6EndLo = new long[v6Count];
+            int[] v6Record = new int[v6Count];
+            for (int i = 0; i < v6Count; i++) {
+                v6StartHi[i] = buffer.getLong();
+                v6StartLo[i] = buffer.getLong();
+                v6EndHi[i] = buffer.getLong();
+                v6EndLo[i] = buffer.getLong();
+                v6Record[i] = buffer.getInt();
+            }
+
+            return new IpGeolocationDatabase(v4Start, v4End, v4Record,
+                v6StartHi, v6StartLo, v6EndHi, v6EndLo, v6Record,
+                country, city, latitude, longitude, flags, dictionary);
+        }
+    }
+
+    private static IpGeolocationDatabase loadCsv(Path path) throws IOException {
+        List<long[]> v4Rows = new ArrayList<>();
+        List<long[]> v6Rows = new ArrayList<>();
+        List<int[]> recordRefs = new ArrayList<>();
+        List<float[]> coordinates = new ArrayList<>();
+        List<Byte> recordFlags = new ArrayList<>();
+        Map<String, Integer> dictionaryIndex = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("start_ip")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+                if (fields.length < 6) {
+                    throw new IOException("Malformed geolocation row at line " + lineNumber);
+                }
+
+                int record = recordRefs.size();
+                recordRefs.add(new int[] {
+                    intern(fields[2].trim(), dictionaryIndex, dictionary),
+                    intern(fields[3].trim(), dictionaryIndex, dictionary)
+                });
+                coordinates.add(new float[] {
+                    Float.parseFloat(fields[4].trim()),
+                    Float.parseFloat(fields[5].trim())
+                });
+                recordFlags.add(parseFlags(fields.length > 6 ? fields[6].trim() : ""));
+
+                String start = fields[0].trim();
+                String end = fields[1].trim();
+                long startV4 = parseIpv4(start);
+                long endV4 = parseIpv4(end);
+                if (startV4 >= 0 && endV4 >= 0) {
+                    v4Rows.add(new long[] {startV4, endV4, record});
+                } else {
+                    long[] startV6 = parseIpv6(start);
+                    long[] endV6 = parseIpv6(end);
+                    if (startV6 == null || endV6 == null) {
+                        throw new IOException("Invalid address range at line " + lineNumber);
+                    }
+                    v6Rows.add(new long[] {startV6[0], startV6[1], endV6[0], endV6[1], record});
+                }
+            }
+        }
+
+        v4Rows.sort((a, b) -> Long.compare(a[0], b[0]));
+        v6Rows.sort((a, b) -> compareUnsigned128(a[0], a[1], b[0], b[1]));
+
+        int[] v4Start = new int[v4Rows.size()];
+        int[] v4End = new int[v4Rows.size()];
+        int[] v4Record = new int[v4Rows.size()];
+        for (int i = 0; i < v4Rows.size(); i++) {
+            long[] row = v4Rows.get(i);
+            v4Start[i] = ((int) row[0]) ^ Integer.MIN_VALUE;
+            v4End[i] = ((int) row[1]) ^ Integer.MIN_VALUE;
+            v4Record[i] = (int) row[2];
+        }
+
+        long[] v6StartHi = new long[v6Rows.size()];
+        long[] v6StartLo = new long[v6Rows.size()];
+        long[] v6EndHi = new long[v6Rows.size()];
+        long[] v6EndLo = new long[v6Rows.size()];
+        int[] v6Record = new int[v6Rows.size()];
+        for (int i = 0; i < v6Rows.size(); i++) {
+            long[] row = v6Rows.get(i);
+            v6StartHi[i] = row[0];
+            v6StartLo[i] = row[1];
+            v6EndHi[i] = row[2];
+            v6EndLo[i] = row[3];
+            v6Record[i] = (int) row[4];
+        }
+
+        int recordCount = recordRefs.size();
+        int[] country = new int[recordCount];
+        int[] city = new int[recordCount];
+        float[] latitude = new float[recordCount];
+        float[] longitude = new float[recordCount];
+        byte[] flags = new byte[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            country[i] = recordRefs.get(i)[0];
+            city[i] = recordRefs.get(i)[1];
+            latitude[i] = coordinates.get(i)[0];
+            longitude[i] = coordinates.get(i)[1];
+            flags[i] = recordFlags.get(i);
+        }
+
+        return new IpGeolocationDatabase(v4Start, v4End, v4Record,
+            v6StartHi, v6StartLo, v6EndHi, v6EndLo, v6Record,
+            country, city, latitude, longitude, flags, dictionary.toArray(new String[0]));
+    }
+
+    private static int intern(String value, Map<String, Integer> index, List<String> dictionary) {
+        return index.computeIfAbsent(value, v -> {
+            dictionary.add(v);
+            return dictionary.size() - 1;
+        });
+    }
+
+    private static byte parseFlags(String value) {
+        int result = 0;
+        String upper = value.toUpperCase();
+        if (upper.indexOf('V') >= 0) result |= GeoLocation.FLAG_VPN;
+        if (upper.indexOf('P') >= 0) result |= GeoLocation.FLAG_PROXY;
+        if (upper.indexOf('T') >= 0) result |= GeoLocation.FLAG_TOR;
+        return (byte) result;
+    }
+
+    /**
+     * Parse a dotted-quad IPv4 address without allocation. Returns -1 if the input is not IPv4.
+     */
+    static long parseIpv4(String value) {
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    private static long[] parseIpv6(String value) {
+        if (value.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            byte[] bytes = InetAddress.getByName(value).getAddress();
+            if (bytes.length != 16) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new long[] {buffer.getLong(), buffer.getLong()};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int compareUnsigned128(long aHi, long aLo, long bHi, long bLo) {
+        int hi = Long.compareUnsigned(aHi, bHi);
+        return hi != 0 ? hi : Long.compareUnsigned(aLo, bLo);
+    }
+
+    @Override
+    public String toString() {
+        return "IpGeolocationDatabase{ipv4Ranges=" + v4Start.length
+            + ", ipv6Ranges=" + v6StartHi.length
+            + ", records=" + country.length
+            + ", dictionary=" + dictionary.length + "}";
+    }
+}
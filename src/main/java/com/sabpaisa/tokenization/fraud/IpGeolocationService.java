@@ -0,0 +1,169 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves client IP addresses to a location for fraud evaluation.
+ *
+ * Lookups are served from a local {@link IpGeolocationDatabase} behind a bounded
+ * LRU cache. The ip-api.com HTTP provider is only used as an optional enrichment
+ * fallback for addresses the local database does not cover, and is always bounded
+ * by a strict timeout so it can never stall tokenization.
+ */
+@Component
+public class IpGeolocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IpGeolocationService.class);
+
+    private static final String IP_GEOLOCATION_API = "http://ip-api.com/json/";
+
+    // Cached marker for addresses that are known not to resolve
+    private static final GeoLocation UNKNOWN = new GeoLocation(null, null, 0, 0, 0);
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${app.fraud-detection.geo.database-path:}")
+    private String databasePath;
+
+    @Value("${app.fraud-detection.geo.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${app.fraud-detection.geo.http-fallback.enabled:false}")
+    private boolean httpFallbackEnabled;
+
+    @Value("${app.fraud-detection.geo.http-fallback.timeout-ms:300}")
+    private long httpFallbackTimeoutMs;
+
+    private volatile IpGeolocationDatabase database = IpGeolocationDatabase.empty();
+
+    private Map<String, GeoLocation> cache;
+
+    private WebClient webClient;
+
+    @PostConstruct
+    public void initialize() {
+        final int maxEntries = Math.max(cacheSize, 16);
+        cache = new LinkedHashMap<>(maxEntries * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeoLocation> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        webClient = webClientBuilder.build();
+        reload();
+    }
+
+    /**
+     * (Re)load the local database from the configured path and clear the cache
+     */
+    public synchronized void reload() {
+        if (databasePath == null || databasePath.isBlank()) {
+            logger.warn("No IP geolocation database configured (app.fraud-detection.geo.database-path); "
+                + "geo rules will rely on the HTTP fallback only if it is enabled");
+            return;
+        }
+
+        Path path = Paths.get(databasePath);
+        if (!Files.isReadable(path)) {
+            logger.error("IP geolocation database not readable: {}", path);
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            IpGeolocationDatabase loaded = IpGeolocationDatabase.load(path);
+            database = loaded;
+            synchronized (cache) {
+                cache.clear();
+            }
+            logger.info("Loaded {} from {} in {}ms", loaded, path, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Failed to load IP geolocation database from {}", path, e);
+        }
+    }
+
+    /**
+     * Resolve an address from the local database only. Returns null if unknown.
+     */
+    public GeoLocation lookup(String ipAddress) {
+        GeoLocation cached;
+        synchronized (cache) {
+            cached = cache.get(ipAddress);
+        }
+        if (cached != null) {
+            return cached == UNKNOWN ? null : cached;
+        }
+
+        GeoLocation location = database.lookup(ipAddress);
+        cachePut(ipAddress, location);
+        return location;
+    }
+
+    /**
+     * Resolve an address, falling back to the HTTP provider when the local database
+     * has no match and the fallback is enabled. The returned future always completes
+     * within the configured fallback timeout and never completes exceptionally.
+     */
+    public CompletableFuture<GeoLocation> resolve(String ipAddress) {
+        GeoLocation local = lookup(ipAddress);
+        if (local != null || !httpFallbackEnabled) {
+            return CompletableFuture.completedFuture(local);
+        }
+
+        return webClient.get()
+            .uri(IP_GEOLOCATION_API + ipAddress)
+            .retrieve()
+            .bodyToMono(Map.class)
+            .map(this::fromHttpResponse)
+            .timeout(Duration.ofMillis(httpFallbackTimeoutMs))
+            .doOnNext(location -> cachePut(ipAddress, location))
+            .onErrorResume(e -> {
+                logger.debug("Geolocation fallback failed for IP {}: {}", ipAddress, e.toString());
+                return Mono.empty();
+            })
+            .toFuture();
+    }
+
+    public IpGeolocationDatabase getDatabase() {
+        return database;
+    }
+
+    private void cachePut(String ipAddress, GeoLocation location) {
+        synchronized (cache) {
+            cache.put(ipAddress, location != null ? location : UNKNOWN);
+        }
+    }
+
+    private GeoLocation fromHttpResponse(Map<?, ?> geoData) {
+        int flags = 0;
+        // ip-api reports anonymising services as "proxy" and datacenter ranges as "hosting"
+        if (Boolean.TRUE.equals(geoData.get("proxy"))) flags |= GeoLocation.FLAG_VPN;
+        if (Boolean.TRUE.equals(geoData.get("hosting"))) flags |= GeoLocation.FLAG_PROXY;
+
+        Object lat = geoData.get("lat");
+        Object lon = geoData.get("lon");
+        return new GeoLocation(
+            (String) geoData.get("countryCode"),
+            (String) geoData.get("city"),
+            lat instanceof Number ? ((Number) lat).doubleValue() : 0.0,
+            lon instanceof Number ? ((Number) lon).doubleValue() : 0.0,
+            flags
+        );
+    }
+}
@@ -0,0 +1,168 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Last known location per merchant, card and device, used for impossible-travel
+ * detection without querying the events table.
+ *
+ * Entries are compact primitive records and expire after the configured TTL.
+ * Memory is bounded by a maximum entry count; expired entries are swept
+ * periodically on write, and if the cache is still full the oldest entries
+ * are evicted down to 90% of the limit.
+ */
+@Component
+public class LastLocationCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastLocationCache.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Expired entries are swept once every this many writes
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    @Value("${app.fraud-detection.last-location.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${app.fraud-detection.last-location.max-entries:100000}")
+    private int maxEntries;
+
+    private final ConcurrentHashMap<String, Location> locations = new ConcurrentHashMap<>();
+
+    private final AtomicInteger writesSinceSweep = new AtomicInteger();
+
+    /**
+     * Returns true if any of the merchant, card or device was last seen more than
+     * {@code maxDistanceKm} away from the given position within the TTL window.
+     * Null keys are skipped.
+     */
+    public boolean isImpossibleTravel(String merchantId, String cardNumber, String deviceFingerprint,
+                                      double latitude, double longitude, long epochMillis,
+                                      double maxDistanceKm) {
+        long cutoff = epochMillis - ttlMinutes * 60_000L;
+        return exceeds(merchantKey(merchantId), latitude, longitude, cutoff, maxDistanceKm)
+            || exceeds(cardKey(cardNumber), latitude, longitude, cutoff, maxDistanceKm)
+            || exceeds(deviceKey(deviceFingerprint), latitude, longitude, cutoff, maxDistanceKm);
+    }
+
+    /**
+     * Record the position as the latest location for the merchant, card and device
+     */
+    public void record(String merchantId, String cardNumber, String deviceFingerprint,
+                       double latitude, double longitude, long epochMillis) {
+        Location location = new Location(latitude, longitude, epochMillis);
+        put(merchantKey(merchantId), location);
+        put(cardKey(cardNumber), location);
+        put(deviceKey(deviceFingerprint), location);
+
+        if (writesSinceSweep.incrementAndGet() >= SWEEP_INTERVAL || locations.size() > maxEntries) {
+            writesSinceSweep.set(0);
+            evict(epochMillis);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", locations.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMinutes", ttlMinutes);
+        return stats;
+    }
+
+    /**
+     * Great-circle distance in kilometres using the haversine formula
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(latDistance / 2);
+        double sinLon = Math.sin(lonDistance / 2);
+        double a = sinLat * sinLat
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private boolean exceeds(String key, double latitude, double longitude, long cutoff, double maxDistanceKm) {
+        if (key == null) {
+            return false;
+        }
+        Location last = locations.get(key);
+        return last != null
+            && last.epochMillis > cutoff
+            && distanceKm(last.latitude, last.longitude, latitude, longitude) > maxDistanceKm;
+    }
+
+    private void put(String key, Location location) {
+        if (key != null) {
+            // Never let an out-of-order write replace a newer position
+            locations.merge(key, location, (old, updated) -> updated.epochMillis >= old.epochMillis ? updated : old);
+        }
+    }
+
+    private synchronized void evict(long nowMillis) {
+        long cutoff = nowMillis - ttlMinutes * 60_000L;
+        locations.values().removeIf(location -> location.epochMillis <= cutoff);
+
+        // Still over capacity with live entries: drop the oldest down to 90% of the limit
+        if (locations.size() > maxEntries) {
+            long[] timestamps = locations.values().stream().mapToLong(location -> location.epochMillis).toArray();
+            Arrays.sort(timestamps);
+            int excess = timestamps.length - maxEntries * 9 / 10;
+            long oldestKept = timestamps[Math.min(excess, timestamps.length - 1)];
+            locations.values().removeIf(location -> location.epochMillis < oldestKept);
+            logger.debug("Last-location cache over capacity, evicted entries older than {}", oldestKept);
+        }
+    }
+
+    private static String merchantKey(String merchantId) {
+        return merchantId == null ? null : "m:" + merchantId;
+    }
+
+    private static String deviceKey(String deviceFingerprint) {
+        return deviceFingerprint == null ? null : "d:" + deviceFingerprint;
+    }
+
+    // Cards are keyed by a truncated digest so no PAN is held in memory
+    private static String cardKey(String cardNumber) {
+        if (cardNumber == null || cardNumber.isEmpty()) {
+            return null;
+        }
+        MessageDigest sha256 = SHA256.get();
+        sha256.reset();
+        byte[] hash = sha256.digest(cardNumber.getBytes(StandardCharsets.UTF_8));
+        return "c:" + Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+    }
+
+    private static final class Location {
+        final double latitude;
+        final double longitude;
+        final long epochMillis;
+
+        Location(double latitude, double longitude, long epochMillis) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.epochMillis = epochMillis;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Logistic regression over the fixed feature schema.
+ *
+ * Weights are indexed by schema position; features a model does not use have
+ * a zero weight. Missing (NaN) features contribute nothing.
+ */
+public class LogisticRegressionScorer implements FraudScorer {
+
+    private final String modelVersion;
+    private final double intercept;
+    private final double[] weights;
+
+    public LogisticRegressionScorer(String modelVersion, double intercept, double[] weights) {
+        if (weights.length != FraudFeatures.COUNT) {
+            throw new IllegalArgumentException("Expected " + FraudFeatures.COUNT + " weights, got " + weights.length);
+        }
+        this.modelVersion = modelVersion;
+        this.intercept = intercept;
+        this.weights = weights.clone();
+    }
+
+    @Override
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public double score(double[] features) {
+        double z = intercept;
+        for (int i = 0; i < weights.length; i++) {
+            double value = features[i];
+            if (value == value) { // skip NaN
+                z += weights[i] * value;
+            }
+        }
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+}
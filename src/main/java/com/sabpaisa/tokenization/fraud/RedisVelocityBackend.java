@@ -0,0 +1,131 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link VelocityBackend} on Redis, shared by every node.
+ *
+ * Keys are {@code fraud:velocity:{merchantId}:<type>:<bucket>}; the hash tag keeps a
+ * merchant's buckets in one cluster slot so the distinct-card union can be a single
+ * PFCOUNT. Tokens and blocked attempts are INCRBY counters, distinct cards a
+ * HyperLogLog of card digests. All writes and reads of one call go out as a single
+ * pipeline.
+ */
+public class RedisVelocityBackend implements VelocityBackend {
+
+    private static final int MINUTES = 60;
+    private static final int HOURS = 24;
+
+    // Buckets outlive their window slightly so a read at the boundary never misses one
+    private static final long MINUTE_TTL_SECONDS = 2 * 3600;
+    private static final long HOUR_TTL_SECONDS = 26 * 3600;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisVelocityBackend(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public String getName() {
+        return "redis";
+    }
+
+    @Override
+    public void apply(Map<String, Increments> increments, long nowMillis) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            increments.forEach((merchantId, pending) -> write(connection, merchantId, pending, nowMillis));
+            return null;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public VelocityCounts exchange(String merchantId, Increments increments, long nowMillis) {
+        long minute = nowMillis / 60_000L;
+        long hour = minute / 60;
+        byte[][] tokenMinutes = new byte[MINUTES][];
+        byte[][] failedMinutes = new byte[MINUTES][];
+        byte[][] cardMinutes = new byte[MINUTES][];
+        for (int i = 0; i < MINUTES; i++) {
+            tokenMinutes[i] = key(merchantId, "t", minute - i);
+            failedMinutes[i] = key(merchantId, "f", minute - i);
+            cardMinutes[i] = key(merchantId, "c", minute - i);
+        }
+        byte[][] tokenHours = new byte[HOURS][];
+        for (int i = 0; i < HOURS; i++) {
+            tokenHours[i] = key(merchantId, "th", hour - i);
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            if (increments != null) {
+                write(connection, merchantId, increments, nowMillis);
+            }
+            connection.stringCommands().mGet(tokenMinutes);
+            connection.stringCommands().mGet(failedMinutes);
+            connection.stringCommands().mGet(tokenHours);
+            connection.hyperLogLogCommands().pfCount(cardMinutes);
+            return null;
+        });
+
+        // The reads are the last four replies, after whatever the writes returned
+        int reads = results.size() - 4;
+        return new VelocityCounts(
+            sum((List<String>) results.get(reads)),
+            sum((List<String>) results.get(reads + 2)),
+            ((Number) results.get(reads + 3)).intValue(),
+            sum((List<String>) results.get(reads + 1)));
+    }
+
+    private static void write(RedisConnection connection, String merchantId, Increments pending, long nowMillis) {
+        long minute = nowMillis / 60_000L;
+        if (pending.tokens > 0) {
+            byte[] tokenMinute = key(merchantId, "t", minute);
+            connection.stringCommands().incrBy(tokenMinute, pending.tokens);
+            connection.keyCommands().expire(tokenMinute, MINUTE_TTL_SECONDS);
+            byte[] tokenHour = key(merchantId, "th", minute / 60);
+            connection.stringCommands().incrBy(tokenHour, pending.tokens);
+            connection.keyCommands().expire(tokenHour, HOUR_TTL_SECONDS);
+        }
+        if (pending.failedAttempts > 0) {
+            byte[] failedMinute = key(merchantId, "f", minute);
+            connection.stringCommands().incrBy(failedMinute, pending.failedAttempts);
+            connection.keyCommands().expire(failedMinute, MINUTE_TTL_SECONDS);
+        }
+        if (!pending.cards.isEmpty()) {
+            byte[] cardMinute = key(merchantId, "c", minute);
+            byte[][] cards = new byte[pending.cards.size()][];
+            int i = 0;
+            for (String card : pending.cards) {
+                cards[i++] = card.getBytes(StandardCharsets.UTF_8);
+            }
+            connection.hyperLogLogCommands().pfAdd(cardMinute, cards);
+            connection.keyCommands().expire(cardMinute, MINUTE_TTL_SECONDS);
+        }
+    }
+
+    private static byte[] key(String merchantId, String type, long bucket) {
+        return ("fraud:velocity:{" + merchantId + "}:" + type + ":" + bucket).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sum(List<String> values) {
+        int total = 0;
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    total += Integer.parseInt(value);
+                }
+            }
+        }
+        return total;
+    }
+}
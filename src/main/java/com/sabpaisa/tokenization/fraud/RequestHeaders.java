@@ -0,0 +1,48 @@
+package com.sabpaisa.tokenization.fraud;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Map;
+
+/**
+ * Case-insensitive, read-only view of client request headers.
+ *
+ * Headers are looked up on demand instead of being copied into a map first;
+ * fraud evaluation only ever reads a handful of them.
+ */
+@FunctionalInterface
+public interface RequestHeaders {
+
+    RequestHeaders EMPTY = name -> null;
+
+    String get(String name);
+
+    default String getOrDefault(String name, String defaultValue) {
+        String value = get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    static RequestHeaders of(HttpServletRequest request) {
+        // Servlet header lookup is already case-insensitive
+        return request::getHeader;
+    }
+
+    static RequestHeaders of(Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return EMPTY;
+        }
+        return name -> {
+            String value = headers.get(name);
+            if (value != null) {
+                return value;
+            }
+            // Containers and proxies may have changed the case of the name (Tomcat lower-cases it)
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.sabpaisa.tokenization.fraud;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe tally of baseline versus candidate rule outcomes: the decision-change
+ * matrix, per-rule trigger counts and candidate evaluation time.
+ */
+public class RuleComparison {
+
+    private static final List<String> DECISIONS = List.of("ALLOW", "MONITOR", "CHALLENGE", "BLOCK", "OTHER");
+
+    private final AtomicLongArray matrix = new AtomicLongArray(DECISIONS.size() * DECISIONS.size());
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder changed = new LongAdder();
+    private final LongAdder candidateNanos = new LongAdder();
+    private final Map<String, LongAdder> baselineTriggers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> candidateTriggers = new ConcurrentHashMap<>();
+
+    public void record(String baselineDecision, List<String> baselineTriggered,
+                       String candidateDecision, List<String> candidateTriggered, long candidateEvaluationNanos) {
+        matrix.incrementAndGet(decisionIndex(baselineDecision) * DECISIONS.size() + decisionIndex(candidateDecision));
+        evaluated.increment();
+        candidateNanos.add(candidateEvaluationNanos);
+        if (baselineDecision == null || !baselineDecision.equals(candidateDecision)) {
+            changed.increment();
+        }
+        count(baselineTriggers, baselineTriggered);
+        count(candidateTriggers, candidateTriggered);
+    }
+
+    public long getEvaluated() {
+        return evaluated.sum();
+    }
+
+    public Map<String, Object> toMap() {
+        long total = evaluated.sum();
+
+        // Only non-empty cells: baseline decision -> candidate decision -> count
+        Map<String, Map<String, Long>> decisionMatrix = new LinkedHashMap<>();
+        for (int from = 0; from < DECISIONS.size(); from++) {
+            for (int to = 0; to < DECISIONS.size(); to++) {
+                long count = matrix.get(from * DECISIONS.size() + to);
+                if (count > 0) {
+                    decisionMatrix.computeIfAbsent(DECISIONS.get(from), key -> new LinkedHashMap<>())
+                        .put(DECISIONS.get(to), count);
+                }
+            }
+        }
+
+        Map<String, Map<String, Object>> triggerRates = new TreeMap<>();
+        baselineTriggers.keySet().forEach(rule -> triggerRates.put(rule, new LinkedHashMap<>()));
+        candidateTriggers.keySet().forEach(rule -> triggerRates.put(rule, new LinkedHashMap<>()));
+        triggerRates.forEach((rule, rates) -> {
+            rates.put("baseline", rate(baselineTriggers.get(rule), total));
+            rates.put("candidate", rate(candidateTriggers.get(rule), total));
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("evaluated", total);
+        result.put("changedDecisions", changed.sum());
+        result.put("changeRate", total > 0 ? (double) changed.sum() / total : 0.0);
+        result.put("decisionMatrix", decisionMatrix);
+        result.put("triggerRates", triggerRates);
+        result.put("avgCandidateEvaluationMicros", total > 0 ? candidateNanos.sum() / 1000.0 / total : 0.0);
+        return result;
+    }
+
+    private static void count(Map<String, LongAdder> counts, List<String> triggered) {
+        if (triggered != null) {
+            for (String rule : triggered) {
+                counts.computeIfAbsent(rule, key -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    private static double rate(LongAdder count, long total) {
+        return count == null || total == 0 ? 0.0 : (double) count.sum() / total;
+    }
+
+    private static int decisionIndex(String decision) {
+        int index = decision != null ? DECISIONS.indexOf(decision) : -1;
+        return index >= 0 ? index : DECISIONS.size() - 1;
+    }
+}
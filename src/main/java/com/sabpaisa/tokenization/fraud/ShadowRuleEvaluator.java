@@ -0,0 +1,168 @@
+package com.sabpaisa.tokenization.fraud;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import com.sabpaisa.tokenization.entity.FraudDetectionRule;
+import com.sabpaisa.tokenization.fraud.FraudRuleEngine.RuleOutcome;
+import com.sabpaisa.tokenization.repository.FraudDetectionRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a candidate rule set next to the live rules on a sample of real traffic.
+ *
+ * The live path only rolls a sampling die and hands the finished event to a bounded
+ * executor of its own; when that executor is saturated the sample is shed rather than
+ * delaying the request. Candidate decisions are compared with the live decision and
+ * never acted on. Impossible-travel checks are not shadowed, since the live evaluation
+ * has already recorded the event's location by the time the shadow runs.
+ */
+@Component
+public class ShadowRuleEvaluator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowRuleEvaluator.class);
+
+    @Autowired
+    private FraudDetectionRuleRepository ruleRepository;
+
+    @Autowired
+    private FraudRuleEngine ruleEngine;
+
+    @Value("${app.fraud-detection.shadow.threads:1}")
+    private int threads;
+
+    @Value("${app.fraud-detection.shadow.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    // Null when no shadow evaluation is running
+    private volatile ShadowRun run;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "fraud-shadow-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start (or replace) a shadow run of the candidate rules on the given fraction of traffic
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> begin(List<FraudDetectionRule> candidateRules, boolean mergeWithActiveRules, double sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be in (0, 1]");
+        }
+        FraudRuleSet candidate = mergeWithActiveRules
+            ? FraudRuleSet.withOverrides(ruleRepository.findByActiveTrue(), candidateRules)
+            : FraudRuleSet.of(candidateRules);
+
+        run = new ShadowRun(candidate, sampleRate);
+        logger.info("Shadow rule evaluation started on {}% of traffic with rules {}",
+            sampleRate * 100, candidate.getRuleNames());
+        return getReport();
+    }
+
+    /**
+     * Stop the current shadow run and return its final report
+     */
+    public Map<String, Object> end() {
+        Map<String, Object> report = getReport();
+        run = null;
+        logger.info("Shadow rule evaluation stopped");
+        return report;
+    }
+
+    /**
+     * Called on the live path once the decision is made; never blocks
+     */
+    public void offer(FraudDetectionEvent event) {
+        ShadowRun current = run;
+        if (current == null || ThreadLocalRandom.current().nextDouble() >= current.sampleRate) {
+            return;
+        }
+
+        current.sampled.increment();
+        try {
+            executor.execute(() -> evaluate(current, event));
+        } catch (RejectedExecutionException e) {
+            current.shed.increment();
+        }
+    }
+
+    public Map<String, Object> getReport() {
+        ShadowRun current = run;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("active", current != null);
+        if (current == null) {
+            return report;
+        }
+        report.put("startedAt", current.startedAt);
+        report.put("sampleRate", current.sampleRate);
+        report.put("candidateRules", current.candidate.getRuleNames());
+        report.put("sampled", current.sampled.sum());
+        report.put("shed", current.shed.sum());
+        report.put("failed", current.failed.sum());
+        report.put("queued", executor.getQueue().size());
+        // Baseline is the live decision and the rules it actually triggered
+        report.putAll(current.comparison.toMap());
+        return report;
+    }
+
+    private void evaluate(ShadowRun current, FraudDetectionEvent event) {
+        try {
+            long start = System.nanoTime();
+            RuleOutcome outcome = ruleEngine.evaluate(current.candidate, event, null);
+            String decision = FraudRuleEngine.decide(
+                FraudRuleEngine.riskScore(outcome.getRuleScore(), event.getMlFraudProbability()));
+            current.comparison.record(event.getDecision(), event.getTriggeredRules(),
+                decision, outcome.getTriggeredRules(), System.nanoTime() - start);
+        } catch (Exception e) {
+            current.failed.increment();
+            logger.debug("Shadow evaluation failed for {}: {}", event.getEventId(), e.toString());
+        }
+    }
+
+    private static class ShadowRun {
+        final FraudRuleSet candidate;
+        final double sampleRate;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final RuleComparison comparison = new RuleComparison();
+        final LongAdder sampled = new LongAdder();
+        final LongAdder shed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        ShadowRun(FraudRuleSet candidate, double sampleRate) {
+            this.candidate = candidate;
+            this.sampleRate = sampleRate;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sabpaisa.tokenization.fraud;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared storage behind {@link ClusterVelocityStore}.
+ *
+ * Counts are kept in per-minute buckets (tokens, blocked attempts, distinct cards)
+ * and per-hour buckets (tokens, for the daily total). Implementations must be
+ * thread-safe; each call should cost at most one round trip to the backing store.
+ */
+public interface VelocityBackend {
+
+    String getName();
+
+    /**
+     * Add the pre-aggregated increments of several merchants to the buckets for {@code nowMillis}
+     */
+    void apply(Map<String, Increments> increments, long nowMillis);
+
+    /**
+     * Add the merchant's pending increments (may be null) and read its windowed totals
+     */
+    VelocityCounts exchange(String merchantId, Increments increments, long nowMillis);
+
+    /**
+     * Increments recorded on this node and not yet written to the backend.
+     * Only mutated while its owner holds it exclusively.
+     */
+    final class Increments {
+        int tokens;
+        int failedAttempts;
+        final Set<String> cards = new HashSet<>();
+
+        void add(Increments other) {
+            tokens += other.tokens;
+            failedAttempts += other.failedAttempts;
+            cards.addAll(other.cards);
+        }
+
+        public int getTokens() { return tokens; }
+        public int getFailedAttempts() { return failedAttempts; }
+        public Set<String> getCards() { return cards; }
+    }
+}
@@ -0,0 +1,30 @@
+package com.sabpaisa.tokenization.fraud;
+
+/**
+ * Windowed velocity totals for one merchant: tokens in the last hour and day,
+ * distinct cards in the last hour and blocked attempts in the last hour.
+ */
+public final class VelocityCounts {
+
+    private final int tokensLastHour;
+    private final int tokensLastDay;
+    private final int uniqueCardsLastHour;
+    private final int failedAttemptsLastHour;
+
+    public VelocityCounts(int tokensLastHour, int tokensLastDay, int uniqueCardsLastHour, int failedAttemptsLastHour) {
+        this.tokensLastHour = tokensLastHour;
+        this.tokensLastDay = tokensLastDay;
+        this.uniqueCardsLastHour = uniqueCardsLastHour;
+        this.failedAttemptsLastHour = failedAttemptsLastHour;
+    }
+
+    public VelocityCounts plus(int tokens, int cards, int failedAttempts) {
+        return new VelocityCounts(tokensLastHour + tokens, tokensLastDay + tokens,
+            uniqueCardsLastHour + cards, failedAttemptsLastHour + failedAttempts);
+    }
+
+    public int getTokensLastHour() { return tokensLastHour; }
+    public int getTokensLastDay() { return tokensLastDay; }
+    public int getUniqueCardsLastHour() { return uniqueCardsLastHour; }
+    public int getFailedAttemptsLastHour() { return failedAttemptsLastHour; }
+}
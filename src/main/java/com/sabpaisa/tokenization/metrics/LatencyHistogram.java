@@ -0,0 +1,162 @@
+package com.sabpaisa.tokenization.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ *
+ * Values are recorded in microseconds. Every power of two is split into eight
+ * linear sub-buckets, so reported percentiles are within ~12% of the true value
+ * while the whole histogram stays a fixed array of a few hundred counters.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    // Values above 2^40 microseconds (~12 days) are clamped into the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long durationNanos) {
+        recordMicros(Math.max(0, durationNanos / 1000));
+    }
+
+    public void recordMicros(long micros) {
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Add all observations of another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long value = other.buckets.get(i);
+            if (value != 0) {
+                buckets.addAndGet(i, value);
+            }
+        }
+        count.add(other.count.sum());
+        sumMicros.add(other.sumMicros.sum());
+        maxMicros.accumulateAndGet(other.maxMicros.get(), Math::max);
+    }
+
+    /**
+     * Clear all observations; samples recorded concurrently with the reset may be lost
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.set(0);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sumMicros.sum() / n;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Observations slower than the threshold, to bucket precision: a bucket counts
+     * as slower when its upper bound exceeds the threshold
+     */
+    public long getCountAbove(long thresholdMicros) {
+        long above = 0;
+        for (int i = bucketIndex(thresholdMicros); i < BUCKET_COUNT; i++) {
+            if (bucketUpperBound(i) > thresholdMicros) {
+                above += buckets.get(i);
+            }
+        }
+        return above;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), in microseconds
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Summary in milliseconds, suitable for JSON stats endpoints
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", getCount());
+        stats.put("meanMs", round(getMeanMicros() / 1000.0));
+        stats.put("p50Ms", round(getPercentileMicros(50) / 1000.0));
+        stats.put("p90Ms", round(getPercentileMicros(90) / 1000.0));
+        stats.put("p99Ms", round(getPercentileMicros(99) / 1000.0));
+        stats.put("p999Ms", round(getPercentileMicros(99.9) / 1000.0));
+        stats.put("maxMs", round(getMaxMicros() / 1000.0));
+        return stats;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < LINEAR_LIMIT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int exponent = offset / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = offset % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+}
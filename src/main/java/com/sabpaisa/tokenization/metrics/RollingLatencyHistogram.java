@@ -0,0 +1,144 @@
+package com.sabpaisa.tokenization.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of successful calls, and the number of failed calls, over a sliding
+ * time window. Calls the caller abandoned count as failed, and their elapsed time
+ * is kept apart as a lower bound of their latency.
+ *
+ * Time is cut into fixed slots, each with its own {@link LatencyHistogram} and
+ * error counter, held in a ring that is reused in place: the first call into a
+ * slot whose interval has passed resets it. Recording therefore never allocates.
+ * A read merges the slots covering the requested window into a new histogram;
+ * windows are whole slots, so they may reach up to one slot further back. A few
+ * samples recorded at the moment a slot is reset may be dropped.
+ */
+public class RollingLatencyHistogram {
+
+    private final long slotMillis;
+    private final LatencyHistogram[] slots;
+    private final LongAdder[] errors;
+    private final LatencyHistogram[] abandoned;
+
+    // Interval number (time / slotMillis) each slot currently holds
+    private final AtomicLongArray slotIntervals;
+
+    public RollingLatencyHistogram(int slotCount, long slotMillis) {
+        this.slotMillis = slotMillis;
+        this.slots = new LatencyHistogram[slotCount];
+        this.errors = new LongAdder[slotCount];
+        this.abandoned = new LatencyHistogram[slotCount];
+        this.slotIntervals = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+            abandoned[i] = new LatencyHistogram();
+            slotIntervals.set(i, -1);
+        }
+    }
+
+    public void record(long durationNanos, boolean success) {
+        int slot = currentSlot(System.currentTimeMillis());
+        if (success) {
+            slots[slot].record(durationNanos);
+        } else {
+            errors[slot].increment();
+        }
+    }
+
+    /**
+     * A call given up before it finished, after the given time; counts as failed
+     */
+    public void recordAbandoned(long elapsedNanos) {
+        int slot = currentSlot(System.currentTimeMillis());
+        abandoned[slot].record(elapsedNanos);
+        errors[slot].increment();
+    }
+
+    /**
+     * Observations of roughly the last {@code windowMillis}, at most the whole ring
+     */
+    public Window window(long windowMillis) {
+        long now = System.currentTimeMillis();
+        long current = now / slotMillis;
+        long oldest = current - Math.min(slots.length, Math.max(1, (windowMillis + slotMillis - 1) / slotMillis)) + 1;
+        LatencyHistogram merged = new LatencyHistogram();
+        LatencyHistogram mergedAbandoned = new LatencyHistogram();
+        long errorCount = 0;
+        for (int i = 0; i < slots.length; i++) {
+            long interval = slotIntervals.get(i);
+            if (interval >= oldest && interval <= current) {
+                merged.add(slots[i]);
+                mergedAbandoned.add(abandoned[i]);
+                errorCount += errors[i].sum();
+            }
+        }
+        return new Window(merged, errorCount, mergedAbandoned);
+    }
+
+    /**
+     * Longest window this histogram can answer for
+     */
+    public long getSpanMillis() {
+        return slots.length * slotMillis;
+    }
+
+    private int currentSlot(long now) {
+        long interval = now / slotMillis;
+        int slot = (int) (interval % slots.length);
+        long held = slotIntervals.get(slot);
+        if (held != interval && slotIntervals.compareAndSet(slot, held, interval)) {
+            slots[slot].reset();
+            errors[slot].reset();
+            abandoned[slot].reset();
+        }
+        return slot;
+    }
+
+    /**
+     * Latencies of the successful calls and the count of failed ones in one window
+     */
+    public static final class Window {
+        private final LatencyHistogram latencies;
+        private final long errors;
+        private final LatencyHistogram abandoned;
+
+        Window(LatencyHistogram latencies, long errors, LatencyHistogram abandoned) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.abandoned = abandoned;
+        }
+
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * Elapsed time of the abandoned calls, each a lower bound of its latency
+         */
+        public LatencyHistogram getAbandoned() {
+            return abandoned;
+        }
+
+        public long getCount() {
+            return latencies.getCount() + errors;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Share of calls that failed or took longer than the threshold
+         */
+        public double getBadFraction(long thresholdMicros) {
+            long count = getCount();
+            if (count == 0) {
+                return 0.0;
+            }
+            return (double) (errors + latencies.getCountAbove(thresholdMicros)) / count;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.CloudReplicationFailure;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CloudReplicationFailureRepository extends JpaRepository<CloudReplicationFailure, Long> {
+
+    @Query("SELECT f FROM CloudReplicationFailure f ORDER BY f.id DESC")
+    List<CloudReplicationFailure> findLatest(Pageable page);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CloudReplicationFailure f WHERE f.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
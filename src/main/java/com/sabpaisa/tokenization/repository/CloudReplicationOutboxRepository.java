@@ -0,0 +1,37 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.CloudReplicationOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CloudReplicationOutboxRepository extends JpaRepository<CloudReplicationOutboxEntry, Long> {
+
+    @Query("SELECT e FROM CloudReplicationOutboxEntry e WHERE e.provider = :provider AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<CloudReplicationOutboxEntry> findDue(@Param("provider") String provider, @Param("now") LocalDateTime now,
+                                              Pageable page);
+
+    // Also removes older entries of the same tokens still waiting on a retry; the latest state supersedes them
+    @Modifying
+    @Query("DELETE FROM CloudReplicationOutboxEntry e WHERE e.provider = :provider AND e.tokenId IN :tokenIds AND e.id <= :maxId")
+    int deleteDelivered(@Param("provider") String provider, @Param("tokenIds") Collection<Long> tokenIds,
+                        @Param("maxId") Long maxId);
+
+    @Modifying
+    @Query("UPDATE CloudReplicationOutboxEntry e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, " +
+        "e.lastError = :error WHERE e.provider = :provider AND e.tokenId = :tokenId AND e.id <= :maxId")
+    int recordFailure(@Param("provider") String provider, @Param("tokenId") Long tokenId, @Param("maxId") Long maxId,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    // provider, pending entries, oldest pending entry
+    @Query("SELECT e.provider, COUNT(e), MIN(e.createdAt) FROM CloudReplicationOutboxEntry e GROUP BY e.provider")
+    List<Object[]> summarizePending();
+}
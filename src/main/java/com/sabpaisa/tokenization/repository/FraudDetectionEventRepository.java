@@ -2,6 +2,7 @@ package com.sabpaisa.tokenization.repository;
 
 import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,7 +12,10 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FraudDetectionEventRepository extends JpaRepository<FraudDetectionEvent, Long> {
+public interface FraudDetectionEventRepository extends JpaRepository<FraudDetectionEvent, Long>,
+        JpaSpecificationExecutor<FraudDetectionEvent>, FraudDetectionEventRepositoryCustom {
+    
+    Optional<FraudDetectionEvent> findByEventId(String eventId);
     
     List<FraudDetectionEvent> findByMerchantId(String merchantId);
     
@@ -23,8 +27,10 @@ public interface FraudDetectionEventRepository extends JpaRepository<FraudDetect
     
     List<FraudDetectionEvent> findByDeviceFingerprintAndIsFalsePositiveFalse(String deviceFingerprint);
     
-    @Query("SELECT e FROM FraudDetectionEvent e WHERE e.merchantId = :merchantId AND e.createdAt > :after ORDER BY e.createdAt DESC")
-    Optional<FraudDetectionEvent> findLastEventByMerchantId(@Param("merchantId") String merchantId, @Param("after") LocalDateTime after);
+    boolean existsByDeviceFingerprintAndIsFalsePositiveFalse(String deviceFingerprint);
+    
+    @Query("SELECT DISTINCT e.deviceFingerprint FROM FraudDetectionEvent e WHERE e.isFalsePositive = false AND e.deviceFingerprint IS NOT NULL")
+    List<String> findConfirmedFraudDeviceFingerprints();
     
     @Query("SELECT COUNT(e) FROM FraudDetectionEvent e WHERE e.merchantId = :merchantId AND e.createdAt > :after AND e.decision = 'BLOCK'")
     Integer countFailedAttemptsByMerchantIdAndCreatedAtAfter(@Param("merchantId") String merchantId, @Param("after") LocalDateTime after);
@@ -0,0 +1,21 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface FraudDetectionEventRepositoryCustom {
+    
+    /**
+     * Newest-first events matching the specification, at most {@code limit} rows and no count query
+     */
+    List<FraudDetectionEvent> findNewest(Specification<FraudDetectionEvent> spec, int limit);
+    
+    /**
+     * Events created in [from, to) with id greater than {@code afterId}, in id order, with their
+     * collections loaded; must run inside a transaction
+     */
+    List<FraudDetectionEvent> findArchiveChunk(LocalDateTime from, LocalDateTime to, long afterId, int limit);
+}
@@ -0,0 +1,65 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class FraudDetectionEventRepositoryCustomImpl implements FraudDetectionEventRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<FraudDetectionEvent> findNewest(Specification<FraudDetectionEvent> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FraudDetectionEvent> query = cb.createQuery(FraudDetectionEvent.class);
+        Root<FraudDetectionEvent> root = query.from(FraudDetectionEvent.class);
+        
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        // id breaks ties between events created in the same instant so keyset pages never overlap
+        query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+        
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+    
+    @Override
+    public List<FraudDetectionEvent> findArchiveChunk(LocalDateTime from, LocalDateTime to, long afterId, int limit) {
+        List<FraudDetectionEvent> events = entityManager.createQuery(
+                "SELECT e FROM FraudDetectionEvent e WHERE e.createdAt >= :from AND e.createdAt < :to AND e.id > :afterId " +
+                    "ORDER BY e.id", FraudDetectionEvent.class)
+            .setParameter("from", from)
+            .setParameter("to", to)
+            .setParameter("afterId", afterId)
+            .setMaxResults(limit)
+            .getResultList();
+        if (events.isEmpty()) {
+            return events;
+        }
+        
+        // One query per collection for the whole chunk instead of two per event; fills the same instances
+        entityManager.createQuery(
+                "SELECT DISTINCT e FROM FraudDetectionEvent e LEFT JOIN FETCH e.triggeredRules WHERE e IN :events",
+                FraudDetectionEvent.class)
+            .setParameter("events", events)
+            .getResultList();
+        entityManager.createQuery(
+                "SELECT DISTINCT e FROM FraudDetectionEvent e LEFT JOIN FETCH e.mlFeatureScores WHERE e IN :events",
+                FraudDetectionEvent.class)
+            .setParameter("events", events)
+            .getResultList();
+        return events;
+    }
+}
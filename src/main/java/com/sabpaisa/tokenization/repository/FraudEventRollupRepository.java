@@ -0,0 +1,43 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.FraudEventRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface FraudEventRollupRepository extends JpaRepository<FraudEventRollup, Long> {
+
+    // Hourly rows from the start of the hour, daily (compacted) rows from the start of the day
+    String IN_WINDOW = "((r.granularity = 'HOUR' AND r.bucketStart >= :sinceHour) " +
+        "OR (r.granularity = 'DAY' AND r.bucketStart >= :sinceDay))";
+
+    @Query("SELECT COALESCE(SUM(r.eventCount), 0) FROM FraudEventRollup r")
+    long sumEventCount();
+
+    @Query("SELECT SUM(r.eventCount), SUM(r.riskScoreSum), SUM(r.highRiskCount), " +
+        "SUM(r.scoreBucket0), SUM(r.scoreBucket1), SUM(r.scoreBucket2), SUM(r.scoreBucket3), SUM(r.scoreBucket4), " +
+        "SUM(r.scoreBucket5), SUM(r.scoreBucket6), SUM(r.scoreBucket7), SUM(r.scoreBucket8), SUM(r.scoreBucket9) " +
+        "FROM FraudEventRollup r WHERE " + IN_WINDOW)
+    List<Object[]> summarize(@Param("sinceHour") LocalDateTime sinceHour, @Param("sinceDay") LocalDateTime sinceDay);
+
+    @Query("SELECT r.country, SUM(r.eventCount) FROM FraudEventRollup r WHERE r.decision = 'BLOCK' AND " + IN_WINDOW +
+        " GROUP BY r.country ORDER BY SUM(r.eventCount) DESC")
+    List<Object[]> getTopBlockedCountries(@Param("sinceHour") LocalDateTime sinceHour, @Param("sinceDay") LocalDateTime sinceDay);
+
+    @Query("SELECT HOUR(r.bucketStart), SUM(r.highRiskCount) FROM FraudEventRollup r " +
+        "WHERE r.granularity = 'HOUR' AND r.bucketStart >= :sinceHour AND r.highRiskCount > 0 GROUP BY HOUR(r.bucketStart)")
+    List<Object[]> getHighRiskHourlyDistribution(@Param("sinceHour") LocalDateTime sinceHour);
+
+    @Query("SELECT r.bucketStart, SUM(r.eventCount), SUM(r.highRiskCount), " +
+        "SUM(CASE WHEN r.decision = 'BLOCK' THEN r.eventCount ELSE 0 END), SUM(r.riskScoreSum) " +
+        "FROM FraudEventRollup r WHERE " + IN_WINDOW + " GROUP BY r.bucketStart")
+    List<Object[]> getBucketTotals(@Param("sinceHour") LocalDateTime sinceHour, @Param("sinceDay") LocalDateTime sinceDay);
+
+    @Query("SELECT r FROM FraudEventRollup r WHERE r.granularity = 'HOUR' AND r.bucketStart < :before")
+    List<FraudEventRollup> findHourlyBefore(@Param("before") LocalDateTime before);
+}
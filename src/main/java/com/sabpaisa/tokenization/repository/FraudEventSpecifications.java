@@ -0,0 +1,65 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.dto.FraudEventFilter;
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Composable query predicates for fraud detection events, evaluated in the database
+ */
+public final class FraudEventSpecifications {
+    
+    private FraudEventSpecifications() {}
+    
+    /**
+     * AND of every criterion set on the filter; an empty filter matches all events
+     */
+    public static Specification<FraudDetectionEvent> matching(FraudEventFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            
+            if (filter.getMerchantId() != null) {
+                predicates.add(cb.equal(root.get("merchantId"), filter.getMerchantId()));
+            }
+            if (filter.getRiskLevel() != null) {
+                predicates.add(cb.equal(root.get("riskLevel"), filter.getRiskLevel()));
+            }
+            if (filter.getDecision() != null) {
+                predicates.add(cb.equal(root.get("decision"), filter.getDecision()));
+            }
+            if (filter.getMinRiskScore() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("riskScore"), filter.getMinRiskScore()));
+            }
+            if (filter.getMaxRiskScore() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("riskScore"), filter.getMaxRiskScore()));
+            }
+            if (filter.getStartDate() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.getStartDate()));
+            }
+            if (filter.getEndDate() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), filter.getEndDate()));
+            }
+            if (filter.getReviewed() != null) {
+                predicates.add(filter.getReviewed()
+                    ? cb.isNotNull(root.get("reviewedAt"))
+                    : cb.isNull(root.get("reviewedAt")));
+            }
+            
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+    
+    /**
+     * Events strictly after the given position in (createdAt DESC, id DESC) order
+     */
+    public static Specification<FraudDetectionEvent> before(LocalDateTime createdAt, Long id) {
+        return (root, query, cb) -> cb.or(
+            cb.lessThan(root.get("createdAt"), createdAt),
+            cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+}
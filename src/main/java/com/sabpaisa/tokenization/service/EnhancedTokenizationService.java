@@ -10,6 +10,7 @@ import com.sabpaisa.tokenization.dto.EnhancedTokenizationRequest;
 import com.sabpaisa.tokenization.dto.TokenResponse;
 import com.sabpaisa.tokenization.entity.Token;
 import com.sabpaisa.tokenization.entity.Merchant;
+import com.sabpaisa.tokenization.fraud.RequestHeaders;
 import com.sabpaisa.tokenization.repository.TokenRepository;
 import com.sabpaisa.tokenization.repository.MerchantRepository;
 import lombok.RequiredArgsConstructor;
@@ -86,7 +87,7 @@ public class EnhancedTokenizationService {
             TokenizationRequest fraudRequest = new TokenizationRequest();
             fraudRequest.setCardNumber(request.getCardNumber());
             fraudRequest.setMerchantId(request.getMerchantId());
-            fraudResult = fraudDetectionService.evaluateFraudRisk(fraudRequest, extractHeaders(httpRequest));
+            fraudResult = fraudDetectionService.evaluateFraudRisk(fraudRequest, RequestHeaders.of(httpRequest));
             if ("BLOCK".equals(fraudResult.getDecision())) {
                 auditService.logSecurityEvent("FRAUD_BLOCK", request.getMerchantId(), 
                     "Tokenization blocked due to fraud risk score: " + fraudResult.getRiskScore());
@@ -386,18 +387,6 @@ public class EnhancedTokenizationService {
         return request.getRemoteAddr();
     }
     
-    private Map<String, String> extractHeaders(HttpServletRequest request) {
-        Map<String, String> headers = new HashMap<>();
-        Enumeration<String> headerNames = request.getHeaderNames();
-        
-        while (headerNames.hasMoreElements()) {
-            String headerName = headerNames.nextElement();
-            headers.put(headerName, request.getHeader(headerName));
-        }
-        
-        return headers;
-    }
-    
     private TokenResponse convertToResponse(Token token) {
         TokenResponse response = new TokenResponse();
         response.setTokenValue(token.getTokenValue());
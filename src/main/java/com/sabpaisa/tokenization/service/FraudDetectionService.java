@@ -1,21 +1,38 @@
 package com.sabpaisa.tokenization.service;
 
 import com.sabpaisa.tokenization.entity.*;
+import com.sabpaisa.tokenization.dto.FraudCheckRequest;
 import com.sabpaisa.tokenization.dto.TokenizationRequest;
+import com.sabpaisa.tokenization.fraud.ClusterVelocityStore;
+import com.sabpaisa.tokenization.fraud.DeviceFingerprintBlacklist;
+import com.sabpaisa.tokenization.fraud.DeviceSignalExtractor;
+import com.sabpaisa.tokenization.fraud.DeviceSignals;
+import com.sabpaisa.tokenization.fraud.FraudEnrichmentExecutor;
+import com.sabpaisa.tokenization.fraud.FraudEventBroadcaster;
+import com.sabpaisa.tokenization.fraud.FraudEventPersistencePipeline;
+import com.sabpaisa.tokenization.fraud.FraudFeatures;
+import com.sabpaisa.tokenization.fraud.FraudModelRegistry;
+import com.sabpaisa.tokenization.fraud.FraudRuleEngine;
+import com.sabpaisa.tokenization.fraud.FraudRuleEngine.RuleOutcome;
+import com.sabpaisa.tokenization.fraud.FraudRuleSet;
+import com.sabpaisa.tokenization.fraud.FraudScorer;
+import com.sabpaisa.tokenization.fraud.GeoLocation;
+import com.sabpaisa.tokenization.fraud.IpGeolocationService;
+import com.sabpaisa.tokenization.fraud.LastLocationCache;
+import com.sabpaisa.tokenization.fraud.RequestHeaders;
+import com.sabpaisa.tokenization.fraud.ShadowRuleEvaluator;
+import com.sabpaisa.tokenization.fraud.VelocityCounts;
 import com.sabpaisa.tokenization.repository.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FraudDetectionService {
@@ -38,407 +55,446 @@ public class FraudDetectionService {
     private NotificationService notificationService;
     
     @Autowired
-    private WebClient.Builder webClientBuilder;
+    private IpGeolocationService ipGeolocationService;
+    
+    @Autowired
+    private FraudEventPersistencePipeline eventPipeline;
+    
+    @Autowired
+    private FraudEventBroadcaster liveBroadcaster;
+    
+    @Autowired
+    private DeviceFingerprintBlacklist deviceBlacklist;
+    
+    @Autowired
+    private LastLocationCache lastLocationCache;
+    
+    @Autowired
+    private FraudEnrichmentExecutor enrichmentExecutor;
+    
+    @Autowired
+    private FraudModelRegistry modelRegistry;
+    
+    @Autowired
+    private FraudRuleEngine ruleEngine;
+    
+    @Autowired
+    private ShadowRuleEvaluator shadowEvaluator;
+    
+    @Autowired
+    private DeviceSignalExtractor deviceSignalExtractor;
+    
+    @Autowired
+    private ClusterVelocityStore velocityStore;
     
-    private static final String IP_GEOLOCATION_API = "http://ip-api.com/json/";
     private static final String DEVICE_FINGERPRINT_API = "https://api.fingerprint.com/v1/";
     
     @Transactional
     public FraudDetectionResult evaluateFraudRisk(TokenizationRequest request, Map<String, String> headers) {
+        return evaluateFraudRisk(request, RequestHeaders.of(headers));
+    }
+    
+    @Transactional
+    public FraudDetectionResult evaluateFraudRisk(TokenizationRequest request, RequestHeaders headers) {
         logger.info("Starting fraud detection for merchant: {}", request.getMerchantId());
         
-        FraudDetectionEvent event = new FraudDetectionEvent();
-        event.setMerchantId(request.getMerchantId());
-        event.setEventType("TOKENIZATION");
-        event.setTokenizationRequestId(UUID.randomUUID().toString());
+        LocalDateTime now = LocalDateTime.now();
         
-        // Collect device and location information
-        CompletableFuture<Void> deviceInfoFuture = collectDeviceInformation(event, headers);
-        CompletableFuture<Void> locationInfoFuture = collectLocationInformation(event, headers);
+        // Every evaluation runs against the merchant's latency budget
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos
+            + TimeUnit.MILLISECONDS.toNanos(enrichmentExecutor.budgetMillisFor(request.getMerchantId()));
+        List<String> skippedStages = new ArrayList<>();
         
-        // Run velocity checks
-        performVelocityChecks(event, request);
+        // Start the slow enrichment stages; each returns a value applied on this thread
+        String ipAddress = extractClientIp(headers);
+        CompletableFuture<GeoLocation> locationFuture = resolveLocation(ipAddress);
+        CompletableFuture<VelocitySignals> velocityFuture =
+            enrichmentExecutor.submit("velocity", () -> collectVelocitySignals(request.getMerchantId()));
+        
+        // Device information is parsed from headers, cheaper inline than a thread hop
+        long deviceStart = System.nanoTime();
+        FraudDetectionEvent event = createEvent(request.getMerchantId(), ipAddress, headers, now);
+        enrichmentExecutor.recordStage("device", System.nanoTime() - deviceStart);
         
         // Get active fraud rules
-        List<FraudDetectionRule> activeRules = ruleRepository.findByActiveTrue()
-            .stream()
-            .sorted(Comparator.comparing(FraudDetectionRule::getPriority).reversed())
-            .collect(Collectors.toList());
+        List<FraudDetectionRule> activeRules = ruleRepository.findByActiveTrue();
+        FraudRuleSet ruleSet = FraudRuleSet.of(activeRules);
         
-        // Evaluate each rule
-        int totalRiskScore = 0;
-        List<String> triggeredRules = new ArrayList<>();
-        Map<String, Integer> ruleScores = new HashMap<>();
-        
-        for (FraudDetectionRule rule : activeRules) {
-            if (evaluateRule(rule, event, request)) {
-                triggeredRules.add(rule.getRuleName());
-                ruleScores.put(rule.getRuleName(), rule.getRiskScore());
-                totalRiskScore += rule.getRiskScore();
-                
-                // Update rule statistics
-                rule.setTotalTriggers(rule.getTotalTriggers() + 1);
-            }
-            rule.setTotalEvaluations(rule.getTotalEvaluations() + 1);
+        // Wait for the signals until the budget runs out; late stages are skipped
+        GeoLocation location = enrichmentExecutor.await("geo", locationFuture, deadlineNanos, skippedStages);
+        if (location != null) {
+            applyGeoLocation(event, location);
         }
-        
-        // Run ML-based anomaly detection
-        CompletableFuture<MLPrediction> mlPredictionFuture = runMLAnomalyDetection(event, request);
-        
-        // Wait for async operations to complete
-        CompletableFuture.allOf(deviceInfoFuture, locationInfoFuture, mlPredictionFuture).join();
-        
-        // Add ML score to total risk
-        MLPrediction mlPrediction = mlPredictionFuture.join();
-        if (mlPrediction != null) {
-            totalRiskScore += (int)(mlPrediction.getFraudProbability() * 50); // ML contributes up to 50 points
-            event.setMlAnomalyScore(mlPrediction.getAnomalyScore());
-            event.setMlFraudProbability(mlPrediction.getFraudProbability());
-            event.setMlModelVersion(mlPrediction.getModelVersion());
-            event.setMlFeatureScores(mlPrediction.getFeatureScores());
+        VelocitySignals velocity = enrichmentExecutor.await("velocity", velocityFuture, deadlineNanos, skippedStages);
+        if (velocity != null) {
+            applyVelocitySignals(event, velocity);
         }
         
-        // Calculate final risk score (capped at 100)
-        event.setRiskScore(Math.min(totalRiskScore, 100));
-        event.calculateRiskLevel();
-        event.setTriggeredRules(triggeredRules);
+        // Score the signals gathered so far; local models run in microseconds, so inline
+        long mlStart = System.nanoTime();
+        FraudScorer scorer = modelRegistry.getScorer();
+        double[] features = FraudFeatures.extract(event, deviceBlacklist.isBlacklisted(event), now);
+        MLPrediction mlPrediction = runMLAnomalyDetection(scorer.getModelVersion(), features, scorer.score(features));
+        enrichmentExecutor.recordStage("ml", System.nanoTime() - mlStart);
+        applyMLPrediction(event, mlPrediction);
         
-        // Make decision based on risk score
-        String decision = makeDecision(event.getRiskScore(), event.getRiskLevel());
-        event.setDecision(decision);
-        
-        // Save event
-        event = eventRepository.save(event);
-        
-        // Send notifications for high-risk events
-        if (event.getRiskScore() > 70) {
-            sendHighRiskAlert(event, request);
-        }
+        // Evaluate each rule
+        long rulesStart = System.nanoTime();
+        RuleOutcome outcome = evaluateRules(ruleSet, event, request.getCardNumber());
+        Map<String, Integer> triggerCounts = new HashMap<>();
+        outcome.getTriggeredRules().forEach(rule -> triggerCounts.merge(rule, 1, Integer::sum));
+        updateRuleStatistics(activeRules, triggerCounts, 1);
+        enrichmentExecutor.recordStage("rules", System.nanoTime() - rulesStart);
+        
+        completeEvaluation(event, request.getCardNumber(), outcome, skippedStages);
+        
+        // Hand the event to the write-behind pipeline; alerting and audit run once it is stored
+        eventPipeline.submit(event, () -> {
+            // Send notifications for high-risk events
+            if (event.getRiskScore() > 70) {
+                sendHighRiskAlert(event);
+            }
+            
+            // Create audit log
+            auditLogService.logSecurityEvent("FRAUD_CHECK", 
+                String.format("Fraud check for merchant %s - Risk: %s, Decision: %s", 
+                    request.getMerchantId(), event.getRiskLevel(), event.getDecision()));
+        });
         
-        // Create audit log
-        auditLogService.logSecurityEvent("FRAUD_CHECK", 
-            String.format("Fraud check for merchant %s - Risk: %s, Decision: %s", 
-                request.getMerchantId(), event.getRiskLevel(), event.getDecision()));
+        enrichmentExecutor.recordStage("total", System.nanoTime() - startNanos);
         
-        return new FraudDetectionResult(
-            event.getEventId(),
-            event.getRiskScore(),
-            event.getRiskLevel(),
-            event.getDecision(),
-            triggeredRules,
-            ruleScores,
-            event.getDeviceFingerprint()
-        );
+        return toResult(event, outcome, skippedStages);
     }
     
-    private boolean evaluateRule(FraudDetectionRule rule, FraudDetectionEvent event, TokenizationRequest request) {
-        try {
-            switch (rule.getRuleType()) {
-                case "VELOCITY":
-                    return evaluateVelocityRule(rule, event);
-                case "GEO_LOCATION":
-                    return evaluateGeoLocationRule(rule, event);
-                case "AMOUNT_THRESHOLD":
-                    return evaluateAmountThresholdRule(rule, request);
-                case "DEVICE_FINGERPRINT":
-                    return evaluateDeviceFingerprintRule(rule, event);
-                case "ML_BASED":
-                    return evaluateMLBasedRule(rule, event);
-                default:
-                    return false;
-            }
-        } catch (Exception e) {
-            logger.error("Error evaluating rule: {}", rule.getRuleName(), e);
-            return false;
+    /**
+     * Evaluate many cards in one pass: one transaction and rule load, one geo lookup per
+     * distinct IP, one velocity snapshot per merchant and batch ML scoring. Results are
+     * returned in request order.
+     *
+     * Velocity counts include the earlier items of the same merchant in the batch, so
+     * splitting traffic into batches does not get around the velocity rules.
+     */
+    @Transactional
+    public List<FraudDetectionResult> evaluateBatch(List<FraudCheckRequest> requests) {
+        if (requests.isEmpty()) {
+            return new ArrayList<>();
         }
-    }
-    
-    private boolean evaluateVelocityRule(FraudDetectionRule rule, FraudDetectionEvent event) {
-        Map<String, String> params = rule.getParameters();
+        logger.info("Starting batch fraud detection for {} requests", requests.size());
         
-        if (params.containsKey("maxTokensPerHour")) {
-            int maxAllowed = Integer.parseInt(params.get("maxTokensPerHour"));
-            if (event.getTokensLastHour() > maxAllowed) {
-                return true;
-            }
-        }
+        LocalDateTime now = LocalDateTime.now();
+        long startNanos = System.nanoTime();
         
-        if (params.containsKey("maxUniqueCardsPerHour")) {
-            int maxAllowed = Integer.parseInt(params.get("maxUniqueCardsPerHour"));
-            if (event.getUniqueCardsLastHour() > maxAllowed) {
-                return true;
-            }
+        // The batch gets the most generous budget of the merchants it contains
+        Set<String> merchantIds = new LinkedHashSet<>();
+        for (FraudCheckRequest request : requests) {
+            merchantIds.add(request.getMerchantId());
         }
-        
-        if (params.containsKey("maxFailedAttemptsPerHour")) {
-            int maxAllowed = Integer.parseInt(params.get("maxFailedAttemptsPerHour"));
-            if (event.getFailedAttemptsLastHour() > maxAllowed) {
-                return true;
-            }
+        long budgetMillis = 0;
+        for (String merchantId : merchantIds) {
+            budgetMillis = Math.max(budgetMillis, enrichmentExecutor.budgetMillisFor(merchantId));
         }
-        
-        return false;
-    }
-    
-    private boolean evaluateGeoLocationRule(FraudDetectionRule rule, FraudDetectionEvent event) {
-        Map<String, String> params = rule.getParameters();
-        
-        // Check if using VPN/Proxy/Tor
-        if (params.containsKey("blockVPN") && "true".equals(params.get("blockVPN")) && event.isVpn()) {
-            return true;
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        
+        // Start one lookup per distinct IP and one velocity snapshot per merchant
+        List<String> ipAddresses = new ArrayList<>(requests.size());
+        Map<String, CompletableFuture<GeoLocation>> locationFutures = new HashMap<>();
+        for (FraudCheckRequest request : requests) {
+            String ipAddress = extractClientIp(RequestHeaders.of(request.getHeaders()));
+            ipAddresses.add(ipAddress);
+            locationFutures.computeIfAbsent(ipAddress, this::resolveLocation);
         }
-        
-        if (params.containsKey("blockProxy") && "true".equals(params.get("blockProxy")) && event.isProxy()) {
-            return true;
+        Map<String, CompletableFuture<VelocitySignals>> velocityFutures = new HashMap<>();
+        for (String merchantId : merchantIds) {
+            velocityFutures.put(merchantId,
+                enrichmentExecutor.submit("velocity", () -> collectVelocitySignals(merchantId)));
         }
         
-        if (params.containsKey("blockTor") && "true".equals(params.get("blockTor")) && event.isTor()) {
-            return true;
+        List<FraudDetectionRule> activeRules = ruleRepository.findByActiveTrue();
+        FraudRuleSet ruleSet = FraudRuleSet.of(activeRules);
+        
+        Map<String, GeoLocation> locations = new HashMap<>();
+        Set<String> geoSkipped = new HashSet<>();
+        for (Map.Entry<String, CompletableFuture<GeoLocation>> entry : locationFutures.entrySet()) {
+            List<String> skipped = new ArrayList<>();
+            locations.put(entry.getKey(), enrichmentExecutor.await("geo", entry.getValue(), deadlineNanos, skipped));
+            if (!skipped.isEmpty()) {
+                geoSkipped.add(entry.getKey());
+            }
+        }
+        Map<String, VelocitySignals> velocities = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<VelocitySignals>> entry : velocityFutures.entrySet()) {
+            velocities.put(entry.getKey(),
+                enrichmentExecutor.await("velocity", entry.getValue(), deadlineNanos, new ArrayList<>()));
         }
         
-        // Check if from blocked countries
-        if (params.containsKey("blockedCountries")) {
-            List<String> blockedCountries = Arrays.asList(params.get("blockedCountries").split(","));
-            if (event.getGeoCountry() != null && blockedCountries.contains(event.getGeoCountry())) {
-                return true;
+        // Build and enrich every event, counting earlier batch items into the velocity snapshot
+        int size = requests.size();
+        FraudDetectionEvent[] events = new FraudDetectionEvent[size];
+        List<List<String>> skippedStages = new ArrayList<>(size);
+        double[][] features = new double[size][];
+        Map<String, Integer> batchTokens = new HashMap<>();
+        Map<String, Set<String>> batchCards = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            FraudCheckRequest request = requests.get(i);
+            String merchantId = request.getMerchantId();
+            FraudDetectionEvent event = createEvent(merchantId, ipAddresses.get(i), RequestHeaders.of(request.getHeaders()), now);
+            List<String> skipped = new ArrayList<>();
+            
+            GeoLocation location = locations.get(ipAddresses.get(i));
+            if (location != null) {
+                applyGeoLocation(event, location);
+            } else if (geoSkipped.contains(ipAddresses.get(i))) {
+                skipped.add("geo");
             }
+            
+            VelocitySignals velocity = velocities.get(merchantId);
+            if (velocity != null) {
+                int earlierTokens = batchTokens.merge(merchantId, 1, Integer::sum) - 1;
+                Set<String> cards = batchCards.computeIfAbsent(merchantId, key -> new HashSet<>());
+                int earlierCards = cards.size();
+                cards.add(request.getCardNumber());
+                applyVelocitySignals(event, velocity.plus(earlierTokens, earlierCards));
+            } else {
+                skipped.add("velocity");
+            }
+            
+            events[i] = event;
+            skippedStages.add(skipped);
+            features[i] = FraudFeatures.extract(event, deviceBlacklist.isBlacklisted(event), now);
         }
         
-        // Check for impossible travel (location changed too quickly)
-        if (params.containsKey("checkImpossibleTravel") && "true".equals(params.get("checkImpossibleTravel"))) {
-            // Get last known location for this merchant
-            Optional<FraudDetectionEvent> lastEvent = eventRepository.findLastEventByMerchantId(
-                event.getMerchantId(), LocalDateTime.now().minusHours(1)
-            );
+        // Score the whole batch with the active model in one call
+        FraudScorer scorer = modelRegistry.getScorer();
+        double[] probabilities = new double[size];
+        scorer.scoreBatch(features, probabilities);
+        
+        List<FraudDetectionResult> results = new ArrayList<>(size);
+        Map<String, Integer> triggerCounts = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            FraudDetectionEvent event = events[i];
+            String cardNumber = requests.get(i).getCardNumber();
+            applyMLPrediction(event, runMLAnomalyDetection(scorer.getModelVersion(), features[i], probabilities[i]));
             
-            if (lastEvent.isPresent() && lastEvent.get().getGeoLatitude() != null && event.getGeoLatitude() != null) {
-                double distance = calculateDistance(
-                    lastEvent.get().getGeoLatitude(), lastEvent.get().getGeoLongitude(),
-                    event.getGeoLatitude(), event.getGeoLongitude()
-                );
-                
-                // If traveled more than 1000km in less than 1 hour, it's suspicious
-                if (distance > 1000) {
-                    return true;
+            RuleOutcome outcome = evaluateRules(ruleSet, event, cardNumber);
+            outcome.getTriggeredRules().forEach(rule -> triggerCounts.merge(rule, 1, Integer::sum));
+            completeEvaluation(event, cardNumber, outcome, skippedStages.get(i));
+            
+            // The pipeline writes these in JDBC batches; the batch is audited once the last one is stored
+            boolean last = i == size - 1;
+            eventPipeline.submit(event, () -> {
+                if (event.getRiskScore() > 70) {
+                    sendHighRiskAlert(event);
                 }
-            }
+                if (last) {
+                    auditLogService.logSecurityEvent("FRAUD_CHECK_BATCH",
+                        String.format("Batch fraud check of %d requests for merchants %s", size, merchantIds));
+                }
+            });
+            
+            results.add(toResult(event, outcome, skippedStages.get(i)));
         }
+        updateRuleStatistics(activeRules, triggerCounts, size);
         
-        return false;
+        enrichmentExecutor.recordStage("batch", System.nanoTime() - startNanos);
+        return results;
     }
     
-    private boolean evaluateAmountThresholdRule(FraudDetectionRule rule, TokenizationRequest request) {
-        // This could be extended to check transaction amounts if applicable
-        return false;
+    private FraudDetectionEvent createEvent(String merchantId, String ipAddress, RequestHeaders headers,
+                                            LocalDateTime now) {
+        FraudDetectionEvent event = new FraudDetectionEvent();
+        event.setEventId("FDE-" + UUID.randomUUID());
+        event.setMerchantId(merchantId);
+        event.setEventType("TOKENIZATION");
+        event.setTokenizationRequestId(UUID.randomUUID().toString());
+        // Timestamps are assigned here because the event is stored by the pipeline, not JPA
+        event.setEventTimestamp(now);
+        event.setCreatedAt(now);
+        event.setIpAddress(ipAddress);
+        
+        DeviceSignals device = deviceSignalExtractor.extract(headers);
+        event.setBrowserInfo(device.getBrowserInfo());
+        event.setDeviceFingerprint(device.getFingerprint());
+        event.setLegacyDeviceFingerprint(device.getLegacyFingerprint());
+        event.setDeviceType(device.getDeviceType());
+        event.setOsInfo(device.getOsInfo());
+        return event;
     }
     
-    private boolean evaluateDeviceFingerprintRule(FraudDetectionRule rule, FraudDetectionEvent event) {
-        if (event.getDeviceFingerprint() == null) {
-            return false;
-        }
-        
-        Map<String, String> params = rule.getParameters();
-        
-        // Check if device has been seen in fraudulent activities
-        if (params.containsKey("checkBlacklistedDevices") && "true".equals(params.get("checkBlacklistedDevices"))) {
-            List<FraudDetectionEvent> previousFraudEvents = eventRepository.findByDeviceFingerprintAndIsFalsePositiveFalse(
-                event.getDeviceFingerprint()
-            );
-            
-            if (!previousFraudEvents.isEmpty()) {
-                return true;
-            }
+    private CompletableFuture<GeoLocation> resolveLocation(String ipAddress) {
+        return ipAddress.isEmpty()
+            ? CompletableFuture.completedFuture(null)
+            : enrichmentExecutor.track("geo", ipGeolocationService.resolve(ipAddress));
+    }
+    
+    private RuleOutcome evaluateRules(FraudRuleSet ruleSet, FraudDetectionEvent event, String cardNumber) {
+        return ruleEngine.evaluate(ruleSet, event, maxDistanceKm -> lastLocationCache.isImpossibleTravel(
+            event.getMerchantId(), cardNumber, event.getDeviceFingerprint(),
+            event.getGeoLatitude(), event.getGeoLongitude(), System.currentTimeMillis(), maxDistanceKm));
+    }
+    
+    private void updateRuleStatistics(List<FraudDetectionRule> rules, Map<String, Integer> triggerCounts, int evaluations) {
+        for (FraudDetectionRule rule : rules) {
+            rule.setTotalTriggers(rule.getTotalTriggers() + triggerCounts.getOrDefault(rule.getRuleName(), 0));
+            rule.setTotalEvaluations(rule.getTotalEvaluations() + evaluations);
         }
-        
-        return false;
     }
     
-    private boolean evaluateMLBasedRule(FraudDetectionRule rule, FraudDetectionEvent event) {
-        Map<String, String> params = rule.getParameters();
+    /**
+     * Score and decide an evaluated event, then publish it to live consumers
+     */
+    private void completeEvaluation(FraudDetectionEvent event, String cardNumber, RuleOutcome outcome,
+                                    List<String> skippedStages) {
+        // Remember where this merchant, card and device were last seen
+        if (event.getGeoLatitude() != null && event.getGeoLongitude() != null) {
+            lastLocationCache.record(event.getMerchantId(), cardNumber, event.getDeviceFingerprint(),
+                event.getGeoLatitude(), event.getGeoLongitude(), System.currentTimeMillis());
+        }
         
-        if (event.getMlFraudProbability() != null) {
-            double threshold = Double.parseDouble(params.getOrDefault("fraudProbabilityThreshold", "0.7"));
-            return event.getMlFraudProbability() > threshold;
+        if (!skippedStages.isEmpty()) {
+            event.setAdditionalContext("{\"skippedStages\":[\"" + String.join("\",\"", skippedStages) + "\"]}");
         }
         
-        return false;
+        // Rule scores plus the ML score, capped at 100
+        event.setRiskScore(FraudRuleEngine.riskScore(outcome.getRuleScore(), event.getMlFraudProbability()));
+        event.calculateRiskLevel();
+        event.setTriggeredRules(outcome.getTriggeredRules());
+        
+        // Make decision based on risk score
+        event.setDecision(FraudRuleEngine.decide(event.getRiskScore()));
+        velocityStore.record(event.getMerchantId(), cardNumber, "BLOCK".equals(event.getDecision()));
+        
+        // Push to live monitoring streams before persistence so dashboards see it immediately
+        liveBroadcaster.publish(event);
+        
+        // Candidate rules, if any, run on a sample of traffic off the request thread
+        shadowEvaluator.offer(event);
+    }
+    
+    private FraudDetectionResult toResult(FraudDetectionEvent event, RuleOutcome outcome, List<String> skippedStages) {
+        FraudDetectionResult result = new FraudDetectionResult(
+            event.getEventId(),
+            event.getRiskScore(),
+            event.getRiskLevel(),
+            event.getDecision(),
+            outcome.getTriggeredRules(),
+            outcome.getRuleScores(),
+            event.getDeviceFingerprint()
+        );
+        result.setSkippedStages(skippedStages);
+        return result;
     }
     
-    private void performVelocityChecks(FraudDetectionEvent event, TokenizationRequest request) {
+    private VelocitySignals collectVelocitySignals(String merchantId) {
+        // Cluster-wide counters when configured; the database counts are the fallback
+        VelocityCounts counts = velocityStore.read(merchantId);
+        if (counts != null) {
+            VelocitySignals signals = new VelocitySignals();
+            signals.tokensLastHour = counts.getTokensLastHour();
+            signals.tokensLastDay = counts.getTokensLastDay();
+            signals.uniqueCardsLastHour = counts.getUniqueCardsLastHour();
+            signals.failedAttemptsLastHour = counts.getFailedAttemptsLastHour();
+            return signals;
+        }
+        
         LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
         LocalDateTime oneDayAgo = LocalDateTime.now().minusDays(1);
         
+        VelocitySignals signals = new VelocitySignals();
+        
         // Count tokens created in last hour
-        event.setTokensLastHour(tokenRepository.countByMerchantIdAndCreatedAtAfter(
-            request.getMerchantId(), oneHourAgo
-        ));
+        signals.tokensLastHour = tokenRepository.countByMerchantIdAndCreatedAtAfter(
+            merchantId, oneHourAgo
+        );
         
         // Count tokens created in last day
-        event.setTokensLastDay(tokenRepository.countByMerchantIdAndCreatedAtAfter(
-            request.getMerchantId(), oneDayAgo
-        ));
+        signals.tokensLastDay = tokenRepository.countByMerchantIdAndCreatedAtAfter(
+            merchantId, oneDayAgo
+        );
         
         // Count unique cards tokenized in last hour
-        event.setUniqueCardsLastHour(tokenRepository.countUniqueCardsByMerchantIdAndCreatedAtAfter(
-            request.getMerchantId(), oneHourAgo
-        ));
+        signals.uniqueCardsLastHour = tokenRepository.countUniqueCardsByMerchantIdAndCreatedAtAfter(
+            merchantId, oneHourAgo
+        );
         
         // Count failed attempts in last hour
-        event.setFailedAttemptsLastHour(eventRepository.countFailedAttemptsByMerchantIdAndCreatedAtAfter(
-            request.getMerchantId(), oneHourAgo
-        ));
+        signals.failedAttemptsLastHour = eventRepository.countFailedAttemptsByMerchantIdAndCreatedAtAfter(
+            merchantId, oneHourAgo
+        );
+        
+        return signals;
     }
     
-    private CompletableFuture<Void> collectDeviceInformation(FraudDetectionEvent event, Map<String, String> headers) {
-        return CompletableFuture.runAsync(() -> {
-            // Extract device information from headers
-            event.setBrowserInfo(headers.getOrDefault("User-Agent", "Unknown"));
-            event.setDeviceFingerprint(headers.getOrDefault("X-Device-Fingerprint", generateDeviceFingerprint(headers)));
-            
-            // Parse user agent for device type and OS
-            String userAgent = headers.getOrDefault("User-Agent", "");
-            if (userAgent.contains("Mobile")) {
-                event.setDeviceType("MOBILE");
-            } else if (userAgent.contains("Tablet")) {
-                event.setDeviceType("TABLET");
-            } else {
-                event.setDeviceType("DESKTOP");
-            }
-            
-            // Extract OS info
-            if (userAgent.contains("Windows")) {
-                event.setOsInfo("Windows");
-            } else if (userAgent.contains("Mac")) {
-                event.setOsInfo("MacOS");
-            } else if (userAgent.contains("Linux")) {
-                event.setOsInfo("Linux");
-            } else if (userAgent.contains("Android")) {
-                event.setOsInfo("Android");
-            } else if (userAgent.contains("iOS")) {
-                event.setOsInfo("iOS");
-            }
-        });
+    private void applyVelocitySignals(FraudDetectionEvent event, VelocitySignals signals) {
+        event.setTokensLastHour(signals.tokensLastHour);
+        event.setTokensLastDay(signals.tokensLastDay);
+        event.setUniqueCardsLastHour(signals.uniqueCardsLastHour);
+        event.setFailedAttemptsLastHour(signals.failedAttemptsLastHour);
     }
     
-    private CompletableFuture<Void> collectLocationInformation(FraudDetectionEvent event, Map<String, String> headers) {
-        String ipAddress = headers.getOrDefault("X-Forwarded-For", headers.getOrDefault("X-Real-IP", ""));
-        event.setIpAddress(ipAddress);
-        
-        if (ipAddress.isEmpty()) {
-            return CompletableFuture.completedFuture(null);
+    private void applyGeoLocation(FraudDetectionEvent event, GeoLocation location) {
+        event.setGeoCountry(location.getCountryCode());
+        event.setGeoCity(location.getCity());
+        event.setGeoLatitude(location.getLatitude());
+        event.setGeoLongitude(location.getLongitude());
+        event.setVpn(location.isVpn());
+        event.setProxy(location.isProxy());
+        event.setTor(location.isTor());
+    }
+    
+    private String extractClientIp(RequestHeaders headers) {
+        String forwardedFor = headers.get("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            // The first entry is the originating client, the rest are proxies
+            int comma = forwardedFor.indexOf(',');
+            return (comma >= 0 ? forwardedFor.substring(0, comma) : forwardedFor).trim();
         }
-        
-        // Get geolocation data from IP
-        WebClient webClient = webClientBuilder.build();
-        return webClient.get()
-            .uri(IP_GEOLOCATION_API + ipAddress)
-            .retrieve()
-            .bodyToMono(Map.class)
-            .doOnNext(geoData -> {
-                event.setGeoCountry((String) geoData.get("countryCode"));
-                event.setGeoCity((String) geoData.get("city"));
-                event.setGeoLatitude((Double) geoData.get("lat"));
-                event.setGeoLongitude((Double) geoData.get("lon"));
-                
-                // Check if using proxy/VPN
-                event.setVpn(Boolean.TRUE.equals(geoData.get("proxy")));
-                event.setProxy(Boolean.TRUE.equals(geoData.get("hosting")));
-            })
-            .onErrorResume(e -> {
-                logger.error("Error getting geolocation for IP: {}", ipAddress, e);
-                return Mono.empty();
-            })
-            .toFuture()
-            .thenAccept(v -> {});
+        return headers.getOrDefault("X-Real-IP", "").trim();
     }
     
-    private CompletableFuture<MLPrediction> runMLAnomalyDetection(FraudDetectionEvent event, TokenizationRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Prepare features for ML model
-                Map<String, Object> features = new HashMap<>();
-                features.put("tokensLastHour", event.getTokensLastHour());
-                features.put("tokensLastDay", event.getTokensLastDay());
-                features.put("uniqueCardsLastHour", event.getUniqueCardsLastHour());
-                features.put("failedAttemptsLastHour", event.getFailedAttemptsLastHour());
-                features.put("isVpn", event.isVpn());
-                features.put("isProxy", event.isProxy());
-                features.put("deviceType", event.getDeviceType());
-                features.put("hour", LocalDateTime.now().getHour());
-                features.put("dayOfWeek", LocalDateTime.now().getDayOfWeek().getValue());
-                
-                // Simulate ML prediction (in production, this would call actual ML service)
-                MLPrediction prediction = new MLPrediction();
-                prediction.setModelVersion("v1.2.0");
-                prediction.setAnomalyScore(calculateAnomalyScore(features));
-                prediction.setFraudProbability(calculateFraudProbability(features));
-                prediction.setFeatureScores(calculateFeatureScores(features));
-                
-                return prediction;
-            } catch (Exception e) {
-                logger.error("Error running ML anomaly detection", e);
-                return null;
-            }
-        });
+    private MLPrediction runMLAnomalyDetection(String modelVersion, double[] features, double fraudProbability) {
+        MLPrediction prediction = new MLPrediction();
+        prediction.setModelVersion(modelVersion);
+        prediction.setAnomalyScore(calculateAnomalyScore(features));
+        prediction.setFraudProbability(fraudProbability);
+        prediction.setFeatureScores(calculateFeatureScores(features));
+        return prediction;
     }
     
-    private double calculateAnomalyScore(Map<String, Object> features) {
+    private void applyMLPrediction(FraudDetectionEvent event, MLPrediction prediction) {
+        event.setMlAnomalyScore(prediction.getAnomalyScore());
+        event.setMlFraudProbability(prediction.getFraudProbability());
+        event.setMlModelVersion(prediction.getModelVersion());
+        event.setMlFeatureScores(prediction.getFeatureScores());
+    }
+    
+    private double calculateAnomalyScore(double[] features) {
         // Simplified anomaly score calculation
         double score = 0.0;
         
-        Integer tokensLastHour = (Integer) features.get("tokensLastHour");
+        double tokensLastHour = FraudFeatures.orZero(features[FraudFeatures.TOKENS_LAST_HOUR]);
         if (tokensLastHour > 100) score += 0.3;
         if (tokensLastHour > 500) score += 0.4;
         
-        Boolean isVpn = (Boolean) features.get("isVpn");
-        if (Boolean.TRUE.equals(isVpn)) score += 0.2;
+        if (features[FraudFeatures.IS_VPN] > 0) score += 0.2;
         
-        Integer hour = (Integer) features.get("hour");
+        double hour = features[FraudFeatures.HOUR_OF_DAY];
         if (hour < 6 || hour > 22) score += 0.1; // Unusual hours
         
         return Math.min(score, 1.0);
     }
     
-    private double calculateFraudProbability(Map<String, Object> features) {
-        // Simplified fraud probability calculation
-        double prob = 0.0;
-        
-        Integer failedAttempts = (Integer) features.get("failedAttemptsLastHour");
-        if (failedAttempts > 5) prob += 0.3;
-        if (failedAttempts > 10) prob += 0.3;
-        
-        Boolean isProxy = (Boolean) features.get("isProxy");
-        if (Boolean.TRUE.equals(isProxy)) prob += 0.2;
-        
-        Integer uniqueCards = (Integer) features.get("uniqueCardsLastHour");
-        if (uniqueCards > 10) prob += 0.2;
-        
-        return Math.min(prob, 1.0);
-    }
-    
-    private Map<String, Double> calculateFeatureScores(Map<String, Object> features) {
+    private Map<String, Double> calculateFeatureScores(double[] features) {
         Map<String, Double> scores = new HashMap<>();
-        scores.put("velocity_score", features.get("tokensLastHour") != null ? 
-            Math.min((Integer) features.get("tokensLastHour") / 100.0, 1.0) : 0.0);
-        scores.put("location_score", Boolean.TRUE.equals(features.get("isVpn")) ? 0.8 : 0.2);
-        scores.put("behavior_score", Math.random() * 0.5); // Simulated behavioral score
-        scores.put("device_score", Math.random() * 0.3); // Simulated device reputation score
+        scores.put("velocity_score", Math.min(FraudFeatures.orZero(features[FraudFeatures.TOKENS_LAST_HOUR]) / 100.0, 1.0));
+        scores.put("location_score", features[FraudFeatures.IS_VPN] > 0 || features[FraudFeatures.IS_PROXY] > 0
+            || features[FraudFeatures.IS_TOR] > 0 ? 0.8 : 0.2);
+        scores.put("behavior_score", Math.min(FraudFeatures.orZero(features[FraudFeatures.FAILED_ATTEMPTS_LAST_HOUR]) / 10.0, 1.0));
+        scores.put("device_score", features[FraudFeatures.DEVICE_BLACKLISTED]);
         return scores;
     }
     
-    private String makeDecision(int riskScore, String riskLevel) {
-        if (riskScore < 25) {
-            return "ALLOW";
-        } else if (riskScore < 50) {
-            return "MONITOR";
-        } else if (riskScore < 75) {
-            return "CHALLENGE";
-        } else {
-            return "BLOCK";
-        }
-    }
-    
-    private void sendHighRiskAlert(FraudDetectionEvent event, TokenizationRequest request) {
+    private void sendHighRiskAlert(FraudDetectionEvent event) {
         String message = String.format(
             "High risk fraud detected! Merchant: %s, Risk Score: %d, Decision: %s, Triggered Rules: %s",
             event.getMerchantId(),
@@ -450,36 +506,6 @@ public class FraudDetectionService {
         notificationService.sendSecurityAlert("High Risk Fraud Alert", message, "CRITICAL");
     }
     
-    private String generateDeviceFingerprint(Map<String, String> headers) {
-        // Generate a simple device fingerprint based on headers
-        String userAgent = headers.getOrDefault("User-Agent", "unknown");
-        String acceptLanguage = headers.getOrDefault("Accept-Language", "en");
-        String acceptEncoding = headers.getOrDefault("Accept-Encoding", "gzip");
-        
-        String combined = userAgent + acceptLanguage + acceptEncoding;
-        String encoded = Base64.getEncoder().encodeToString(combined.getBytes());
-        
-        // Ensure we have at least 16 characters
-        if (encoded.length() < 16) {
-            // Pad with consistent characters if too short
-            encoded = encoded + "0000000000000000";
-        }
-        
-        return encoded.substring(0, 16);
-    }
-    
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        // Haversine formula to calculate distance between two points
-        final double R = 6371; // Radius of the earth in km
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-    
     // Inner classes
     public static class FraudDetectionResult {
         private String eventId;
@@ -489,6 +515,7 @@ public class FraudDetectionService {
         private List<String> triggeredRules;
         private Map<String, Integer> ruleScores;
         private String deviceFingerprint;
+        private List<String> skippedStages = new ArrayList<>();
         
         public FraudDetectionResult(String eventId, int riskScore, String riskLevel, 
                                   String decision, List<String> triggeredRules, 
@@ -523,6 +550,26 @@ public class FraudDetectionService {
         
         public String getDeviceFingerprint() { return deviceFingerprint; }
         public void setDeviceFingerprint(String deviceFingerprint) { this.deviceFingerprint = deviceFingerprint; }
+        
+        public List<String> getSkippedStages() { return skippedStages; }
+        public void setSkippedStages(List<String> skippedStages) { this.skippedStages = skippedStages; }
+    }
+    
+    private static class VelocitySignals {
+        private Integer tokensLastHour;
+        private Integer tokensLastDay;
+        private Integer uniqueCardsLastHour;
+        private Integer failedAttemptsLastHour;
+        
+        // Snapshot with extra tokens and cards added, for items earlier in the same batch
+        VelocitySignals plus(int tokens, int cards) {
+            VelocitySignals signals = new VelocitySignals();
+            signals.tokensLastHour = tokensLastHour != null ? tokensLastHour + tokens : null;
+            signals.tokensLastDay = tokensLastDay != null ? tokensLastDay + tokens : null;
+            signals.uniqueCardsLastHour = uniqueCardsLastHour != null ? uniqueCardsLastHour + cards : null;
+            signals.failedAttemptsLastHour = failedAttemptsLastHour;
+            return signals;
+        }
     }
     
     private static class MLPrediction {
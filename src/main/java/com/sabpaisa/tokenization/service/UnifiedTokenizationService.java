@@ -263,8 +263,8 @@ public class UnifiedTokenizationService {
         Token token = tokenizeStandard(cardNumber, merchant);
         token.setAlgorithmType("CLOUD_REPLICATED");
         
-        // Replicate to cloud providers
-        cloudReplicationService.replicateToken(token, merchant);
+        // Queued in this transaction; the outbox relay replicates to the cloud providers
+        cloudReplicationService.enqueueReplication(token);
         token.getMetadata().put("cloud_replicated", "true");
         token.getMetadata().put("replication_providers", "AWS,AZURE,GCP");
         
@@ -287,7 +287,7 @@ public class UnifiedTokenizationService {
         }
         
         if (cloudReplicationService != null) {
-            cloudReplicationService.replicateToken(token, merchant);
+            cloudReplicationService.enqueueReplication(token);
             token.getMetadata().put("cloud_replicated", "true");
         }
         
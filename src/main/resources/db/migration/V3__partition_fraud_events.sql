@@ -0,0 +1,60 @@
+-- Monthly range partitioning of fraud_detection_events (PostgreSQL).
+--
+-- FraudEventRetentionService detects the partitioned table, creates upcoming
+-- monthly partitions itself (at startup and daily, archive or not) and retires
+-- old months by detaching and dropping their partition instead of deleting rows.
+-- A default partition catches rows past the last monthly one, so inserts never
+-- fail if partitions were not created in time. Run during a maintenance window:
+-- the table is copied and swapped.
+--
+-- Unique constraints on a partitioned table must include the partition key, so
+-- the primary key becomes (id, created_at) and event_id uniqueness is enforced
+-- per created_at. The element-collection tables (triggered_rules,
+-- ml_feature_scores) can no longer reference the table with a foreign key; the
+-- retention service deletes their rows by event id.
+
+BEGIN;
+
+ALTER TABLE fraud_detection_events RENAME TO fraud_detection_events_unpartitioned;
+
+CREATE TABLE fraud_detection_events (
+    LIKE fraud_detection_events_unpartitioned INCLUDING DEFAULTS INCLUDING IDENTITY
+) PARTITION BY RANGE (created_at);
+
+ALTER TABLE fraud_detection_events ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE fraud_detection_events ADD PRIMARY KEY (id, created_at);
+ALTER TABLE fraud_detection_events ADD CONSTRAINT uk_fde_event_id UNIQUE (event_id, created_at);
+
+CREATE INDEX idx_fde_created_at ON fraud_detection_events(created_at, id);
+CREATE INDEX idx_fde_merchant_created_at ON fraud_detection_events(merchant_id, created_at);
+CREATE INDEX idx_fde_decision_created_at ON fraud_detection_events(decision, created_at);
+CREATE INDEX idx_fde_device_fingerprint ON fraud_detection_events(device_fingerprint);
+
+-- One partition per month from the oldest event up to two months ahead,
+-- named fraud_detection_events_yYYYYmMM as the retention service expects
+DO $$
+DECLARE
+    month DATE;
+BEGIN
+    FOR month IN
+        SELECT generate_series(
+            date_trunc('month', COALESCE((SELECT MIN(created_at) FROM fraud_detection_events_unpartitioned), now())),
+            date_trunc('month', now()) + INTERVAL '2 months',
+            INTERVAL '1 month')::date
+    LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF fraud_detection_events FOR VALUES FROM (%L) TO (%L)',
+            'fraud_detection_events_' || to_char(month, '"y"YYYY"m"MM'), month, (month + INTERVAL '1 month')::date);
+    END LOOP;
+END $$;
+
+CREATE TABLE fraud_detection_events_default PARTITION OF fraud_detection_events DEFAULT;
+
+INSERT INTO fraud_detection_events SELECT * FROM fraud_detection_events_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('fraud_detection_events', 'id'),
+    COALESCE((SELECT MAX(id) FROM fraud_detection_events), 1));
+
+-- Drops the old table and the element-collection foreign keys that pointed at it
+DROP TABLE fraud_detection_events_unpartitioned CASCADE;
+
+COMMIT;
@@ -0,0 +1,384 @@
+package com.sabpaisa.tokenization.cloud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sabpaisa.tokenization.entity.Merchant;
+import com.sabpaisa.tokenization.entity.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicatedTokenCodecTest {
+
+    private static final String[] STATUSES = {"ACTIVE", "SUSPENDED", "REVOKED", "EXPIRED", "PENDING_REVIEW"};
+    private static final String[] BRANDS = {"VISA", "MASTERCARD", "RUPAY", "ELO", "UNIONPAY"};
+    private static final String[] ALPHABET = {"a", "Z", "7", " ", "-", "é", "ß", "₹", "中", "😀", "\u0000"};
+
+    @Test
+    void randomTokensRoundTrip() {
+        Random random = new Random(20261019L);
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        for (int i = 0; i < 5000; i++) {
+            Token token = randomToken(random);
+            buffer.clear();
+            ReplicatedTokenCodec.encode(token, buffer);
+            buffer.flip();
+
+            Token decoded = ReplicatedTokenCodec.decode(buffer);
+
+            assertFalse(buffer.hasRemaining(), "decode must consume the whole payload");
+            assertSameToken(token, decoded);
+        }
+    }
+
+    @Test
+    void roundTripsThroughDirectBuffers() {
+        Random random = new Random(7L);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
+        for (int i = 0; i < 500; i++) {
+            Token token = randomToken(random);
+            buffer.clear();
+            ReplicatedTokenCodec.encode(token, buffer);
+            buffer.flip();
+            assertSameToken(token, ReplicatedTokenCodec.decode(buffer));
+        }
+    }
+
+    @Test
+    void payloadIsSmallerThanJsonOfTheSameFields() throws IOException {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Random random = new Random(20261019L);
+        Token[] tokens = new Token[5_000];
+        long binaryBytes = 0;
+        long jsonBytes = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = randomToken(random);
+            binaryBytes += encode(tokens[i]).length;
+            jsonBytes += mapper.writeValueAsBytes(jsonFields(tokens[i])).length;
+        }
+
+        // Throughput is reported, not asserted, so the build does not depend on the machine
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        long binaryNanos = 0;
+        long jsonNanos = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (Token token : tokens) {
+                buffer.clear();
+                ReplicatedTokenCodec.encode(token, buffer);
+                buffer.flip();
+                ReplicatedTokenCodec.decode(buffer);
+            }
+            binaryNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Token token : tokens) {
+                mapper.readValue(mapper.writeValueAsBytes(jsonFields(token)), Map.class);
+            }
+            jsonNanos = System.nanoTime() - start;
+        }
+        System.out.printf("replicated token payload: %.1f bytes binary, %.1f bytes JSON; "
+                + "encode+decode %.0f ns binary, %.0f ns JSON%n",
+            (double) binaryBytes / tokens.length, (double) jsonBytes / tokens.length,
+            (double) binaryNanos / tokens.length, (double) jsonNanos / tokens.length);
+
+        assertTrue(binaryBytes * 2 < jsonBytes,
+            "binary " + binaryBytes + " bytes against " + jsonBytes + " bytes of JSON");
+    }
+
+    @Test
+    void emptyTokenDecodesWithoutEntityDefaults() {
+        Token decoded = decode(encode(emptyToken()));
+
+        assertNull(decoded.getAlgorithmType());
+        assertNull(decoded.getUsageCount());
+        assertNull(decoded.getFailedAttempts());
+        assertNull(decoded.getIsCof());
+        assertTrue(decoded.getMetadata().isEmpty());
+    }
+
+    @Test
+    void everyTruncatedPayloadIsRejected() {
+        Random random = new Random(42L);
+        for (int i = 0; i < 200; i++) {
+            byte[] payload = encode(randomToken(random));
+            for (int length = 0; length < payload.length; length++) {
+                ByteBuffer truncated = ByteBuffer.wrap(payload, 0, length);
+                assertThrows(IllegalArgumentException.class, () -> ReplicatedTokenCodec.decode(truncated),
+                    "payload cut to " + length + " of " + payload.length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] payload = encode(randomToken(new Random(1L)));
+        for (int version : new int[] {0, ReplicatedTokenCodec.VERSION + 1, 0xFF}) {
+            payload[0] = (byte) version;
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ReplicatedTokenCodec.decode(ByteBuffer.wrap(payload)));
+            assertTrue(e.getMessage().contains("version " + version), e.getMessage());
+        }
+    }
+
+    @Test
+    void unknownDictionaryCodeIsRejected() {
+        Token token = emptyToken();
+        token.setStatus("ACTIVE");
+        byte[] payload = encode(token);
+        // Version, presence, then the status code as the only field
+        payload[payload.length - 1] = 100;
+        assertThrows(IllegalArgumentException.class, () -> ReplicatedTokenCodec.decode(ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    void valuesOutsideTheDictionaryAreWrittenLiterally() {
+        Token known = emptyToken();
+        known.setStatus("ACTIVE");
+        known.setCardBrand("VISA");
+        Token literal = emptyToken();
+        literal.setStatus("PENDING_REVIEW");
+        literal.setCardBrand("ELO");
+
+        Token decoded = decode(encode(literal));
+
+        assertEquals("PENDING_REVIEW", decoded.getStatus());
+        assertEquals("ELO", decoded.getCardBrand());
+        // A known value is a one-byte code; a literal is code 0, a length and the bytes
+        assertEquals(encode(known).length + (1 + "PENDING_REVIEW".length()) + (1 + "ELO".length()),
+            encode(literal).length);
+    }
+
+    @Test
+    void newerPayloadsDecodeWithUnknownFieldsIgnored() {
+        Token token = randomToken(new Random(99L));
+        ByteBuffer original = ByteBuffer.wrap(encode(token));
+        original.get();
+        long presence = ReplicatedTokenCodec.readVarint(original);
+
+        // A later schema version with one more field, appended after the known ones
+        ByteBuffer newer = ByteBuffer.allocate(original.capacity() + 32);
+        newer.put((byte) ReplicatedTokenCodec.VERSION);
+        ReplicatedTokenCodec.writeVarint(newer, presence | 1L << 62);
+        newer.put(original);
+        ReplicatedTokenCodec.writeString(newer, "field from the future");
+        newer.flip();
+
+        assertSameToken(token, ReplicatedTokenCodec.decode(newer));
+    }
+
+    @Test
+    void stringsAreEncodedAsUtf8() {
+        String value = "a é ₹ 😀";
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        ReplicatedTokenCodec.writeString(buffer, value);
+        buffer.flip();
+
+        assertEquals(value.getBytes(StandardCharsets.UTF_8).length,
+            ReplicatedTokenCodec.utf8Length(value));
+        assertEquals(value, ReplicatedTokenCodec.readString(buffer));
+    }
+
+    private static byte[] encode(Token token) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        ReplicatedTokenCodec.encode(token, buffer);
+        byte[] payload = new byte[buffer.position()];
+        buffer.flip().get(payload);
+        return payload;
+    }
+
+    private static Token decode(byte[] payload) {
+        return ReplicatedTokenCodec.decode(ByteBuffer.wrap(payload));
+    }
+
+    // A token with none of the entity's field defaults, so nothing but what a test sets is encoded
+    private static Token emptyToken() {
+        Token token = new Token();
+        token.setAlgorithmType(null);
+        token.setUsageCount(null);
+        token.setFailedAttempts(null);
+        token.setIsCof(null);
+        token.setMetadata(new HashMap<>());
+        return token;
+    }
+
+    private static Token randomToken(Random random) {
+        Token token = new Token();
+        token.setId(present(random) ? random.nextLong() : null);
+        token.setTokenValue(randomString(random));
+        token.setMaskedPan(randomString(random));
+        token.setCardHash(randomString(random));
+        token.setStatus(present(random) ? STATUSES[random.nextInt(STATUSES.length)] : null);
+        if (present(random)) {
+            Merchant merchant = new Merchant();
+            merchant.setMerchantId("MERCH" + random.nextInt(1000));
+            token.setMerchant(merchant);
+        }
+        token.setAlgorithmType(present(random) ? (random.nextBoolean() ? "COF" : "TOKEN_V2") : null);
+        token.setTokenFormat(present(random) ? "NUMERIC" : null);
+        token.setCardBrand(present(random) ? BRANDS[random.nextInt(BRANDS.length)] : null);
+        token.setCardType(present(random) ? (random.nextBoolean() ? "DEBIT" : "CHARGE") : null);
+        token.setCardBin(randomString(random));
+        token.setCardLast4(randomString(random));
+        token.setIssuerCountry(randomString(random));
+        token.setIssuerBank(randomString(random));
+        token.setCustomerId(randomString(random));
+        token.setCustomerEmail(randomString(random));
+        token.setCustomerPhone(randomString(random));
+        token.setTransactionId(randomString(random));
+        token.setTransactionAmount(present(random)
+            ? new BigDecimal(new BigInteger(random.nextInt(100) + 1, random).subtract(BigInteger.TEN.pow(10)),
+                random.nextInt(21) - 10)
+            : null);
+        token.setTransactionCurrency(randomString(random));
+        token.setCreatedAt(randomTime(random));
+        token.setExpiresAt(randomTime(random));
+        token.setLastUsedAt(randomTime(random));
+        token.setUpdatedAt(randomTime(random));
+        token.setSuspendedAt(randomTime(random));
+        token.setRevokedAt(randomTime(random));
+        token.setUsageCount(present(random) ? random.nextInt() : null);
+        token.setFailedAttempts(present(random) ? random.nextInt(10) : null);
+        token.setMaxUsageLimit(present(random) ? random.nextInt() : null);
+        token.setEncryptionKeyId(randomString(random));
+        token.setRiskScore(present(random) ? random.nextInt(101) : null);
+        token.setRiskFactors(randomString(random));
+        token.setIsCof(present(random) ? random.nextBoolean() : null);
+        token.setCofContractId(randomString(random));
+        token.setCofInitialTransactionId(randomString(random));
+        Map<String, String> metadata = new HashMap<>();
+        if (present(random)) {
+            for (int i = random.nextInt(5); i >= 0; i--) {
+                metadata.put(randomText(random), randomText(random));
+            }
+        }
+        token.setMetadata(metadata);
+        return token;
+    }
+
+    // The fields the codec replicates, as they would be written to JSON
+    private static Map<String, Object> jsonFields(Token token) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("id", token.getId());
+        fields.put("tokenValue", token.getTokenValue());
+        fields.put("maskedPan", token.getMaskedPan());
+        fields.put("cardHash", token.getCardHash());
+        fields.put("status", token.getStatus());
+        fields.put("merchantId", token.getMerchant() != null ? token.getMerchant().getMerchantId() : null);
+        fields.put("algorithmType", token.getAlgorithmType());
+        fields.put("tokenFormat", token.getTokenFormat());
+        fields.put("cardBrand", token.getCardBrand());
+        fields.put("cardType", token.getCardType());
+        fields.put("cardBin", token.getCardBin());
+        fields.put("cardLast4", token.getCardLast4());
+        fields.put("issuerCountry", token.getIssuerCountry());
+        fields.put("issuerBank", token.getIssuerBank());
+        fields.put("customerId", token.getCustomerId());
+        fields.put("customerEmail", token.getCustomerEmail());
+        fields.put("customerPhone", token.getCustomerPhone());
+        fields.put("transactionId", token.getTransactionId());
+        fields.put("transactionAmount", token.getTransactionAmount());
+        fields.put("transactionCurrency", token.getTransactionCurrency());
+        fields.put("createdAt", token.getCreatedAt());
+        fields.put("expiresAt", token.getExpiresAt());
+        fields.put("lastUsedAt", token.getLastUsedAt());
+        fields.put("updatedAt", token.getUpdatedAt());
+        fields.put("suspendedAt", token.getSuspendedAt());
+        fields.put("revokedAt", token.getRevokedAt());
+        fields.put("usageCount", token.getUsageCount());
+        fields.put("failedAttempts", token.getFailedAttempts());
+        fields.put("maxUsageLimit", token.getMaxUsageLimit());
+        fields.put("encryptionKeyId", token.getEncryptionKeyId());
+        fields.put("riskScore", token.getRiskScore());
+        fields.put("riskFactors", token.getRiskFactors());
+        fields.put("isCof", token.getIsCof());
+        fields.put("cofContractId", token.getCofContractId());
+        fields.put("cofInitialTransactionId", token.getCofInitialTransactionId());
+        fields.put("metadata", token.getMetadata());
+        return fields;
+    }
+
+    private static boolean present(Random random) {
+        return random.nextInt(10) < 7;
+    }
+
+    private static String randomString(Random random) {
+        return present(random) ? randomText(random) : null;
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(10) == 0 ? random.nextInt(300) : random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return text.toString();
+    }
+
+    // Microsecond precision, which is what the codec keeps, before and after the epoch
+    private static LocalDateTime randomTime(Random random) {
+        if (!present(random)) {
+            return null;
+        }
+        long micros = (random.nextLong() % 4_000_000_000_000_000L);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static void assertSameToken(Token expected, Token actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTokenValue(), actual.getTokenValue());
+        assertEquals(expected.getMaskedPan(), actual.getMaskedPan());
+        assertEquals(expected.getCardHash(), actual.getCardHash());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getMerchant() != null ? expected.getMerchant().getMerchantId() : null,
+            actual.getMerchant() != null ? actual.getMerchant().getMerchantId() : null);
+        assertEquals(expected.getAlgorithmType(), actual.getAlgorithmType());
+        assertEquals(expected.getTokenFormat(), actual.getTokenFormat());
+        assertEquals(expected.getCardBrand(), actual.getCardBrand());
+        assertEquals(expected.getCardType(), actual.getCardType());
+        assertEquals(expected.getCardBin(), actual.getCardBin());
+        assertEquals(expected.getCardLast4(), actual.getCardLast4());
+        assertEquals(expected.getIssuerCountry(), actual.getIssuerCountry());
+        assertEquals(expected.getIssuerBank(), actual.getIssuerBank());
+        assertEquals(expected.getCustomerId(), actual.getCustomerId());
+        assertEquals(expected.getCustomerEmail(), actual.getCustomerEmail());
+        assertEquals(expected.getCustomerPhone(), actual.getCustomerPhone());
+        assertEquals(expected.getTransactionId(), actual.getTransactionId());
+        assertEquals(expected.getTransactionAmount(), actual.getTransactionAmount());
+        assertEquals(expected.getTransactionCurrency(), actual.getTransactionCurrency());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+        assertEquals(expected.getLastUsedAt(), actual.getLastUsedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        assertEquals(expected.getSuspendedAt(), actual.getSuspendedAt());
+        assertEquals(expected.getRevokedAt(), actual.getRevokedAt());
+        assertEquals(expected.getUsageCount(), actual.getUsageCount());
+        assertEquals(expected.getFailedAttempts(), actual.getFailedAttempts());
+        assertEquals(expected.getMaxUsageLimit(), actual.getMaxUsageLimit());
+        assertEquals(expected.getEncryptionKeyId(), actual.getEncryptionKeyId());
+        assertEquals(expected.getRiskScore(), actual.getRiskScore());
+        assertEquals(expected.getRiskFactors(), actual.getRiskFactors());
+        assertEquals(expected.getIsCof(), actual.getIsCof());
+        assertEquals(expected.getCofContractId(), actual.getCofContractId());
+        assertEquals(expected.getCofInitialTransactionId(), actual.getCofInitialTransactionId());
+        assertEquals(expected.getMetadata(), actual.getMetadata());
+    }
+}
@@ -0,0 +1,109 @@
+package com.sabpaisa.tokenization.fraud;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceSignalExtractorTest {
+
+    private static final String CHROME_ANDROID = "Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 "
+        + "(KHTML, like Gecko) Chrome/124.0.0.0 Mobile Safari/537.36";
+    private static final String FIREFOX_WINDOWS = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:125.0) "
+        + "Gecko/20100101 Firefox/125.0";
+
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int MEASURED_CALLS = 200_000;
+
+    private DeviceSignalExtractor extractor;
+
+    @BeforeEach
+    void createExtractor() {
+        extractor = new DeviceSignalExtractor();
+        ReflectionTestUtils.setField(extractor, "userAgentCacheSize", 1024);
+        extractor.initialize();
+    }
+
+    @Test
+    void parsesDeviceTypeAndOs() {
+        DeviceSignals mobile = extractor.extract(RequestHeaders.of(Map.of("User-Agent", CHROME_ANDROID)));
+        DeviceSignals desktop = extractor.extract(RequestHeaders.of(Map.of("User-Agent", FIREFOX_WINDOWS)));
+
+        assertEquals("MOBILE", mobile.getDeviceType());
+        assertEquals("Linux", mobile.getOsInfo());
+        assertEquals("DESKTOP", desktop.getDeviceType());
+        assertEquals("Windows", desktop.getOsInfo());
+        assertEquals(FIREFOX_WINDOWS, desktop.getBrowserInfo());
+    }
+
+    @Test
+    void headerNamesAreCaseInsensitive() {
+        DeviceSignals canonical = extractor.extract(RequestHeaders.of(Map.of(
+            "User-Agent", FIREFOX_WINDOWS, "Accept-Language", "hi-IN")));
+        DeviceSignals lowerCased = extractor.extract(RequestHeaders.of(Map.of(
+            "user-agent", FIREFOX_WINDOWS, "accept-language", "hi-IN")));
+
+        assertEquals(canonical.getFingerprint(), lowerCased.getFingerprint());
+        assertEquals("Windows", lowerCased.getOsInfo());
+    }
+
+    @Test
+    void generatedFingerprintsDistinguishHeadersAndKeepTheLegacyForm() {
+        DeviceSignals english = extractor.extract(RequestHeaders.of(Map.of(
+            "User-Agent", CHROME_ANDROID, "Accept-Language", "en-IN")));
+        DeviceSignals hindi = extractor.extract(RequestHeaders.of(Map.of(
+            "User-Agent", CHROME_ANDROID, "Accept-Language", "hi-IN")));
+
+        // 128 bits as URL-safe Base64 without padding
+        assertTrue(english.getFingerprint().matches("[A-Za-z0-9_-]{22}"), english.getFingerprint());
+        assertNotEquals(english.getFingerprint(), hindi.getFingerprint());
+        // The old format only saw the start of the user agent, so it cannot tell these apart
+        assertEquals(16, english.getLegacyFingerprint().length());
+        assertEquals(english.getLegacyFingerprint(), hindi.getLegacyFingerprint());
+    }
+
+    @Test
+    void clientFingerprintIsUsedAsIs() {
+        DeviceSignals signals = extractor.extract(RequestHeaders.of(Map.of(
+            "User-Agent", CHROME_ANDROID, DeviceSignalExtractor.FINGERPRINT_HEADER, "client-fp-1")));
+
+        assertEquals("client-fp-1", signals.getFingerprint());
+        assertNull(signals.getLegacyFingerprint());
+    }
+
+    // Allocation and time per call, with the user agent cached; reported, not asserted
+    @Test
+    void measuresExtractCost() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        RequestHeaders generated = RequestHeaders.of(Map.of(
+            "User-Agent", CHROME_ANDROID, "Accept-Language", "en-IN", "Accept-Encoding", "gzip, br"));
+        RequestHeaders supplied = RequestHeaders.of(Map.of(
+            "User-Agent", CHROME_ANDROID, DeviceSignalExtractor.FINGERPRINT_HEADER, "client-fp-1"));
+
+        for (RequestHeaders headers : new RequestHeaders[] {generated, supplied}) {
+            int sink = 0;
+            for (int i = 0; i < WARMUP_CALLS; i++) {
+                sink += extractor.extract(headers).getFingerprint().length();
+            }
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                sink += extractor.extract(headers).getFingerprint().length();
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            System.out.printf("DeviceSignalExtractor.extract (%s fingerprint): %.0f ns, %.0f bytes allocated per call%n",
+                headers == generated ? "generated" : "client", (double) elapsed / MEASURED_CALLS,
+                (double) allocated / MEASURED_CALLS);
+            assertTrue(sink > 0);
+        }
+    }
+}
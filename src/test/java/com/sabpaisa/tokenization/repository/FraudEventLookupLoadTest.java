@@ -0,0 +1,116 @@
+package com.sabpaisa.tokenization.repository;
+
+import com.sabpaisa.tokenization.entity.FraudDetectionEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Single-event lookup by eventId must stay flat as the events table grows.
+ *
+ * The table is grown in steps of ten up to {@code loadtest.fraud-events.max-rows}
+ * (100,000 by default, so the test fits a normal build) and the median latency of
+ * {@code findByEventId} is measured at each size. For the full run, use
+ * {@code mvn test -Dtest=FraudEventLookupLoadTest -Dloadtest.fraud-events.max-rows=10000000}
+ * with a few GB of heap for the in-memory database.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FraudEventLookupLoadTest {
+
+    private static final int INITIAL_ROWS = 1_000;
+    private static final int WARMUP_LOOKUPS = 500;
+    private static final int MEASURED_LOOKUPS = 2_000;
+    private static final int INSERT_CHUNK = 100_000;
+
+    // Medians are sub-millisecond, so allow a fixed slack on top of the ratio
+    private static final double MAX_GROWTH = 3.0;
+    private static final long SLACK_NANOS = 500_000;
+
+    @Autowired
+    private FraudDetectionEventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lookupByEventIdStaysFlatAsTheTableGrows() {
+        long maxRows = Long.getLong("loadtest.fraud-events.max-rows", 100_000);
+        Random random = new Random(33L);
+
+        long rows = 0;
+        long baselineNanos = -1;
+        for (long target = INITIAL_ROWS; target <= maxRows; target *= 10) {
+            insertEvents(rows, target);
+            rows = target;
+
+            long medianNanos = medianLookupNanos(rows, random);
+            System.out.printf("fraud_detection_events rows=%,d median findByEventId=%.3f ms%n",
+                rows, medianNanos / 1e6);
+            if (baselineNanos < 0) {
+                baselineNanos = medianNanos;
+            } else {
+                assertTrue(medianNanos <= baselineNanos * MAX_GROWTH + SLACK_NANOS,
+                    String.format("lookup at %,d rows took %.3f ms, against %.3f ms at %,d rows",
+                        rows, medianNanos / 1e6, baselineNanos / 1e6, INITIAL_ROWS));
+            }
+        }
+    }
+
+    @Test
+    void lookupByEventIdUsesAnIndex() {
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+            "EXPLAIN SELECT * FROM fraud_detection_events WHERE event_id = 'FDE-LOAD-1'", String.class));
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private long medianLookupNanos(long rows, Random random) {
+        for (int i = 0; i < WARMUP_LOOKUPS; i++) {
+            lookup((long) (random.nextDouble() * rows));
+        }
+        long[] samples = new long[MEASURED_LOOKUPS];
+        for (int i = 0; i < MEASURED_LOOKUPS; i++) {
+            long index = (long) (random.nextDouble() * rows);
+            long start = System.nanoTime();
+            lookup(index);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private void lookup(long index) {
+        Optional<FraudDetectionEvent> event = eventRepository.findByEventId("FDE-LOAD-" + index);
+        assertTrue(event.isPresent(), "event " + index + " missing");
+    }
+
+    // Rows are generated inside the database, in chunks, so growing to 10M rows stays fast
+    private void insertEvents(long from, long to) {
+        for (long start = from; start < to; start += INSERT_CHUNK) {
+            long end = Math.min(start + INSERT_CHUNK, to) - 1;
+            jdbcTemplate.update(
+                "INSERT INTO fraud_detection_events (event_id, tokenization_request_id, merchant_id, event_type, " +
+                "event_timestamp, risk_score, risk_level, decision, is_vpn, is_proxy, is_tor, created_at) " +
+                "SELECT 'FDE-LOAD-' || X, 'REQ-' || X, 'MERCH' || MOD(X, 500), 'TOKENIZATION', " +
+                "DATEADD('SECOND', -X, CURRENT_TIMESTAMP), MOD(X, 101), " +
+                "CASE WHEN MOD(X, 101) >= 80 THEN 'HIGH' ELSE 'LOW' END, " +
+                "CASE WHEN MOD(X, 101) >= 80 THEN 'BLOCK' ELSE 'ALLOW' END, " +
+                "FALSE, FALSE, FALSE, DATEADD('SECOND', -X, CURRENT_TIMESTAMP) " +
+                "FROM SYSTEM_RANGE(?, ?)", start, end);
+        }
+    }
+}